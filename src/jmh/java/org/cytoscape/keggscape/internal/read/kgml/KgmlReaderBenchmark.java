@@ -0,0 +1,298 @@
+package org.cytoscape.keggscape.internal.read.kgml;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.sax.SAXSource;
+
+import org.cytoscape.keggscape.internal.generated.Entry;
+import org.cytoscape.keggscape.internal.generated.Pathway;
+import org.cytoscape.keggscape.internal.generated.Reaction;
+import org.cytoscape.keggscape.internal.generated.Relation;
+import org.cytoscape.keggscape.internal.model.PathwayGraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+/**
+ * Throughput of each phase of the KGML import, from bytes to
+ * {@link PathwayGraph}.
+ *
+ * The later mapper phases consume their {@link KGMLMapper}. A mapper is
+ * prepared up to the measured phase once per trial and copied for each
+ * invocation before each iteration. These phases run as single shots of
+ * {@link #BATCH_SIZE} invocations, so the timer only covers the phase, and
+ * their scores are per batch.
+ *
+ * Run with {@code -prof gc} to get the allocation rate of each phase. The
+ * copies are allocated within the iteration, so for the batched phases
+ * subtract {@link #BATCH_SIZE} times the allocation of the matching copy
+ * benchmark.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KgmlReaderBenchmark {
+
+	private static final String PACKAGE_NAME = "org.cytoscape.keggscape.internal.generated";
+
+	// Invocations per iteration of the phases which consume their mapper
+	private static final int BATCH_SIZE = 50;
+
+	@State(Scope.Benchmark)
+	public static class Kgml {
+
+		/**
+		 * Small metabolic pathway, large signaling pathway and the 1.3 MB
+		 * global map.
+		 */
+		@Param({ "metabolic/organisms/bsu/bsu00020.xml", "non-metabolic/organisms/hsa/hsa05200.xml",
+				"metabolic/ec/ec01100.xml" })
+		public String file;
+
+		byte[] bytes;
+		JAXBContext context;
+		SAXParserFactory parserFactory;
+		Pathway pathway;
+
+		@Setup(Level.Trial)
+		public void setUp() throws Exception {
+			bytes = readResource("/testData/kgml/" + file);
+			context = JAXBContext.newInstance(PACKAGE_NAME, KgmlReaderBenchmark.class.getClassLoader());
+			parserFactory = SAXParserFactory.newInstance();
+			// Do not fetch the DTD from www.kegg.jp in every invocation.
+			parserFactory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+			pathway = unmarshalPathway(this);
+		}
+	}
+
+	/**
+	 * Copies of a mapper prepared up to a phase, one for each invocation of
+	 * an iteration.
+	 */
+	public abstract static class MapperCopies {
+
+		private KGMLMapper prepared;
+		private final KGMLMapper[] copies = new KGMLMapper[BATCH_SIZE];
+		private int next;
+
+		@Setup(Level.Trial)
+		public void prepare(final Kgml kgml) throws Exception {
+			prepared = startMapper(kgml.pathway);
+			prepareMapper(prepared, kgml.pathway);
+		}
+
+		abstract void prepareMapper(final KGMLMapper mapper, final Pathway pathway);
+
+		@Setup(Level.Iteration)
+		public void copy() {
+			for (int i = 0; i < copies.length; i++) {
+				copies[i] = new KGMLMapper(prepared);
+			}
+			next = 0;
+		}
+
+		KGMLMapper next() {
+			final KGMLMapper mapper = copies[next];
+			copies[next++] = null;
+			return mapper;
+		}
+
+		KGMLMapper getPrepared() {
+			return prepared;
+		}
+	}
+
+	/**
+	 * Mapper with all entries mapped and all relations collected.
+	 */
+	@State(Scope.Thread)
+	public static class EntriesMapped extends MapperCopies {
+
+		@Override
+		void prepareMapper(final KGMLMapper mapper, final Pathway pathway) {
+			mapEntries(mapper, pathway);
+		}
+	}
+
+	/**
+	 * Mapper with all nodes and edges mapped. Only groups are left.
+	 */
+	@State(Scope.Thread)
+	public static class EdgesMapped extends MapperCopies {
+
+		@Override
+		void prepareMapper(final KGMLMapper mapper, final Pathway pathway) {
+			mapEntries(mapper, pathway);
+			for (final Reaction reaction : pathway.getReaction()) {
+				mapper.reaction(reaction);
+			}
+			mapper.mapRelations();
+		}
+	}
+
+	@Benchmark
+	public Pathway unmarshal(final Kgml kgml) throws Exception {
+		return unmarshalPathway(kgml);
+	}
+
+	@Benchmark
+	public void parseStream(final Kgml kgml, final Blackhole blackhole) throws IOException {
+		new KGMLStreamParser().parse(new ByteArrayInputStream(kgml.bytes), new KGMLHandler() {
+			@Override
+			public void startPathway(final Pathway pathway) {
+				blackhole.consume(pathway);
+			}
+
+			@Override
+			public void entry(final Entry entry) {
+				blackhole.consume(entry);
+			}
+
+			@Override
+			public void relation(final Relation relation) {
+				blackhole.consume(relation);
+			}
+
+			@Override
+			public void reaction(final Reaction reaction) {
+				blackhole.consume(reaction);
+			}
+
+			@Override
+			public void endPathway() {
+			}
+		});
+	}
+
+	@Benchmark
+	public KGMLMapper mapEntries(final Kgml kgml) {
+		final KGMLMapper mapper = startMapper(kgml.pathway);
+		for (final Entry entry : kgml.pathway.getEntry()) {
+			mapper.entry(entry);
+		}
+		return mapper;
+	}
+
+	/**
+	 * Reactions of global maps are mapped by {@code mapGlobalReaction}.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	@Warmup(iterations = 20, batchSize = BATCH_SIZE)
+	@Measurement(iterations = 20, batchSize = BATCH_SIZE)
+	public KGMLMapper mapReactions(final Kgml kgml, final EntriesMapped state) {
+		final KGMLMapper mapper = state.next();
+		for (final Reaction reaction : kgml.pathway.getReaction()) {
+			mapper.reaction(reaction);
+		}
+		return mapper;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	@Warmup(iterations = 20, batchSize = BATCH_SIZE)
+	@Measurement(iterations = 20, batchSize = BATCH_SIZE)
+	public KGMLMapper mapRelations(final EntriesMapped state) {
+		final KGMLMapper mapper = state.next();
+		mapper.mapRelations();
+		return mapper;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	@Warmup(iterations = 20, batchSize = BATCH_SIZE)
+	@Measurement(iterations = 20, batchSize = BATCH_SIZE)
+	public KGMLMapper mapGroups(final EdgesMapped state) {
+		final KGMLMapper mapper = state.next();
+		mapper.mapGroups();
+		return mapper;
+	}
+
+	/**
+	 * Allocation baseline of {@link #mapReactions} and {@link #mapRelations}.
+	 */
+	@Benchmark
+	public KGMLMapper copyEntriesMapped(final EntriesMapped state) {
+		return new KGMLMapper(state.getPrepared());
+	}
+
+	/**
+	 * Allocation baseline of {@link #mapGroups}.
+	 */
+	@Benchmark
+	public KGMLMapper copyEdgesMapped(final EdgesMapped state) {
+		return new KGMLMapper(state.getPrepared());
+	}
+
+	/**
+	 * Streaming parser and mapper together, as used by the reader.
+	 */
+	@Benchmark
+	public PathwayGraph read(final Kgml kgml) throws IOException {
+		return new PathwayGraphReader().read(new ByteArrayInputStream(kgml.bytes));
+	}
+
+	private static final KGMLMapper startMapper(final Pathway pathway) {
+		final KGMLMapper mapper = new KGMLMapper();
+		mapper.startPathway(pathway);
+		return mapper;
+	}
+
+	private static final void mapEntries(final KGMLMapper mapper, final Pathway pathway) {
+		for (final Entry entry : pathway.getEntry()) {
+			mapper.entry(entry);
+		}
+		for (final Relation relation : pathway.getRelation()) {
+			mapper.relation(relation);
+		}
+	}
+
+	private static final Pathway unmarshalPathway(final Kgml kgml) throws Exception {
+		final XMLReader xmlReader = kgml.parserFactory.newSAXParser().getXMLReader();
+		final Unmarshaller unmarshaller = kgml.context.createUnmarshaller();
+		return (Pathway) unmarshaller
+				.unmarshal(new SAXSource(xmlReader, new InputSource(new ByteArrayInputStream(kgml.bytes))));
+	}
+
+	private static final byte[] readResource(final String name) throws IOException {
+		final InputStream is = KgmlReaderBenchmark.class.getResourceAsStream(name);
+		if (is == null) {
+			throw new IOException("Test data not found: " + name);
+		}
+		try {
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[8192];
+			int read;
+			while ((read = is.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		} finally {
+			is.close();
+		}
+	}
+}
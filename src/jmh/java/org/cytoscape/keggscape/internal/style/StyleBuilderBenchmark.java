@@ -0,0 +1,52 @@
+package org.cytoscape.keggscape.internal.style;
+
+import java.util.concurrent.TimeUnit;
+
+import org.cytoscape.view.vizmap.VisualMappingFunctionFactory;
+import org.cytoscape.view.vizmap.VisualStyle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of creating the KEGG visual styles.
+ *
+ * The vizmap services are replaced by {@link StyleStubs}, so this measures
+ * the mappings and defaults set up by {@link KGMLVisualStyleBuilder},
+ * including the search for the label position property in all lexicons.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StyleBuilderBenchmark {
+
+	private KGMLVisualStyleBuilder builder;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		final VisualMappingFunctionFactory mappingFactory = StyleStubs.mappingFactory();
+		builder = new KGMLVisualStyleBuilder(StyleStubs.visualStyleFactory(), mappingFactory, mappingFactory,
+				StyleStubs.visualMappingManager());
+	}
+
+	@Benchmark
+	public VisualStyle defaultStyle() {
+		return builder.getVisualStyle();
+	}
+
+	@Benchmark
+	public VisualStyle globalMapStyle() {
+		return builder.getGlobalVisualStyle();
+	}
+}
@@ -0,0 +1,186 @@
+package org.cytoscape.keggscape.internal.style;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.cytoscape.view.model.VisualLexicon;
+import org.cytoscape.view.model.VisualProperty;
+import org.cytoscape.view.presentation.property.BasicVisualLexicon;
+import org.cytoscape.view.presentation.property.NullVisualProperty;
+import org.cytoscape.view.vizmap.VisualMappingFunction;
+import org.cytoscape.view.vizmap.VisualMappingFunctionFactory;
+import org.cytoscape.view.vizmap.VisualMappingManager;
+import org.cytoscape.view.vizmap.VisualStyle;
+import org.cytoscape.view.vizmap.VisualStyleFactory;
+import org.cytoscape.view.vizmap.mappings.DiscreteMapping;
+import org.cytoscape.view.vizmap.mappings.PassthroughMapping;
+
+/**
+ * Minimal in-memory implementations of the vizmap services used by
+ * {@link KGMLVisualStyleBuilder}.
+ *
+ * They are dynamic proxies which only store values in maps, so the style
+ * benchmark measures the builder and not the Cytoscape implementation.
+ * Mockito mocks are not used because they record every invocation.
+ */
+final class StyleStubs {
+
+	private StyleStubs() {
+	}
+
+	static VisualStyleFactory visualStyleFactory() {
+		return proxy(VisualStyleFactory.class, new InvocationHandler() {
+			@Override
+			public Object invoke(final Object proxy, final Method method, final Object[] args) {
+				if (method.getName().equals("createVisualStyle")) {
+					if (args[0] instanceof VisualStyle) {
+						return copy((VisualStyle) args[0]);
+					}
+					return visualStyle((String) args[0]);
+				}
+				return defaultValue(proxy, method, args);
+			}
+		});
+	}
+
+	static VisualMappingFunctionFactory mappingFactory() {
+		return proxy(VisualMappingFunctionFactory.class, new InvocationHandler() {
+			@Override
+			public Object invoke(final Object proxy, final Method method, final Object[] args) {
+				if (method.getName().equals("createVisualMappingFunction")) {
+					return mapping((String) args[0], (Class<?>) args[1], (VisualProperty<?>) args[2]);
+				}
+				return defaultValue(proxy, method, args);
+			}
+		});
+	}
+
+	/**
+	 * @return manager with the basic visual lexicon and no styles.
+	 */
+	static VisualMappingManager visualMappingManager() {
+		final Set<VisualLexicon> lexicons = Collections.<VisualLexicon> singleton(
+				new BasicVisualLexicon(new NullVisualProperty("ROOT", "Root Visual Property")));
+		return proxy(VisualMappingManager.class, new InvocationHandler() {
+			@Override
+			public Object invoke(final Object proxy, final Method method, final Object[] args) {
+				if (method.getName().equals("getAllVisualLexicon")) {
+					return lexicons;
+				}
+				if (method.getName().equals("getAllVisualStyles")) {
+					return Collections.emptySet();
+				}
+				return defaultValue(proxy, method, args);
+			}
+		});
+	}
+
+	private static VisualStyle visualStyle(final String title) {
+		final String[] currentTitle = { title };
+		final Map<VisualProperty<?>, Object> defaults = new HashMap<VisualProperty<?>, Object>();
+		final Map<VisualProperty<?>, VisualMappingFunction<?, ?>> mappings = new LinkedHashMap<VisualProperty<?>, VisualMappingFunction<?, ?>>();
+		return proxy(VisualStyle.class, new InvocationHandler() {
+			@Override
+			public Object invoke(final Object proxy, final Method method, final Object[] args) {
+				final String name = method.getName();
+				if (name.equals("getTitle")) {
+					return currentTitle[0];
+				} else if (name.equals("setTitle")) {
+					currentTitle[0] = (String) args[0];
+				} else if (name.equals("setDefaultValue")) {
+					defaults.put((VisualProperty<?>) args[0], args[1]);
+				} else if (name.equals("getDefaultValue")) {
+					return defaults.get(args[0]);
+				} else if (name.equals("addVisualMappingFunction")) {
+					final VisualMappingFunction<?, ?> mapping = (VisualMappingFunction<?, ?>) args[0];
+					mappings.put(mapping.getVisualProperty(), mapping);
+				} else if (name.equals("removeVisualMappingFunction")) {
+					mappings.remove(args[0]);
+				} else if (name.equals("getVisualMappingFunction")) {
+					return mappings.get(args[0]);
+				} else if (name.equals("getAllVisualMappingFunctions")) {
+					return new ArrayList<VisualMappingFunction<?, ?>>(mappings.values());
+				} else if (name.equals("getAllVisualPropertyDependencies")) {
+					return Collections.emptySet();
+				} else {
+					return defaultValue(proxy, method, args);
+				}
+				return null;
+			}
+		});
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static VisualStyle copy(final VisualStyle original) {
+		final VisualStyle style = visualStyle(original.getTitle());
+		for (final VisualMappingFunction mapping : original.getAllVisualMappingFunctions()) {
+			style.addVisualMappingFunction(mapping);
+		}
+		return style;
+	}
+
+	private static Object mapping(final String column, final Class<?> type, final VisualProperty<?> vp) {
+		final Map<Object, Object> values = new HashMap<Object, Object>();
+		final InvocationHandler handler = new InvocationHandler() {
+			@Override
+			public Object invoke(final Object proxy, final Method method, final Object[] args) {
+				final String name = method.getName();
+				if (name.equals("getMappingColumnName")) {
+					return column;
+				} else if (name.equals("getMappingColumnType")) {
+					return type;
+				} else if (name.equals("getVisualProperty")) {
+					return vp;
+				} else if (name.equals("putMapValue")) {
+					values.put(args[0], args[1]);
+					return null;
+				} else if (name.equals("getMapValue")) {
+					return values.get(args[0]);
+				} else if (name.equals("getAll")) {
+					return values;
+				}
+				return defaultValue(proxy, method, args);
+			}
+		};
+		// The builder casts the result to the mapping type it asked for.
+		return Proxy.newProxyInstance(StyleStubs.class.getClassLoader(),
+				new Class<?>[] { DiscreteMapping.class, PassthroughMapping.class }, handler);
+	}
+
+	private static <T> T proxy(final Class<T> type, final InvocationHandler handler) {
+		return type.cast(Proxy.newProxyInstance(StyleStubs.class.getClassLoader(), new Class<?>[] { type },
+				handler));
+	}
+
+	private static Object defaultValue(final Object proxy, final Method method, final Object[] args) {
+		final String name = method.getName();
+		if (name.equals("equals")) {
+			return proxy == args[0];
+		} else if (name.equals("hashCode")) {
+			return System.identityHashCode(proxy);
+		} else if (name.equals("toString")) {
+			return method.getDeclaringClass().getSimpleName() + " stub";
+		}
+
+		final Class<?> type = method.getReturnType();
+		if (type == boolean.class) {
+			return false;
+		} else if (type == int.class) {
+			return 0;
+		} else if (type == long.class) {
+			return 0L;
+		} else if (type == double.class) {
+			return 0d;
+		} else if (type == float.class) {
+			return 0f;
+		}
+		return null;
+	}
+}
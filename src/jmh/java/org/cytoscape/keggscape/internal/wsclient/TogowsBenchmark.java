@@ -0,0 +1,156 @@
+package org.cytoscape.keggscape.internal.wsclient;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.cytoscape.keggscape.internal.model.NodeAttribute;
+import org.cytoscape.keggscape.internal.model.NodeTable;
+import org.cytoscape.keggscape.internal.model.PathwayGraph;
+import org.cytoscape.keggscape.internal.read.kgml.KEGGTags;
+import org.cytoscape.keggscape.internal.read.kgml.KeggConstants;
+import org.cytoscape.keggscape.internal.read.kgml.PathwayGraphReader;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.CyTable;
+import org.cytoscape.model.NetworkTestSupport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Throughput of mapping a TogoWS pathway entry to a network.
+ *
+ * The payload is generated from the genes of a bundled KGML file, in the
+ * format returned by TogoWS, so every gene of the response matches a node.
+ * No HTTP requests are made.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TogowsBenchmark {
+
+	@Param({ "non-metabolic/organisms/hsa/hsa04060.xml", "non-metabolic/organisms/hsa/hsa05200.xml" })
+	public String file;
+
+	private byte[] payload;
+	private CyNetwork network;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		final PathwayGraph graph;
+		final InputStream is = TogowsBenchmark.class.getResourceAsStream("/testData/kgml/" + file);
+		try {
+			graph = new PathwayGraphReader().read(is);
+		} finally {
+			is.close();
+		}
+
+		network = new NetworkTestSupport().getNetwork();
+		final CyTable nodeTable = network.getDefaultNodeTable();
+		nodeTable.createColumn(KeggConstants.KEGG_NODE_TYPE, String.class, false);
+		nodeTable.createListColumn(KeggConstants.KEGG_ID, String.class, false);
+		nodeTable.createColumn(KeggConstants.KEGG_NODE_LABEL_LIST_FIRST, String.class, false);
+
+		final StringBuilder json = new StringBuilder("[{\"entry_id\":\"" + graph.getOrg() + graph.getNumber()
+				+ "\",\"description\":\"" + graph.getTitle() + "\","
+				+ "\"classes\":[\"Human Diseases\",\"Cancers: Overview\"],"
+				+ "\"modules\":{},\"diseases\":{\"H00001\":\"Disease 1\",\"H00002\":\"Disease 2\"},"
+				+ "\"genes\":{");
+		final NodeTable nodes = graph.getNodes();
+		boolean first = true;
+		for (int i = 0; i < nodes.size(); i++) {
+			final String type = nodes.get(NodeAttribute.TYPE, i);
+			final List<String> ids = nodes.getIds(i);
+			if (ids == null) {
+				continue;
+			}
+			final CyNode node = network.addNode();
+			network.getRow(node).set(KeggConstants.KEGG_NODE_TYPE, type);
+			network.getRow(node).set(KeggConstants.KEGG_ID, ids);
+			final List<String> labels = nodes.getLabels(i);
+			if (labels != null && !labels.isEmpty()) {
+				network.getRow(node).set(KeggConstants.KEGG_NODE_LABEL_LIST_FIRST, labels.get(0));
+			}
+			if (!KEGGTags.GENE.getTag().equals(type)) {
+				continue;
+			}
+			for (final String id : ids) {
+				final String geneId = id.substring(id.indexOf(':') + 1);
+				json.append(first ? "" : ",").append("\"" + geneId + "\":\"G" + geneId + "; gene " + geneId
+						+ " [KO:K00001] [EC:1.1.1.1]\"");
+				first = false;
+			}
+		}
+		json.append("},\"references\":[{\"pmid\":\"1\",\"authors\":[\"A\"]}]}]");
+		payload = json.toString().getBytes("UTF-8");
+	}
+
+	@Benchmark
+	public void parse(final Blackhole blackhole) throws IOException {
+		new TogowsStreamParser().parse(new ByteArrayInputStream(payload), new TogowsHandler() {
+			@Override
+			public void description(final String description) {
+				blackhole.consume(description);
+			}
+
+			@Override
+			public void pathwayClass(final String pathwayClass) {
+				blackhole.consume(pathwayClass);
+			}
+
+			@Override
+			public void module(final String key, final String value) {
+				blackhole.consume(value);
+			}
+
+			@Override
+			public void disease(final String key, final String value) {
+				blackhole.consume(value);
+			}
+
+			@Override
+			public void gene(final String id, final String text) {
+				blackhole.consume(text);
+			}
+
+			@Override
+			public void endEntry() {
+			}
+		});
+	}
+
+	/**
+	 * Build the KEGG ID index of the gene nodes.
+	 */
+	@Benchmark
+	public NetworkAnnotationWriter index() {
+		return new NetworkAnnotationWriter(network);
+	}
+
+	/**
+	 * Index, parse and write all values to the network tables.
+	 */
+	@Benchmark
+	public NetworkAnnotationWriter annotate() throws IOException {
+		final NetworkAnnotationWriter writer = new NetworkAnnotationWriter(network);
+		new TogowsStreamParser().parse(new ByteArrayInputStream(payload), writer);
+		writer.apply();
+		return writer;
+	}
+}
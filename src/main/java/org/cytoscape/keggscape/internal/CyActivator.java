@@ -1,34 +1,65 @@
 package org.cytoscape.keggscape.internal;
 
+import static org.cytoscape.work.ServiceProperties.COMMAND;
+import static org.cytoscape.work.ServiceProperties.COMMAND_DESCRIPTION;
+import static org.cytoscape.work.ServiceProperties.COMMAND_NAMESPACE;
 import static org.cytoscape.work.ServiceProperties.ID;
 import static org.cytoscape.work.ServiceProperties.MENU_GRAVITY;
 import static org.cytoscape.work.ServiceProperties.PREFERRED_MENU;
 import static org.cytoscape.work.ServiceProperties.TITLE;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.Properties;
 
+import org.cytoscape.application.CyApplicationConfiguration;
+import org.cytoscape.event.CyEventHelper;
 import org.cytoscape.group.CyGroupFactory;
-import org.cytoscape.io.CyFileFilter;
+import org.cytoscape.group.CyGroupManager;
 import org.cytoscape.io.DataCategory;
 import org.cytoscape.io.read.InputStreamTaskFactory;
 import org.cytoscape.io.util.StreamUtil;
+import org.cytoscape.keggscape.internal.read.kgml.ImportStatistics;
 import org.cytoscape.keggscape.internal.read.kgml.KeggscapeFileFilter;
+import org.cytoscape.keggscape.internal.read.kgml.KgmlSniffer;
 import org.cytoscape.keggscape.internal.read.kgml.KeggscapeNetworkReaderFactory;
+import org.cytoscape.keggscape.internal.style.GeometryColumnMigrator;
 import org.cytoscape.keggscape.internal.style.KGMLVisualStyleBuilder;
+import org.cytoscape.keggscape.internal.style.ViewGeometryListener;
+import org.cytoscape.keggscape.internal.task.AnnotateNetworksTaskFactory;
+import org.cytoscape.keggscape.internal.task.BatchImportTaskFactory;
+import org.cytoscape.keggscape.internal.task.BenchmarkImportTaskFactory;
+import org.cytoscape.keggscape.internal.task.CancelPrefetchTaskFactory;
+import org.cytoscape.keggscape.internal.task.CreatePathwayNetworkTaskFactory;
 import org.cytoscape.keggscape.internal.task.ExpandPathwayContextMenuTaskFactory;
 import org.cytoscape.keggscape.internal.task.OpenDetailsInBrowserTaskFactory;
+import org.cytoscape.keggscape.internal.wsclient.HttpTransport;
+import org.cytoscape.keggscape.internal.wsclient.KgmlCache;
+import org.cytoscape.keggscape.internal.wsclient.LocalMirrorSource;
+import org.cytoscape.keggscape.internal.wsclient.PathwayGraphCache;
+import org.cytoscape.keggscape.internal.wsclient.PathwayPrefetcher;
+import org.cytoscape.keggscape.internal.wsclient.PathwaySource;
+import org.cytoscape.keggscape.internal.wsclient.PooledHttpTransport;
+import org.cytoscape.keggscape.internal.wsclient.RemotePathwaySource;
+import org.cytoscape.keggscape.internal.wsclient.TogowsClient;
 import org.cytoscape.model.CyNetworkFactory;
 import org.cytoscape.model.CyNetworkManager;
 import org.cytoscape.model.subnetwork.CyRootNetworkManager;
 import org.cytoscape.service.util.AbstractCyActivator;
+import org.cytoscape.session.events.SessionLoadedListener;
 import org.cytoscape.task.NodeViewTaskFactory;
-import org.cytoscape.task.read.LoadNetworkURLTaskFactory;
 import org.cytoscape.util.swing.OpenBrowser;
 import org.cytoscape.view.model.CyNetworkViewFactory;
+import org.cytoscape.view.model.CyNetworkViewManager;
+import org.cytoscape.view.model.events.NetworkViewAddedListener;
 import org.cytoscape.view.vizmap.VisualMappingFunctionFactory;
 import org.cytoscape.view.vizmap.VisualMappingManager;
 import org.cytoscape.view.vizmap.VisualStyleFactory;
+import org.cytoscape.work.TaskFactory;
 import org.osgi.framework.BundleContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * {@code CyActivator} is a class that is a starting point for OSGi bundles.
@@ -55,6 +86,19 @@ import org.osgi.framework.BundleContext;
  * {@code unget}s any services we fetch using getService().
  */
 public class CyActivator extends AbstractCyActivator {
+
+	private static final Logger logger = LoggerFactory.getLogger(CyActivator.class);
+
+	private static final String KGML_CACHE_DIR = "kgml-cache";
+	private static final String SNAPSHOT_DIR = "kgml-snapshots";
+
+	private PooledHttpTransport transport;
+	private LocalMirrorSource mirror;
+	private KgmlCache kgmlCache;
+	private PathwayPrefetcher prefetcher;
+	private PathwayGraphCache graphCache;
+	private ImportStatistics importStatistics;
+
 	/**
 	 * This is the {@code start} method, which sets up your app. The
 	 * {@code BundleContext} object allows you to communicate with the OSGi
@@ -71,15 +115,34 @@ public class CyActivator extends AbstractCyActivator {
 		// importing services
 		final StreamUtil streamUtil = getService(bc, StreamUtil.class);
 		final CyNetworkViewFactory cyNetworkViewFactory = getService(bc, CyNetworkViewFactory.class);
+		final CyNetworkViewManager cyNetworkViewManager = getService(bc, CyNetworkViewManager.class);
 		final CyNetworkFactory cyNetworkFactory = getService(bc, CyNetworkFactory.class);
 		final CyNetworkManager cyNetworkManager = getService(bc, CyNetworkManager.class);
 		final CyRootNetworkManager cyRootNetworkManager = getService(bc, CyRootNetworkManager.class);
 		final CyGroupFactory groupFactory = getService(bc, CyGroupFactory.class);
+		final CyGroupManager groupManager = getService(bc, CyGroupManager.class);
 		final OpenBrowser openBrowser = getService(bc, OpenBrowser.class);
+		final CyEventHelper eventHelper = getService(bc, CyEventHelper.class);
 		
 		final VisualMappingManager vmm = getService(bc, VisualMappingManager.class);
 
-		LoadNetworkURLTaskFactory loadNetworkURLTaskFactory = getService(bc, LoadNetworkURLTaskFactory.class);
+		// One pooled connection manager for all KEGG and TogoWS requests
+		transport = new PooledHttpTransport();
+		registerService(bc, transport, HttpTransport.class, new Properties());
+
+		final CyApplicationConfiguration appConfig = getService(bc, CyApplicationConfiguration.class);
+		final PathwaySource pathwaySource = createPathwaySource(appConfig, transport);
+		registerService(bc, pathwaySource, PathwaySource.class, new Properties());
+		prefetcher = PathwayPrefetcher.create(pathwaySource);
+		graphCache = PathwayGraphCache.create(pathwaySource);
+		prefetcher.setGraphCache(graphCache);
+		final File snapshotDir = createSnapshotDirectory(appConfig);
+		graphCache.setSnapshotDirectory(snapshotDir);
+		prefetcher.setSnapshotDirectory(snapshotDir);
+		if (kgmlCache != null) {
+			kgmlCache.setSnapshotDirectory(snapshotDir);
+			graphCache.setKgmlCache(kgmlCache);
+		}
 		
 		VisualStyleFactory vsFactoryServiceRef = getService(bc, VisualStyleFactory.class); 
 		VisualMappingFunctionFactory passthroughMappingFactoryRef = getService(bc, VisualMappingFunctionFactory.class,
@@ -90,12 +153,27 @@ public class CyActivator extends AbstractCyActivator {
 		KGMLVisualStyleBuilder vsBuilder = new KGMLVisualStyleBuilder(vsFactoryServiceRef,
 				discreteMappingFactoryRef, passthroughMappingFactoryRef, vmm);
 		
+		// Sessions saved with String geometry columns
+		final GeometryColumnMigrator geometryColumnMigrator = new GeometryColumnMigrator(cyRootNetworkManager, vmm,
+				vsBuilder);
+		registerService(bc, geometryColumnMigrator, SessionLoadedListener.class, new Properties());
+		registerService(bc, new ViewGeometryListener(), NetworkViewAddedListener.class, new Properties());
+
+		// Import metrics, also available over JMX
+		importStatistics = new ImportStatistics();
+		importStatistics.register();
+
 		// readers
-		final CyFileFilter keggscapeReaderFilter = new KeggscapeFileFilter(new String[] { "xml", "kgml"},
+		final KeggscapeFileFilter keggscapeReaderFilter = new KeggscapeFileFilter(new String[] { "xml", "kgml"},
 				new String[] { "application/xml" }, "KEGG XML Files (KGML)", DataCategory.NETWORK, streamUtil);
+		// Remote files are checked with a range request, cached pathways locally.
+		final KgmlSniffer sniffer = new KgmlSniffer(transport);
+		sniffer.setKgmlCache(kgmlCache);
+		keggscapeReaderFilter.setSniffer(sniffer);
 		final KeggscapeNetworkReaderFactory kgmlReaderFactory = new KeggscapeNetworkReaderFactory(
 				keggscapeReaderFilter, cyNetworkViewFactory, cyNetworkFactory, cyNetworkManager, cyRootNetworkManager,
-				vsBuilder, vmm, groupFactory);
+				vsBuilder, vmm, groupFactory, groupManager, eventHelper, pathwaySource, prefetcher, graphCache,
+				importStatistics);
 		final Properties keggscapeNetworkReaderFactoryProps = new Properties();
 
 
@@ -103,7 +181,11 @@ public class CyActivator extends AbstractCyActivator {
 
 		registerService(bc, kgmlReaderFactory, InputStreamTaskFactory.class, keggscapeNetworkReaderFactoryProps);
 		
-		final ExpandPathwayContextMenuTaskFactory expandPathwayContextMenuTaskFactory = new ExpandPathwayContextMenuTaskFactory(loadNetworkURLTaskFactory, vmm);
+		final CreatePathwayNetworkTaskFactory createPathwayNetworkTaskFactory = new CreatePathwayNetworkTaskFactory(
+				cyNetworkFactory, cyNetworkManager, cyRootNetworkManager, cyNetworkViewFactory, cyNetworkViewManager,
+				groupFactory, groupManager, vmm, vsBuilder, eventHelper, importStatistics);
+		final ExpandPathwayContextMenuTaskFactory expandPathwayContextMenuTaskFactory = new ExpandPathwayContextMenuTaskFactory(
+				graphCache, pathwaySource, prefetcher, createPathwayNetworkTaskFactory, vmm);
 		final Properties nodeProp = new Properties();
 		nodeProp.setProperty("preferredTaskManager", "menu");
 		nodeProp.setProperty(PREFERRED_MENU, "KEGGScape[1]");
@@ -118,6 +200,40 @@ public class CyActivator extends AbstractCyActivator {
 		openProp.setProperty(MENU_GRAVITY, "10.0");
 		openProp.setProperty(TITLE, "View details in web browser...");
 		registerService(bc, openDetailsInBrowserTaskFactory, NodeViewTaskFactory.class, openProp);
+
+		final BatchImportTaskFactory batchImportTaskFactory = new BatchImportTaskFactory(cyNetworkFactory,
+				cyNetworkManager, cyRootNetworkManager, cyNetworkViewFactory, cyNetworkViewManager, groupFactory,
+				groupManager, vmm, vsBuilder, eventHelper, graphCache, importStatistics);
+		final Properties batchProp = new Properties();
+		batchProp.setProperty(PREFERRED_MENU, "File.Import.Network");
+		batchProp.setProperty(MENU_GRAVITY, "10.0");
+		batchProp.setProperty(TITLE, "KEGG Pathways (Multiple KGML Files)...");
+		registerService(bc, batchImportTaskFactory, TaskFactory.class, batchProp);
+
+		final BenchmarkImportTaskFactory benchmarkImportTaskFactory = new BenchmarkImportTaskFactory(cyNetworkFactory,
+				cyRootNetworkManager, groupFactory, eventHelper);
+		final Properties benchmarkProp = new Properties();
+		benchmarkProp.setProperty(COMMAND_NAMESPACE, "keggscape");
+		benchmarkProp.setProperty(COMMAND, "benchmark");
+		benchmarkProp.setProperty(COMMAND_DESCRIPTION, "Compare KGML import time with and without bulk mode");
+		registerService(bc, benchmarkImportTaskFactory, TaskFactory.class, benchmarkProp);
+
+		final CancelPrefetchTaskFactory cancelPrefetchTaskFactory = new CancelPrefetchTaskFactory(prefetcher);
+		final Properties cancelPrefetchProp = new Properties();
+		cancelPrefetchProp.setProperty(COMMAND_NAMESPACE, "keggscape");
+		cancelPrefetchProp.setProperty(COMMAND, "cancel prefetch");
+		cancelPrefetchProp.setProperty(COMMAND_DESCRIPTION, "Stop downloading linked pathways in the background");
+		registerService(bc, cancelPrefetchTaskFactory, TaskFactory.class, cancelPrefetchProp);
+
+		final AnnotateNetworksTaskFactory annotateNetworksTaskFactory = new AnnotateNetworksTaskFactory(
+				cyNetworkManager, pathwaySource);
+		final Properties annotateProp = new Properties();
+		annotateProp.setProperty(PREFERRED_MENU, "Apps.KEGGScape");
+		annotateProp.setProperty(TITLE, "Import Details for All KEGG Pathways...");
+		annotateProp.setProperty(COMMAND_NAMESPACE, "keggscape");
+		annotateProp.setProperty(COMMAND, "annotate");
+		annotateProp.setProperty(COMMAND_DESCRIPTION, "Import pathway details for all KEGG networks");
+		registerService(bc, annotateNetworksTaskFactory, TaskFactory.class, annotateProp);
 			//new KeggscapeTaskFactory(), // Implementation
 //			TaskFactory.class, // Interface
 //			properties); // Service properties
@@ -126,5 +242,91 @@ public class CyActivator extends AbstractCyActivator {
 //		registerService(bc, showPathwaySelectorAction, CyAction.class, new Properties());
 		
 	}
-}
 
+	/**
+	 * Use the local KEGG mirror if one is configured. Otherwise, pathways are
+	 * downloaded from KEGG and TogoWS.
+	 */
+	private final PathwaySource createPathwaySource(final CyApplicationConfiguration appConfig,
+			final HttpTransport transport) throws IOException {
+		final String mirrorPath = System.getProperty(PathwaySource.MIRROR_PROPERTY);
+		if (mirrorPath != null && !mirrorPath.trim().isEmpty()) {
+			logger.info("Reading pathways from local KEGG mirror " + mirrorPath);
+			mirror = new LocalMirrorSource(new File(mirrorPath.trim()));
+			return mirror;
+		}
+		kgmlCache = createKgmlCache(appConfig, transport);
+		return new RemotePathwaySource(kgmlCache, new TogowsClient(transport));
+	}
+
+	/**
+	 * Downloaded KGML files are kept in the app configuration directory. If it
+	 * is not writable, the cache is only kept for this session.
+	 */
+	private final KgmlCache createKgmlCache(final CyApplicationConfiguration appConfig,
+			final HttpTransport transport) throws IOException {
+		final File configDir = appConfig.getAppConfigurationDirectoryLocation(CyActivator.class);
+		try {
+			return KgmlCache.create(new File(configDir, KGML_CACHE_DIR), transport);
+		} catch (IOException e) {
+			logger.warn("Could not use KGML cache in " + configDir + ". Using temporary directory instead.", e);
+			final File tempDir = Files.createTempDirectory(KGML_CACHE_DIR).toFile();
+			tempDir.deleteOnExit();
+			return KgmlCache.create(tempDir, transport);
+		}
+	}
+
+	/**
+	 * Snapshots of parsed pathways are kept in the app configuration
+	 * directory, never beside the KGML files of a local mirror.
+	 *
+	 * @return the snapshot directory, or null if it cannot be created
+	 */
+	private final File createSnapshotDirectory(final CyApplicationConfiguration appConfig) {
+		final File snapshotDir = new File(appConfig.getAppConfigurationDirectoryLocation(CyActivator.class),
+				SNAPSHOT_DIR);
+		if (!snapshotDir.isDirectory() && !snapshotDir.mkdirs()) {
+			logger.warn("Could not create pathway snapshot directory " + snapshotDir
+					+ ". KGML files will always be parsed.");
+			return null;
+		}
+		return snapshotDir;
+	}
+
+	@Override
+	public void stop(BundleContext bc) {
+		if (importStatistics != null) {
+			importStatistics.unregister();
+			importStatistics = null;
+		}
+		if (prefetcher != null) {
+			prefetcher.close();
+			prefetcher = null;
+		}
+		if (graphCache != null) {
+			logger.info("Pathway graph cache: " + graphCache);
+			graphCache = null;
+		}
+		if (mirror != null) {
+			try {
+				mirror.close();
+			} catch (IOException e) {
+				logger.warn("Could not close local KEGG mirror.", e);
+			}
+			mirror = null;
+		}
+		if (kgmlCache != null) {
+			try {
+				kgmlCache.flush();
+			} catch (IOException e) {
+				logger.warn("Could not save KGML cache index.", e);
+			}
+			kgmlCache = null;
+		}
+		if (transport != null) {
+			transport.close();
+			transport = null;
+		}
+		super.stop(bc);
+	}
+}
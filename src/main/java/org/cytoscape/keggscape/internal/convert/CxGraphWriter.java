@@ -0,0 +1,243 @@
+package org.cytoscape.keggscape.internal.convert;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import org.cytoscape.keggscape.internal.model.EdgeAttribute;
+import org.cytoscape.keggscape.internal.model.EdgeTable;
+import org.cytoscape.keggscape.internal.model.NodeAttribute;
+import org.cytoscape.keggscape.internal.model.NodeTable;
+import org.cytoscape.keggscape.internal.model.PathwayGraph;
+import org.cytoscape.keggscape.internal.read.kgml.GraphColumns;
+import org.cytoscape.keggscape.internal.read.kgml.KeggConstants;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Writes a pathway as a CX document, the JSON format of NDEx and the
+ * Cytoscape CX support.
+ *
+ * Nodes have IDs 0 to n - 1, followed by the group nodes. Edge IDs follow the
+ * node IDs. KGML coordinates are written to the cartesianLayout aspect.
+ */
+public class CxGraphWriter implements GraphWriter {
+
+	static final String SUFFIX = ".cx";
+
+	private static final long NUMBER_VERIFICATION = 281474976710655L;
+	private static final String DIRECTED = "directed";
+
+	private static final JsonFactory FACTORY = new JsonFactory();
+
+	@Override
+	public String getName() {
+		return "cx";
+	}
+
+	@Override
+	public void write(final PathwayGraph graph, final File directory, final String baseName) throws IOException {
+		final OutputStream os = new BufferedOutputStream(new FileOutputStream(new File(directory, baseName + SUFFIX)));
+		try {
+			final JsonGenerator generator = FACTORY.createGenerator(os, JsonEncoding.UTF8);
+			try {
+				write(graph, generator);
+			} finally {
+				generator.close();
+			}
+		} finally {
+			os.close();
+		}
+	}
+
+	private final void write(final PathwayGraph graph, final JsonGenerator generator) throws IOException {
+		final NodeTable nodes = graph.getNodes();
+		final NodeTable groups = graph.getGroups();
+		final EdgeTable edges = graph.getEdges();
+		final int nodeCount = nodes.size() + groups.size();
+
+		generator.writeStartArray();
+
+		startAspect(generator, "numberVerification");
+		generator.writeStartObject();
+		generator.writeNumberField("longNumber", NUMBER_VERIFICATION);
+		generator.writeEndObject();
+		endAspect(generator);
+
+		startAspect(generator, "metaData");
+		writeMetaData(generator, "networkAttributes", -1);
+		writeMetaData(generator, "nodes", nodeCount);
+		writeMetaData(generator, "edges", edges.size());
+		writeMetaData(generator, "nodeAttributes", -1);
+		writeMetaData(generator, "edgeAttributes", -1);
+		writeMetaData(generator, "cartesianLayout", -1);
+		endAspect(generator);
+
+		startAspect(generator, "networkAttributes");
+		writeAttribute(generator, null, -1, GraphColumns.NAME,
+				graph.getTitle() + " [" + graph.getOrg() + graph.getNumber() + "]");
+		writeAttribute(generator, null, -1, KeggConstants.KEGG_PATHWAY_ID, graph.getName());
+		writeAttribute(generator, null, -1, KeggConstants.KEGG_PATHWAY_ORG, graph.getOrg());
+		writeAttribute(generator, null, -1, KeggConstants.KEGG_PATHWAY_LINK, graph.getLink());
+		writeAttribute(generator, null, -1, KeggConstants.KEGG_PATHWAY_IMAGE, graph.getImage());
+		endAspect(generator);
+
+		startAspect(generator, "nodes");
+		for (int i = 0; i < nodeCount; i++) {
+			generator.writeStartObject();
+			generator.writeNumberField("@id", i);
+			final String name = i < nodes.size() ? nodes.get(NodeAttribute.NAME, i)
+					: groups.get(NodeAttribute.NAME, i - nodes.size());
+			if (name != null) {
+				generator.writeStringField("n", name);
+			}
+			generator.writeEndObject();
+		}
+		endAspect(generator);
+
+		startAspect(generator, "edges");
+		for (int i = 0; i < edges.size(); i++) {
+			generator.writeStartObject();
+			generator.writeNumberField("@id", nodeCount + i);
+			generator.writeNumberField("s", edges.getSource(i));
+			generator.writeNumberField("t", edges.getTarget(i));
+			final String interaction = edges.get(EdgeAttribute.INTERACTION, i);
+			if (interaction != null) {
+				generator.writeStringField("i", interaction);
+			}
+			generator.writeEndObject();
+		}
+		endAspect(generator);
+
+		startAspect(generator, "nodeAttributes");
+		writeNodeAttributes(generator, nodes, 0);
+		writeNodeAttributes(generator, groups, nodes.size());
+		for (int i = 0; i < groups.size(); i++) {
+			generator.writeStartObject();
+			generator.writeNumberField("po", nodes.size() + i);
+			generator.writeStringField("n", OutputColumns.MEMBERS);
+			generator.writeArrayFieldStart("v");
+			for (final int member : graph.getGroupMembers(i)) {
+				generator.writeString(Integer.toString(member));
+			}
+			generator.writeEndArray();
+			generator.writeStringField("d", "list_of_long");
+			generator.writeEndObject();
+		}
+		endAspect(generator);
+
+		startAspect(generator, "edgeAttributes");
+		final int edgeColumns = OutputColumns.getEdgeColumnCount();
+		for (int i = 0; i < edges.size(); i++) {
+			for (int c = 0; c < edgeColumns; c++) {
+				writeAttribute(generator, "po", nodeCount + i, OutputColumns.getEdgeColumn(c),
+						OutputColumns.getEdgeValue(edges, i, c));
+			}
+			writeAttribute(generator, "po", nodeCount + i, DIRECTED, edges.isDirected(i));
+		}
+		endAspect(generator);
+
+		startAspect(generator, "cartesianLayout");
+		writeLayout(generator, nodes, 0);
+		writeLayout(generator, groups, nodes.size());
+		endAspect(generator);
+
+		startAspect(generator, "status");
+		generator.writeStartObject();
+		generator.writeStringField("error", "");
+		generator.writeBooleanField("success", true);
+		generator.writeEndObject();
+		endAspect(generator);
+
+		generator.writeEndArray();
+	}
+
+	private final void writeNodeAttributes(final JsonGenerator generator, final NodeTable table, final int firstId)
+			throws IOException {
+		final int columns = OutputColumns.getNodeColumnCount();
+		for (int i = 0; i < table.size(); i++) {
+			for (int c = 0; c < columns; c++) {
+				writeAttribute(generator, "po", firstId + i, OutputColumns.getNodeColumn(c),
+						OutputColumns.getNodeValue(table, i, c));
+			}
+		}
+	}
+
+	private final void writeLayout(final JsonGenerator generator, final NodeTable table, final int firstId)
+			throws IOException {
+		for (int i = 0; i < table.size(); i++) {
+			final double x = table.getX(i);
+			final double y = table.getY(i);
+			if (Double.isNaN(x) || Double.isNaN(y)) {
+				continue;
+			}
+			generator.writeStartObject();
+			generator.writeNumberField("node", firstId + i);
+			generator.writeNumberField("x", x);
+			generator.writeNumberField("y", y);
+			generator.writeEndObject();
+		}
+	}
+
+	/**
+	 * Write one attribute element. Null values are skipped.
+	 *
+	 * @param owner
+	 *            name of the owner field, or null for network attributes
+	 */
+	private final void writeAttribute(final JsonGenerator generator, final String owner, final long id,
+			final String name, final Object value) throws IOException {
+		if (value == null) {
+			return;
+		}
+		generator.writeStartObject();
+		if (owner != null) {
+			generator.writeNumberField(owner, id);
+		}
+		generator.writeStringField("n", name);
+		if (value instanceof List) {
+			generator.writeArrayFieldStart("v");
+			for (final Object item : (List<?>) value) {
+				generator.writeString(String.valueOf(item));
+			}
+			generator.writeEndArray();
+			generator.writeStringField("d", "list_of_string");
+		} else if (value instanceof Double) {
+			generator.writeStringField("v", value.toString());
+			generator.writeStringField("d", "double");
+		} else if (value instanceof Boolean) {
+			generator.writeStringField("v", value.toString());
+			generator.writeStringField("d", "boolean");
+		} else {
+			generator.writeStringField("v", value.toString());
+		}
+		generator.writeEndObject();
+	}
+
+	private final void writeMetaData(final JsonGenerator generator, final String aspect, final long elementCount)
+			throws IOException {
+		generator.writeStartObject();
+		generator.writeStringField("name", aspect);
+		generator.writeStringField("version", "1.0");
+		generator.writeNumberField("consistencyGroup", 1);
+		if (elementCount >= 0) {
+			generator.writeNumberField("elementCount", elementCount);
+		}
+		generator.writeEndObject();
+	}
+
+	private static final void startAspect(final JsonGenerator generator, final String aspect) throws IOException {
+		generator.writeStartObject();
+		generator.writeArrayFieldStart(aspect);
+	}
+
+	private static final void endAspect(final JsonGenerator generator) throws IOException {
+		generator.writeEndArray();
+		generator.writeEndObject();
+	}
+}
@@ -0,0 +1,171 @@
+package org.cytoscape.keggscape.internal.convert;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.cytoscape.keggscape.internal.model.EdgeTable;
+import org.cytoscape.keggscape.internal.model.NodeTable;
+import org.cytoscape.keggscape.internal.model.PathwayGraph;
+
+/**
+ * Writes a pathway as one GraphML document.
+ *
+ * Group nodes are plain nodes with the IDs of their members, because a KGML
+ * node may belong to more than one group. List values are joined with "|".
+ */
+public class GraphMLGraphWriter implements GraphWriter {
+
+	static final String SUFFIX = ".graphml";
+
+	private static final String NAMESPACE = "http://graphml.graphdrawing.org/xmlns";
+	private static final String LIST_SEPARATOR = "|";
+	private static final String MEMBERS_KEY = "members";
+
+	private static final XMLOutputFactory FACTORY = XMLOutputFactory.newInstance();
+
+	@Override
+	public String getName() {
+		return "graphml";
+	}
+
+	@Override
+	public void write(final PathwayGraph graph, final File directory, final String baseName) throws IOException {
+		final OutputStream os = new BufferedOutputStream(new FileOutputStream(new File(directory, baseName + SUFFIX)));
+		try {
+			final XMLStreamWriter writer = FACTORY.createXMLStreamWriter(os, "UTF-8");
+			try {
+				write(graph, baseName, writer);
+			} finally {
+				writer.close();
+			}
+		} catch (XMLStreamException e) {
+			throw new IOException("Could not write GraphML for " + baseName + ".", e);
+		} finally {
+			os.close();
+		}
+	}
+
+	private final void write(final PathwayGraph graph, final String baseName, final XMLStreamWriter writer)
+			throws XMLStreamException {
+		writer.writeStartDocument("UTF-8", "1.0");
+		writer.writeCharacters("\n");
+		writer.writeStartElement("graphml");
+		writer.writeDefaultNamespace(NAMESPACE);
+		writer.writeCharacters("\n");
+
+		final int nodeColumns = OutputColumns.getNodeColumnCount();
+		for (int c = 0; c < nodeColumns; c++) {
+			writeKey(writer, nodeKey(c), "node", OutputColumns.getNodeColumn(c),
+					OutputColumns.getNodeType(c) == Double.class ? "double" : "string");
+		}
+		writeKey(writer, MEMBERS_KEY, "node", OutputColumns.MEMBERS, "string");
+		final int edgeColumns = OutputColumns.getEdgeColumnCount();
+		for (int c = 0; c < edgeColumns; c++) {
+			writeKey(writer, edgeKey(c), "edge", OutputColumns.getEdgeColumn(c), "string");
+		}
+
+		writer.writeStartElement("graph");
+		writer.writeAttribute("id", graph.getName() == null ? baseName : graph.getName());
+		writer.writeAttribute("edgedefault", "directed");
+		writer.writeCharacters("\n");
+
+		final NodeTable nodes = graph.getNodes();
+		for (int i = 0; i < nodes.size(); i++) {
+			writeNode(writer, nodes, i, TsvGraphWriter.nodeId(i), null);
+		}
+		final NodeTable groups = graph.getGroups();
+		for (int i = 0; i < groups.size(); i++) {
+			writeNode(writer, groups, i, TsvGraphWriter.groupId(i), graph.getGroupMembers(i));
+		}
+
+		final EdgeTable edges = graph.getEdges();
+		for (int i = 0; i < edges.size(); i++) {
+			writer.writeStartElement("edge");
+			writer.writeAttribute("source", TsvGraphWriter.nodeId(edges.getSource(i)));
+			writer.writeAttribute("target", TsvGraphWriter.nodeId(edges.getTarget(i)));
+			if (!edges.isDirected(i)) {
+				writer.writeAttribute("directed", "false");
+			}
+			for (int c = 0; c < edgeColumns; c++) {
+				writeData(writer, edgeKey(c), OutputColumns.getEdgeValue(edges, i, c));
+			}
+			writer.writeEndElement();
+			writer.writeCharacters("\n");
+		}
+
+		writer.writeEndElement();
+		writer.writeCharacters("\n");
+		writer.writeEndElement();
+		writer.writeCharacters("\n");
+		writer.writeEndDocument();
+	}
+
+	private final void writeKey(final XMLStreamWriter writer, final String id, final String domain,
+			final String name, final String type) throws XMLStreamException {
+		writer.writeEmptyElement("key");
+		writer.writeAttribute("id", id);
+		writer.writeAttribute("for", domain);
+		writer.writeAttribute("attr.name", name);
+		writer.writeAttribute("attr.type", type);
+		writer.writeCharacters("\n");
+	}
+
+	private final void writeNode(final XMLStreamWriter writer, final NodeTable table, final int row,
+			final String id, final int[] members) throws XMLStreamException {
+		writer.writeStartElement("node");
+		writer.writeAttribute("id", id);
+		final int columns = OutputColumns.getNodeColumnCount();
+		for (int c = 0; c < columns; c++) {
+			writeData(writer, nodeKey(c), OutputColumns.getNodeValue(table, row, c));
+		}
+		if (members != null) {
+			final StringBuilder value = new StringBuilder();
+			for (final int member : members) {
+				if (value.length() > 0) {
+					value.append(LIST_SEPARATOR);
+				}
+				value.append(TsvGraphWriter.nodeId(member));
+			}
+			writeData(writer, MEMBERS_KEY, value.toString());
+		}
+		writer.writeEndElement();
+		writer.writeCharacters("\n");
+	}
+
+	private final void writeData(final XMLStreamWriter writer, final String key, final Object value)
+			throws XMLStreamException {
+		if (value == null) {
+			return;
+		}
+		writer.writeStartElement("data");
+		writer.writeAttribute("key", key);
+		if (value instanceof List) {
+			final List<?> list = (List<?>) value;
+			for (int i = 0; i < list.size(); i++) {
+				if (i > 0) {
+					writer.writeCharacters(LIST_SEPARATOR);
+				}
+				writer.writeCharacters(String.valueOf(list.get(i)));
+			}
+		} else {
+			writer.writeCharacters(value.toString());
+		}
+		writer.writeEndElement();
+	}
+
+	private static final String nodeKey(final int column) {
+		return "n" + column;
+	}
+
+	private static final String edgeKey(final int column) {
+		return "e" + column;
+	}
+}
@@ -0,0 +1,26 @@
+package org.cytoscape.keggscape.internal.convert;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.cytoscape.keggscape.internal.model.PathwayGraph;
+
+/**
+ * Writes a mapped pathway to files in one output format.
+ *
+ * Implementations stream the graph to disk and keep no state between calls,
+ * so one instance can be used by many threads.
+ */
+public interface GraphWriter {
+
+	/**
+	 * @return name of the format, as given on the command line.
+	 */
+	String getName();
+
+	/**
+	 * Write the graph to files named after the base name in the directory.
+	 * Existing files are replaced.
+	 */
+	void write(PathwayGraph graph, File directory, String baseName) throws IOException;
+}
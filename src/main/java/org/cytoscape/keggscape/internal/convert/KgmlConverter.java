@@ -0,0 +1,328 @@
+package org.cytoscape.keggscape.internal.convert;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import org.cytoscape.keggscape.internal.model.PathwayGraph;
+import org.cytoscape.keggscape.internal.read.kgml.KGMLMapper;
+import org.cytoscape.keggscape.internal.read.kgml.KgmlArchiveReader;
+import org.cytoscape.keggscape.internal.read.kgml.PathwayGraphReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Converts KGML files to graph files without Cytoscape.
+ *
+ * Files are parsed and mapped by {@link PathwayGraphReader}, as in the app,
+ * and written by a {@link GraphWriter}. Each worker holds one pathway at a
+ * time and the queue of pending files is bounded, so memory use does not grow
+ * with the number of input files. Output files keep the directory structure
+ * of the input below the output directory.
+ *
+ * Inputs may also be .tar.gz, .zip or .xml.gz archives. They are read by
+ * {@link KgmlArchiveReader}, which decompresses on one thread and parses on
+ * the others, without extracting the archive.
+ *
+ * The mapping options of the app are read from the same system properties,
+ * for example {@value KGMLMapper#GROUP_PLACEHOLDER_PROPERTY}.
+ */
+public class KgmlConverter {
+
+	private static final Logger logger = LoggerFactory.getLogger(KgmlConverter.class);
+
+	private static final String[] EXTENSIONS = { ".xml", ".kgml" };
+
+	/**
+	 * Files converted and files which could not be converted.
+	 */
+	public static final class Result {
+
+		private final int converted;
+		private final Map<File, Exception> failures;
+
+		Result(final int converted, final Map<File, Exception> failures) {
+			this.converted = converted;
+			this.failures = Collections.unmodifiableMap(failures);
+		}
+
+		public int getConverted() {
+			return converted;
+		}
+
+		public Map<File, Exception> getFailures() {
+			return failures;
+		}
+	}
+
+	private final GraphWriter writer;
+	private final int threads;
+	private final PathwayGraphReader reader = new PathwayGraphReader();
+	private Pattern idPattern;
+
+	/**
+	 * @param threads
+	 *            number of files converted at the same time
+	 */
+	public KgmlConverter(final GraphWriter writer, final int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+		}
+		this.writer = writer;
+		this.threads = threads;
+	}
+
+	/**
+	 * Convert only pathways with matching IDs found in directories and
+	 * archives.
+	 *
+	 * @param idPattern
+	 *            see {@link KgmlArchiveReader#compileIdPattern(String)}, or
+	 *            null for all pathways
+	 */
+	public void setIdPattern(final Pattern idPattern) {
+		this.idPattern = idPattern;
+	}
+
+	/**
+	 * Convert KGML files, and all KGML files found in the given directories
+	 * and archives,
+	 * to files in the output directory. A file which cannot be converted is
+	 * recorded in the result and does not stop the others.
+	 */
+	public Result convert(final List<File> inputs, final File outputDirectory)
+			throws IOException, InterruptedException {
+		final AtomicInteger converted = new AtomicInteger();
+		final Map<File, Exception> failures = Collections.synchronizedMap(new LinkedHashMap<File, Exception>());
+
+		// When the queue is full, the walking thread converts the next file
+		// itself. This blocks the walk until the workers catch up.
+		final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(threads * 2), new ThreadPoolExecutor.CallerRunsPolicy());
+		try {
+			for (final File input : inputs) {
+				if (input.isDirectory()) {
+					submitDirectory(executor, input, outputDirectory, converted, failures);
+				} else if (KgmlArchiveReader.isArchive(input)) {
+					submitArchive(executor, input, outputDirectory, converted, failures);
+				} else {
+					submit(executor, input, outputDirectory, baseName(input), converted, failures);
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+		while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+			// Wait for the last files.
+		}
+		return new Result(converted.get(), new LinkedHashMap<File, Exception>(failures));
+	}
+
+	private final void submitDirectory(final ThreadPoolExecutor executor, final File directory,
+			final File outputDirectory, final AtomicInteger converted, final Map<File, Exception> failures)
+			throws IOException {
+		final Path root = directory.toPath();
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(final Path path, final BasicFileAttributes attrs) {
+				final File file = path.toFile();
+				if (attrs.isRegularFile() && isKgml(file) && isSelected(file.getName())) {
+					final Path relative = root.relativize(path);
+					final File target = relative.getParent() == null ? outputDirectory
+							: new File(outputDirectory, relative.getParent().toString());
+					submit(executor, file, target, baseName(file), converted, failures);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	/**
+	 * Parse the archive with its own workers and write the pathways on the
+	 * executor.
+	 */
+	private final void submitArchive(final ThreadPoolExecutor executor, final File archive,
+			final File outputDirectory, final AtomicInteger converted, final Map<File, Exception> failures)
+			throws IOException, InterruptedException {
+		final KgmlArchiveReader archiveReader = KgmlArchiveReader.open(archive, idPattern, threads);
+		try {
+			KgmlArchiveReader.Entry entry;
+			while ((entry = archiveReader.take()) != null) {
+				final File input = new File(archive, entry.getName());
+				if (entry.getGraph() == null) {
+					logger.warn("Could not convert " + input + ": " + entry.getError().getMessage());
+					failures.put(input, entry.getError());
+					continue;
+				}
+				final PathwayGraph graph = entry.getGraph();
+				final File target = getEntryDirectory(outputDirectory, entry.getName());
+				final String baseName = entry.getId();
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							write(graph, target, baseName);
+							converted.incrementAndGet();
+						} catch (Exception e) {
+							logger.warn("Could not convert " + input + ": " + e.getMessage());
+							failures.put(input, e);
+						}
+					}
+				});
+			}
+		} finally {
+			archiveReader.close();
+		}
+	}
+
+	/**
+	 * @return output directory of an archive entry. Entries with absolute
+	 *         paths or parent references are written to the output directory
+	 *         itself.
+	 */
+	private static final File getEntryDirectory(final File outputDirectory, final String entryName) {
+		final String path = entryName.replace('\\', '/');
+		final int slash = path.lastIndexOf('/');
+		if (slash <= 0 || path.startsWith("/") || ("/" + path + "/").contains("/../")) {
+			return outputDirectory;
+		}
+		return new File(outputDirectory, path.substring(0, slash));
+	}
+
+	private final void submit(final ThreadPoolExecutor executor, final File input, final File outputDirectory,
+			final String baseName, final AtomicInteger converted, final Map<File, Exception> failures) {
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					convert(input, outputDirectory, baseName);
+					converted.incrementAndGet();
+				} catch (Exception e) {
+					logger.warn("Could not convert " + input + ": " + e.getMessage());
+					failures.put(input, e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Convert one KGML file.
+	 */
+	public void convert(final File input, final File outputDirectory, final String baseName) throws IOException {
+		final PathwayGraph graph;
+		final InputStream is = new BufferedInputStream(new FileInputStream(input));
+		try {
+			graph = reader.read(is);
+		} finally {
+			is.close();
+		}
+		write(graph, outputDirectory, baseName);
+	}
+
+	private final void write(final PathwayGraph graph, final File outputDirectory, final String baseName)
+			throws IOException {
+		if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs() && !outputDirectory.isDirectory()) {
+			throw new IOException("Could not create directory " + outputDirectory);
+		}
+		writer.write(graph, outputDirectory, baseName);
+	}
+
+	private static final boolean isKgml(final File file) {
+		final String name = file.getName().toLowerCase(Locale.ROOT);
+		for (final String extension : EXTENSIONS) {
+			if (name.endsWith(extension)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private final boolean isSelected(final String fileName) {
+		if (idPattern == null) {
+			return true;
+		}
+		final String id = KgmlArchiveReader.getPathwayId(fileName);
+		return id != null && idPattern.matcher(id).matches();
+	}
+
+	private static final String baseName(final File file) {
+		final String name = file.getName();
+		final int dot = name.lastIndexOf('.');
+		return dot > 0 ? name.substring(0, dot) : name;
+	}
+
+	/**
+	 * @return writer for the format name, or null if the format is unknown.
+	 */
+	public static GraphWriter getWriter(final String format) {
+		for (final GraphWriter writer : new GraphWriter[] { new TsvGraphWriter(), new GraphMLGraphWriter(),
+				new CxGraphWriter() }) {
+			if (writer.getName().equalsIgnoreCase(format)) {
+				return writer;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Command line entry point:
+	 * {@code [--format tsv|graphml|cx] [--threads n] [--ids pattern] input... outputDirectory}
+	 */
+	public static void main(final String[] args) throws Exception {
+		String format = "tsv";
+		int threads = Runtime.getRuntime().availableProcessors();
+		String ids = null;
+		final List<String> paths = new ArrayList<String>();
+		for (int i = 0; i < args.length; i++) {
+			if ("--format".equals(args[i]) && i + 1 < args.length) {
+				format = args[++i];
+			} else if ("--threads".equals(args[i]) && i + 1 < args.length) {
+				threads = Integer.parseInt(args[++i]);
+			} else if ("--ids".equals(args[i]) && i + 1 < args.length) {
+				ids = args[++i];
+			} else {
+				paths.add(args[i]);
+			}
+		}
+
+		final GraphWriter writer = getWriter(format);
+		if (writer == null || paths.size() < 2 || threads < 1) {
+			System.err.println("Usage: java -jar keggscape-converter.jar [--format tsv|graphml|cx] [--threads n] "
+					+ "[--ids pattern] input... outputDirectory");
+			System.exit(2);
+			return;
+		}
+
+		final List<File> inputs = new ArrayList<File>();
+		for (final String path : paths.subList(0, paths.size() - 1)) {
+			inputs.add(new File(path));
+		}
+		final File outputDirectory = new File(paths.get(paths.size() - 1));
+
+		final long start = System.nanoTime();
+		final KgmlConverter converter = new KgmlConverter(writer, threads);
+		converter.setIdPattern(KgmlArchiveReader.compileIdPattern(ids));
+		final Result result = converter.convert(inputs, outputDirectory);
+		System.err.println("Converted " + result.getConverted() + " files to " + writer.getName() + " in "
+				+ (System.nanoTime() - start) / 1000000 + " ms, " + result.getFailures().size() + " failed.");
+		System.exit(result.getFailures().isEmpty() ? 0 : 1);
+	}
+}
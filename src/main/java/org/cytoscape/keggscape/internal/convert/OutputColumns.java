@@ -0,0 +1,127 @@
+package org.cytoscape.keggscape.internal.convert;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cytoscape.keggscape.internal.model.EdgeAttribute;
+import org.cytoscape.keggscape.internal.model.EdgeTable;
+import org.cytoscape.keggscape.internal.model.NodeAttribute;
+import org.cytoscape.keggscape.internal.model.NodeTable;
+import org.cytoscape.keggscape.internal.read.kgml.GraphColumns;
+import org.cytoscape.keggscape.internal.read.kgml.KeggConstants;
+
+/**
+ * Node and edge columns written by the converter, in output order.
+ *
+ * These are the columns the network reader creates, so converted files can be
+ * imported into Cytoscape with the same names. Values are String, List of
+ * String or Double, and null if missing.
+ */
+final class OutputColumns {
+
+	/**
+	 * Node IDs of the members of a group node.
+	 */
+	static final String MEMBERS = "KEGG_GROUP_MEMBERS";
+
+	private static final NodeAttribute[] NODE_ATTRIBUTES;
+	private static final EdgeAttribute[] EDGE_ATTRIBUTES;
+
+	private static final String[] NODE_LISTS = { KeggConstants.KEGG_ID, KeggConstants.KEGG_NODE_LABEL_LIST };
+	private static final String[] GEOMETRY = { KeggConstants.KEGG_NODE_X, KeggConstants.KEGG_NODE_Y,
+			KeggConstants.KEGG_NODE_WIDTH, KeggConstants.KEGG_NODE_HEIGHT };
+
+	static {
+		final List<NodeAttribute> nodeAttributes = new ArrayList<NodeAttribute>();
+		for (final NodeAttribute attr : NodeAttribute.values()) {
+			if (GraphColumns.get(attr) != null) {
+				nodeAttributes.add(attr);
+			}
+		}
+		NODE_ATTRIBUTES = nodeAttributes.toArray(new NodeAttribute[nodeAttributes.size()]);
+
+		final List<EdgeAttribute> edgeAttributes = new ArrayList<EdgeAttribute>();
+		for (final EdgeAttribute attr : EdgeAttribute.values()) {
+			if (GraphColumns.get(attr) != null) {
+				edgeAttributes.add(attr);
+			}
+		}
+		EDGE_ATTRIBUTES = edgeAttributes.toArray(new EdgeAttribute[edgeAttributes.size()]);
+	}
+
+	private OutputColumns() {
+	}
+
+	static int getNodeColumnCount() {
+		return NODE_ATTRIBUTES.length + NODE_LISTS.length + GEOMETRY.length;
+	}
+
+	static String getNodeColumn(final int column) {
+		if (column < NODE_ATTRIBUTES.length) {
+			return GraphColumns.get(NODE_ATTRIBUTES[column]);
+		}
+		final int list = column - NODE_ATTRIBUTES.length;
+		if (list < NODE_LISTS.length) {
+			return NODE_LISTS[list];
+		}
+		return GEOMETRY[list - NODE_LISTS.length];
+	}
+
+	/**
+	 * @return String, List or Double.
+	 */
+	static Class<?> getNodeType(final int column) {
+		if (column < NODE_ATTRIBUTES.length) {
+			return String.class;
+		}
+		return column - NODE_ATTRIBUTES.length < NODE_LISTS.length ? List.class : Double.class;
+	}
+
+	static Object getNodeValue(final NodeTable table, final int row, final int column) {
+		if (column < NODE_ATTRIBUTES.length) {
+			return table.get(NODE_ATTRIBUTES[column], row);
+		}
+		final int list = column - NODE_ATTRIBUTES.length;
+		if (list == 0) {
+			return table.getIds(row);
+		} else if (list == 1) {
+			return table.getLabels(row);
+		}
+
+		final double value;
+		switch (list - NODE_LISTS.length) {
+		case 0:
+			value = table.getX(row);
+			break;
+		case 1:
+			value = table.getY(row);
+			break;
+		case 2:
+			value = table.getWidth(row);
+			break;
+		default:
+			value = table.getHeight(row);
+		}
+		return Double.isNaN(value) ? null : value;
+	}
+
+	static int getEdgeColumnCount() {
+		return EDGE_ATTRIBUTES.length + 1;
+	}
+
+	static String getEdgeColumn(final int column) {
+		return column < EDGE_ATTRIBUTES.length ? GraphColumns.get(EDGE_ATTRIBUTES[column])
+				: KeggConstants.KEGG_EDGE_SUBTYPES;
+	}
+
+	/**
+	 * @return String or List.
+	 */
+	static Class<?> getEdgeType(final int column) {
+		return column < EDGE_ATTRIBUTES.length ? String.class : List.class;
+	}
+
+	static Object getEdgeValue(final EdgeTable table, final int row, final int column) {
+		return column < EDGE_ATTRIBUTES.length ? table.get(EDGE_ATTRIBUTES[column], row) : table.getSubtypes(row);
+	}
+}
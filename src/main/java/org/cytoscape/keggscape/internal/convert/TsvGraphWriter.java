@@ -0,0 +1,163 @@
+package org.cytoscape.keggscape.internal.convert;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.cytoscape.keggscape.internal.model.EdgeTable;
+import org.cytoscape.keggscape.internal.model.NodeTable;
+import org.cytoscape.keggscape.internal.model.PathwayGraph;
+
+/**
+ * Writes a node table and an edge table as tab separated text.
+ *
+ * Group nodes follow the other nodes, with the IDs of their members. List
+ * values are separated by "|", as expected by the Cytoscape table import.
+ */
+public class TsvGraphWriter implements GraphWriter {
+
+	static final String NODE_SUFFIX = ".nodes.tsv";
+	static final String EDGE_SUFFIX = ".edges.tsv";
+
+	private static final String ID = "id";
+	private static final String SOURCE = "source";
+	private static final String TARGET = "target";
+	private static final String DIRECTED = "directed";
+	private static final String LIST_SEPARATOR = "|";
+
+	@Override
+	public String getName() {
+		return "tsv";
+	}
+
+	@Override
+	public void write(final PathwayGraph graph, final File directory, final String baseName) throws IOException {
+		final Writer nodes = open(new File(directory, baseName + NODE_SUFFIX));
+		try {
+			writeNodes(graph, nodes);
+		} finally {
+			nodes.close();
+		}
+
+		final Writer edges = open(new File(directory, baseName + EDGE_SUFFIX));
+		try {
+			writeEdges(graph.getEdges(), edges);
+		} finally {
+			edges.close();
+		}
+	}
+
+	private final void writeNodes(final PathwayGraph graph, final Writer out) throws IOException {
+		final int columns = OutputColumns.getNodeColumnCount();
+		out.write(ID);
+		for (int c = 0; c < columns; c++) {
+			out.write('\t');
+			out.write(OutputColumns.getNodeColumn(c));
+		}
+		out.write('\t');
+		out.write(OutputColumns.MEMBERS);
+		out.write('\n');
+
+		final NodeTable nodes = graph.getNodes();
+		for (int i = 0; i < nodes.size(); i++) {
+			writeNode(nodes, i, nodeId(i), out);
+			// No members
+			out.write("\t\n");
+		}
+
+		final NodeTable groups = graph.getGroups();
+		for (int i = 0; i < groups.size(); i++) {
+			writeNode(groups, i, groupId(i), out);
+			out.write('\t');
+			final int[] members = graph.getGroupMembers(i);
+			for (int m = 0; m < members.length; m++) {
+				if (m > 0) {
+					out.write(LIST_SEPARATOR);
+				}
+				out.write(nodeId(members[m]));
+			}
+			out.write('\n');
+		}
+	}
+
+	private final void writeNode(final NodeTable table, final int row, final String id, final Writer out)
+			throws IOException {
+		out.write(id);
+		final int columns = OutputColumns.getNodeColumnCount();
+		for (int c = 0; c < columns; c++) {
+			out.write('\t');
+			writeValue(OutputColumns.getNodeValue(table, row, c), out);
+		}
+	}
+
+	private final void writeEdges(final EdgeTable edges, final Writer out) throws IOException {
+		final int columns = OutputColumns.getEdgeColumnCount();
+		out.write(SOURCE + '\t' + TARGET + '\t' + DIRECTED);
+		for (int c = 0; c < columns; c++) {
+			out.write('\t');
+			out.write(OutputColumns.getEdgeColumn(c));
+		}
+		out.write('\n');
+
+		for (int i = 0; i < edges.size(); i++) {
+			out.write(nodeId(edges.getSource(i)));
+			out.write('\t');
+			out.write(nodeId(edges.getTarget(i)));
+			out.write('\t');
+			out.write(Boolean.toString(edges.isDirected(i)));
+			for (int c = 0; c < columns; c++) {
+				out.write('\t');
+				writeValue(OutputColumns.getEdgeValue(edges, i, c), out);
+			}
+			out.write('\n');
+		}
+	}
+
+	private final void writeValue(final Object value, final Writer out) throws IOException {
+		if (value == null) {
+			return;
+		}
+		if (value instanceof List) {
+			final List<?> list = (List<?>) value;
+			for (int i = 0; i < list.size(); i++) {
+				if (i > 0) {
+					out.write(LIST_SEPARATOR);
+				}
+				out.write(escape(String.valueOf(list.get(i))));
+			}
+		} else {
+			out.write(escape(value.toString()));
+		}
+	}
+
+	/**
+	 * KGML labels may contain line breaks. Tabs and line breaks are replaced
+	 * by spaces.
+	 */
+	private static final String escape(final String value) {
+		for (int i = 0; i < value.length(); i++) {
+			final char c = value.charAt(i);
+			if (c == '\t' || c == '\n' || c == '\r') {
+				return value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+			}
+		}
+		return value;
+	}
+
+	static String nodeId(final int node) {
+		return "n" + node;
+	}
+
+	static String groupId(final int group) {
+		return "g" + group;
+	}
+
+	private static final Writer open(final File file) throws IOException {
+		return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+	}
+}
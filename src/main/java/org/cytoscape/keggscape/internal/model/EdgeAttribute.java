@@ -0,0 +1,20 @@
+package org.cytoscape.keggscape.internal.model;
+
+/**
+ * Text attributes of edges in a {@link PathwayGraph}.
+ */
+public enum EdgeAttribute {
+
+	NAME(false), INTERACTION(true), RELATION_TYPE(true), REACTION_TYPE(true), COLOR(true), COLOR_BG(true), LABEL(
+			true);
+
+	private final boolean pooled;
+
+	private EdgeAttribute(final boolean pooled) {
+		this.pooled = pooled;
+	}
+
+	boolean isPooled() {
+		return pooled;
+	}
+}
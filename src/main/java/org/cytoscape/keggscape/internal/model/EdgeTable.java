@@ -0,0 +1,111 @@
+package org.cytoscape.keggscape.internal.model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Column-oriented storage for edges. Source and target are node indexes in
+ * the {@link NodeTable} of the same graph.
+ */
+public final class EdgeTable {
+
+	private static final EdgeAttribute[] ATTRIBUTES = EdgeAttribute.values();
+
+	private int size;
+
+	private int[] sources;
+	private int[] targets;
+	private boolean[] directed;
+	private final String[][] values = new String[ATTRIBUTES.length][];
+	private String[][] subtypes;
+
+	EdgeTable(final int capacity) {
+		sources = new int[capacity];
+		targets = new int[capacity];
+		directed = new boolean[capacity];
+		for (final EdgeAttribute attr : ATTRIBUTES) {
+			values[attr.ordinal()] = new String[capacity];
+		}
+		subtypes = new String[capacity][];
+	}
+
+	/**
+	 * Copy the rows and the capacity of another table.
+	 */
+	EdgeTable(final EdgeTable other) {
+		size = other.size;
+		sources = other.sources.clone();
+		targets = other.targets.clone();
+		directed = other.directed.clone();
+		for (int i = 0; i < values.length; i++) {
+			values[i] = other.values[i].clone();
+		}
+		subtypes = other.subtypes.clone();
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getSource(final int row) {
+		return sources[row];
+	}
+
+	public int getTarget(final int row) {
+		return targets[row];
+	}
+
+	public boolean isDirected(final int row) {
+		return directed[row];
+	}
+
+	public String get(final EdgeAttribute attr, final int row) {
+		return values[attr.ordinal()][row];
+	}
+
+	/**
+	 * @return Subtypes of the edge, or null if not available.
+	 */
+	public List<String> getSubtypes(final int row) {
+		final String[] value = subtypes[row];
+		if (value == null) {
+			return null;
+		}
+		return Collections.unmodifiableList(Arrays.asList(value));
+	}
+
+	int add(final int source, final int target, final boolean isDirected) {
+		if (size == sources.length) {
+			resize(Math.max(16, size * 2));
+		}
+		sources[size] = source;
+		targets[size] = target;
+		directed[size] = isDirected;
+		return size++;
+	}
+
+	void set(final EdgeAttribute attr, final int row, final String value) {
+		values[attr.ordinal()][row] = value;
+	}
+
+	void setSubtypes(final int row, final String[] value) {
+		subtypes[row] = value;
+	}
+
+	void trim() {
+		if (size != sources.length) {
+			resize(size);
+		}
+	}
+
+	private void resize(final int capacity) {
+		sources = Arrays.copyOf(sources, capacity);
+		targets = Arrays.copyOf(targets, capacity);
+		directed = Arrays.copyOf(directed, capacity);
+		for (int i = 0; i < values.length; i++) {
+			values[i] = Arrays.copyOf(values[i], capacity);
+		}
+		subtypes = Arrays.copyOf(subtypes, capacity);
+	}
+}
@@ -0,0 +1,108 @@
+package org.cytoscape.keggscape.internal.model;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash set of primitive long values with linear probing.
+ * Values are never boxed.
+ */
+final class LongHashSet {
+
+	private static final long EMPTY = Long.MIN_VALUE;
+	private static final float LOAD_FACTOR = 0.5f;
+
+	private long[] keys;
+	private int size;
+	private boolean hasEmptyKey;
+
+	LongHashSet(final int expected) {
+		int capacity = 16;
+		while (capacity * LOAD_FACTOR < expected) {
+			capacity <<= 1;
+		}
+		keys = new long[capacity];
+		Arrays.fill(keys, EMPTY);
+	}
+
+	LongHashSet(final LongHashSet other) {
+		keys = other.keys.clone();
+		size = other.size;
+		hasEmptyKey = other.hasEmptyKey;
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean contains(final long key) {
+		if (key == EMPTY) {
+			return hasEmptyKey;
+		}
+		final int mask = keys.length - 1;
+		int i = hash(key) & mask;
+		while (keys[i] != EMPTY) {
+			if (keys[i] == key) {
+				return true;
+			}
+			i = (i + 1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * @return true if the key was not in the set.
+	 */
+	boolean add(final long key) {
+		if (key == EMPTY) {
+			if (hasEmptyKey) {
+				return false;
+			}
+			hasEmptyKey = true;
+			size++;
+			return true;
+		}
+		final int mask = keys.length - 1;
+		int i = hash(key) & mask;
+		while (keys[i] != EMPTY) {
+			if (keys[i] == key) {
+				return false;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		size++;
+		if (size > keys.length * LOAD_FACTOR) {
+			rehash(keys.length << 1);
+		}
+		return true;
+	}
+
+	private final void rehash(final int capacity) {
+		final long[] old = keys;
+		keys = new long[capacity];
+		Arrays.fill(keys, EMPTY);
+		final int mask = capacity - 1;
+		for (final long key : old) {
+			if (key == EMPTY) {
+				continue;
+			}
+			int i = hash(key) & mask;
+			while (keys[i] != EMPTY) {
+				i = (i + 1) & mask;
+			}
+			keys[i] = key;
+		}
+	}
+
+	/**
+	 * Finalizer of MurmurHash3. Spreads the bits of sequential node indexes.
+	 */
+	private static final int hash(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb93fe53ec5cbL;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+}
@@ -0,0 +1,78 @@
+package org.cytoscape.keggscape.internal.model;
+
+/**
+ * Result of {@link PathwayGraphMerger}: the merged graph, and the pathways and
+ * coordinates each of its nodes was found at.
+ */
+public final class MergedPathwayGraph {
+
+	private final PathwayGraph graph;
+	private final String[] pathways;
+	private final int inputNodeCount;
+
+	// Occurrences of node i are at offsets[i] to offsets[i + 1] - 1.
+	private final int[] offsets;
+	private final int[] occurrencePathways;
+	private final double[] occurrenceX;
+	private final double[] occurrenceY;
+
+	MergedPathwayGraph(final PathwayGraph graph, final String[] pathways, final int inputNodeCount,
+			final int[] offsets, final int[] occurrencePathways, final double[] occurrenceX,
+			final double[] occurrenceY) {
+		this.graph = graph;
+		this.pathways = pathways;
+		this.inputNodeCount = inputNodeCount;
+		this.offsets = offsets;
+		this.occurrencePathways = occurrencePathways;
+		this.occurrenceX = occurrenceX;
+		this.occurrenceY = occurrenceY;
+	}
+
+	public PathwayGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * @return number of merged pathways.
+	 */
+	public int getPathwayCount() {
+		return pathways.length;
+	}
+
+	/**
+	 * @return name of a merged pathway, such as "path:hsa00020".
+	 */
+	public String getPathwayName(final int pathway) {
+		return pathways[pathway];
+	}
+
+	/**
+	 * @return number of nodes in all merged pathways.
+	 */
+	public int getInputNodeCount() {
+		return inputNodeCount;
+	}
+
+	/**
+	 * @return number of pathway nodes merged into the node.
+	 */
+	public int getOccurrenceCount(final int node) {
+		return offsets[node + 1] - offsets[node];
+	}
+
+	/**
+	 * @return index of the pathway of an occurrence, in the order the
+	 *         pathways were added.
+	 */
+	public int getPathway(final int node, final int occurrence) {
+		return occurrencePathways[offsets[node] + occurrence];
+	}
+
+	public double getX(final int node, final int occurrence) {
+		return occurrenceX[offsets[node] + occurrence];
+	}
+
+	public double getY(final int node, final int occurrence) {
+		return occurrenceY[offsets[node] + occurrence];
+	}
+}
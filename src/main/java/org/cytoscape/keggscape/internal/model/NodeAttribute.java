@@ -0,0 +1,24 @@
+package org.cytoscape.keggscape.internal.model;
+
+/**
+ * Text attributes of nodes and groups in a {@link PathwayGraph}.
+ */
+public enum NodeAttribute {
+
+	NAME(false), ENTRY_ID(false), TYPE(true), LABEL(false), LABEL_FIRST(false), LABEL_COLOR(true), FILL_COLOR(
+			true), REACTION_ID(false), SHAPE(true), LINK(false);
+
+	private final boolean pooled;
+
+	private NodeAttribute(final boolean pooled) {
+		this.pooled = pooled;
+	}
+
+	/**
+	 * @return true if values of this attribute are shared through the string
+	 *         pool of the graph.
+	 */
+	boolean isPooled() {
+		return pooled;
+	}
+}
@@ -0,0 +1,145 @@
+package org.cytoscape.keggscape.internal.model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Column-oriented storage for node attributes. Rows are addressed by their
+ * index. Geometry is stored in primitive arrays and missing values are NaN.
+ */
+public final class NodeTable {
+
+	private static final NodeAttribute[] ATTRIBUTES = NodeAttribute.values();
+
+	private int size;
+
+	private final String[][] values = new String[ATTRIBUTES.length][];
+	private String[][] ids;
+	private String[][] labels;
+	private double[] x;
+	private double[] y;
+	private double[] width;
+	private double[] height;
+
+	NodeTable(final int capacity) {
+		for (final NodeAttribute attr : ATTRIBUTES) {
+			values[attr.ordinal()] = new String[capacity];
+		}
+		ids = new String[capacity][];
+		labels = new String[capacity][];
+		x = new double[capacity];
+		y = new double[capacity];
+		width = new double[capacity];
+		height = new double[capacity];
+	}
+
+	/**
+	 * Copy the rows and the capacity of another table.
+	 */
+	NodeTable(final NodeTable other) {
+		size = other.size;
+		for (int i = 0; i < values.length; i++) {
+			values[i] = other.values[i].clone();
+		}
+		ids = other.ids.clone();
+		labels = other.labels.clone();
+		x = other.x.clone();
+		y = other.y.clone();
+		width = other.width.clone();
+		height = other.height.clone();
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public String get(final NodeAttribute attr, final int row) {
+		return values[attr.ordinal()][row];
+	}
+
+	/**
+	 * @return KEGG IDs of the entry, or null if not available.
+	 */
+	public List<String> getIds(final int row) {
+		return asList(ids[row]);
+	}
+
+	/**
+	 * @return Names from the graphics element, or null if not available.
+	 */
+	public List<String> getLabels(final int row) {
+		return asList(labels[row]);
+	}
+
+	public double getX(final int row) {
+		return x[row];
+	}
+
+	public double getY(final int row) {
+		return y[row];
+	}
+
+	public double getWidth(final int row) {
+		return width[row];
+	}
+
+	public double getHeight(final int row) {
+		return height[row];
+	}
+
+	private static final List<String> asList(final String[] array) {
+		if (array == null) {
+			return null;
+		}
+		return Collections.unmodifiableList(Arrays.asList(array));
+	}
+
+	int add() {
+		if (size == x.length) {
+			resize(Math.max(16, size * 2));
+		}
+		x[size] = Double.NaN;
+		y[size] = Double.NaN;
+		width[size] = Double.NaN;
+		height[size] = Double.NaN;
+		return size++;
+	}
+
+	void set(final NodeAttribute attr, final int row, final String value) {
+		values[attr.ordinal()][row] = value;
+	}
+
+	void setIds(final int row, final String[] value) {
+		ids[row] = value;
+	}
+
+	void setLabels(final int row, final String[] value) {
+		labels[row] = value;
+	}
+
+	void setGeometry(final int row, final double x, final double y, final double width, final double height) {
+		this.x[row] = x;
+		this.y[row] = y;
+		this.width[row] = width;
+		this.height[row] = height;
+	}
+
+	void trim() {
+		if (size != x.length) {
+			resize(size);
+		}
+	}
+
+	private void resize(final int capacity) {
+		for (int i = 0; i < values.length; i++) {
+			values[i] = Arrays.copyOf(values[i], capacity);
+		}
+		ids = Arrays.copyOf(ids, capacity);
+		labels = Arrays.copyOf(labels, capacity);
+		x = Arrays.copyOf(x, capacity);
+		y = Arrays.copyOf(y, capacity);
+		width = Arrays.copyOf(width, capacity);
+		height = Arrays.copyOf(height, capacity);
+	}
+}
@@ -0,0 +1,99 @@
+package org.cytoscape.keggscape.internal.model;
+
+/**
+ * Immutable graph representation of a mapped KEGG pathway.
+ * 
+ * This model does not depend on Cytoscape. Nodes, edges and groups are stored
+ * in column-oriented tables and refer to each other by index. Use
+ * {@link PathwayGraphBuilder} to create instances.
+ */
+public final class PathwayGraph {
+
+	private final String name;
+	private final String number;
+	private final String org;
+	private final String title;
+	private final String image;
+	private final String link;
+
+	private final NodeTable nodes;
+	private final EdgeTable edges;
+	private final NodeTable groups;
+	private final int[][] groupMembers;
+	private final int duplicateEdgeCount;
+
+	PathwayGraph(final String name, final String number, final String org, final String title, final String image,
+			final String link, final NodeTable nodes, final EdgeTable edges, final NodeTable groups,
+			final int[][] groupMembers, final int duplicateEdgeCount) {
+		this.name = name;
+		this.number = number;
+		this.org = org;
+		this.title = title;
+		this.image = image;
+		this.link = link;
+		this.nodes = nodes;
+		this.edges = edges;
+		this.groups = groups;
+		this.groupMembers = groupMembers;
+		this.duplicateEdgeCount = duplicateEdgeCount;
+	}
+
+	/**
+	 * @return Pathway ID, such as "path:hsa00020".
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return Map number, such as "00020".
+	 */
+	public String getNumber() {
+		return number;
+	}
+
+	public String getOrg() {
+		return org;
+	}
+
+	public String getTitle() {
+		return title;
+	}
+
+	public String getImage() {
+		return image;
+	}
+
+	public String getLink() {
+		return link;
+	}
+
+	public NodeTable getNodes() {
+		return nodes;
+	}
+
+	public EdgeTable getEdges() {
+		return edges;
+	}
+
+	/**
+	 * Attributes of the group nodes. Row i of this table describes group i.
+	 */
+	public NodeTable getGroups() {
+		return groups;
+	}
+
+	/**
+	 * @return Node indexes of the members of the group.
+	 */
+	public int[] getGroupMembers(final int group) {
+		return groupMembers[group].clone();
+	}
+
+	/**
+	 * @return number of duplicate edges skipped while mapping.
+	 */
+	public int getDuplicateEdgeCount() {
+		return duplicateEdgeCount;
+	}
+}
@@ -0,0 +1,201 @@
+package org.cytoscape.keggscape.internal.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Mutable builder for {@link PathwayGraph}. Not thread safe. A builder can be
+ * used to create only one graph.
+ */
+public final class PathwayGraphBuilder {
+
+	private static final int DEF_CAPACITY = 64;
+
+	private final StringPool pool;
+
+	private final String name;
+	private final String number;
+	private final String org;
+	private final String title;
+	private final String image;
+	private final String link;
+
+	private final NodeTable nodes;
+	private final EdgeTable edges;
+	private final NodeTable groups;
+	private final List<int[]> groupMembers;
+
+	// Unordered node pairs of all edges
+	private final LongHashSet connected;
+	private int duplicateEdgeCount = 0;
+
+	private boolean built = false;
+
+	public PathwayGraphBuilder(final String name, final String number, final String org, final String title,
+			final String image, final String link) {
+		this.name = name;
+		this.number = number;
+		this.org = org;
+		this.title = title;
+		this.image = image;
+		this.link = link;
+		this.pool = new StringPool();
+		this.nodes = new NodeTable(DEF_CAPACITY);
+		this.edges = new EdgeTable(DEF_CAPACITY);
+		this.groups = new NodeTable(0);
+		this.groupMembers = new ArrayList<int[]>();
+		this.connected = new LongHashSet(DEF_CAPACITY);
+	}
+
+	/**
+	 * Copy the state of another builder, e.g. to run the last mapping steps
+	 * of a pathway several times.
+	 */
+	public PathwayGraphBuilder(final PathwayGraphBuilder other) {
+		other.checkState();
+		this.name = other.name;
+		this.number = other.number;
+		this.org = other.org;
+		this.title = other.title;
+		this.image = other.image;
+		this.link = other.link;
+		this.pool = new StringPool(other.pool);
+		this.nodes = new NodeTable(other.nodes);
+		this.edges = new EdgeTable(other.edges);
+		this.groups = new NodeTable(other.groups);
+		this.groupMembers = new ArrayList<int[]>(other.groupMembers);
+		this.connected = new LongHashSet(other.connected);
+		this.duplicateEdgeCount = other.duplicateEdgeCount;
+	}
+
+	public int addNode() {
+		checkState();
+		return nodes.add();
+	}
+
+	public int getNodeCount() {
+		return nodes.size();
+	}
+
+	public void setNode(final int node, final NodeAttribute attr, final String value) {
+		checkState();
+		nodes.set(attr, node, attr.isPooled() ? pool.intern(value) : value);
+	}
+
+	public String getNode(final int node, final NodeAttribute attr) {
+		return nodes.get(attr, node);
+	}
+
+	public void setNodeIds(final int node, final String[] ids) {
+		checkState();
+		nodes.setIds(node, pool.intern(ids));
+	}
+
+	public void setNodeLabels(final int node, final String[] labels) {
+		checkState();
+		nodes.setLabels(node, labels);
+	}
+
+	public void setNodeGeometry(final int node, final double x, final double y, final double width,
+			final double height) {
+		checkState();
+		nodes.setGeometry(node, x, y, width, height);
+	}
+
+	public int addEdge(final int source, final int target, final boolean directed) {
+		checkState();
+		connected.add(pairKey(source, target));
+		return edges.add(source, target, directed);
+	}
+
+	/**
+	 * Add an edge only if the two nodes are not connected yet, regardless of
+	 * edge direction.
+	 * 
+	 * @return index of the new edge, or -1 if the nodes are already connected.
+	 */
+	public int addEdgeIfAbsent(final int source, final int target, final boolean directed) {
+		checkState();
+		if (!connected.add(pairKey(source, target))) {
+			duplicateEdgeCount++;
+			return -1;
+		}
+		return edges.add(source, target, directed);
+	}
+
+	/**
+	 * @return number of edges rejected by {@link #addEdgeIfAbsent(int, int, boolean)}.
+	 */
+	public int getDuplicateEdgeCount() {
+		return duplicateEdgeCount;
+	}
+
+	public int getEdgeCount() {
+		return edges.size();
+	}
+
+	public void setEdge(final int edge, final EdgeAttribute attr, final String value) {
+		checkState();
+		edges.set(attr, edge, attr.isPooled() ? pool.intern(value) : value);
+	}
+
+	public void setEdgeSubtypes(final int edge, final String[] subtypes) {
+		checkState();
+		edges.setSubtypes(edge, pool.intern(subtypes));
+	}
+
+	/**
+	 * Test whether the two nodes are already connected, regardless of edge
+	 * direction.
+	 */
+	public boolean hasEdge(final int node1, final int node2) {
+		return connected.contains(pairKey(node1, node2));
+	}
+
+	private static final long pairKey(final int node1, final int node2) {
+		if (node1 < node2) {
+			return ((long) node1 << 32) | (node2 & 0xffffffffL);
+		}
+		return ((long) node2 << 32) | (node1 & 0xffffffffL);
+	}
+
+	/**
+	 * Add a group.
+	 * 
+	 * @param members
+	 *            node indexes of the group members
+	 * @return index of the new group
+	 */
+	public int addGroup(final int[] members) {
+		checkState();
+		groupMembers.add(members.clone());
+		return groups.add();
+	}
+
+	public void setGroup(final int group, final NodeAttribute attr, final String value) {
+		checkState();
+		groups.set(attr, group, attr.isPooled() ? pool.intern(value) : value);
+	}
+
+	public void setGroupGeometry(final int group, final double x, final double y, final double width,
+			final double height) {
+		checkState();
+		groups.setGeometry(group, x, y, width, height);
+	}
+
+	public PathwayGraph build() {
+		checkState();
+		built = true;
+		nodes.trim();
+		edges.trim();
+		groups.trim();
+		return new PathwayGraph(name, number, org, title, image, link, nodes, edges, groups,
+				groupMembers.toArray(new int[groupMembers.size()][]), duplicateEdgeCount);
+	}
+
+	private final void checkState() {
+		if (built) {
+			throw new IllegalStateException("Graph has already been built.");
+		}
+	}
+}
@@ -0,0 +1,236 @@
+package org.cytoscape.keggscape.internal.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Merges pathways into one graph in which nodes with the same KEGG IDs are a
+ * single node.
+ *
+ * Nodes are looked up by their sorted KEGG IDs in a hash index, so each
+ * pathway is added in time linear to its size. Attributes and geometry of a
+ * merged node are taken from its first occurrence. The pathway and
+ * coordinates of every occurrence are kept in the {@link MergedPathwayGraph}.
+ * Nodes without IDs, such as group placeholders, are never merged. Edges and
+ * groups which become identical are added once.
+ */
+public final class PathwayGraphMerger {
+
+	// ID of group entries
+	private static final String UNDEFINED = "undefined";
+
+	private final PathwayGraphBuilder builder;
+
+	// Sorted KEGG IDs to merged node
+	private final Map<String, Integer> nodeIndex = new HashMap<String, Integer>();
+	private final Set<String> edgeKeys = new HashSet<String>();
+	private final Set<String> groupKeys = new HashSet<String>();
+
+	private final List<String> pathways = new ArrayList<String>();
+	private int inputNodeCount;
+
+	// Occurrences of merged nodes, in the order they were added
+	private int occurrenceCount;
+	private int[] occurrenceNodes = new int[64];
+	private int[] occurrencePathways = new int[64];
+	private double[] occurrenceX = new double[64];
+	private double[] occurrenceY = new double[64];
+
+	/**
+	 * @param name
+	 *            name of the merged graph
+	 * @param title
+	 *            title of the merged graph
+	 */
+	public PathwayGraphMerger(final String name, final String title) {
+		this.builder = new PathwayGraphBuilder(name, "", "", title, null, null);
+	}
+
+	/**
+	 * Add all nodes, edges and groups of a pathway.
+	 */
+	public void add(final PathwayGraph graph) {
+		final int pathway = pathways.size();
+		pathways.add(graph.getName());
+
+		final NodeTable nodes = graph.getNodes();
+		final int[] nodeMap = new int[nodes.size()];
+		for (int i = 0; i < nodes.size(); i++) {
+			final String key = getKey(nodes.getIds(i));
+			Integer merged = key == null ? null : nodeIndex.get(key);
+			if (merged == null) {
+				merged = copyNode(nodes, i, key);
+				if (key != null) {
+					nodeIndex.put(key, merged);
+				}
+			}
+			nodeMap[i] = merged;
+			addOccurrence(merged, pathway, nodes.getX(i), nodes.getY(i));
+		}
+		inputNodeCount += nodes.size();
+
+		addEdges(graph.getEdges(), nodeMap);
+		addGroups(graph, nodeMap);
+	}
+
+	private final int copyNode(final NodeTable nodes, final int row, final String key) {
+		final int node = builder.addNode();
+		for (final NodeAttribute attr : NodeAttribute.values()) {
+			builder.setNode(node, attr, nodes.get(attr, row));
+		}
+		// Names of merged nodes no longer belong to one pathway.
+		if (key != null) {
+			builder.setNode(node, NodeAttribute.NAME, key);
+		}
+		builder.setNodeIds(node, toArray(nodes.getIds(row)));
+		builder.setNodeLabels(node, toArray(nodes.getLabels(row)));
+		builder.setNodeGeometry(node, nodes.getX(row), nodes.getY(row), nodes.getWidth(row), nodes.getHeight(row));
+		return node;
+	}
+
+	private final void addEdges(final EdgeTable edges, final int[] nodeMap) {
+		for (int i = 0; i < edges.size(); i++) {
+			int source = nodeMap[edges.getSource(i)];
+			int target = nodeMap[edges.getTarget(i)];
+			// Two occurrences of a node in one pathway are not connected to
+			// themselves.
+			if (source == target && edges.getSource(i) != edges.getTarget(i)) {
+				continue;
+			}
+			final boolean directed = edges.isDirected(i);
+			if (!directed && source > target) {
+				final int swap = source;
+				source = target;
+				target = swap;
+			}
+			final String key = source + (directed ? ">" : "-") + target + " "
+					+ edges.get(EdgeAttribute.INTERACTION, i);
+			if (!edgeKeys.add(key)) {
+				continue;
+			}
+
+			final int edge = builder.addEdge(nodeMap[edges.getSource(i)], nodeMap[edges.getTarget(i)], directed);
+			for (final EdgeAttribute attr : EdgeAttribute.values()) {
+				builder.setEdge(edge, attr, edges.get(attr, i));
+			}
+			builder.setEdgeSubtypes(edge, toArray(edges.getSubtypes(i)));
+		}
+	}
+
+	private final void addGroups(final PathwayGraph graph, final int[] nodeMap) {
+		final NodeTable groups = graph.getGroups();
+		for (int i = 0; i < groups.size(); i++) {
+			final int[] original = graph.getGroupMembers(i);
+			final int[] members = new int[original.length];
+			for (int j = 0; j < members.length; j++) {
+				members[j] = nodeMap[original[j]];
+			}
+			final int[] sorted = members.clone();
+			Arrays.sort(sorted);
+			if (!groupKeys.add(Arrays.toString(sorted))) {
+				continue;
+			}
+
+			final int group = builder.addGroup(members);
+			for (final NodeAttribute attr : NodeAttribute.values()) {
+				builder.setGroup(group, attr, groups.get(attr, i));
+			}
+			builder.setGroupGeometry(group, groups.getX(i), groups.getY(i), groups.getWidth(i),
+					groups.getHeight(i));
+		}
+	}
+
+	private final void addOccurrence(final int node, final int pathway, final double x, final double y) {
+		if (occurrenceCount == occurrenceNodes.length) {
+			final int capacity = occurrenceCount * 2;
+			occurrenceNodes = Arrays.copyOf(occurrenceNodes, capacity);
+			occurrencePathways = Arrays.copyOf(occurrencePathways, capacity);
+			occurrenceX = Arrays.copyOf(occurrenceX, capacity);
+			occurrenceY = Arrays.copyOf(occurrenceY, capacity);
+		}
+		occurrenceNodes[occurrenceCount] = node;
+		occurrencePathways[occurrenceCount] = pathway;
+		occurrenceX[occurrenceCount] = x;
+		occurrenceY[occurrenceCount] = y;
+		occurrenceCount++;
+	}
+
+	/**
+	 * @return number of pathways added so far.
+	 */
+	public int getPathwayCount() {
+		return pathways.size();
+	}
+
+	/**
+	 * Build the merged graph. The merger cannot be used afterwards.
+	 */
+	public MergedPathwayGraph build() {
+		final PathwayGraph graph = builder.build();
+		final int nodeCount = graph.getNodes().size();
+
+		// Group the occurrences by node, keeping their order.
+		final int[] offsets = new int[nodeCount + 1];
+		for (int i = 0; i < occurrenceCount; i++) {
+			offsets[occurrenceNodes[i] + 1]++;
+		}
+		for (int i = 0; i < nodeCount; i++) {
+			offsets[i + 1] += offsets[i];
+		}
+		final int[] next = Arrays.copyOf(offsets, nodeCount);
+		final int[] sortedPathways = new int[occurrenceCount];
+		final double[] sortedX = new double[occurrenceCount];
+		final double[] sortedY = new double[occurrenceCount];
+		for (int i = 0; i < occurrenceCount; i++) {
+			final int position = next[occurrenceNodes[i]]++;
+			sortedPathways[position] = occurrencePathways[i];
+			sortedX[position] = occurrenceX[i];
+			sortedY[position] = occurrenceY[i];
+		}
+
+		return new MergedPathwayGraph(graph, pathways.toArray(new String[pathways.size()]), inputNodeCount,
+				offsets, sortedPathways, sortedX, sortedY);
+	}
+
+	/**
+	 * @return sorted KEGG IDs joined by spaces, or null if the node has no
+	 *         IDs.
+	 */
+	private static final String getKey(final List<String> ids) {
+		if (ids == null || ids.isEmpty()) {
+			return null;
+		}
+		if (ids.size() == 1) {
+			final String id = ids.get(0);
+			return id.isEmpty() || UNDEFINED.equals(id) ? null : id;
+		}
+		final List<String> sorted = new ArrayList<String>(ids.size());
+		for (final String id : ids) {
+			if (!id.isEmpty() && !UNDEFINED.equals(id)) {
+				sorted.add(id);
+			}
+		}
+		if (sorted.isEmpty()) {
+			return null;
+		}
+		Collections.sort(sorted);
+		final StringBuilder key = new StringBuilder();
+		for (final String id : sorted) {
+			if (key.length() != 0) {
+				key.append(' ');
+			}
+			key.append(id);
+		}
+		return key.toString();
+	}
+
+	private static final String[] toArray(final List<String> values) {
+		return values == null ? null : values.toArray(new String[values.size()]);
+	}
+}
@@ -0,0 +1,486 @@
+package org.cytoscape.keggscape.internal.model;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary snapshot of a {@link PathwayGraph}, to import a pathway again
+ * without parsing and mapping its KGML.
+ *
+ * A snapshot starts with a header: magic number, format version, mapping
+ * options and the length of the KGML file it was made from. A snapshot is
+ * only used if all of them match. Callers identify the content of the KGML
+ * file by the name of the snapshot. The header is followed
+ * by a table of all distinct strings, and by the node, edge and group tables.
+ * Strings are referenced by their index in the string table, and -1 is null.
+ * All numbers are big endian.
+ *
+ * Large snapshots are memory mapped.
+ */
+public final class PathwaySnapshot {
+
+	/**
+	 * Increase when the format or the mapping rules change, so existing
+	 * snapshots are ignored.
+	 */
+	public static final int VERSION = 2;
+
+	private static final int MAGIC = 0x4B47534E;
+	private static final int NULL = -1;
+
+	// Smaller files are read into the heap. Mapping has a fixed cost.
+	private static final long MAP_THRESHOLD = 256 * 1024;
+
+	private static final NodeAttribute[] NODE_ATTRIBUTES = NodeAttribute.values();
+	private static final EdgeAttribute[] EDGE_ATTRIBUTES = EdgeAttribute.values();
+
+	private PathwaySnapshot() {
+	}
+
+	/**
+	 * Write a snapshot. The file is replaced atomically, so readers never see
+	 * a partial snapshot.
+	 *
+	 * @param options
+	 *            mapping options used to create the graph
+	 * @param sourceLength
+	 *            length of the KGML file of the graph
+	 */
+	public static void write(final PathwayGraph graph, final File file, final int options,
+			final long sourceLength) throws IOException {
+		final File tempFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+		try {
+			final DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(tempFile), 64 * 1024));
+			try {
+				new Writer(out).write(graph, options, sourceLength);
+			} finally {
+				out.close();
+			}
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			tempFile.delete();
+		}
+	}
+
+	/**
+	 * Read a snapshot.
+	 *
+	 * @return the graph, or null if the snapshot does not exist or was made
+	 *         from a file of another length, another format version
+	 *         or other mapping options.
+	 * @throws IOException
+	 *             if the snapshot is damaged
+	 */
+	public static PathwayGraph read(final File file, final int options, final long sourceLength)
+			throws IOException {
+		if (!file.isFile()) {
+			return null;
+		}
+		final ByteBuffer buffer;
+		final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			final long size = channel.size();
+			if (size >= MAP_THRESHOLD) {
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			} else {
+				buffer = ByteBuffer.allocate((int) size);
+				while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+					// Read the whole file.
+				}
+				buffer.flip();
+			}
+		} finally {
+			channel.close();
+		}
+
+		try {
+			if (buffer.remaining() < 20 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+					|| buffer.getInt() != options || buffer.getLong() != sourceLength) {
+				return null;
+			}
+			return new Reader(buffer).read();
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Pathway snapshot is truncated: " + file, e);
+		} catch (IndexOutOfBoundsException e) {
+			throw new IOException("Pathway snapshot is damaged: " + file, e);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Pathway snapshot is damaged: " + file, e);
+		}
+	}
+
+	private static final class Writer {
+
+		private final DataOutputStream out;
+		private final Map<String, Integer> strings = new HashMap<String, Integer>();
+		private final ByteArrayList stringData = new ByteArrayList();
+
+		Writer(final DataOutputStream out) {
+			this.out = out;
+		}
+
+		void write(final PathwayGraph graph, final int options, final long sourceLength) throws IOException {
+			// Tables reference strings by index, so the string table is built
+			// first and written before them.
+			final int[] header = { ref(graph.getName()), ref(graph.getNumber()), ref(graph.getOrg()),
+					ref(graph.getTitle()), ref(graph.getImage()), ref(graph.getLink()) };
+			final int[][] nodeRefs = refs(graph.getNodes());
+			final int[][] edgeRefs = refs(graph.getEdges());
+			final int[][] groupRefs = refs(graph.getGroups());
+
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(options);
+			out.writeLong(sourceLength);
+
+			out.writeInt(strings.size());
+			out.writeInt(stringData.size());
+			stringData.writeTo(out);
+
+			for (final int ref : header) {
+				out.writeInt(ref);
+			}
+			out.writeInt(graph.getDuplicateEdgeCount());
+
+			writeNodes(graph.getNodes(), nodeRefs);
+
+			final EdgeTable edges = graph.getEdges();
+			final int edgeCount = edges.size();
+			out.writeInt(edgeCount);
+			for (int i = 0; i < edgeCount; i++) {
+				out.writeInt(edges.getSource(i));
+			}
+			for (int i = 0; i < edgeCount; i++) {
+				out.writeInt(edges.getTarget(i));
+			}
+			for (int i = 0; i < edgeCount; i++) {
+				out.writeByte(edges.isDirected(i) ? 1 : 0);
+			}
+			writeRefs(edgeRefs);
+
+			final NodeTable groups = graph.getGroups();
+			writeNodes(groups, groupRefs);
+			for (int i = 0; i < groups.size(); i++) {
+				final int[] members = graph.getGroupMembers(i);
+				out.writeInt(members.length);
+				for (final int member : members) {
+					out.writeInt(member);
+				}
+			}
+			out.writeInt(MAGIC);
+		}
+
+		private final void writeNodes(final NodeTable table, final int[][] refs) throws IOException {
+			final int size = table.size();
+			out.writeInt(size);
+			writeRefs(refs);
+			for (int i = 0; i < size; i++) {
+				out.writeDouble(table.getX(i));
+			}
+			for (int i = 0; i < size; i++) {
+				out.writeDouble(table.getY(i));
+			}
+			for (int i = 0; i < size; i++) {
+				out.writeDouble(table.getWidth(i));
+			}
+			for (int i = 0; i < size; i++) {
+				out.writeDouble(table.getHeight(i));
+			}
+		}
+
+		private final void writeRefs(final int[][] refs) throws IOException {
+			for (final int[] column : refs) {
+				for (final int ref : column) {
+					out.writeInt(ref);
+				}
+			}
+		}
+
+		/**
+		 * @return one array per attribute column, followed by the ID and
+		 *         label lists. Lists are stored as a count, or -1 for null,
+		 *         followed by the string references.
+		 */
+		private final int[][] refs(final NodeTable table) {
+			final int size = table.size();
+			final int[][] refs = new int[NODE_ATTRIBUTES.length + 2][];
+			for (final NodeAttribute attr : NODE_ATTRIBUTES) {
+				final int[] column = new int[size];
+				for (int i = 0; i < size; i++) {
+					column[i] = ref(table.get(attr, i));
+				}
+				refs[attr.ordinal()] = column;
+			}
+			final IntArrayList ids = new IntArrayList();
+			final IntArrayList labels = new IntArrayList();
+			for (int i = 0; i < size; i++) {
+				addList(ids, table.getIds(i));
+				addList(labels, table.getLabels(i));
+			}
+			refs[NODE_ATTRIBUTES.length] = ids.toArray();
+			refs[NODE_ATTRIBUTES.length + 1] = labels.toArray();
+			return refs;
+		}
+
+		private final int[][] refs(final EdgeTable table) {
+			final int size = table.size();
+			final int[][] refs = new int[EDGE_ATTRIBUTES.length + 1][];
+			for (final EdgeAttribute attr : EDGE_ATTRIBUTES) {
+				final int[] column = new int[size];
+				for (int i = 0; i < size; i++) {
+					column[i] = ref(table.get(attr, i));
+				}
+				refs[attr.ordinal()] = column;
+			}
+			final IntArrayList subtypes = new IntArrayList();
+			for (int i = 0; i < size; i++) {
+				addList(subtypes, table.getSubtypes(i));
+			}
+			refs[EDGE_ATTRIBUTES.length] = subtypes.toArray();
+			return refs;
+		}
+
+		private final void addList(final IntArrayList refs, final List<String> values) {
+			if (values == null) {
+				refs.add(NULL);
+				return;
+			}
+			refs.add(values.size());
+			for (final String value : values) {
+				refs.add(ref(value));
+			}
+		}
+
+		private final int ref(final String value) {
+			if (value == null) {
+				return NULL;
+			}
+			final Integer ref = strings.get(value);
+			if (ref != null) {
+				return ref;
+			}
+			final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			stringData.addInt(bytes.length);
+			stringData.add(bytes);
+			strings.put(value, strings.size());
+			return strings.size() - 1;
+		}
+	}
+
+	private static final class Reader {
+
+		private final ByteBuffer buffer;
+		private String[] strings;
+
+		Reader(final ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		PathwayGraph read() throws IOException {
+			final int stringCount = buffer.getInt();
+			final int stringBytes = buffer.getInt();
+			if (stringCount < 0 || stringBytes < 0 || stringBytes > buffer.remaining()) {
+				throw new IOException("Invalid string table.");
+			}
+			strings = new String[stringCount];
+			final byte[] data = new byte[stringBytes];
+			buffer.get(data);
+			int position = 0;
+			for (int i = 0; i < stringCount; i++) {
+				final int length = ((data[position] & 0xff) << 24) | ((data[position + 1] & 0xff) << 16)
+						| ((data[position + 2] & 0xff) << 8) | (data[position + 3] & 0xff);
+				position += 4;
+				strings[i] = new String(data, position, length, StandardCharsets.UTF_8);
+				position += length;
+			}
+
+			final String name = string(buffer.getInt());
+			final String number = string(buffer.getInt());
+			final String org = string(buffer.getInt());
+			final String title = string(buffer.getInt());
+			final String image = string(buffer.getInt());
+			final String link = string(buffer.getInt());
+			final int duplicateEdgeCount = buffer.getInt();
+
+			final NodeTable nodes = readNodes();
+
+			final int edgeCount = count();
+			final int[] sources = ints(edgeCount);
+			final int[] targets = ints(edgeCount);
+			final EdgeTable edges = new EdgeTable(edgeCount);
+			for (int i = 0; i < edgeCount; i++) {
+				checkNode(sources[i], nodes);
+				checkNode(targets[i], nodes);
+				edges.add(sources[i], targets[i], buffer.get() != 0);
+			}
+			for (final EdgeAttribute attr : EDGE_ATTRIBUTES) {
+				final int[] refs = ints(edgeCount);
+				for (int i = 0; i < edgeCount; i++) {
+					edges.set(attr, i, string(refs[i]));
+				}
+			}
+			for (int i = 0; i < edgeCount; i++) {
+				edges.setSubtypes(i, list());
+			}
+
+			final NodeTable groups = readNodes();
+			final int[][] groupMembers = new int[groups.size()][];
+			for (int i = 0; i < groupMembers.length; i++) {
+				groupMembers[i] = ints(count());
+				for (final int member : groupMembers[i]) {
+					checkNode(member, nodes);
+				}
+			}
+
+			if (buffer.getInt() != MAGIC) {
+				throw new IOException("Invalid end of pathway snapshot.");
+			}
+			return new PathwayGraph(name, number, org, title, image, link, nodes, edges, groups, groupMembers,
+					duplicateEdgeCount);
+		}
+
+		private final NodeTable readNodes() throws IOException {
+			final int size = count();
+			final NodeTable table = new NodeTable(size);
+			for (int i = 0; i < size; i++) {
+				table.add();
+			}
+			for (final NodeAttribute attr : NODE_ATTRIBUTES) {
+				final int[] refs = ints(size);
+				for (int i = 0; i < size; i++) {
+					table.set(attr, i, string(refs[i]));
+				}
+			}
+			for (int i = 0; i < size; i++) {
+				table.setIds(i, list());
+			}
+			for (int i = 0; i < size; i++) {
+				table.setLabels(i, list());
+			}
+			final double[] x = doubles(size);
+			final double[] y = doubles(size);
+			final double[] width = doubles(size);
+			final double[] height = doubles(size);
+			for (int i = 0; i < size; i++) {
+				table.setGeometry(i, x[i], y[i], width[i], height[i]);
+			}
+			return table;
+		}
+
+		private final String[] list() throws IOException {
+			final int size = buffer.getInt();
+			if (size == NULL) {
+				return null;
+			}
+			if (size < 0) {
+				throw new IOException("Invalid list size: " + size);
+			}
+			final String[] values = new String[size];
+			for (int i = 0; i < size; i++) {
+				values[i] = string(buffer.getInt());
+			}
+			return values;
+		}
+
+		private final String string(final int ref) {
+			return ref == NULL ? null : strings[ref];
+		}
+
+		private final int count() throws IOException {
+			final int count = buffer.getInt();
+			// Every element takes at least 4 bytes.
+			if (count < 0 || count > buffer.remaining() / 4) {
+				throw new IOException("Invalid element count: " + count);
+			}
+			return count;
+		}
+
+		private final int[] ints(final int count) {
+			final int[] values = new int[count];
+			buffer.asIntBuffer().get(values);
+			buffer.position(buffer.position() + count * 4);
+			return values;
+		}
+
+		private final double[] doubles(final int count) {
+			final double[] values = new double[count];
+			buffer.asDoubleBuffer().get(values);
+			buffer.position(buffer.position() + count * 8);
+			return values;
+		}
+
+		private static final void checkNode(final int node, final NodeTable nodes) throws IOException {
+			if (node < 0 || node >= nodes.size()) {
+				throw new IOException("Invalid node index: " + node);
+			}
+		}
+	}
+
+	/**
+	 * Growable byte array for the string table.
+	 */
+	private static final class ByteArrayList {
+
+		private byte[] data = new byte[4096];
+		private int size;
+
+		int size() {
+			return size;
+		}
+
+		void addInt(final int value) {
+			ensure(4);
+			data[size++] = (byte) (value >>> 24);
+			data[size++] = (byte) (value >>> 16);
+			data[size++] = (byte) (value >>> 8);
+			data[size++] = (byte) value;
+		}
+
+		void add(final byte[] bytes) {
+			ensure(bytes.length);
+			System.arraycopy(bytes, 0, data, size, bytes.length);
+			size += bytes.length;
+		}
+
+		void writeTo(final DataOutputStream out) throws IOException {
+			out.write(data, 0, size);
+		}
+
+		private final void ensure(final int extra) {
+			if (size + extra > data.length) {
+				data = Arrays.copyOf(data, Math.max(data.length * 2, size + extra));
+			}
+		}
+	}
+
+	private static final class IntArrayList {
+
+		private int[] data = new int[64];
+		private int size;
+
+		void add(final int value) {
+			if (size == data.length) {
+				data = Arrays.copyOf(data, size * 2);
+			}
+			data[size++] = value;
+		}
+
+		int[] toArray() {
+			return Arrays.copyOf(data, size);
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package org.cytoscape.keggscape.internal.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-graph string pool. Node types, colors, shapes and subtypes are repeated
+ * on most rows of a pathway, so only one instance of each is kept.
+ */
+final class StringPool {
+
+	private final Map<String, String> pool;
+
+	StringPool() {
+		pool = new HashMap<String, String>();
+	}
+
+	StringPool(final StringPool other) {
+		pool = new HashMap<String, String>(other.pool);
+	}
+
+	String intern(final String value) {
+		if (value == null) {
+			return null;
+		}
+		final String pooled = pool.get(value);
+		if (pooled != null) {
+			return pooled;
+		}
+		pool.put(value, value);
+		return value;
+	}
+
+	String[] intern(final String[] values) {
+		if (values == null) {
+			return null;
+		}
+		for (int i = 0; i < values.length; i++) {
+			values[i] = intern(values[i]);
+		}
+		return values;
+	}
+}
@@ -0,0 +1,208 @@
+package org.cytoscape.keggscape.internal.read.kgml;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Read-only ID to name dictionary backed by a memory-mapped, sorted binary
+ * index created by {@link CompoundDictionaryBuilder}.
+ * 
+ * Names are decoded only when looked up, so the heap does not grow with the
+ * size of the dictionary. Lookups use absolute reads on a buffer that is
+ * never modified and are safe from multiple threads.
+ * 
+ * <pre>
+ * int magic
+ * int count
+ * int offsets[count * 2 + 1]   key/value start offsets into the heap
+ * byte heap[]                  UTF-8 keys and values, sorted by key
+ * </pre>
+ */
+public final class CompoundDictionary {
+
+	private static final Logger logger = LoggerFactory.getLogger(CompoundDictionary.class);
+
+	private static final String INDEX_RESOURCE = "compoundNames.idx";
+	private static final String SOURCE_RESOURCE = "compoundNames.txt";
+
+	private static final CompoundDictionary EMPTY = new CompoundDictionary(
+			ByteBuffer.allocate(8).putInt(0, CompoundDictionaryBuilder.MAGIC).putInt(4, 0));
+
+	private final ByteBuffer buffer;
+	private final int count;
+	private final int heapStart;
+
+	// Initialized on first use of getDefault().
+	private static final class DefaultHolder {
+		private static final CompoundDictionary INSTANCE = loadDefault();
+	}
+
+	private CompoundDictionary(final ByteBuffer buffer) {
+		this.buffer = buffer.order(ByteOrder.BIG_ENDIAN);
+		if (buffer.getInt(0) != CompoundDictionaryBuilder.MAGIC) {
+			throw new IllegalArgumentException("Not a compound name index.");
+		}
+		this.count = buffer.getInt(4);
+		this.heapStart = 8 + (count * 2 + 1) * 4;
+	}
+
+	/**
+	 * @return dictionary bundled with the app. Empty if it could not be
+	 *         loaded.
+	 */
+	public static CompoundDictionary getDefault() {
+		return DefaultHolder.INSTANCE;
+	}
+
+	/**
+	 * Map an index file created by {@link CompoundDictionaryBuilder}.
+	 */
+	public static CompoundDictionary open(final File file) throws IOException {
+		final RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			final FileChannel channel = raf.getChannel();
+			// The mapping stays valid after the channel is closed.
+			return new CompoundDictionary(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Invalid compound name index: " + file, e);
+		} finally {
+			raf.close();
+		}
+	}
+
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * @param id
+	 *            KEGG ID with prefix, e.g. {@code cpd:C00001}
+	 * @return first name of the ID, or null if it is not in the dictionary.
+	 */
+	public String get(final String id) {
+		if (id == null) {
+			return null;
+		}
+		final byte[] key = id.getBytes(CompoundDictionaryBuilder.UTF8);
+		int low = 0;
+		int high = count - 1;
+		while (low <= high) {
+			final int mid = (low + high) >>> 1;
+			final int start = offset(mid * 2);
+			final int cmp = compare(start, offset(mid * 2 + 1) - start, key);
+			if (cmp < 0) {
+				low = mid + 1;
+			} else if (cmp > 0) {
+				high = mid - 1;
+			} else {
+				return read(offset(mid * 2 + 1), offset(mid * 2 + 2));
+			}
+		}
+		return null;
+	}
+
+	private final int offset(final int index) {
+		return buffer.getInt(8 + index * 4);
+	}
+
+	private final String read(final int start, final int end) {
+		final byte[] bytes = new byte[end - start];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = buffer.get(heapStart + start + i);
+		}
+		return new String(bytes, CompoundDictionaryBuilder.UTF8);
+	}
+
+	/**
+	 * Compare the stored key at the given heap position with a query key.
+	 */
+	private final int compare(final int start, final int length, final byte[] key) {
+		final int n = Math.min(length, key.length);
+		for (int i = 0; i < n; i++) {
+			final int a = buffer.get(heapStart + start + i) & 0xff;
+			final int b = key[i] & 0xff;
+			if (a != b) {
+				return a - b;
+			}
+		}
+		return length - key.length;
+	}
+
+	private static final CompoundDictionary loadDefault() {
+		final ClassLoader loader = CompoundDictionary.class.getClassLoader();
+		try {
+			final URL index = loader.getResource(INDEX_RESOURCE);
+			if (index != null) {
+				return open(toFile(index));
+			}
+
+			// Index is created by the build. Fall back to the text list, e.g.
+			// when running from an IDE without the build step.
+			final URL source = loader.getResource(SOURCE_RESOURCE);
+			if (source == null) {
+				logger.error("Compound name list is missing.");
+				return EMPTY;
+			}
+			final CompoundDictionaryBuilder builder = new CompoundDictionaryBuilder();
+			final InputStream is = source.openStream();
+			try {
+				builder.addAll(is);
+			} finally {
+				is.close();
+			}
+			final File file = createTempFile();
+			builder.write(file);
+			return open(file);
+		} catch (IOException e) {
+			logger.error("Could not read compound name list.", e);
+			return EMPTY;
+		}
+	}
+
+	/**
+	 * Resources inside a jar or bundle cannot be mapped. Copy them to a
+	 * temporary file first.
+	 */
+	private static final File toFile(final URL url) throws IOException {
+		if ("file".equals(url.getProtocol())) {
+			try {
+				return new File(url.toURI());
+			} catch (URISyntaxException e) {
+				throw new IOException("Invalid resource URL: " + url, e);
+			}
+		}
+
+		final File file = createTempFile();
+		final InputStream is = url.openStream();
+		final OutputStream os = new FileOutputStream(file);
+		try {
+			final byte[] buf = new byte[8192];
+			int n;
+			while ((n = is.read(buf)) != -1) {
+				os.write(buf, 0, n);
+			}
+		} finally {
+			os.close();
+			is.close();
+		}
+		return file;
+	}
+
+	private static final File createTempFile() throws IOException {
+		final File file = File.createTempFile("keggscape-compounds", ".idx");
+		file.deleteOnExit();
+		return file;
+	}
+}
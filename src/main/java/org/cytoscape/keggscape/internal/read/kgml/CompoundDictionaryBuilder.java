@@ -0,0 +1,147 @@
+package org.cytoscape.keggscape.internal.read.kgml;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Converts tab-delimited KEGG name lists into the binary index read by
+ * {@link CompoundDictionary}.
+ * 
+ * Input lines look like {@code cpd:C00002<TAB>ATP; Adenosine 5'-triphosphate}.
+ * Only the first name is kept. Any number of lists (compounds, glycans,
+ * drugs...) can be merged into one index.
+ * 
+ * Runs during the build to create {@code compoundNames.idx}:
+ * 
+ * <pre>
+ * CompoundDictionaryBuilder OUTPUT_FILE INPUT_FILE...
+ * </pre>
+ */
+public class CompoundDictionaryBuilder {
+
+	// Index format version. See CompoundDictionary.
+	static final int MAGIC = 0x4B434E31; // "KCN1"
+
+	static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final String COLUMN_DELIMITER = "\t";
+	private static final String NAME_DELIMITER = "; ";
+
+	private final List<byte[][]> entries = new ArrayList<byte[][]>();
+
+	public static void main(final String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: CompoundDictionaryBuilder OUTPUT_FILE INPUT_FILE...");
+			System.exit(1);
+		}
+
+		final CompoundDictionaryBuilder builder = new CompoundDictionaryBuilder();
+		for (int i = 1; i < args.length; i++) {
+			final InputStream is = new FileInputStream(args[i]);
+			try {
+				builder.addAll(is);
+			} finally {
+				is.close();
+			}
+		}
+		final File out = new File(args[0]);
+		if (out.getParentFile() != null) {
+			out.getParentFile().mkdirs();
+		}
+		builder.write(out);
+	}
+
+	/**
+	 * Add all entries in a tab-delimited list. The stream is not closed.
+	 */
+	public void addAll(final InputStream is) throws IOException {
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(is, UTF8));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			final String[] columns = line.split(COLUMN_DELIMITER);
+			if (columns.length < 2 || columns[0].isEmpty()) {
+				continue;
+			}
+			add(columns[0], columns[1].split(NAME_DELIMITER)[0]);
+		}
+	}
+
+	public void add(final String id, final String name) {
+		entries.add(new byte[][] { id.getBytes(UTF8), name.getBytes(UTF8) });
+	}
+
+	/**
+	 * Write the index. Entries are sorted by ID; for duplicate IDs the last
+	 * added name wins.
+	 */
+	public void write(final File file) throws IOException {
+		final List<byte[][]> sorted = new ArrayList<byte[][]>(entries);
+		// Stable sort keeps insertion order for duplicates.
+		Collections.sort(sorted, new Comparator<byte[][]>() {
+			@Override
+			public int compare(final byte[][] o1, final byte[][] o2) {
+				return CompoundDictionaryBuilder.compare(o1[0], o2[0]);
+			}
+		});
+
+		final List<byte[][]> unique = new ArrayList<byte[][]>(sorted.size());
+		for (final byte[][] entry : sorted) {
+			final int last = unique.size() - 1;
+			if (last >= 0 && compare(unique.get(last)[0], entry[0]) == 0) {
+				unique.set(last, entry);
+			} else {
+				unique.add(entry);
+			}
+		}
+
+		final ByteArrayOutputStream heap = new ByteArrayOutputStream();
+		final int[] offsets = new int[unique.size() * 2 + 1];
+		int i = 0;
+		for (final byte[][] entry : unique) {
+			offsets[i++] = heap.size();
+			heap.write(entry[0]);
+			offsets[i++] = heap.size();
+			heap.write(entry[1]);
+		}
+		offsets[i] = heap.size();
+
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(unique.size());
+			for (final int offset : offsets) {
+				out.writeInt(offset);
+			}
+			heap.writeTo(out);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Unsigned byte order. The index is sorted with this comparison.
+	 */
+	static int compare(final byte[] a, final byte[] b) {
+		final int n = Math.min(a.length, b.length);
+		for (int i = 0; i < n; i++) {
+			final int cmp = (a[i] & 0xff) - (b[i] & 0xff);
+			if (cmp != 0) {
+				return cmp;
+			}
+		}
+		return a.length - b.length;
+	}
+}
@@ -0,0 +1,146 @@
+package org.cytoscape.keggscape.internal.read.kgml;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cytoscape.model.CyColumn;
+import org.cytoscape.model.CyRow;
+import org.cytoscape.model.CyTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Node location and size columns.
+ * 
+ * New networks store geometry in Double columns. Older versions of this app
+ * used String columns, which are converted by {@link #migrate(CyTable)}. Set
+ * the system property {@value #STRING_COLUMNS_PROPERTY} to true to keep
+ * creating String columns.
+ */
+public final class GeometryColumns {
+
+	private static final Logger logger = LoggerFactory.getLogger(GeometryColumns.class);
+
+	public static final String STRING_COLUMNS_PROPERTY = "keggscape.kgml.stringGeometry";
+
+	public static final String[] NAMES = { KeggConstants.KEGG_NODE_X, KeggConstants.KEGG_NODE_Y,
+			KeggConstants.KEGG_NODE_WIDTH, KeggConstants.KEGG_NODE_HEIGHT };
+
+	private GeometryColumns() {
+	}
+
+	/**
+	 * @return type of geometry columns for new networks.
+	 */
+	public static Class<?> getType() {
+		return Boolean.getBoolean(STRING_COLUMNS_PROPERTY) ? String.class : Double.class;
+	}
+
+	public static void create(final CyTable table) {
+		final Class<?> type = getType();
+		for (final String name : NAMES) {
+			table.createColumn(name, type, true);
+		}
+	}
+
+	/**
+	 * Set a geometry value in the type of the existing column. NaN is
+	 * skipped.
+	 */
+	public static void set(final CyRow row, final String column, final double value) {
+		if (Double.isNaN(value)) {
+			return;
+		}
+		final Class<?> type = row.getTable().getColumn(column).getType();
+		if (type == Double.class) {
+			row.set(column, value);
+		} else if (type == Integer.class) {
+			row.set(column, (int) Math.round(value));
+		} else {
+			row.set(column, toText(value));
+		}
+	}
+
+	/**
+	 * KGML coordinates are integers. Keep their original text form.
+	 */
+	private static final String toText(final double value) {
+		if (value == Math.rint(value) && !Double.isInfinite(value)) {
+			return Long.toString((long) value);
+		}
+		return Double.toString(value);
+	}
+
+	/**
+	 * @return true if the table has geometry columns which are not Double.
+	 */
+	public static boolean needsMigration(final CyTable table) {
+		if (Boolean.getBoolean(STRING_COLUMNS_PROPERTY)) {
+			return false;
+		}
+		for (final String name : NAMES) {
+			final CyColumn column = table.getColumn(name);
+			if (column != null && column.getType() != Double.class) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Replace String or Integer geometry columns by Double columns with the
+	 * same values. For shared columns, call this with the shared node table of
+	 * the root network.
+	 * 
+	 * @return false if a column could not be replaced.
+	 */
+	public static boolean migrate(final CyTable table) {
+		if (!needsMigration(table)) {
+			return true;
+		}
+
+		boolean migrated = true;
+		for (final String name : NAMES) {
+			final CyColumn column = table.getColumn(name);
+			if (column == null || column.getType() == Double.class) {
+				continue;
+			}
+			// Shared columns must be converted in the shared table of the root.
+			if (column.isImmutable() || column.getVirtualColumnInfo().isVirtual()) {
+				logger.warn("Could not convert column " + name + " of table " + table.getTitle());
+				migrated = false;
+				continue;
+			}
+
+			final List<CyRow> rows = table.getAllRows();
+			final List<Double> values = new ArrayList<Double>(rows.size());
+			for (final CyRow row : rows) {
+				values.add(toDouble(row.getRaw(name)));
+			}
+
+			table.deleteColumn(name);
+			table.createColumn(name, Double.class, true);
+			for (int i = 0; i < rows.size(); i++) {
+				final Double value = values.get(i);
+				if (value != null) {
+					rows.get(i).set(name, value);
+				}
+			}
+		}
+		return migrated;
+	}
+
+	private static final Double toDouble(final Object value) {
+		if (value instanceof Number) {
+			return ((Number) value).doubleValue();
+		}
+		if (value == null) {
+			return null;
+		}
+		try {
+			return Double.valueOf(value.toString().trim());
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+}
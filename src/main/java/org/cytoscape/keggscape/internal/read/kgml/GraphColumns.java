@@ -0,0 +1,74 @@
+package org.cytoscape.keggscape.internal.read.kgml;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.cytoscape.keggscape.internal.model.EdgeAttribute;
+import org.cytoscape.keggscape.internal.model.NodeAttribute;
+
+/**
+ * Column names of the node and edge attributes of a mapped pathway graph.
+ *
+ * Shared by the network reader and the headless converter, so both write the
+ * same columns. This class does not depend on the Cytoscape API.
+ */
+public final class GraphColumns {
+
+	/**
+	 * Same as CyNetwork.NAME.
+	 */
+	public static final String NAME = "name";
+
+	/**
+	 * Same as CyEdge.INTERACTION.
+	 */
+	public static final String INTERACTION = "interaction";
+
+	/**
+	 * Same as CyRootNetwork.SHARED_NAME. Group names are written here.
+	 */
+	public static final String SHARED_NAME = "shared name";
+
+	// Attributes without column are internal to the graph model.
+	private static final Map<NodeAttribute, String> NODE_COLUMNS = new EnumMap<NodeAttribute, String>(
+			NodeAttribute.class);
+	private static final Map<EdgeAttribute, String> EDGE_COLUMNS = new EnumMap<EdgeAttribute, String>(
+			EdgeAttribute.class);
+
+	static {
+		NODE_COLUMNS.put(NodeAttribute.NAME, NAME);
+		NODE_COLUMNS.put(NodeAttribute.TYPE, KeggConstants.KEGG_NODE_TYPE);
+		NODE_COLUMNS.put(NodeAttribute.LABEL, KeggConstants.KEGG_NODE_LABEL);
+		NODE_COLUMNS.put(NodeAttribute.LABEL_FIRST, KeggConstants.KEGG_NODE_LABEL_LIST_FIRST);
+		NODE_COLUMNS.put(NodeAttribute.LABEL_COLOR, KeggConstants.KEGG_NODE_LABEL_COLOR);
+		NODE_COLUMNS.put(NodeAttribute.FILL_COLOR, KeggConstants.KEGG_NODE_FILL_COLOR);
+		NODE_COLUMNS.put(NodeAttribute.REACTION_ID, KeggConstants.KEGG_NODE_REACTIONID);
+		NODE_COLUMNS.put(NodeAttribute.SHAPE, KeggConstants.KEGG_NODE_SHAPE);
+		NODE_COLUMNS.put(NodeAttribute.LINK, KeggConstants.KEGG_LINK);
+
+		EDGE_COLUMNS.put(EdgeAttribute.NAME, NAME);
+		EDGE_COLUMNS.put(EdgeAttribute.INTERACTION, INTERACTION);
+		EDGE_COLUMNS.put(EdgeAttribute.RELATION_TYPE, KeggConstants.KEGG_RELATION_TYPE);
+		EDGE_COLUMNS.put(EdgeAttribute.REACTION_TYPE, KeggConstants.KEGG_REACTION_TYPE);
+		EDGE_COLUMNS.put(EdgeAttribute.COLOR, KeggConstants.KEGG_EDGE_COLOR);
+		EDGE_COLUMNS.put(EdgeAttribute.COLOR_BG, KeggConstants.KEGG_EDGE_COLOR_BG);
+		EDGE_COLUMNS.put(EdgeAttribute.LABEL, KeggConstants.KEGG_EDGE_LABEL);
+	}
+
+	private GraphColumns() {
+	}
+
+	/**
+	 * @return column of the attribute, or null if it is not written.
+	 */
+	public static String get(final NodeAttribute attr) {
+		return NODE_COLUMNS.get(attr);
+	}
+
+	/**
+	 * @return column of the attribute, or null if it is not written.
+	 */
+	public static String get(final EdgeAttribute attr) {
+		return EDGE_COLUMNS.get(attr);
+	}
+}
@@ -0,0 +1,237 @@
+package org.cytoscape.keggscape.internal.read.kgml;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.cytoscape.keggscape.internal.model.PathwayGraph;
+
+/**
+ * Time, allocated bytes and counts of the phases of one KGML import.
+ *
+ * Phases are measured on the thread which calls {@link #start(Phase)}, one at
+ * a time. Starting a phase ends the previous one. Instances are not thread
+ * safe.
+ */
+public final class ImportMetrics {
+
+	public enum Phase {
+		DOWNLOAD("download"), JAXB_CONTEXT("jaxbContext"), UNMARSHAL("unmarshal"), PARSE("parse"), MAP("map"),
+		NETWORK("network"), GROUPS("groups"), STYLE("style");
+
+		private final String key;
+
+		private Phase(final String key) {
+			this.key = key;
+		}
+
+		/**
+		 * @return name used in logs and summaries.
+		 */
+		public String getKey() {
+			return key;
+		}
+	}
+
+	private static final String THREADING_MBEAN = ManagementFactory.THREAD_MXBEAN_NAME;
+	private static final String[] LONG_SIGNATURE = { long.class.getName() };
+
+	// Allocation counters are a HotSpot extension of the threading MBean.
+	// Call it through the MBean server, so no com.sun.management import is
+	// needed in the bundle. Null if not available.
+	private static volatile ObjectName threadingName;
+	private static volatile boolean allocationChecked;
+
+	private String pathway;
+	private final long[] nanos = new long[Phase.values().length];
+	private final long[] allocated = new long[Phase.values().length];
+	private final boolean[] measured = new boolean[Phase.values().length];
+
+	private Phase current;
+	private long phaseStart;
+	private long allocationStart;
+
+	private long bytes;
+	private int nodes;
+	private int edges;
+	private int groups;
+
+	/**
+	 * @param pathway
+	 *            name of the imported file or pathway, used in logs until the
+	 *            graph is known
+	 */
+	public ImportMetrics(final String pathway) {
+		this.pathway = pathway;
+	}
+
+	/**
+	 * End the current phase, if any, and start measuring the given one. A
+	 * phase started more than once is measured in total.
+	 */
+	public void start(final Phase phase) {
+		stop();
+		current = phase;
+		allocationStart = getAllocatedBytes();
+		phaseStart = System.nanoTime();
+	}
+
+	/**
+	 * End the current phase.
+	 */
+	public void stop() {
+		if (current == null) {
+			return;
+		}
+		final long end = System.nanoTime();
+		final int i = current.ordinal();
+		nanos[i] += end - phaseStart;
+		if (allocationStart >= 0) {
+			allocated[i] += Math.max(0, getAllocatedBytes() - allocationStart);
+		}
+		measured[i] = true;
+		current = null;
+	}
+
+	/**
+	 * Take the pathway ID and the node, edge and group counts from the mapped
+	 * graph.
+	 */
+	public void setGraph(final PathwayGraph graph) {
+		if (graph.getName() != null) {
+			pathway = graph.getName();
+		}
+		nodes = graph.getNodes().size();
+		edges = graph.getEdges().size();
+		groups = graph.getGroups().size();
+	}
+
+	public void setBytes(final long bytes) {
+		this.bytes = bytes;
+	}
+
+	public String getPathway() {
+		return pathway;
+	}
+
+	/**
+	 * @return bytes of KGML read.
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	public int getNodeCount() {
+		return nodes;
+	}
+
+	public int getEdgeCount() {
+		return edges;
+	}
+
+	public int getGroupCount() {
+		return groups;
+	}
+
+	public boolean isMeasured(final Phase phase) {
+		return measured[phase.ordinal()];
+	}
+
+	public long getNanos(final Phase phase) {
+		return nanos[phase.ordinal()];
+	}
+
+	/**
+	 * @return bytes allocated by the importing thread during the phase, or 0
+	 *         if the JVM does not count allocations.
+	 */
+	public long getAllocatedBytes(final Phase phase) {
+		return allocated[phase.ordinal()];
+	}
+
+	public long getTotalNanos() {
+		long total = 0;
+		for (final long phaseNanos : nanos) {
+			total += phaseNanos;
+		}
+		return total;
+	}
+
+	public long getTotalAllocatedBytes() {
+		long total = 0;
+		for (final long phaseBytes : allocated) {
+			total += phaseBytes;
+		}
+		return total;
+	}
+
+	/**
+	 * @return one entry per measured phase, such as "parse=12.3 ms/4096 KB".
+	 */
+	public List<String> getPhaseSummary() {
+		final List<String> summary = new ArrayList<String>();
+		for (final Phase phase : Phase.values()) {
+			if (measured[phase.ordinal()]) {
+				summary.add(String.format("%s=%.1f ms/%d KB", phase.getKey(), nanos[phase.ordinal()] / 1e6,
+						allocated[phase.ordinal()] / 1024));
+			}
+		}
+		return summary;
+	}
+
+	/**
+	 * @return all values as space separated key=value pairs, for logs.
+	 */
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder();
+		builder.append("pathway=").append(pathway).append(" bytes=").append(bytes).append(" nodes=").append(nodes)
+				.append(" edges=").append(edges).append(" groups=").append(groups).append(" totalMs=")
+				.append(getTotalNanos() / 1000000).append(" allocatedBytes=").append(getTotalAllocatedBytes());
+		for (final Phase phase : Phase.values()) {
+			if (measured[phase.ordinal()]) {
+				builder.append(' ').append(phase.getKey()).append("Ms=").append(nanos[phase.ordinal()] / 1000000)
+						.append(' ').append(phase.getKey()).append("Bytes=").append(allocated[phase.ordinal()]);
+			}
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * @return bytes allocated by the current thread so far, or -1 if not
+	 *         supported.
+	 */
+	private static long getAllocatedBytes() {
+		final ObjectName name = getThreadingName();
+		if (name == null) {
+			return -1;
+		}
+		try {
+			final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			final Object value = server.invoke(name, "getThreadAllocatedBytes",
+					new Object[] { Thread.currentThread().getId() }, LONG_SIGNATURE);
+			return value instanceof Long ? (Long) value : -1;
+		} catch (Exception e) {
+			threadingName = null;
+			return -1;
+		}
+	}
+
+	private static ObjectName getThreadingName() {
+		if (!allocationChecked) {
+			try {
+				final ObjectName name = new ObjectName(THREADING_MBEAN);
+				final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+				final Object enabled = server.getAttribute(name, "ThreadAllocatedMemoryEnabled");
+				threadingName = Boolean.TRUE.equals(enabled) ? name : null;
+			} catch (Exception e) {
+				threadingName = null;
+			}
+			allocationChecked = true;
+		}
+		return threadingName;
+	}
+}
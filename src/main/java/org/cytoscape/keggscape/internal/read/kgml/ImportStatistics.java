@@ -0,0 +1,199 @@
+package org.cytoscape.keggscape.internal.read.kgml;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.cytoscape.keggscape.internal.read.kgml.ImportMetrics.Phase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Totals of all KGML imports since the app was started, or since the last
+ * {@link #reset()}.
+ *
+ * Every recorded import is also logged as key=value pairs by the
+ * {@code org.cytoscape.keggscape.metrics} logger. Register the instance with
+ * {@link #register()} to monitor imports with JMX.
+ */
+public class ImportStatistics implements ImportStatisticsMXBean {
+
+	/**
+	 * Name of the logger which receives one line per import.
+	 */
+	public static final String LOGGER_NAME = "org.cytoscape.keggscape.metrics";
+
+	public static final String OBJECT_NAME = "org.cytoscape.keggscape:type=ImportStatistics";
+
+	private static final Logger logger = LoggerFactory.getLogger(LOGGER_NAME);
+
+	private long imports;
+	private long failures;
+	private long bytes;
+	private long nodes;
+	private long edges;
+	private long groups;
+	private long totalNanos;
+	private long maxNanos;
+	private long lastNanos;
+	private String lastImport = "";
+	private final long[] phaseNanos = new long[Phase.values().length];
+	private final long[] phaseAllocated = new long[Phase.values().length];
+
+	private ObjectName registeredName;
+
+	/**
+	 * Add a completed import to the totals and log it.
+	 */
+	public void record(final ImportMetrics metrics) {
+		metrics.stop();
+		final long nanos = metrics.getTotalNanos();
+		synchronized (this) {
+			imports++;
+			bytes += metrics.getBytes();
+			nodes += metrics.getNodeCount();
+			edges += metrics.getEdgeCount();
+			groups += metrics.getGroupCount();
+			totalNanos += nanos;
+			maxNanos = Math.max(maxNanos, nanos);
+			lastNanos = nanos;
+			lastImport = metrics.toString();
+			for (final Phase phase : Phase.values()) {
+				phaseNanos[phase.ordinal()] += metrics.getNanos(phase);
+				phaseAllocated[phase.ordinal()] += metrics.getAllocatedBytes(phase);
+			}
+		}
+		logger.info("KGML import {}", metrics);
+	}
+
+	/**
+	 * Count a failed import and log the phases completed before the error.
+	 */
+	public void recordFailure(final ImportMetrics metrics, final Throwable cause) {
+		metrics.stop();
+		synchronized (this) {
+			failures++;
+		}
+		logger.warn("KGML import failed {} error={}", metrics, String.valueOf(cause));
+	}
+
+	/**
+	 * Register this instance with the platform MBean server. Errors are
+	 * logged, monitoring is optional.
+	 */
+	public synchronized void register() {
+		try {
+			final ObjectName name = new ObjectName(OBJECT_NAME);
+			final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if (server.isRegistered(name)) {
+				// Left over from a previous start of the bundle.
+				server.unregisterMBean(name);
+			}
+			server.registerMBean(this, name);
+			registeredName = name;
+		} catch (Exception e) {
+			logger.warn("Could not register import statistics MBean.", e);
+		}
+	}
+
+	public synchronized void unregister() {
+		if (registeredName == null) {
+			return;
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+		} catch (Exception e) {
+			logger.warn("Could not unregister import statistics MBean.", e);
+		}
+		registeredName = null;
+	}
+
+	@Override
+	public synchronized long getImportCount() {
+		return imports;
+	}
+
+	@Override
+	public synchronized long getFailureCount() {
+		return failures;
+	}
+
+	@Override
+	public synchronized long getTotalBytes() {
+		return bytes;
+	}
+
+	@Override
+	public synchronized long getTotalNodes() {
+		return nodes;
+	}
+
+	@Override
+	public synchronized long getTotalEdges() {
+		return edges;
+	}
+
+	@Override
+	public synchronized long getTotalGroups() {
+		return groups;
+	}
+
+	@Override
+	public synchronized double getMeanImportMillis() {
+		return imports == 0 ? 0 : totalNanos / 1e6 / imports;
+	}
+
+	@Override
+	public synchronized long getMaxImportMillis() {
+		return maxNanos / 1000000;
+	}
+
+	@Override
+	public synchronized long getLastImportMillis() {
+		return lastNanos / 1000000;
+	}
+
+	@Override
+	public synchronized String getLastImport() {
+		return lastImport;
+	}
+
+	@Override
+	public synchronized Map<String, Long> getPhaseMillis() {
+		final Map<String, Long> millis = new LinkedHashMap<String, Long>();
+		for (final Phase phase : Phase.values()) {
+			millis.put(phase.getKey(), phaseNanos[phase.ordinal()] / 1000000);
+		}
+		return millis;
+	}
+
+	@Override
+	public synchronized Map<String, Long> getPhaseAllocatedBytes() {
+		final Map<String, Long> allocated = new LinkedHashMap<String, Long>();
+		for (final Phase phase : Phase.values()) {
+			allocated.put(phase.getKey(), phaseAllocated[phase.ordinal()]);
+		}
+		return allocated;
+	}
+
+	@Override
+	public synchronized void reset() {
+		imports = 0;
+		failures = 0;
+		bytes = 0;
+		nodes = 0;
+		edges = 0;
+		groups = 0;
+		totalNanos = 0;
+		maxNanos = 0;
+		lastNanos = 0;
+		lastImport = "";
+		for (int i = 0; i < phaseNanos.length; i++) {
+			phaseNanos[i] = 0;
+			phaseAllocated[i] = 0;
+		}
+	}
+}
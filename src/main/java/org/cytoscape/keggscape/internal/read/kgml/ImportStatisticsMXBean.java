@@ -0,0 +1,44 @@
+package org.cytoscape.keggscape.internal.read.kgml;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link ImportStatistics}.
+ */
+public interface ImportStatisticsMXBean {
+
+	long getImportCount();
+
+	long getFailureCount();
+
+	long getTotalBytes();
+
+	long getTotalNodes();
+
+	long getTotalEdges();
+
+	long getTotalGroups();
+
+	double getMeanImportMillis();
+
+	long getMaxImportMillis();
+
+	long getLastImportMillis();
+
+	/**
+	 * @return the last successful import as key=value pairs.
+	 */
+	String getLastImport();
+
+	/**
+	 * @return time spent in each phase by all imports, by phase name.
+	 */
+	Map<String, Long> getPhaseMillis();
+
+	/**
+	 * @return bytes allocated in each phase by all imports, by phase name.
+	 */
+	Map<String, Long> getPhaseAllocatedBytes();
+
+	void reset();
+}
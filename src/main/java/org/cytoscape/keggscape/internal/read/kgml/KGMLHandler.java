@@ -0,0 +1,36 @@
+package org.cytoscape.keggscape.internal.read.kgml;
+
+import java.io.IOException;
+
+import org.cytoscape.keggscape.internal.generated.Entry;
+import org.cytoscape.keggscape.internal.generated.Pathway;
+import org.cytoscape.keggscape.internal.generated.Reaction;
+import org.cytoscape.keggscape.internal.generated.Relation;
+
+/**
+ * Callback interface for consumers of KGML elements.
+ *
+ * Elements are delivered in document order: {@link #startPathway(Pathway)}
+ * first, then every entry, relation and reaction, and finally
+ * {@link #endPathway()}.
+ */
+public interface KGMLHandler {
+
+	/**
+	 * Called once when the pathway element is opened. The given object only
+	 * carries the pathway attributes; its child lists are always empty.
+	 */
+	void startPathway(final Pathway pathway);
+
+	void entry(final Entry entry);
+
+	void relation(final Relation relation);
+
+	void reaction(final Reaction reaction);
+
+	/**
+	 * Called once after the last child element of the pathway has been
+	 * delivered.
+	 */
+	void endPathway() throws IOException;
+}
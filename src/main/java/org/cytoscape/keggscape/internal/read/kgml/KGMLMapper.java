@@ -4,10 +4,7 @@ import static org.cytoscape.keggscape.internal.read.kgml.KEGGTags.COMPOUND;
 import static org.cytoscape.keggscape.internal.read.kgml.KEGGTags.GROUP;
 import static org.cytoscape.keggscape.internal.read.kgml.KEGGTags.MAP;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -16,8 +13,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import org.cytoscape.group.CyGroup;
-import org.cytoscape.group.CyGroupFactory;
 import org.cytoscape.keggscape.internal.generated.Component;
 import org.cytoscape.keggscape.internal.generated.Entry;
 import org.cytoscape.keggscape.internal.generated.Graphics;
@@ -27,17 +22,26 @@ import org.cytoscape.keggscape.internal.generated.Reaction;
 import org.cytoscape.keggscape.internal.generated.Relation;
 import org.cytoscape.keggscape.internal.generated.Substrate;
 import org.cytoscape.keggscape.internal.generated.Subtype;
-import org.cytoscape.model.CyEdge;
-import org.cytoscape.model.CyNetwork;
-import org.cytoscape.model.CyNode;
-import org.cytoscape.model.CyRow;
-import org.cytoscape.model.CyTable;
-import org.cytoscape.model.subnetwork.CyRootNetwork;
-import org.cytoscape.model.subnetwork.CySubNetwork;
+import org.cytoscape.keggscape.internal.model.EdgeAttribute;
+import org.cytoscape.keggscape.internal.model.NodeAttribute;
+import org.cytoscape.keggscape.internal.model.PathwayGraph;
+import org.cytoscape.keggscape.internal.model.PathwayGraphBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class KGMLMapper {
+/**
+ * Applies the KEGGscape mapping rules to KGML elements and builds a
+ * {@link PathwayGraph}.
+ *
+ * The mapper is a {@link KGMLHandler}, so it can be fed directly by
+ * {@link KGMLStreamParser}. Entries and reactions are mapped as they arrive.
+ * Relations and group entries are kept until {@link #endPathway()} because
+ * they need all nodes and reaction edges to be in place.
+ *
+ * This class does not depend on Cytoscape. Use
+ * {@link PathwayGraphMaterializer} to create a network from the result.
+ */
+public class KGMLMapper implements KGMLHandler {
 
 	private static final Logger logger = LoggerFactory.getLogger(KGMLMapper.class);
 
@@ -53,28 +57,14 @@ public class KGMLMapper {
 
 	private static final String EMPTY_COLOR_TAG = "none";
 
-	// For building groups
-	private final CyGroupFactory groupFactory;
+	private static final String PLACEHOLDER_NAME = "container";
 
-	private static final Map<String, String> CPD2NAME = new HashMap<String, String>();
-	private static final URL CPD_RESOURCE = KGMLMapper.class.getClassLoader().getResource("compoundNames.txt");
-
-	static {
-		try {
-			final BufferedReader reader = new BufferedReader(new InputStreamReader(CPD_RESOURCE.openStream()));
-			String inputLine;
-			while ((inputLine = reader.readLine()) != null) {
-				String[] columns = inputLine.split("\t");
-				String cid = columns[0];
-				String cname = columns[1].split("; ")[0];
-				CPD2NAME.put(cid, cname);
-			}
-			reader.close();
-		} catch (IOException e) {
-			e.printStackTrace();
-			logger.error("Could not read compound name list.", e);
-		}
-	}
+	/**
+	 * Set this system property to false to map group entries without an
+	 * extra placeholder node. Relations to a group are then connected to all
+	 * of its members.
+	 */
+	public static final String GROUP_PLACEHOLDER_PROPERTY = "keggscape.kgml.groupPlaceholder";
 
 	// Convert relation type to KEGG style edge label.
 	private static final Map<String, String> EDGE_TYPE_TO_LABEL = new HashMap<String, String>();
@@ -96,88 +86,186 @@ public class KGMLMapper {
 		GLOBAL_MAP_ID.add("01110");
 	}
 
-	private final Map<String, CyNode> nodeMap = new HashMap<String, CyNode>();
-	private final List<String> maplinkIds = new ArrayList<String>();
-	private final Set<String> relationNames = new HashSet<String>();
+	// Map name to label color of the map node category in global maps.
+	private static final Map<String, String> GLOBAL_MAP_CATEGORY_COLORS = new HashMap<String, String>();
+
+	static {
+		// First category wins if a name appears more than once.
+		addCategory(KeggConstants.lightBlueMap, "#99CCFF");
+		addCategory(KeggConstants.lightBrownMap, "#DA8E82");
+		addCategory(KeggConstants.blueMap, "#8080F7");
+		addCategory(KeggConstants.pinkMap, "#FFB3CC");
+	}
+
+	private static final void addCategory(final String[] names, final String color) {
+		for (final String name : names) {
+			if (!GLOBAL_MAP_CATEGORY_COLORS.containsKey(name)) {
+				GLOBAL_MAP_CATEGORY_COLORS.put(name, color);
+			}
+		}
+	}
+
+	// Entry ID to node index
+	private final Map<String, Integer> nodeMap = new HashMap<String, Integer>();
+	private final Set<String> maplinkIds = new HashSet<String>();
 	private final Map<String, String> reactionColors = new HashMap<String, String>();
 	private final Map<String, String> reactionBgColors = new HashMap<String, String>();
 
-	private final Pathway pathway;
-	private final CyNetwork network;
+	// Elements which can be mapped only after all entries are available.
+	private final List<Entry> groupEntries = new ArrayList<Entry>();
+	private final List<Relation> relations = new ArrayList<Relation>();
+
+	// Group entry ID to member node indexes, resolved once all entries are in.
+	private Map<String, int[]> groupMembers;
 
-	public KGMLMapper(final Pathway pathway, final CyNetwork network, final CyGroupFactory groupFactory) {
+	private boolean groupPlaceholders = !"false".equalsIgnoreCase(System.getProperty(GROUP_PLACEHOLDER_PROPERTY));
+
+	private Pathway pathway;
+	private boolean isGlobal;
+	private PathwayGraphBuilder builder;
+	private PathwayGraph graph;
+
+	/**
+	 * Create a mapper for an already unmarshalled pathway. Call
+	 * {@link #doMapping()} to run it.
+	 */
+	public KGMLMapper(final Pathway pathway) {
 		this.pathway = pathway;
-		this.network = network;
-		this.groupFactory = groupFactory;
 	}
 
-	public void doMapping() throws IOException {
-		mapNetworkTable(pathway, network);
+	/**
+	 * Create a mapper to be used as a {@link KGMLHandler}.
+	 */
+	public KGMLMapper() {
+		this((Pathway) null);
+	}
+
+	/**
+	 * Copy a mapper which has started a pathway, to run its last mapping
+	 * steps several times. Package-private for the benchmarks.
+	 */
+	KGMLMapper(final KGMLMapper other) {
+		nodeMap.putAll(other.nodeMap);
+		maplinkIds.addAll(other.maplinkIds);
+		reactionColors.putAll(other.reactionColors);
+		reactionBgColors.putAll(other.reactionBgColors);
+		groupEntries.addAll(other.groupEntries);
+		relations.addAll(other.relations);
+		// Resolved members are not modified.
+		groupMembers = other.groupMembers;
+		groupPlaceholders = other.groupPlaceholders;
+		pathway = other.pathway;
+		isGlobal = other.isGlobal;
+		builder = new PathwayGraphBuilder(other.builder);
+	}
+
+	/**
+	 * Select how group entries are mapped. By default, the value of the
+	 * {@link #GROUP_PLACEHOLDER_PROPERTY} system property is used.
+	 * 
+	 * @param groupPlaceholders
+	 *            if true, add a placeholder node for each group. It is a
+	 *            member of the group and the end point of relations to the
+	 *            group.
+	 */
+	public void setGroupPlaceholders(final boolean groupPlaceholders) {
+		this.groupPlaceholders = groupPlaceholders;
+	}
+
+	public boolean isGroupPlaceholders() {
+		return groupPlaceholders;
+	}
 
-		// Test columns exists or not
-		if (network.getDefaultNodeTable().getColumn(KeggConstants.KEGG_NODE_X) == null) {
-			createKeggNodeTable();
-			createKeggEdgeTable();
+	/**
+	 * Map the whole pathway object passed to the constructor.
+	 */
+	public PathwayGraph doMapping() throws IOException {
+		final Pathway source = pathway;
+		startPathway(source);
+		for (final Entry entry : source.getEntry()) {
+			entry(entry);
 		}
+		for (final Relation relation : source.getRelation()) {
+			relation(relation);
+		}
+		for (final Reaction reaction : source.getReaction()) {
+			reaction(reaction);
+		}
+		endPathway();
+		return graph;
+	}
+
+	/**
+	 * @return the mapped graph, or null if the end of the pathway has not
+	 *         been reached yet.
+	 */
+	public PathwayGraph getGraph() {
+		return graph;
+	}
+
+	@Override
+	public void startPathway(final Pathway pathway) {
+		this.pathway = pathway;
+		this.isGlobal = GLOBAL_MAP_ID.contains(pathway.getNumber());
+		this.builder = new PathwayGraphBuilder(pathway.getName(), pathway.getNumber(), pathway.getOrg(),
+				pathway.getTitle(), pathway.getImage(), pathway.getLink());
+	}
 
-		if (GLOBAL_MAP_ID.contains(pathway.getNumber())) {
+	@Override
+	public void entry(final Entry entry) {
+		if (isGlobal) {
 			// This is a global pathway. Needs special handling.
-			mapGlobalEntries();
-			mapGlobalReactions();
+			mapGlobalEntry(entry);
 		} else {
-			mapEntries();
-			mapReactions();
-			mapRelations();
+			mapEntry(entry);
+		}
+	}
 
-			// This should be called here since it requires both nodes and
-			// edges.
-			mapGroups();
-			mapExtraRelations();
+	@Override
+	public void relation(final Relation relation) {
+		// Relations are not used in global maps.
+		if (!isGlobal) {
+			relations.add(relation);
 		}
 	}
 
-	private void createKeggEdgeTable() {
-		network.getDefaultEdgeTable().createColumn(KeggConstants.KEGG_RELATION_TYPE, String.class, true);
-		network.getDefaultEdgeTable().createColumn(KeggConstants.KEGG_REACTION_TYPE, String.class, true);
-		network.getDefaultEdgeTable().createColumn(KeggConstants.KEGG_EDGE_COLOR, String.class, true);
-		network.getDefaultEdgeTable().createColumn(KeggConstants.KEGG_EDGE_COLOR_BG, String.class, true);
-		network.getDefaultEdgeTable().createListColumn(KeggConstants.KEGG_EDGE_SUBTYPES, String.class, true);
-		network.getDefaultEdgeTable().createColumn(KeggConstants.KEGG_EDGE_LABEL, String.class, true);
+	@Override
+	public void reaction(final Reaction reaction) {
+		if (isGlobal) {
+			mapGlobalReaction(reaction);
+		} else {
+			mapReaction(reaction);
+		}
 	}
 
-	private void createKeggNodeTable() {
-		network.getDefaultNodeTable().createColumn(KeggConstants.KEGG_NODE_X, String.class, true);
-		network.getDefaultNodeTable().createColumn(KeggConstants.KEGG_NODE_Y, String.class, true);
-		network.getDefaultNodeTable().createColumn(KeggConstants.KEGG_NODE_WIDTH, String.class, true);
-		network.getDefaultNodeTable().createColumn(KeggConstants.KEGG_NODE_HEIGHT, String.class, true);
-		network.getDefaultNodeTable().createColumn(KeggConstants.KEGG_NODE_LABEL, String.class, true);
-		network.getDefaultNodeTable().createColumn(KeggConstants.KEGG_NODE_LABEL_LIST_FIRST, String.class, true);
-		network.getDefaultNodeTable().createListColumn(KeggConstants.KEGG_NODE_LABEL_LIST, String.class, true);
-		network.getDefaultNodeTable().createListColumn(KeggConstants.KEGG_ID, String.class, true);
-		network.getDefaultNodeTable().createColumn(KeggConstants.KEGG_NODE_LABEL_COLOR, String.class, true);
-		network.getDefaultNodeTable().createColumn(KeggConstants.KEGG_NODE_FILL_COLOR, String.class, true);
-		network.getDefaultNodeTable().createColumn(KeggConstants.KEGG_NODE_REACTIONID, String.class, true);
-		network.getDefaultNodeTable().createColumn(KeggConstants.KEGG_NODE_TYPE, String.class, true);
-		network.getDefaultNodeTable().createColumn(KeggConstants.KEGG_NODE_SHAPE, String.class, true);
+	@Override
+	public void endPathway() throws IOException {
+		if (!isGlobal) {
+			mapRelations();
 
-		network.getDefaultNodeTable().createColumn(KeggConstants.KEGG_LINK, String.class, true);
+			// This should be called here since it requires both nodes and
+			// edges.
+			mapGroups();
+		}
+		graph = builder.build();
+		if (logger.isDebugEnabled()) {
+			logger.debug(pathway.getName() + ": " + graph.getEdges().size() + " edges, "
+					+ graph.getDuplicateEdgeCount() + " duplicate edges skipped.");
+		}
 	}
 
 	private final String getUniqueName(final Entry entry) {
 		return pathway.getName() + ":" + entry.getId();
 	}
 
-	private final void basicNodeMapping(final CyRow row, final Entry entry) {
+	private final void basicNodeMapping(final int node, final Entry entry) {
 		// Add Pathway ID as prefix.
-		row.set(CyNetwork.NAME, getUniqueName(entry));
-		row.set(KeggConstants.KEGG_NODE_REACTIONID, entry.getReaction());
-		row.set(KeggConstants.KEGG_NODE_TYPE, entry.getType());
-
-		if (entry.getLink() != null) {
-			row.set(KeggConstants.KEGG_LINK, entry.getLink());
-		}
-
-		mapIdList(entry.getName(), ID_DELIMITER, row, KeggConstants.KEGG_ID);
+		builder.setNode(node, NodeAttribute.NAME, getUniqueName(entry));
+		builder.setNode(node, NodeAttribute.ENTRY_ID, entry.getId());
+		builder.setNode(node, NodeAttribute.REACTION_ID, entry.getReaction());
+		builder.setNode(node, NodeAttribute.TYPE, entry.getType());
+		builder.setNode(node, NodeAttribute.LINK, entry.getLink());
+		builder.setNodeIds(node, entry.getName().split(ID_DELIMITER));
 
 		final List<Graphics> graphicsList = entry.getGraphics();
 		if (graphicsList == null || graphicsList.isEmpty()) {
@@ -187,30 +275,39 @@ public class KGMLMapper {
 
 		final Graphics graphics = graphicsList.get(0);
 		if (graphics.getName() != null) {
-			mapIdList(graphics.getName(), NAME_DELIMITER, row, KeggConstants.KEGG_NODE_LABEL_LIST);
+			final String[] labels = graphics.getName().split(NAME_DELIMITER);
+			builder.setNodeLabels(node, labels);
+			if (labels.length != 0) {
+				builder.setNode(node, NodeAttribute.LABEL_FIRST, labels[0]);
+			}
 		}
 
 		final String type = graphics.getType();
 		if (type.equals(KEGGTags.LINE.getTag())) {
-			lineMapper(entry, row, graphics);
+			lineMapper(entry, node, graphics);
 		} else {
-			row.set(KeggConstants.KEGG_NODE_X, graphics.getX());
-			row.set(KeggConstants.KEGG_NODE_Y, graphics.getY());
-			row.set(KeggConstants.KEGG_NODE_WIDTH, graphics.getWidth());
-			row.set(KeggConstants.KEGG_NODE_HEIGHT, graphics.getHeight());
-			row.set(KeggConstants.KEGG_NODE_LABEL, graphics.getName());
-			row.set(KeggConstants.KEGG_NODE_SHAPE, graphics.getType());
+			builder.setNodeGeometry(node, toDouble(graphics.getX()), toDouble(graphics.getY()),
+					toDouble(graphics.getWidth()), toDouble(graphics.getHeight()));
+			builder.setNode(node, NodeAttribute.LABEL, graphics.getName());
+			builder.setNode(node, NodeAttribute.SHAPE, graphics.getType());
+		}
+	}
+
+	private static final double toDouble(final String value) {
+		if (value == null) {
+			return Double.NaN;
 		}
+		return Double.parseDouble(value);
 	}
 
 	/**
 	 * Handle polyline node.
-	 * 
+	 *
 	 * @param entry
-	 * @param row
+	 * @param node
 	 * @param g
 	 */
-	private final void lineMapper(final Entry entry, final CyRow row, final Graphics g) {
+	private final void lineMapper(final Entry entry, final int node, final Graphics g) {
 		final String coords = g.getCoords();
 
 		final String lineColor = g.getFgcolor();
@@ -237,8 +334,8 @@ public class KGMLMapper {
 		int y1 = Integer.parseInt(first[1]);
 		int x2 = Integer.parseInt(last[0]);
 		int y2 = Integer.parseInt(last[1]);
-		Integer centerX = null;
-		Integer centerY = null;
+		int centerX;
+		int centerY;
 		if (x1 > x2) {
 			centerX = (x1 - x2) / 2 + x2;
 		} else {
@@ -250,92 +347,105 @@ public class KGMLMapper {
 			centerY = (y2 - y1) / 2 + y1;
 		}
 
-		row.set(KeggConstants.KEGG_NODE_X, centerX.toString());
-		row.set(KeggConstants.KEGG_NODE_Y, centerY.toString());
-		row.set(KeggConstants.KEGG_NODE_WIDTH, "1");
-		row.set(KeggConstants.KEGG_NODE_HEIGHT, "1");
-		row.set(KeggConstants.KEGG_NODE_LABEL, g.getName());
-		row.set(KeggConstants.KEGG_NODE_SHAPE, "circle");
+		builder.setNodeGeometry(node, centerX, centerY, 1, 1);
+		builder.setNode(node, NodeAttribute.LABEL, g.getName());
+		builder.setNode(node, NodeAttribute.SHAPE, "circle");
 
 		// Use label color for nodes
-		row.set(KeggConstants.KEGG_NODE_FILL_COLOR, g.getFgcolor());
+		builder.setNode(node, NodeAttribute.FILL_COLOR, g.getFgcolor());
 	}
 
 	/**
-	 * Create group nodes.
+	 * Resolve the members of all group entries to node indexes, once. The
+	 * placeholder node, if any, is the last member.
 	 */
-	private final void mapGroups() {
-
-		final List<Entry> entries = pathway.getEntry();
-		for (final Entry entry : entries) {
-			final String entryType = entry.getType();
-
-			// Filter to group node only.
-			if (!entryType.equals(GROUP.getTag())) {
-				continue;
-			}
-
+	private final Map<String, int[]> getGroupMembers() {
+		if (groupMembers != null) {
+			return groupMembers;
+		}
+		groupMembers = new HashMap<String, int[]>(groupEntries.size() * 2);
+		for (final Entry entry : groupEntries) {
 			final List<Component> components = entry.getComponent();
 			if (components.isEmpty()) {
 				continue;
 			}
 
-			// Extract members
-			final StringBuilder builder = new StringBuilder();
-			final List<CyNode> nodes = new ArrayList<CyNode>();
+			final Integer placeholder = nodeMap.get(entry.getId());
+			final int[] members = new int[components.size() + (placeholder == null ? 0 : 1)];
+			int count = 0;
 			for (final Component component : components) {
-				final String id = component.getId();
-				final CyNode member = nodeMap.get(id);
+				final Integer member = nodeMap.get(component.getId());
 				if (member != null) {
-					nodes.add(member);
-					// Add to label
-					String label = network.getRow(member).get(KeggConstants.KEGG_NODE_LABEL_LIST_FIRST, String.class);
-					builder.append(label + ", ");
+					members[count++] = member;
 				}
 			}
+			if (placeholder != null) {
+				members[count++] = placeholder;
+			}
+			groupMembers.put(entry.getId(), count == members.length ? members : Arrays.copyOf(members, count));
+		}
+		return groupMembers;
+	}
 
-			nodes.add(nodeMap.get(entry.getId()));
-
-			final CyGroup group = groupFactory.createGroup(network, nodes, null, true);
-			if (group == null) {
+	/**
+	 * Create group nodes. Package-private for the benchmarks.
+	 */
+	final void mapGroups() {
+		final Map<String, int[]> index = getGroupMembers();
+		for (final Entry entry : groupEntries) {
+			final int[] members = index.get(entry.getId());
+			if (members == null) {
 				continue;
 			}
-			final CyRow groupRow = ((CySubNetwork) network).getRootNetwork().getRow(group.getGroupNode(),
-					CyRootNetwork.SHARED_ATTRS);
-
-			String combinedLabel = builder.toString();
-			combinedLabel = combinedLabel.substring(0, combinedLabel.length() - 2);
+			final String entryType = entry.getType();
 
-			groupRow.set(CyRootNetwork.SHARED_NAME, getUniqueName(entry));
-			groupRow.set(KeggConstants.KEGG_NODE_LABEL_LIST_FIRST, combinedLabel);
-			final Graphics graphics = entry.getGraphics().get(0);
-			groupRow.set(KeggConstants.KEGG_NODE_X, graphics.getX());
-			groupRow.set(KeggConstants.KEGG_NODE_Y, graphics.getY());
-			groupRow.set(KeggConstants.KEGG_NODE_WIDTH, graphics.getWidth());
-			groupRow.set(KeggConstants.KEGG_NODE_HEIGHT, graphics.getHeight());
-			groupRow.set(KeggConstants.KEGG_NODE_LABEL, combinedLabel);
-			groupRow.set(KeggConstants.KEGG_NODE_SHAPE, graphics.getType());
-			groupRow.set(KeggConstants.KEGG_NODE_FILL_COLOR, graphics.getBgcolor());
-			groupRow.set(KeggConstants.KEGG_NODE_TYPE, entryType);
+			// Label is the list of member labels, without the placeholder.
+			final int labelCount = nodeMap.containsKey(entry.getId()) ? members.length - 1 : members.length;
+			final StringBuilder labelBuilder = new StringBuilder(labelCount * 8);
+			for (int i = 0; i < labelCount; i++) {
+				if (i != 0) {
+					labelBuilder.append(NAME_DELIMITER);
+				}
+				labelBuilder.append(builder.getNode(members[i], NodeAttribute.LABEL_FIRST));
+			}
 
+			final int group = builder.addGroup(members);
+			final String combinedLabel = labelBuilder.toString();
+
+			builder.setGroup(group, NodeAttribute.NAME, getUniqueName(entry));
+			builder.setGroup(group, NodeAttribute.ENTRY_ID, entry.getId());
+			builder.setGroup(group, NodeAttribute.LABEL_FIRST, combinedLabel);
+			builder.setGroup(group, NodeAttribute.LABEL, combinedLabel);
+			builder.setGroup(group, NodeAttribute.TYPE, entryType);
+
+			final List<Graphics> graphicsList = entry.getGraphics();
+			if (graphicsList.isEmpty() == false) {
+				final Graphics graphics = graphicsList.get(0);
+				builder.setGroupGeometry(group, toDouble(graphics.getX()), toDouble(graphics.getY()),
+						toDouble(graphics.getWidth()), toDouble(graphics.getHeight()));
+				builder.setGroup(group, NodeAttribute.SHAPE, graphics.getType());
+				builder.setGroup(group, NodeAttribute.FILL_COLOR, graphics.getBgcolor());
+			}
 		}
 	}
 
 	private void addPlaceholderNode(final Entry entry) {
 		// Add placeholder node: This is purely for visualization.
+		final List<Graphics> graphicsList = entry.getGraphics();
+		if (graphicsList.isEmpty()) {
+			return;
+		}
 
-		final Graphics graphics = entry.getGraphics().get(0);
-		final CyNode cyNode = network.addNode();
-		final CyRow row = network.getRow(cyNode);
-		row.set(CyNetwork.NAME, "container");
-		row.set(KeggConstants.KEGG_NODE_X, graphics.getX());
-		row.set(KeggConstants.KEGG_NODE_Y, graphics.getY());
-		row.set(KeggConstants.KEGG_NODE_WIDTH, ((Integer) (Integer.parseInt(graphics.getWidth()) + 2)).toString());
-		row.set(KeggConstants.KEGG_NODE_HEIGHT, ((Integer) (Integer.parseInt(graphics.getHeight()) + 2)).toString());
-		row.set(KeggConstants.KEGG_NODE_SHAPE, graphics.getType());
-		row.set(KeggConstants.KEGG_NODE_FILL_COLOR, graphics.getBgcolor());
-		row.set(KeggConstants.KEGG_NODE_TYPE, entry.getType());
-		nodeMap.put(entry.getId(), cyNode);
+		final Graphics graphics = graphicsList.get(0);
+		final int node = builder.addNode();
+		builder.setNode(node, NodeAttribute.NAME, PLACEHOLDER_NAME);
+		builder.setNode(node, NodeAttribute.ENTRY_ID, entry.getId());
+		builder.setNodeGeometry(node, toDouble(graphics.getX()), toDouble(graphics.getY()),
+				toDouble(graphics.getWidth()) + 2, toDouble(graphics.getHeight()) + 2);
+		builder.setNode(node, NodeAttribute.SHAPE, graphics.getType());
+		builder.setNode(node, NodeAttribute.FILL_COLOR, graphics.getBgcolor());
+		builder.setNode(node, NodeAttribute.TYPE, entry.getType());
+		nodeMap.put(entry.getId(), node);
 	}
 
 	/**
@@ -347,39 +457,38 @@ public class KGMLMapper {
 	 * <li>group</li>
 	 * </ul>
 	 */
-	private final void mapEntries() {
-		final List<Entry> entries = pathway.getEntry();
-		for (final Entry entry : entries) {
-			final String entryType = entry.getType();
-			if (entryType == null) {
-				logger.warn("Missing Entry Type: " + entry.getId());
-				continue;
-			}
+	private final void mapEntry(final Entry entry) {
+		final String entryType = entry.getType();
+		if (entryType == null) {
+			logger.warn("Missing Entry Type: " + entry.getId());
+			return;
+		}
 
-			// Ignore group for this round.
-			if (entryType.equals(GROUP.getTag())) {
+		// Group members are handled later in mapGroups.
+		if (entryType.equals(GROUP.getTag())) {
+			if (groupPlaceholders) {
 				addPlaceholderNode(entry);
-				continue;
 			}
+			groupEntries.add(entry);
+			return;
+		}
 
-			if (entryType.equals(MAP.getTag())) {
-				maplinkIds.add(entry.getId());
-			}
+		if (entryType.equals(MAP.getTag())) {
+			maplinkIds.add(entry.getId());
+		}
 
-			final CyNode cyNode = network.addNode();
-			final CyRow row = network.getRow(cyNode);
+		final int node = builder.addNode();
 
-			// Map table data
-			basicNodeMapping(row, entry);
+		// Map table data
+		basicNodeMapping(node, entry);
 
-			// Map Color information
-			mapColor(entry, row);
+		// Map Color information
+		mapColor(entry, node);
 
-			nodeMap.put(entry.getId(), cyNode);
-		}
+		nodeMap.put(entry.getId(), node);
 	}
 
-	private void mapColor(final Entry entry, final CyRow row) {
+	private void mapColor(final Entry entry, final int node) {
 
 		// Filter invalid entry
 		final List<Graphics> graphicsList = entry.getGraphics();
@@ -393,9 +502,9 @@ public class KGMLMapper {
 		// Set text color column.
 		final String fgColor = graphics.getFgcolor();
 		if (fgColor == null || fgColor.equals("none")) {
-			row.set(KeggConstants.KEGG_NODE_LABEL_COLOR, DEF_TEXT_COLOR);
+			builder.setNode(node, NodeAttribute.LABEL_COLOR, DEF_TEXT_COLOR);
 		} else {
-			row.set(KeggConstants.KEGG_NODE_LABEL_COLOR, fgColor);
+			builder.setNode(node, NodeAttribute.LABEL_COLOR, fgColor);
 		}
 
 		String fillColor = graphics.getBgcolor();
@@ -405,84 +514,74 @@ public class KGMLMapper {
 
 		final String name = graphics.getName();
 		if (name != null && name.startsWith("TITLE")) {
-			row.set(KeggConstants.KEGG_NODE_FILL_COLOR, TITLE_COLOR);
+			builder.setNode(node, NodeAttribute.FILL_COLOR, TITLE_COLOR);
 		} else if (entry.getType().equals(MAP.getTag())) {
-			row.set(KeggConstants.KEGG_NODE_FILL_COLOR, MAP_COLOR);
+			builder.setNode(node, NodeAttribute.FILL_COLOR, MAP_COLOR);
 		} else if (entry.getType().equals(COMPOUND.getTag())) {
-			row.set(KeggConstants.KEGG_NODE_LABEL_LIST_FIRST,
-					CPD2NAME.get(row.get(KeggConstants.KEGG_ID, List.class).get(0)));
-			row.set(KeggConstants.KEGG_NODE_FILL_COLOR, fillColor);
+			builder.setNode(node, NodeAttribute.LABEL_FIRST, getCompoundName(entry));
+			builder.setNode(node, NodeAttribute.FILL_COLOR, fillColor);
 		} else {
-			row.set(KeggConstants.KEGG_NODE_FILL_COLOR, fillColor);
+			builder.setNode(node, NodeAttribute.FILL_COLOR, fillColor);
 		}
 	}
 
+	private static final String getCompoundName(final Entry entry) {
+		return CompoundDictionary.getDefault().get(entry.getName().split(ID_DELIMITER)[0]);
+	}
+
 	/**
-	 * Map nodes in Global Map.
+	 * Map a node in Global Map.
 	 */
-	private final void mapGlobalEntries() {
-		final List<Entry> entries = pathway.getEntry();
+	private final void mapGlobalEntry(final Entry entry) {
+		final int node = builder.addNode();
+		basicNodeMapping(node, entry);
 
-		for (final Entry entry : entries) {
-			final CyNode cyNode = network.addNode();
-			final CyRow row = network.getRow(cyNode);
-			basicNodeMapping(row, entry);
+		final Graphics graphics = entry.getGraphics().get(0);
+		if (entry.getType().equals(KEGGTags.MAP.getTag())) {
+			updateGlobalMaps(node, entry, graphics);
+		} else {
+			mapGlobalMapColor(node, entry, graphics);
+		}
 
-			final Graphics graphics = entry.getGraphics().get(0);
-			if (entry.getType().equals(KEGGTags.MAP.getTag())) {
-				updateGlobalMaps(row, entry, graphics);
-			} else {
-				mapGlobalMapColor(row, entry, graphics);
-			}
+		if (entry.getType().equals(KEGGTags.COMPOUND.getTag())) {
+			builder.setNode(node, NodeAttribute.LABEL_FIRST, getCompoundName(entry));
+		}
+		nodeMap.put(entry.getId(), node);
 
-			if (entry.getType().equals(KEGGTags.COMPOUND.getTag())) {
-				row.set(KeggConstants.KEGG_NODE_LABEL_LIST_FIRST,
-						CPD2NAME.get(row.get(KeggConstants.KEGG_ID, List.class).get(0)));
-			}
-			nodeMap.put(entry.getId(), cyNode);
-			
-			if (entry.getType().equals(KEGGTags.GENE.getTag())) {
-				reactionColors.put(entry.getId(), graphics.getFgcolor());
-				reactionBgColors.put(entry.getId(), graphics.getBgcolor());
-			}
+		if (entry.getType().equals(KEGGTags.GENE.getTag())) {
+			reactionColors.put(entry.getId(), graphics.getFgcolor());
+			reactionBgColors.put(entry.getId(), graphics.getBgcolor());
 		}
-		//System.out.println(reactionColors);
 	}
 
-	private final void mapGlobalMapColor(final CyRow row, final Entry entry, final Graphics graphics) {
+	private final void mapGlobalMapColor(final int node, final Entry entry, final Graphics graphics) {
 		String background = graphics.getBgcolor();
 		String textColor = graphics.getFgcolor();
 
 		if (textColor.equals(EMPTY_COLOR_TAG) == false) {
-			row.set(KeggConstants.KEGG_NODE_LABEL_COLOR, textColor);
+			builder.setNode(node, NodeAttribute.LABEL_COLOR, textColor);
 		}
 		if (background.equals(EMPTY_COLOR_TAG) == false) {
-			row.set(KeggConstants.KEGG_NODE_FILL_COLOR, background);
-		}
-	}
-
-	// TODO: is special handling necessary?
-	private final void updateGlobalMaps(final CyRow row, final Entry entry, final Graphics graphics) {
-		if (Arrays.asList(KeggConstants.lightBlueMap).contains(graphics.getName())) {
-			row.set(KeggConstants.KEGG_NODE_LABEL_COLOR, "#99CCFF");
-			row.set(KeggConstants.KEGG_NODE_FILL_COLOR, "#FFFFFF");
-		} else if (Arrays.asList(KeggConstants.lightBrownMap).contains(graphics.getName())) {
-			row.set(KeggConstants.KEGG_NODE_LABEL_COLOR, "#DA8E82");
-			row.set(KeggConstants.KEGG_NODE_FILL_COLOR, "#FFFFFF");
-		} else if (Arrays.asList(KeggConstants.blueMap).contains(graphics.getName())) {
-			row.set(KeggConstants.KEGG_NODE_LABEL_COLOR, "#8080F7");
-			row.set(KeggConstants.KEGG_NODE_FILL_COLOR, "#FFFFFF");
-		} else if (Arrays.asList(KeggConstants.blueMap).contains(graphics.getName())) {
-			row.set(KeggConstants.KEGG_NODE_LABEL_COLOR, "#FFB3CC");
-			row.set(KeggConstants.KEGG_NODE_FILL_COLOR, "#FFFFFF");
+			builder.setNode(node, NodeAttribute.FILL_COLOR, background);
+		}
+	}
+
+	private final void updateGlobalMaps(final int node, final Entry entry, final Graphics graphics) {
+		final String labelColor = GLOBAL_MAP_CATEGORY_COLORS.get(graphics.getName());
+		if (labelColor != null) {
+			builder.setNode(node, NodeAttribute.LABEL_COLOR, labelColor);
+			builder.setNode(node, NodeAttribute.FILL_COLOR, "#FFFFFF");
 		} else {
 			// Regular map
-			mapGlobalMapColor(row, entry, graphics);
+			mapGlobalMapColor(node, entry, graphics);
 		}
 	}
 
-	private final void mapRelations() {
-		final List<Relation> relations = pathway.getRelation();
+	/**
+	 * Create edges for the collected relations. Package-private for the
+	 * benchmarks.
+	 */
+	final void mapRelations() {
 		for (final Relation relation : relations) {
 			final String relationType = relation.getType();
 
@@ -491,88 +590,60 @@ public class KGMLMapper {
 			} else if (relationType.equals("ECrel")) {
 				mapECrel(relation);
 			} else {
-				final CyNode sourceNode = nodeMap.get(relation.getEntry1());
-				final CyNode targetNode = nodeMap.get(relation.getEntry2());
-				if (sourceNode == null || targetNode == null) {
-					continue;
-				} else if (network.getNode(sourceNode.getSUID()) == null
-						|| network.getNode(targetNode.getSUID()) == null) {
-					continue;
+				final Integer sourceNode = nodeMap.get(relation.getEntry1());
+				final Integer targetNode = nodeMap.get(relation.getEntry2());
+				if (sourceNode != null && targetNode != null) {
+					final int newEdge = builder.addEdge(sourceNode, targetNode, true);
+					mapRelationTableData(newEdge, relation);
+				} else if (!groupPlaceholders) {
+					mapGroupRelation(relation, sourceNode, targetNode);
 				}
-
-				final CyEdge newEdge = network.addEdge(sourceNode, targetNode, true);
-				mapRelationTableData(newEdge, relation);
 			}
 		}
 	}
 
 	private final void mapECrel(final Relation ecrel) {
-		final String gene1 = ecrel.getEntry1();
-		final String gene2 = ecrel.getEntry2();
-		final CyNode sourceNode = nodeMap.get(gene1);
-		final CyNode targetNode = nodeMap.get(gene2);
+		final Integer sourceNode = nodeMap.get(ecrel.getEntry1());
+		final Integer targetNode = nodeMap.get(ecrel.getEntry2());
 		if (sourceNode == null || targetNode == null) {
 			return;
-		} else if (network.getNode(sourceNode.getSUID()) == null || network.getNode(targetNode.getSUID()) == null) {
-			return;
 		}
-		
+
 		final List<Subtype> subtypes = ecrel.getSubtype();
-		for(final Subtype sub: subtypes) {
+		for (final Subtype sub : subtypes) {
 			final String name = sub.getName();
-			if(name.equals(KEGGTags.COMPOUND.getTag())) {
-				final CyNode compoundNode = nodeMap.get(sub.getValue());
-				if (network.getNode(sourceNode.getSUID()) == null ) {
+			if (name.equals(KEGGTags.COMPOUND.getTag())) {
+				final Integer compoundNode = nodeMap.get(sub.getValue());
+				if (compoundNode == null) {
 					continue;
 				}
-				
-				final List<CyEdge> existingEdges1 = network.getConnectingEdgeList(sourceNode, compoundNode, CyEdge.Type.ANY);
-				if(existingEdges1.isEmpty()) {
-					final CyEdge newEdge1 = network.addEdge(sourceNode, compoundNode, true);
+
+				final int newEdge1 = builder.addEdgeIfAbsent(sourceNode, compoundNode, true);
+				if (newEdge1 >= 0) {
 					mapRelationTableData(newEdge1, ecrel);
 				}
-				final List<CyEdge> existingEdges2 = network.getConnectingEdgeList(targetNode, compoundNode, CyEdge.Type.ANY);
-				if(existingEdges2.isEmpty()) {
-					final CyEdge newEdge2 = network.addEdge(compoundNode,targetNode, true);
+				final int newEdge2 = builder.addEdgeIfAbsent(compoundNode, targetNode, true);
+				if (newEdge2 >= 0) {
 					mapRelationTableData(newEdge2, ecrel);
 				}
 			}
 		}
 	}
 
-	private final void mapExtraRelations() {
-		final List<Relation> relations = pathway.getRelation();
-		for (final Relation relation : relations) {
-			if (relationNames.contains(getRelationName(relation.getEntry1(), relation.getEntry2(), relation.getType()))
-					|| relation.getType().equals("maplink") || relation.getType().equals("ECrel")) {
-				continue;
-			}
-
-			final CyNode sourceNode = nodeMap.get(relation.getEntry1());
-			final CyNode targetNode = nodeMap.get(relation.getEntry2());
-			if (sourceNode == null || targetNode == null) {
-				continue;
-			}
-			final CyEdge newEdge = network.addEdge(sourceNode, targetNode, true);
-			mapRelationTableData(newEdge, relation);
-		}
-	}
-
 	private final String getRelationName(String entry1, String entry2, String type) {
 		return entry1 + " (" + type + ") " + entry2;
 	}
 
 	private final void mapMaplinks(final Relation relation) {
-		final List<String> subtypes = new ArrayList<String>();
-		subtypes.add(relation.getType());
+		final String[] subtypes = new String[] { relation.getType() };
 
 		for (Subtype subtype : relation.getSubtype()) {
-			final CyNode cpdNode = nodeMap.get(subtype.getValue());
-			if(cpdNode == null) {
+			final Integer cpdNode = nodeMap.get(subtype.getValue());
+			if (cpdNode == null) {
 				continue;
 			}
-			
-			CyNode pathwayNode = null;
+
+			Integer pathwayNode = null;
 			if (maplinkIds.contains(relation.getEntry1())) {
 				pathwayNode = nodeMap.get(relation.getEntry1());
 			} else if (maplinkIds.contains(relation.getEntry2())) {
@@ -581,154 +652,130 @@ public class KGMLMapper {
 			if (pathwayNode == null) {
 				continue;
 			}
-			if (network.getNode(cpdNode.getSUID()) == null || network.getNode(pathwayNode.getSUID()) == null) {
-				continue;
+			final int newEdge = builder.addEdgeIfAbsent(cpdNode, pathwayNode, false);
+			if (newEdge >= 0) {
+				builder.setEdge(newEdge, EdgeAttribute.RELATION_TYPE, relation.getType());
+				builder.setEdge(newEdge, EdgeAttribute.INTERACTION, relation.getType());
+				builder.setEdgeSubtypes(newEdge, subtypes.clone());
 			}
-			final List<CyEdge> existingEdges = network.getConnectingEdgeList(cpdNode, pathwayNode, CyEdge.Type.ANY);
-			if (existingEdges.isEmpty()) {
-				final CyEdge newEdge = network.addEdge(cpdNode, pathwayNode, false);
-				network.getRow(newEdge).set(KeggConstants.KEGG_RELATION_TYPE, relation.getType());
-				network.getRow(newEdge).set(CyEdge.INTERACTION, relation.getType());
-				network.getRow(newEdge).set(KeggConstants.KEGG_EDGE_SUBTYPES, subtypes);
+		}
+	}
+
+	/**
+	 * Without placeholder nodes, a relation to a group is mapped to one edge
+	 * for each member of the group.
+	 */
+	private final void mapGroupRelation(final Relation relation, final Integer sourceNode, final Integer targetNode) {
+		final int[] sources = sourceNode != null ? new int[] { sourceNode }
+				: getGroupMembers().get(relation.getEntry1());
+		final int[] targets = targetNode != null ? new int[] { targetNode }
+				: getGroupMembers().get(relation.getEntry2());
+		if (sources == null || targets == null) {
+			return;
+		}
+		for (final int source : sources) {
+			for (final int target : targets) {
+				if (source != target) {
+					final int newEdge = builder.addEdgeIfAbsent(source, target, true);
+					if (newEdge != -1) {
+						mapRelationTableData(newEdge, relation);
+					}
+				}
 			}
 		}
 	}
 
-	private void mapRelationTableData(final CyEdge edge, Relation relation) {
-		final CyRow row = network.getRow(edge);
+	private void mapRelationTableData(final int edge, Relation relation) {
 		final String type = relation.getType();
-		row.set(KeggConstants.KEGG_RELATION_TYPE, type);
-		row.set(CyEdge.INTERACTION, type);
+		builder.setEdge(edge, EdgeAttribute.RELATION_TYPE, type);
+		builder.setEdge(edge, EdgeAttribute.INTERACTION, type);
 		final String relationName = getRelationName(relation.getEntry1(), relation.getEntry2(), type);
-		row.set(CyNetwork.NAME, relationName);
-		mapSubtypes(relation, row);
-
-		relationNames.add(relationName);
+		builder.setEdge(edge, EdgeAttribute.NAME, relationName);
+		mapSubtypes(relation, edge);
 	}
 
-	private final void mapSubtypes(Relation relation, final CyRow row) {
-		final List<String> subtypes = new ArrayList<String>();
-		final StringBuilder builder = new StringBuilder();
-		for (Subtype subtype : relation.getSubtype()) {
-			subtypes.add(subtype.getName());
-			String label = subtype.getName();
+	private final void mapSubtypes(Relation relation, final int edge) {
+		final List<Subtype> subtypeList = relation.getSubtype();
+		final String[] subtypes = new String[subtypeList.size()];
+		final StringBuilder labelBuilder = new StringBuilder();
+		for (int i = 0; i < subtypes.length; i++) {
+			final String label = subtypeList.get(i).getName();
+			subtypes[i] = label;
 			final String newLabel = EDGE_TYPE_TO_LABEL.get(label);
 			if (newLabel != null) {
-				builder.append(newLabel + " ");
+				labelBuilder.append(newLabel + " ");
 			}
 		}
 
-		row.set(KeggConstants.KEGG_EDGE_SUBTYPES, subtypes);
-		row.set(KeggConstants.KEGG_EDGE_LABEL, builder.toString());
+		builder.setEdgeSubtypes(edge, subtypes);
+		builder.setEdge(edge, EdgeAttribute.LABEL, labelBuilder.toString());
 	}
 
 	/**
 	 * Reaction consists of two edges.
 	 */
-	private void mapReactions() {
-		final List<Reaction> reactions = pathway.getReaction();
-		for (final Reaction reaction : reactions) {
-			final CyNode reactionNode = nodeMap.get(reaction.getId());
-			final List<String> subtypes = new ArrayList<String>();
-			subtypes.add(reaction.getType());
-
-			final List<Substrate> substrates = reaction.getSubstrate();
-			for (final Substrate substrate : substrates) {
-				final CyNode sourceNode = nodeMap.get(substrate.getId());
-				final CyEdge newEdge = network.addEdge(sourceNode, reactionNode, true);
-				mapReactionTable(network.getRow(newEdge), reaction, subtypes);
-				;
+	private void mapReaction(final Reaction reaction) {
+		final Integer reactionNode = nodeMap.get(reaction.getId());
+		if (reactionNode == null) {
+			logger.warn("Missing reaction entry: " + reaction.getId());
+			return;
+		}
 
+		final List<Substrate> substrates = reaction.getSubstrate();
+		for (final Substrate substrate : substrates) {
+			final Integer sourceNode = nodeMap.get(substrate.getId());
+			if (sourceNode != null) {
+				final int newEdge = builder.addEdge(sourceNode, reactionNode, true);
+				mapReactionTable(newEdge, reaction);
 			}
-			final List<Product> products = reaction.getProduct();
-			for (final Product product : products) {
-				final CyNode targetNode = nodeMap.get(product.getId());
-				final CyEdge newEdge = network.addEdge(reactionNode, targetNode, true);
-				mapReactionTable(network.getRow(newEdge), reaction, subtypes);
-				;
+		}
+		final List<Product> products = reaction.getProduct();
+		for (final Product product : products) {
+			final Integer targetNode = nodeMap.get(product.getId());
+			if (targetNode != null) {
+				final int newEdge = builder.addEdge(reactionNode, targetNode, true);
+				mapReactionTable(newEdge, reaction);
 			}
 		}
 	}
 
-	private final void mapReactionTable(final CyRow row, Reaction reaction, List<String> subtypes) {
-		row.set(KeggConstants.KEGG_REACTION_TYPE, reaction.getType());
-		row.set(CyEdge.INTERACTION, reaction.getType());
-		row.set(CyNetwork.NAME, reaction.getName());
-		row.set(KeggConstants.KEGG_EDGE_SUBTYPES, subtypes);
-		final String color = reactionColors.get(reaction.getName());
-		if (color != null) {
-			row.set(KeggConstants.KEGG_EDGE_COLOR, color);
-		}
+	private final void mapReactionTable(final int edge, Reaction reaction) {
+		builder.setEdge(edge, EdgeAttribute.REACTION_TYPE, reaction.getType());
+		builder.setEdge(edge, EdgeAttribute.INTERACTION, reaction.getType());
+		builder.setEdge(edge, EdgeAttribute.NAME, reaction.getName());
+		builder.setEdgeSubtypes(edge, new String[] { reaction.getType() });
+		builder.setEdge(edge, EdgeAttribute.COLOR, reactionColors.get(reaction.getName()));
 	}
 
-	private final void mapGlobalReactions() {
-		final List<Reaction> reactions = pathway.getReaction();
-		
-		for (final Reaction reaction : reactions) {
-			final List<Substrate> substrates = reaction.getSubstrate();
-			final List<Product> products = reaction.getProduct();
+	private final void mapGlobalReaction(final Reaction reaction) {
+		final List<Substrate> substrates = reaction.getSubstrate();
+		final List<Product> products = reaction.getProduct();
 
-			for (final Substrate substrate : substrates) {
-				final CyNode substrateNode = nodeMap.get(substrate.getId());
-				for (final Product product : products) {
-					final CyNode productNode = nodeMap.get(product.getId());
-					final CyEdge newEdge = network.addEdge(substrateNode, productNode, true);
-					mapReactionEdgeData(newEdge, network.getRow(newEdge), reaction);
+		for (final Substrate substrate : substrates) {
+			final Integer substrateNode = nodeMap.get(substrate.getId());
+			if (substrateNode == null) {
+				continue;
+			}
+			for (final Product product : products) {
+				final Integer productNode = nodeMap.get(product.getId());
+				if (productNode == null) {
+					continue;
 				}
+				final int newEdge = builder.addEdge(substrateNode, productNode, true);
+				mapReactionEdgeData(newEdge, reaction);
 			}
 		}
 	}
 
-	private final void mapReactionEdgeData(final CyEdge edge, final CyRow row, Reaction reaction) {
-		final CyNode source = edge.getSource();
-		//System.out.println(reactionColors.get(reaction.getId()));
-		row.set(KeggConstants.KEGG_EDGE_COLOR,	reactionColors.get(reaction.getId()));
-		row.set(KeggConstants.KEGG_EDGE_COLOR_BG, reactionBgColors.get(reaction.getId()));
-		row.set(KeggConstants.KEGG_REACTION_TYPE, reaction.getType());
-		row.set(CyEdge.INTERACTION, reaction.getType());
-		row.set(CyNetwork.NAME, reaction.getName());
-	}
-
-	private final void mapIdList(final String idListText, final String delimiter, final CyRow row,
-			final String columnName) {
-		final List<String> idList = new ArrayList<String>();
-		final String[] ids = idListText.split(delimiter);
-		for (String id : ids) {
-			idList.add(id);
-		}
-		row.set(columnName, idList);
-		if (ids.length != 0 && row.getTable().getColumn(columnName + "_FIRST") != null) {
-			row.set(columnName + "_FIRST", ids[0]);
-		}
-	}
-
-	private final void mapNetworkTable(final Pathway pathway, final CyNetwork network) {
-		final String pathwayName = pathway.getName();
-		final String linkToKegg = pathway.getLink();
-		final String linkToImage = pathway.getImage();
-		final String pathwayTitle = pathway.getTitle();
-		final String organism = pathway.getOrg();
-
-		final CyRow networkRow = network.getRow(network);
-
-		// Make more usable name
-		networkRow.set(CyNetwork.NAME, pathwayTitle + " [" + organism + pathway.getNumber() + "]");
-
-		final CyTable netTable = network.getDefaultNetworkTable();
-		if (netTable.getColumn(KeggConstants.KEGG_PATHWAY_ID) == null) {
-			netTable.createColumn(KeggConstants.KEGG_PATHWAY_ID, String.class, true);
-			netTable.createColumn(KeggConstants.KEGG_PATHWAY_IMAGE, String.class, true);
-			netTable.createColumn(KeggConstants.KEGG_PATHWAY_LINK, String.class, true);
-			netTable.createColumn(KeggConstants.KEGG_PATHWAY_ORG, String.class, true);
-		}
-
-		networkRow.set(KeggConstants.KEGG_PATHWAY_LINK, linkToKegg);
-		networkRow.set(KeggConstants.KEGG_PATHWAY_IMAGE, linkToImage);
-		networkRow.set(KeggConstants.KEGG_PATHWAY_ID, pathwayName);
-		networkRow.set(KeggConstants.KEGG_PATHWAY_ORG, organism);
+	private final void mapReactionEdgeData(final int edge, Reaction reaction) {
+		builder.setEdge(edge, EdgeAttribute.COLOR, reactionColors.get(reaction.getId()));
+		builder.setEdge(edge, EdgeAttribute.COLOR_BG, reactionBgColors.get(reaction.getId()));
+		builder.setEdge(edge, EdgeAttribute.REACTION_TYPE, reaction.getType());
+		builder.setEdge(edge, EdgeAttribute.INTERACTION, reaction.getType());
+		builder.setEdge(edge, EdgeAttribute.NAME, reaction.getName());
 	}
 
 	protected String getPathwayId() {
 		return pathway.getNumber();
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,180 @@
+package org.cytoscape.keggscape.internal.read.kgml;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.cytoscape.keggscape.internal.generated.Alt;
+import org.cytoscape.keggscape.internal.generated.Component;
+import org.cytoscape.keggscape.internal.generated.Entry;
+import org.cytoscape.keggscape.internal.generated.Graphics;
+import org.cytoscape.keggscape.internal.generated.Pathway;
+import org.cytoscape.keggscape.internal.generated.Product;
+import org.cytoscape.keggscape.internal.generated.Reaction;
+import org.cytoscape.keggscape.internal.generated.Relation;
+import org.cytoscape.keggscape.internal.generated.Substrate;
+import org.cytoscape.keggscape.internal.generated.Subtype;
+
+/**
+ * Single-pass StAX parser for KGML.
+ *
+ * Only the element currently being read is kept in memory. Each entry,
+ * relation and reaction is handed to the {@link KGMLHandler} as soon as its
+ * end tag has been read, so the full {@link Pathway} tree is never built.
+ */
+public class KGMLStreamParser {
+
+	private static final String PATHWAY = "pathway";
+	private static final String ENTRY = "entry";
+	private static final String GRAPHICS = "graphics";
+	private static final String COMPONENT = "component";
+	private static final String RELATION = "relation";
+	private static final String SUBTYPE = "subtype";
+	private static final String REACTION = "reaction";
+	private static final String SUBSTRATE = "substrate";
+	private static final String PRODUCT = "product";
+	private static final String ALT = "alt";
+
+	private static final XMLInputFactory FACTORY = createFactory();
+
+	private static final XMLInputFactory createFactory() {
+		final XMLInputFactory factory = XMLInputFactory.newInstance();
+		// KGML files reference the DTD on www.kegg.jp. Do not fetch it.
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+		return factory;
+	}
+
+	public void parse(final InputStream is, final KGMLHandler handler) throws IOException {
+		XMLStreamReader reader = null;
+		try {
+			reader = FACTORY.createXMLStreamReader(is);
+			parse(reader, handler);
+		} catch (XMLStreamException e) {
+			throw new IOException("Could not parse KGML stream.", e);
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (XMLStreamException e) {
+					// Nothing to do here.
+				}
+			}
+		}
+	}
+
+	private final void parse(final XMLStreamReader reader, final KGMLHandler handler)
+			throws XMLStreamException, IOException {
+		Entry entry = null;
+		Relation relation = null;
+		Reaction reaction = null;
+		Substrate substrate = null;
+		Product product = null;
+
+		while (reader.hasNext()) {
+			final int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				final String tag = reader.getLocalName();
+				if (tag.equals(ENTRY)) {
+					entry = new Entry();
+					entry.setId(attr(reader, "id"));
+					entry.setName(attr(reader, "name"));
+					entry.setType(attr(reader, "type"));
+					entry.setLink(attr(reader, "link"));
+					entry.setReaction(attr(reader, "reaction"));
+				} else if (tag.equals(GRAPHICS) && entry != null) {
+					entry.getGraphics().add(readGraphics(reader));
+				} else if (tag.equals(COMPONENT) && entry != null) {
+					final Component component = new Component();
+					component.setId(attr(reader, "id"));
+					entry.getComponent().add(component);
+				} else if (tag.equals(RELATION)) {
+					relation = new Relation();
+					relation.setEntry1(attr(reader, "entry1"));
+					relation.setEntry2(attr(reader, "entry2"));
+					relation.setType(attr(reader, "type"));
+				} else if (tag.equals(SUBTYPE) && relation != null) {
+					final Subtype subtype = new Subtype();
+					subtype.setName(attr(reader, "name"));
+					subtype.setValue(attr(reader, "value"));
+					relation.getSubtype().add(subtype);
+				} else if (tag.equals(REACTION)) {
+					reaction = new Reaction();
+					reaction.setId(attr(reader, "id"));
+					reaction.setName(attr(reader, "name"));
+					reaction.setType(attr(reader, "type"));
+				} else if (tag.equals(SUBSTRATE) && reaction != null) {
+					substrate = new Substrate();
+					substrate.setId(attr(reader, "id"));
+					substrate.setName(attr(reader, "name"));
+					reaction.getSubstrate().add(substrate);
+				} else if (tag.equals(PRODUCT) && reaction != null) {
+					product = new Product();
+					product.setId(attr(reader, "id"));
+					product.setName(attr(reader, "name"));
+					reaction.getProduct().add(product);
+				} else if (tag.equals(ALT)) {
+					final Alt alt = new Alt();
+					alt.setName(attr(reader, "name"));
+					if (substrate != null) {
+						substrate.setAlt(alt);
+					} else if (product != null) {
+						product.setAlt(alt);
+					}
+				} else if (tag.equals(PATHWAY)) {
+					final Pathway pathway = new Pathway();
+					pathway.setName(attr(reader, "name"));
+					pathway.setNumber(attr(reader, "number"));
+					pathway.setOrg(attr(reader, "org"));
+					pathway.setTitle(attr(reader, "title"));
+					pathway.setImage(attr(reader, "image"));
+					pathway.setLink(attr(reader, "link"));
+					handler.startPathway(pathway);
+				}
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				final String tag = reader.getLocalName();
+				if (tag.equals(ENTRY)) {
+					handler.entry(entry);
+					entry = null;
+				} else if (tag.equals(RELATION)) {
+					handler.relation(relation);
+					relation = null;
+				} else if (tag.equals(REACTION)) {
+					handler.reaction(reaction);
+					reaction = null;
+				} else if (tag.equals(SUBSTRATE)) {
+					substrate = null;
+				} else if (tag.equals(PRODUCT)) {
+					product = null;
+				} else if (tag.equals(PATHWAY)) {
+					handler.endPathway();
+				}
+			}
+		}
+	}
+
+	private final Graphics readGraphics(final XMLStreamReader reader) {
+		final Graphics graphics = new Graphics();
+		graphics.setName(attr(reader, "name"));
+		graphics.setX(attr(reader, "x"));
+		graphics.setY(attr(reader, "y"));
+		graphics.setCoords(attr(reader, "coords"));
+		// DTD defaults are not applied by the parser. Generated getters
+		// return them for missing attributes.
+		graphics.setType(attr(reader, "type"));
+		graphics.setWidth(attr(reader, "width"));
+		graphics.setHeight(attr(reader, "height"));
+		graphics.setFgcolor(attr(reader, "fgcolor"));
+		graphics.setBgcolor(attr(reader, "bgcolor"));
+		return graphics;
+	}
+
+	private final String attr(final XMLStreamReader reader, final String name) {
+		return reader.getAttributeValue(null, name);
+	}
+}
@@ -6,6 +6,12 @@ public class KeggConstants {
 	public static final String KEGG_PATHWAY_IMAGE = "KEGG_PATHWAY_IMAGE";
 	public static final String KEGG_PATHWAY_LINK = "KEGG_PATHWAY_LINK";
 	public static final String KEGG_PATHWAY_ORG = "KEGG_PATHWAY_ORG";
+
+	// Import summary in the network table
+	public static final String KEGG_IMPORT_BYTES = "KEGG_IMPORT_BYTES";
+	public static final String KEGG_IMPORT_TIME = "KEGG_IMPORT_TIME";
+	public static final String KEGG_IMPORT_ALLOCATED = "KEGG_IMPORT_ALLOCATED";
+	public static final String KEGG_IMPORT_PHASES = "KEGG_IMPORT_PHASES";
 	
 	public static final String KEGG_NODE_X = "KEGG_NODE_X";
 	public static final String KEGG_NODE_Y = "KEGG_NODE_Y";
@@ -21,6 +27,11 @@ public class KeggConstants {
 	public static final String KEGG_DEFINITION = "KEGG_DEFINITION";
 	public static final String KEGG_NODE_TYPE = "KEGG_NODE_TYPE";
 	public static final String KEGG_NODE_SHAPE = "KEGG_NODE_SHAPE";
+
+	// Pathways and locations of the nodes of a merged network
+	public static final String KEGG_NODE_PATHWAYS = "KEGG_NODE_PATHWAYS";
+	public static final String KEGG_NODE_PATHWAY_X = "KEGG_NODE_PATHWAY_X";
+	public static final String KEGG_NODE_PATHWAY_Y = "KEGG_NODE_PATHWAY_Y";
 	public static final String KEGG_RELATION_TYPE = "KEGG_RELATION_TYPE";
 	public static final String KEGG_REACTION_TYPE = "KEGG_REACTION_TYPE";
 	public static final String KEGG_EDGE_COLOR = "KEGG_EDGE_COLOR";
@@ -14,12 +14,14 @@ import org.slf4j.LoggerFactory;
 /**
  * Custom file filter to return KEGG reader for all KGML files.
  * 
+ * Content is checked by {@link KgmlSniffer}, which reads only the first bytes
+ * and remembers its verdict for remote URIs.
  */
 public class KeggscapeFileFilter extends BasicCyFileFilter {
 
 	private static final Logger logger = LoggerFactory.getLogger(KeggscapeFileFilter.class);
 
-	private static final String KEGG_TAG = "www.kegg.jp/kegg";
+	private KgmlSniffer sniffer = new KgmlSniffer(null);
 
 	public KeggscapeFileFilter(Set<String> extensions, Set<String> contentTypes, String description,
 			DataCategory category, StreamUtil streamUtil) {
@@ -31,25 +33,26 @@ public class KeggscapeFileFilter extends BasicCyFileFilter {
 		super(extensions, contentTypes, description, category, streamUtil);
 	}
 
+	/**
+	 * Set the sniffer which checks URIs. By default, remote URIs are opened
+	 * without the shared HTTP transport and the KGML cache.
+	 */
+	public void setSniffer(final KgmlSniffer sniffer) {
+		this.sniffer = sniffer;
+	}
+
 	@Override
 	public boolean accepts(final InputStream stream, final DataCategory category) {
-		final String header = getHeader(stream, 5);
-		logger.debug("File header: " + header);
-
-		if (header.contains(KEGG_TAG)) {
-			return true;
-		} else {
+		try {
+			return KgmlSniffer.isKgml(stream);
+		} catch (IOException e) {
+			logger.error("Error while reading stream.", e);
 			return false;
 		}
 	}
 
 	@Override
 	public boolean accepts(final URI uri, final DataCategory category) {
-		try {
-			return accepts(uri.toURL().openStream(), category);
-		} catch (IOException e) {
-			logger.error("Error while opening stream: " + uri, e);
-			return false;
-		}
+		return sniffer.accepts(uri);
 	}
 }
\ No newline at end of file
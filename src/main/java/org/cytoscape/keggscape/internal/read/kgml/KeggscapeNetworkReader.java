@@ -4,16 +4,24 @@ import java.io.IOException;
 import java.io.InputStream;
 
 import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
 
+import org.cytoscape.event.CyEventHelper;
 import org.cytoscape.group.CyGroupFactory;
+import org.cytoscape.group.CyGroupManager;
 import org.cytoscape.io.read.AbstractCyNetworkReader;
 import org.cytoscape.keggscape.internal.generated.Pathway;
+import org.cytoscape.keggscape.internal.model.PathwayGraph;
 import org.cytoscape.keggscape.internal.style.KGMLVisualStyleBuilder;
 import org.cytoscape.keggscape.internal.task.MapExtraDataTask;
+import org.cytoscape.keggscape.internal.wsclient.PathwayGraphCache;
+import org.cytoscape.keggscape.internal.wsclient.PathwayPrefetcher;
+import org.cytoscape.keggscape.internal.wsclient.PathwaySource;
 import org.cytoscape.model.CyNetwork;
 import org.cytoscape.model.CyNetworkFactory;
 import org.cytoscape.model.CyNetworkManager;
+import org.cytoscape.model.CyNode;
 import org.cytoscape.model.subnetwork.CyRootNetwork;
 import org.cytoscape.model.subnetwork.CyRootNetworkManager;
 import org.cytoscape.model.subnetwork.CySubNetwork;
@@ -34,8 +42,30 @@ public class KeggscapeNetworkReader extends AbstractCyNetworkReader {
 
 	private static final String PACKAGE_NAME = "org.cytoscape.keggscape.internal.generated";
 
-	private Pathway pathway;
-	private KGMLMapper mapper;
+	/**
+	 * Set this system property to true to unmarshal the whole KGML document
+	 * with JAXB instead of using the streaming parser.
+	 */
+	public static final String USE_JAXB_PROPERTY = "keggscape.kgml.jaxb";
+
+	/**
+	 * Set this system property to false to fire model events for every node,
+	 * edge and value while the network is created.
+	 */
+	public static final String BULK_MODE_PROPERTY = "keggscape.kgml.bulkMode";
+
+	// JAXBContext is thread safe and expensive to create. Share one instance.
+	private static JAXBContext jaxbContext;
+
+	private PathwayGraph graph;
+	private CyNode[] nodes;
+	private boolean useJaxb = Boolean.getBoolean(USE_JAXB_PROPERTY);
+	private boolean bulkMode = !"false".equalsIgnoreCase(System.getProperty(BULK_MODE_PROPERTY));
+	private PathwaySource source;
+	private PathwayPrefetcher prefetcher;
+	private PathwayGraphCache graphCache;
+	private ImportStatistics statistics = new ImportStatistics();
+	private CyGroupManager groupManager;
 
 	private final InputStream is;
 	private final String collectionName;
@@ -43,6 +73,7 @@ public class KeggscapeNetworkReader extends AbstractCyNetworkReader {
 	private final VisualMappingManager vmm;
 	private final KGMLVisualStyleBuilder vsBuilder;
 	private final CyGroupFactory groupFactory;
+	private final CyEventHelper eventHelper;
 	
 	private VisualStyle keggStyle = null;
 	
@@ -59,6 +90,20 @@ public class KeggscapeNetworkReader extends AbstractCyNetworkReader {
 			CyNetworkViewFactory cyNetworkViewFactory, CyNetworkFactory cyNetworkFactory,
 			CyNetworkManager cyNetworkManager, CyRootNetworkManager cyRootNetworkManager,
 			final KGMLVisualStyleBuilder vsBuilder, final VisualMappingManager vmm, final CyGroupFactory groupFactory) {
+		this(collectionName, is, cyNetworkViewFactory, cyNetworkFactory, cyNetworkManager, cyRootNetworkManager,
+				vsBuilder, vmm, groupFactory, null);
+	}
+
+	/**
+	 * @param eventHelper
+	 *            used to hold back events of the new network while it is
+	 *            built. If null, bulk mode is not available.
+	 */
+	public KeggscapeNetworkReader(final String collectionName, InputStream is,
+			CyNetworkViewFactory cyNetworkViewFactory, CyNetworkFactory cyNetworkFactory,
+			CyNetworkManager cyNetworkManager, CyRootNetworkManager cyRootNetworkManager,
+			final KGMLVisualStyleBuilder vsBuilder, final VisualMappingManager vmm, final CyGroupFactory groupFactory,
+			final CyEventHelper eventHelper) {
 		super(is, cyNetworkViewFactory, cyNetworkFactory, cyNetworkManager, cyRootNetworkManager);
 
 		if (is == null) {
@@ -70,12 +115,87 @@ public class KeggscapeNetworkReader extends AbstractCyNetworkReader {
 		this.vmm = vmm;
 		this.vsBuilder = vsBuilder;
 		this.groupFactory = groupFactory;
+		this.eventHelper = eventHelper;
+	}
+
+	/**
+	 * Select the KGML parser. By default, the value of the
+	 * {@link #USE_JAXB_PROPERTY} system property is used.
+	 * 
+	 * @param useJaxb
+	 *            if true, read the whole document into JAXB objects first.
+	 *            Otherwise, stream elements directly to the mapper.
+	 */
+	public void setUseJaxb(final boolean useJaxb) {
+		this.useJaxb = useJaxb;
+	}
+
+	/**
+	 * Enable or disable bulk mode. By default, bulk mode is on unless the
+	 * {@link #BULK_MODE_PROPERTY} system property is false.
+	 */
+	public void setBulkMode(final boolean bulkMode) {
+		this.bulkMode = bulkMode;
+	}
+
+	/**
+	 * Set the source of the pathway details.
+	 */
+	public void setPathwaySource(final PathwaySource source) {
+		this.source = source;
+	}
+
+	/**
+	 * Set the prefetcher which downloads linked pathways after the import.
+	 */
+	public void setPrefetcher(final PathwayPrefetcher prefetcher) {
+		this.prefetcher = prefetcher;
+	}
+
+	/**
+	 * Set the cache which shares parsed pathways with other imports. If not
+	 * set, the KGML is always parsed.
+	 */
+	public void setGraphCache(final PathwayGraphCache graphCache) {
+		this.graphCache = graphCache;
+	}
+
+	/**
+	 * Set the group manager. If set, groups are created first and registered
+	 * together once the network is complete.
+	 */
+	public void setGroupManager(final CyGroupManager groupManager) {
+		this.groupManager = groupManager;
+	}
+
+	/**
+	 * Set the statistics which receive the metrics of this import. By
+	 * default, metrics are only logged.
+	 */
+	public void setStatistics(final ImportStatistics statistics) {
+		this.statistics = statistics;
+	}
+
+	private static final synchronized JAXBContext getJaxbContext() throws JAXBException {
+		if (jaxbContext == null) {
+			jaxbContext = JAXBContext.newInstance(PACKAGE_NAME, KeggscapeNetworkReader.class.getClassLoader());
+		}
+		return jaxbContext;
 	}
 
+	/**
+	 * Create the view and place all nodes from the mapped graph. The KEGG
+	 * styles do not map node locations.
+	 */
 	@Override
 	public CyNetworkView buildCyNetworkView(final CyNetwork network) {
-		return cyNetworkViewFactory.createNetworkView(network);
-		// TODO Apply (X,Y) to the nodes
+		final CyNetworkView view = cyNetworkViewFactory.createNetworkView(network);
+		if (graph != null && nodes != null && networks != null && network == networks[0]) {
+			ViewGeometry.apply(view, graph, nodes);
+		} else {
+			ViewGeometry.applyFromTable(view);
+		}
+		return view;
 	}
 
 	@Override
@@ -85,8 +205,6 @@ public class KeggscapeNetworkReader extends AbstractCyNetworkReader {
 			taskMonitor.setStatusMessage("Loading KEGG Pathway file in KGML format...");
 			taskMonitor.setProgress(-1.0);
 		}
-		
-		pathway = null;
 
 		if (collectionName != null) {
 			ListSingleSelection<String> rootList = getRootNetworkList();
@@ -106,66 +224,77 @@ public class KeggscapeNetworkReader extends AbstractCyNetworkReader {
 			network = (CySubNetwork) cyNetworkFactory.createNetwork();
 		}
 
-		try {
-			final JAXBContext jaxbContext = JAXBContext.newInstance(PACKAGE_NAME, this.getClass().getClassLoader());
-			final Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
-			pathway = (Pathway) unmarshaller.unmarshal(is);
-		} catch (Exception e) {
-			logger.error("Could not ummarshall KGML.", e);
-			throw new IOException("Could not unmarshall KGML file.", e);
-		} finally {
-			if (is != null) {
-				is.close();
-			}
-		}
-
 		this.networks = new CyNetwork[1];
 		this.networks[0] = network;
 
-		mapper = new KGMLMapper(pathway, network, groupFactory);
-		mapper.doMapping();
+		final ImportMetrics metrics = new ImportMetrics(collectionName);
+		final CountingInputStream counter = new CountingInputStream(is);
+		try {
+			if (useJaxb) {
+				final Pathway pathway;
+				try {
+					metrics.start(ImportMetrics.Phase.JAXB_CONTEXT);
+					final Unmarshaller unmarshaller = getJaxbContext().createUnmarshaller();
+					metrics.start(ImportMetrics.Phase.UNMARSHAL);
+					pathway = (Pathway) unmarshaller.unmarshal(counter);
+				} catch (Exception e) {
+					logger.error("Could not ummarshall KGML.", e);
+					throw new IOException("Could not unmarshall KGML file.", e);
+				} finally {
+					is.close();
+				}
+				metrics.start(ImportMetrics.Phase.MAP);
+				graph = new KGMLMapper(pathway).doMapping();
+			} else {
+				try {
+					metrics.start(ImportMetrics.Phase.PARSE);
+					graph = graphCache == null ? new PathwayGraphReader().read(counter) : graphCache.get(counter);
+				} catch (IOException e) {
+					logger.error("Could not parse KGML.", e);
+					throw e;
+				} finally {
+					is.close();
+				}
+			}
+			metrics.setBytes(counter.getCount());
+			metrics.setGraph(graph);
 
-		final String pathwayID = mapper.getPathwayId();
+			nodes = new PathwayGraphMaterializer(groupFactory, groupManager, bulkMode ? eventHelper : null)
+					.materialize(graph, network, metrics);
 
-		final String targetStyleName;
-		if (KGMLMapper.GLOBAL_MAP_ID.contains(pathwayID)) {
-			targetStyleName = KGMLVisualStyleBuilder.GLOBAL_VS_NAME;
-		} else {
-			targetStyleName = KGMLVisualStyleBuilder.DEF_VS_NAME;
+			metrics.start(ImportMetrics.Phase.STYLE);
+			keggStyle = vsBuilder.getStyle(vmm, PathwayGraphReader.isGlobalMap(graph));
+			vmm.setCurrentVisualStyle(keggStyle);
+			metrics.stop();
+		} catch (Exception e) {
+			metrics.setBytes(counter.getCount());
+			if (statistics != null) {
+				statistics.recordFailure(metrics, e);
+			}
+			throw e;
 		}
 
-		// Check Visual Style exists or not
-		for (final VisualStyle style : vmm.getAllVisualStyles()) {
-			if (style.getTitle().equals(targetStyleName)) {
-				keggStyle = style;
-				break;
-			}
+		PathwayGraphMaterializer.writeSummary(network, metrics);
+		if (statistics != null) {
+			statistics.record(metrics);
 		}
-		
-		if (keggStyle == null) {
-			// Need to create custom style.
-			if (KGMLMapper.GLOBAL_MAP_ID.contains(pathwayID)) {
-				keggStyle = vsBuilder.getGlobalVisualStyle();
-			} else {
-				keggStyle = vsBuilder.getVisualStyle();
-			}
-			vmm.addVisualStyle(keggStyle);
+
+		if (prefetcher != null) {
+			prefetcher.prefetchLinked(graph);
 		}
 		
-		vmm.setCurrentVisualStyle(keggStyle);
-		
 		if (taskMonitor != null) {
-			taskMonitor.setStatusMessage("KEGG Pathway successfully loaded.");
+			taskMonitor.setStatusMessage(String.format("KEGG Pathway successfully loaded in %.1f ms.",
+					metrics.getTotalNanos() / 1e6));
 			taskMonitor.setProgress(1.0);
 		}
 
 		if (importFull) {
-			insertTasksAfterCurrentTask(new MapExtraDataTask(network));
+			insertTasksAfterCurrentTask(new MapExtraDataTask(network, source));
 			if (taskMonitor != null) {
 				taskMonitor.setStatusMessage("KEGG Loading more data from KEGG...");
 				taskMonitor.setProgress(-1.0);
 			}
 		}
 	}
-
 }
@@ -2,9 +2,14 @@ package org.cytoscape.keggscape.internal.read.kgml;
 
 import java.io.InputStream;
 
+import org.cytoscape.event.CyEventHelper;
 import org.cytoscape.group.CyGroupFactory;
+import org.cytoscape.group.CyGroupManager;
 import org.cytoscape.io.CyFileFilter;
 import org.cytoscape.keggscape.internal.style.KGMLVisualStyleBuilder;
+import org.cytoscape.keggscape.internal.wsclient.PathwayGraphCache;
+import org.cytoscape.keggscape.internal.wsclient.PathwayPrefetcher;
+import org.cytoscape.keggscape.internal.wsclient.PathwaySource;
 import org.cytoscape.model.CyNetworkFactory;
 import org.cytoscape.model.CyNetworkManager;
 import org.cytoscape.model.subnetwork.CyRootNetworkManager;
@@ -21,11 +26,19 @@ public class KeggscapeNetworkReaderFactory extends AbstractReaderFactory {
 	private final VisualMappingManager vmm;
 
 	private final CyGroupFactory groupFactory;
+	private final CyGroupManager groupManager;
+	private final CyEventHelper eventHelper;
+	private final PathwaySource source;
+	private final PathwayPrefetcher prefetcher;
+	private final PathwayGraphCache graphCache;
+	private final ImportStatistics statistics;
 
 	public KeggscapeNetworkReaderFactory(final CyFileFilter filter, final CyNetworkViewFactory cyNetworkViewFactory,
 			final CyNetworkFactory cyNetworkFactory, final CyNetworkManager cyNetworkManager,
 			final CyRootNetworkManager cyRootNetworkManager, KGMLVisualStyleBuilder vsBuilder,
-			VisualMappingManager vmm, final CyGroupFactory groupFactory) {
+			VisualMappingManager vmm, final CyGroupFactory groupFactory, final CyGroupManager groupManager,
+			final CyEventHelper eventHelper, final PathwaySource source, final PathwayPrefetcher prefetcher,
+			final PathwayGraphCache graphCache, final ImportStatistics statistics) {
 		super(filter, cyNetworkViewFactory, cyNetworkFactory);
 
 		this.cyNetworkManager = cyNetworkManager;
@@ -33,11 +46,23 @@ public class KeggscapeNetworkReaderFactory extends AbstractReaderFactory {
 		this.vsBuilder = vsBuilder;
 		this.vmm = vmm;
 		this.groupFactory = groupFactory;
+		this.groupManager = groupManager;
+		this.eventHelper = eventHelper;
+		this.source = source;
+		this.prefetcher = prefetcher;
+		this.graphCache = graphCache;
+		this.statistics = statistics;
 	}
 
 	@Override
 	public TaskIterator createTaskIterator(InputStream is, String collectionName) {
-		return new TaskIterator(new KeggscapeNetworkReader(collectionName, is, cyNetworkViewFactory, cyNetworkFactory,
-				cyNetworkManager, cyRootNetworkManager, vsBuilder, vmm, groupFactory));
+		final KeggscapeNetworkReader reader = new KeggscapeNetworkReader(collectionName, is, cyNetworkViewFactory,
+				cyNetworkFactory, cyNetworkManager, cyRootNetworkManager, vsBuilder, vmm, groupFactory, eventHelper);
+		reader.setPathwaySource(source);
+		reader.setPrefetcher(prefetcher);
+		reader.setGraphCache(graphCache);
+		reader.setGroupManager(groupManager);
+		reader.setStatistics(statistics);
+		return new TaskIterator(reader);
 	}
 }
\ No newline at end of file
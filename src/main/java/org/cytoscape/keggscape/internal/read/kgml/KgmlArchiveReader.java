@@ -0,0 +1,410 @@
+package org.cytoscape.keggscape.internal.read.kgml;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.cytoscape.keggscape.internal.model.PathwayGraph;
+
+/**
+ * Reads the KGML files of a .tar.gz, .tgz, .tar, .zip or .xml.gz archive
+ * without extracting it.
+ *
+ * One thread decompresses the archive and hands the entries to a pool of
+ * workers, which parse and map them. {@link #take()} returns the pathways in
+ * archive order. Only a few entries are held in memory at a time, however
+ * large the archive is. Entries can be selected by pathway ID. Other entries
+ * are skipped without being parsed, and ZIP entries without being
+ * decompressed.
+ */
+public class KgmlArchiveReader implements Closeable {
+
+	private static final String[] ARCHIVE_EXTENSIONS = { ".tar.gz", ".tgz", ".tar", ".zip", ".gz" };
+	private static final String[] KGML_EXTENSIONS = { ".xml", ".kgml" };
+
+	private static final int BUFFER_SIZE = 65536;
+
+	/**
+	 * One KGML file of the archive. Either the graph or the error is set.
+	 */
+	public static final class Entry {
+
+		private final String name;
+		private final String id;
+		private final PathwayGraph graph;
+		private final Exception error;
+		private final ImportMetrics metrics;
+
+		private Entry(final String name, final String id, final PathwayGraph graph, final Exception error,
+				final ImportMetrics metrics) {
+			this.name = name;
+			this.id = id;
+			this.graph = graph;
+			this.error = error;
+			this.metrics = metrics;
+		}
+
+		/**
+		 * @return path of the entry in the archive.
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return pathway ID from the file name, e.g. hsa00020
+		 */
+		public String getId() {
+			return id;
+		}
+
+		public PathwayGraph getGraph() {
+			return graph;
+		}
+
+		/**
+		 * @return reason the entry could not be read, or null.
+		 */
+		public Exception getError() {
+			return error;
+		}
+
+		/**
+		 * @return size and parse time of the entry. No phase is running.
+		 */
+		public ImportMetrics getMetrics() {
+			return metrics;
+		}
+	}
+
+	// Marks the end of the archive in the queue
+	private static final Future<Entry> END = new FutureTask<Entry>(new Callable<Entry>() {
+		@Override
+		public Entry call() {
+			return null;
+		}
+	});
+
+	private final File archive;
+	private final Pattern idPattern;
+	private final PathwayGraphReader reader = new PathwayGraphReader();
+	private final ExecutorService workers;
+	private final BlockingQueue<Future<Entry>> queue;
+	private final Thread decompressor;
+
+	private volatile IOException failure;
+	private volatile boolean closed;
+	private boolean done;
+
+	/**
+	 * Start reading an archive.
+	 *
+	 * @param idPattern
+	 *            pathway IDs to read, or null to read all KGML files. See
+	 *            {@link #compileIdPattern(String)}.
+	 * @param threads
+	 *            number of entries parsed at the same time
+	 */
+	public static KgmlArchiveReader open(final File archive, final Pattern idPattern, final int threads)
+			throws IOException {
+		if (!archive.isFile()) {
+			throw new IOException("Archive does not exist: " + archive);
+		}
+		if (!isArchive(archive)) {
+			throw new IOException("Not a KGML archive: " + archive);
+		}
+		final KgmlArchiveReader reader = new KgmlArchiveReader(archive, idPattern, threads);
+		reader.decompressor.start();
+		return reader;
+	}
+
+	private KgmlArchiveReader(final File archive, final Pattern idPattern, final int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+		}
+		this.archive = archive;
+		this.idPattern = idPattern;
+		this.workers = Executors.newFixedThreadPool(threads, new ParserThreadFactory());
+		// Entries waiting for a worker or for the caller. Decompression
+		// blocks when the queue is full.
+		this.queue = new ArrayBlockingQueue<Future<Entry>>(threads * 2);
+		this.decompressor = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				decompress();
+			}
+		}, "KEGGscape archive " + archive.getName());
+		this.decompressor.setDaemon(true);
+	}
+
+	/**
+	 * Wait for the next pathway of the archive.
+	 *
+	 * @return next entry, or null at the end of the archive.
+	 * @throws IOException
+	 *             if the archive itself cannot be read. Errors of single
+	 *             entries are returned in the entry.
+	 */
+	public Entry take() throws IOException, InterruptedException {
+		if (done) {
+			return null;
+		}
+		final Future<Entry> future = queue.take();
+		if (future == END) {
+			done = true;
+			if (failure != null) {
+				throw failure;
+			}
+			return null;
+		}
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			throw new IOException("Could not read archive entry.", e.getCause());
+		}
+	}
+
+	/**
+	 * Stop reading. Entries not taken yet are discarded.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		decompressor.interrupt();
+		workers.shutdownNow();
+		queue.clear();
+	}
+
+	private final void decompress() {
+		try {
+			final String name = archive.getName().toLowerCase(Locale.ROOT);
+			if (name.endsWith(".zip")) {
+				readZip();
+			} else if (name.endsWith(".gz") && !name.endsWith(".tar.gz")) {
+				readGzip(archive.getName().substring(0, archive.getName().length() - 3));
+			} else {
+				readTar(name.endsWith(".tar"));
+			}
+		} catch (InterruptedException e) {
+			// Closed
+		} catch (IOException e) {
+			failure = e;
+		} catch (RuntimeException e) {
+			if (!closed) {
+				failure = new IOException("Could not read archive " + archive, e);
+			}
+		} finally {
+			// Queued entries are still parsed.
+			workers.shutdown();
+			if (!closed) {
+				try {
+					queue.put(END);
+				} catch (InterruptedException e) {
+					// Closed while waiting
+				}
+			}
+		}
+	}
+
+	private final void readZip() throws IOException, InterruptedException {
+		final ZipFile zip = new ZipFile(archive);
+		try {
+			final Enumeration<? extends ZipEntry> entries = zip.entries();
+			while (entries.hasMoreElements()) {
+				final ZipEntry entry = entries.nextElement();
+				if (entry.isDirectory() || !isSelected(entry.getName())) {
+					continue;
+				}
+				final InputStream is = zip.getInputStream(entry);
+				try {
+					submit(entry.getName(), is);
+				} finally {
+					is.close();
+				}
+			}
+		} finally {
+			zip.close();
+		}
+	}
+
+	private final void readGzip(final String path) throws IOException, InterruptedException {
+		if (!isSelected(path)) {
+			return;
+		}
+		final InputStream is = new GZIPInputStream(new FileInputStream(archive), BUFFER_SIZE);
+		try {
+			submit(path, is);
+		} finally {
+			is.close();
+		}
+	}
+
+	private final void readTar(final boolean uncompressed) throws IOException, InterruptedException {
+		final InputStream file = new BufferedInputStream(new FileInputStream(archive), BUFFER_SIZE);
+		try {
+			final InputStream data = uncompressed ? file : new GZIPInputStream(file, BUFFER_SIZE);
+			final TarArchiveInputStream tar = new TarArchiveInputStream(data);
+			TarArchiveEntry entry;
+			while ((entry = tar.getNextTarEntry()) != null) {
+				// Skipped entries are passed over by the next call.
+				if (entry.isFile() && isSelected(entry.getName())) {
+					submit(entry.getName(), tar);
+				}
+			}
+		} finally {
+			file.close();
+		}
+	}
+
+	private final boolean isSelected(final String path) {
+		final String id = getPathwayId(path);
+		return id != null && (idPattern == null || idPattern.matcher(id).matches());
+	}
+
+	/**
+	 * Read one selected entry and queue it for parsing.
+	 */
+	private final void submit(final String path, final InputStream is) throws IOException, InterruptedException {
+		final String id = getPathwayId(path);
+		if (closed) {
+			throw new InterruptedException();
+		}
+		final byte[] bytes = readFully(is);
+		queue.put(workers.submit(new Callable<Entry>() {
+			@Override
+			public Entry call() {
+				final ImportMetrics metrics = new ImportMetrics(path);
+				metrics.setBytes(bytes.length);
+				metrics.start(ImportMetrics.Phase.PARSE);
+				try {
+					final PathwayGraph graph = reader.read(new ByteArrayInputStream(bytes));
+					metrics.stop();
+					metrics.setGraph(graph);
+					return new Entry(path, id, graph, null, metrics);
+				} catch (Exception e) {
+					metrics.stop();
+					return new Entry(path, id, null, e, metrics);
+				}
+			}
+		}));
+	}
+
+	private static final byte[] readFully(final InputStream is) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream(BUFFER_SIZE);
+		final byte[] buf = new byte[BUFFER_SIZE];
+		int n;
+		while ((n = is.read(buf)) != -1) {
+			out.write(buf, 0, n);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * @return true if the file name has an archive extension.
+	 */
+	public static boolean isArchive(final File file) {
+		final String name = file.getName().toLowerCase(Locale.ROOT);
+		for (final String extension : ARCHIVE_EXTENSIONS) {
+			if (name.endsWith(extension)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param path
+	 *            file name or archive entry path
+	 * @return pathway ID from a KGML file name, e.g. hsa00020 for
+	 *         kgml/hsa/hsa00020.xml, or null if it is not a KGML file.
+	 */
+	public static String getPathwayId(final String path) {
+		final String name = path.substring(Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\')) + 1);
+		// Hidden files, such as resource forks added by macOS
+		if (name.startsWith(".")) {
+			return null;
+		}
+		final String lower = name.toLowerCase(Locale.ROOT);
+		for (final String extension : KGML_EXTENSIONS) {
+			if (lower.endsWith(extension) && lower.length() > extension.length()) {
+				return name.substring(0, name.length() - extension.length());
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Compile a pathway ID pattern. The pattern is a comma separated list of
+	 * IDs, where {@code *} matches any characters and {@code ?} one
+	 * character, e.g. {@code hsa*, mmu00010}. Case is ignored.
+	 *
+	 * @return pattern, or null if the text is empty.
+	 */
+	public static Pattern compileIdPattern(final String text) {
+		if (text == null) {
+			return null;
+		}
+		final StringBuilder regex = new StringBuilder();
+		for (final String part : text.split("[,\\s]+")) {
+			// Accept IDs with prefix, e.g. path:hsa00020
+			final String glob = part.substring(part.indexOf(':') + 1);
+			if (glob.isEmpty()) {
+				continue;
+			}
+			if (regex.length() != 0) {
+				regex.append('|');
+			}
+			final StringBuilder literal = new StringBuilder();
+			for (final char c : glob.toCharArray()) {
+				if (c == '*' || c == '?') {
+					if (literal.length() != 0) {
+						regex.append(Pattern.quote(literal.toString()));
+						literal.setLength(0);
+					}
+					regex.append(c == '*' ? ".*" : ".");
+				} else {
+					literal.append(c);
+				}
+			}
+			if (literal.length() != 0) {
+				regex.append(Pattern.quote(literal.toString()));
+			}
+		}
+		return regex.length() == 0 ? null : Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE);
+	}
+
+	private static final class ParserThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(final Runnable r) {
+			final Thread thread = new Thread(r, "KEGGscape archive parser " + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
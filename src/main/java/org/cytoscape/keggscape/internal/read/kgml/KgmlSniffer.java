@@ -0,0 +1,175 @@
+package org.cytoscape.keggscape.internal.read.kgml;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.cytoscape.keggscape.internal.wsclient.HttpTransport;
+import org.cytoscape.keggscape.internal.wsclient.KgmlCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decides whether a stream or URI contains KGML from its first bytes.
+ *
+ * At most {@link #PEEK_SIZE} bytes are read. Remote URIs are checked with a
+ * range request, and KGML URLs of the KEGG REST server already in the local
+ * cache are checked without network access. The verdict for each remote URI
+ * is cached, so the reader selection of one import costs at most one small
+ * request. Local files are cheap to check and may change, so they are
+ * checked every time.
+ */
+public class KgmlSniffer {
+
+	private static final Logger logger = LoggerFactory.getLogger(KgmlSniffer.class);
+
+	/**
+	 * Number of bytes read to decide. The KEGG DTD reference follows the XML
+	 * declaration in every KGML file.
+	 */
+	public static final int PEEK_SIZE = 4096;
+
+	private static final String KEGG_TAG = "www.kegg.jp/kegg";
+	// DTD path on both www.kegg.jp and the older www.genome.jp
+	private static final String KGML_DTD = "/kegg/xml/KGML";
+	private static final int MAX_VERDICTS = 256;
+
+	private final HttpTransport transport;
+	private volatile KgmlCache kgmlCache;
+
+	// Guarded by itself
+	private final Map<URI, Boolean> verdicts = new LinkedHashMap<URI, Boolean>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<URI, Boolean> eldest) {
+			return size() > MAX_VERDICTS;
+		}
+	};
+
+	/**
+	 * @param transport
+	 *            used for HTTP and HTTPS URIs. If null, they are opened with
+	 *            {@link java.net.URL#openStream()}.
+	 */
+	public KgmlSniffer(final HttpTransport transport) {
+		this.transport = transport;
+	}
+
+	/**
+	 * Set the cache of downloaded KGML files. Cached pathways are checked
+	 * locally.
+	 */
+	public void setKgmlCache(final KgmlCache kgmlCache) {
+		this.kgmlCache = kgmlCache;
+	}
+
+	/**
+	 * Read the first bytes of the stream. If the stream supports marks, it is
+	 * reset afterwards. The stream is not closed.
+	 */
+	public static boolean isKgml(final InputStream is) throws IOException {
+		if (is.markSupported()) {
+			is.mark(PEEK_SIZE);
+		}
+		try {
+			final byte[] buf = new byte[PEEK_SIZE];
+			int length = 0;
+			int n;
+			while (length < buf.length && (n = is.read(buf, length, buf.length - length)) != -1) {
+				length += n;
+			}
+			return isKgml(buf, length);
+		} finally {
+			if (is.markSupported()) {
+				is.reset();
+			}
+		}
+	}
+
+	private static final boolean isKgml(final byte[] buf, final int length) {
+		// The tag is ASCII, which every supported encoding of KGML preserves.
+		final String header = new String(buf, 0, length, StandardCharsets.ISO_8859_1);
+		return header.contains(KGML_DTD) || header.contains(KEGG_TAG);
+	}
+
+	/**
+	 * @return true if the URI points to KGML. URIs which cannot be read are
+	 *         rejected, and checked again next time.
+	 */
+	public boolean accepts(final URI uri) {
+		if ("file".equalsIgnoreCase(uri.getScheme())) {
+			try {
+				return isKgml(new File(uri));
+			} catch (IOException e) {
+				logger.debug("Could not read the beginning of " + uri, e);
+				return false;
+			}
+		}
+		synchronized (verdicts) {
+			final Boolean verdict = verdicts.get(uri);
+			if (verdict != null) {
+				return verdict;
+			}
+		}
+		final boolean verdict;
+		try {
+			verdict = sniff(uri);
+		} catch (IOException e) {
+			logger.debug("Could not read the beginning of " + uri, e);
+			return false;
+		}
+		synchronized (verdicts) {
+			verdicts.put(uri, verdict);
+		}
+		return verdict;
+	}
+
+	private final boolean sniff(final URI uri) throws IOException {
+		final String scheme = uri.getScheme() == null ? "" : uri.getScheme().toLowerCase(Locale.ROOT);
+		if (!"http".equals(scheme) && !"https".equals(scheme)) {
+			return peekAndClose(uri.toURL().openStream());
+		}
+
+		final KgmlCache cache = kgmlCache;
+		final String id = KgmlCache.getPathwayId(uri.toString());
+		if (cache != null && id != null && cache.contains(id)) {
+			final File file = cache.getFile(id);
+			if (file.isFile()) {
+				return isKgml(file);
+			}
+		}
+		if (transport == null) {
+			return peekAndClose(uri.toURL().openStream());
+		}
+		final byte[] bytes = transport.peek(uri.toString(), PEEK_SIZE);
+		return isKgml(bytes, bytes.length);
+	}
+
+	private static final boolean isKgml(final File file) throws IOException {
+		return peekAndClose(new FileInputStream(file));
+	}
+
+	private static final boolean peekAndClose(final InputStream is) throws IOException {
+		try {
+			return isKgml(is);
+		} finally {
+			is.close();
+		}
+	}
+
+	/**
+	 * Forget all verdicts, e.g. after the cache was cleared.
+	 */
+	public void clear() {
+		synchronized (verdicts) {
+			verdicts.clear();
+		}
+	}
+}
@@ -0,0 +1,405 @@
+package org.cytoscape.keggscape.internal.read.kgml;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cytoscape.event.CyEventHelper;
+import org.cytoscape.group.CyGroup;
+import org.cytoscape.group.CyGroupFactory;
+import org.cytoscape.group.CyGroupManager;
+import org.cytoscape.keggscape.internal.model.EdgeAttribute;
+import org.cytoscape.keggscape.internal.model.EdgeTable;
+import org.cytoscape.keggscape.internal.model.MergedPathwayGraph;
+import org.cytoscape.keggscape.internal.model.NodeAttribute;
+import org.cytoscape.keggscape.internal.model.NodeTable;
+import org.cytoscape.keggscape.internal.model.PathwayGraph;
+import org.cytoscape.model.CyEdge;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.CyRow;
+import org.cytoscape.model.CyTable;
+import org.cytoscape.model.subnetwork.CyRootNetwork;
+import org.cytoscape.model.subnetwork.CySubNetwork;
+
+/**
+ * Creates the contents of a {@link CyNetwork} from a {@link PathwayGraph}.
+ *
+ * All nodes and edges are added first, then table data is written column by
+ * column.
+ */
+public class PathwayGraphMaterializer {
+
+	private final CyGroupFactory groupFactory;
+	private final CyGroupManager groupManager;
+	private final CyEventHelper eventHelper;
+
+	public PathwayGraphMaterializer(final CyGroupFactory groupFactory) {
+		this(groupFactory, null);
+	}
+
+	/**
+	 * @param eventHelper
+	 *            if not null, build networks in bulk mode: events of the new
+	 *            network and its local node and edge tables are held back
+	 *            while it is filled. Shared names are written directly, and
+	 *            the remaining payload events are flushed once at the end.
+	 */
+	public PathwayGraphMaterializer(final CyGroupFactory groupFactory, final CyEventHelper eventHelper) {
+		this(groupFactory, null, eventHelper);
+	}
+
+	/**
+	 * @param groupManager
+	 *            if not null, groups are created unregistered and added to the
+	 *            manager together, once the network is complete. Otherwise,
+	 *            each group is registered as it is created.
+	 */
+	public PathwayGraphMaterializer(final CyGroupFactory groupFactory, final CyGroupManager groupManager,
+			final CyEventHelper eventHelper) {
+		this.groupFactory = groupFactory;
+		this.groupManager = groupManager;
+		this.eventHelper = eventHelper;
+	}
+
+	/**
+	 * Add all nodes, edges and groups of the graph to the network. The network
+	 * should not be registered to the network manager yet.
+	 *
+	 * @return nodes created for the graph, in node index order.
+	 */
+	public CyNode[] materialize(final PathwayGraph graph, final CyNetwork network) {
+		return materialize(graph, network, null);
+	}
+
+	/**
+	 * Same as {@link #materialize(PathwayGraph, CyNetwork)}, and measure the
+	 * network and group phases.
+	 *
+	 * @param metrics
+	 *            may be null. The last phase is left running on return.
+	 */
+	public CyNode[] materialize(final PathwayGraph graph, final CyNetwork network, final ImportMetrics metrics) {
+		if (metrics != null) {
+			metrics.start(ImportMetrics.Phase.NETWORK);
+		}
+		final List<CyGroup> groups = new ArrayList<CyGroup>(graph.getGroups().size());
+		final CyNode[] nodes;
+		if (eventHelper == null) {
+			nodes = build(graph, network, groups, metrics);
+		} else {
+			final List<Object> sources = getEventSources(network);
+			for (final Object source : sources) {
+				eventHelper.silenceEventSource(source);
+			}
+			try {
+				nodes = build(graph, network, groups, metrics);
+			} finally {
+				for (final Object source : sources) {
+					eventHelper.unsilenceEventSource(source);
+				}
+				if (metrics != null) {
+					metrics.start(ImportMetrics.Phase.NETWORK);
+				}
+				eventHelper.flushPayloadEvents();
+			}
+		}
+
+		// Listeners see complete groups in a complete network.
+		if (groupManager != null && !groups.isEmpty()) {
+			if (metrics != null) {
+				metrics.start(ImportMetrics.Phase.GROUPS);
+			}
+			for (final CyGroup group : groups) {
+				groupManager.addGroup(group);
+			}
+		}
+		return nodes;
+	}
+
+	/**
+	 * Nobody can observe a network before it is registered, so events from it
+	 * and its local tables can be held back. The root network and the shared
+	 * tables are not silenced, so writes to shared rows are still delivered.
+	 */
+	private final List<Object> getEventSources(final CyNetwork network) {
+		final List<Object> sources = new ArrayList<Object>();
+		sources.add(network);
+		sources.add(network.getDefaultNodeTable());
+		sources.add(network.getDefaultEdgeTable());
+		return sources;
+	}
+
+	private final CyNode[] build(final PathwayGraph graph, final CyNetwork network, final List<CyGroup> groups,
+			final ImportMetrics metrics) {
+		mapNetworkTable(graph, network);
+
+		// Test columns exists or not
+		if (network.getDefaultNodeTable().getColumn(KeggConstants.KEGG_NODE_X) == null) {
+			createKeggNodeTable(network);
+			createKeggEdgeTable(network);
+		}
+
+		final NodeTable nodeTable = graph.getNodes();
+		final int nodeCount = nodeTable.size();
+		final CyNode[] nodes = new CyNode[nodeCount];
+		final List<CyRow> nodeRows = new ArrayList<CyRow>(nodeCount);
+		for (int i = 0; i < nodeCount; i++) {
+			nodes[i] = network.addNode();
+			nodeRows.add(network.getRow(nodes[i]));
+		}
+		writeNodeTable(nodeTable, nodeRows, CyNetwork.NAME);
+		if (eventHelper != null) {
+			writeSharedNames(nodeTable, network, nodes);
+		}
+
+		final EdgeTable edgeTable = graph.getEdges();
+		final int edgeCount = edgeTable.size();
+		final CyEdge[] edges = new CyEdge[edgeCount];
+		final List<CyRow> edgeRows = new ArrayList<CyRow>(edgeCount);
+		for (int i = 0; i < edgeCount; i++) {
+			edges[i] = network.addEdge(nodes[edgeTable.getSource(i)], nodes[edgeTable.getTarget(i)],
+					edgeTable.isDirected(i));
+			edgeRows.add(network.getRow(edges[i]));
+		}
+		writeEdgeTable(edgeTable, edgeRows);
+		if (eventHelper != null) {
+			writeSharedNames(edgeTable, network, edges);
+		}
+
+		if (metrics != null) {
+			metrics.start(ImportMetrics.Phase.GROUPS);
+		}
+		mapGroups(graph, network, nodes, groups);
+
+		return nodes;
+	}
+
+	/**
+	 * Create all groups, then write their attributes column by column.
+	 * Created groups are added to the given list.
+	 */
+	private final void mapGroups(final PathwayGraph graph, final CyNetwork network, final CyNode[] nodes,
+			final List<CyGroup> groups) {
+		final NodeTable groupTable = graph.getGroups();
+		final int groupCount = groupTable.size();
+		if (groupCount == 0) {
+			return;
+		}
+
+		final CyRootNetwork root = ((CySubNetwork) network).getRootNetwork();
+		final boolean register = groupManager == null;
+		final List<CyRow> groupRows = new ArrayList<CyRow>(groupCount);
+		for (int i = 0; i < groupCount; i++) {
+			final int[] members = graph.getGroupMembers(i);
+			final List<CyNode> memberNodes = new ArrayList<CyNode>(members.length);
+			for (final int member : members) {
+				memberNodes.add(nodes[member]);
+			}
+
+			final CyGroup group = groupFactory.createGroup(network, memberNodes, null, register);
+			if (group == null) {
+				groupRows.add(null);
+			} else {
+				groups.add(group);
+				groupRows.add(root.getRow(group.getGroupNode(), CyRootNetwork.SHARED_ATTRS));
+			}
+		}
+		writeNodeTable(groupTable, groupRows, CyRootNetwork.SHARED_NAME);
+	}
+
+	/**
+	 * Write names to the shared table of the collection. In bulk mode, the
+	 * name listeners of the root network do not see the local rows, so this
+	 * does their work.
+	 */
+	private final void writeSharedNames(final NodeTable table, final CyNetwork network, final CyNode[] nodes) {
+		final CyRootNetwork root = ((CySubNetwork) network).getRootNetwork();
+		for (int i = 0; i < nodes.length; i++) {
+			final String name = table.get(NodeAttribute.NAME, i);
+			if (name != null) {
+				root.getRow(nodes[i], CyRootNetwork.SHARED_ATTRS).set(CyRootNetwork.SHARED_NAME, name);
+			}
+		}
+	}
+
+	private final void writeSharedNames(final EdgeTable table, final CyNetwork network, final CyEdge[] edges) {
+		final CyRootNetwork root = ((CySubNetwork) network).getRootNetwork();
+		for (int i = 0; i < edges.length; i++) {
+			final CyRow row = root.getRow(edges[i], CyRootNetwork.SHARED_ATTRS);
+			final String name = table.get(EdgeAttribute.NAME, i);
+			if (name != null) {
+				row.set(CyRootNetwork.SHARED_NAME, name);
+			}
+			final String interaction = table.get(EdgeAttribute.INTERACTION, i);
+			if (interaction != null) {
+				row.set(CyRootNetwork.SHARED_INTERACTION, interaction);
+			}
+		}
+	}
+
+	private final void writeNodeTable(final NodeTable table, final List<CyRow> rows, final String nameColumn) {
+		final int size = rows.size();
+		for (final NodeAttribute attr : NodeAttribute.values()) {
+			String column = GraphColumns.get(attr);
+			if (column == null) {
+				continue;
+			}
+			if (attr == NodeAttribute.NAME) {
+				column = nameColumn;
+			}
+			for (int i = 0; i < size; i++) {
+				final CyRow row = rows.get(i);
+				final String value = table.get(attr, i);
+				if (row != null && value != null) {
+					row.set(column, value);
+				}
+			}
+		}
+
+		for (int i = 0; i < size; i++) {
+			final CyRow row = rows.get(i);
+			if (row == null) {
+				continue;
+			}
+			final List<String> ids = table.getIds(i);
+			if (ids != null) {
+				row.set(KeggConstants.KEGG_ID, new ArrayList<String>(ids));
+			}
+			final List<String> labels = table.getLabels(i);
+			if (labels != null) {
+				row.set(KeggConstants.KEGG_NODE_LABEL_LIST, new ArrayList<String>(labels));
+			}
+		}
+
+		writeGeometry(table, rows);
+	}
+
+	private final void writeGeometry(final NodeTable table, final List<CyRow> rows) {
+		final int size = rows.size();
+		for (int i = 0; i < size; i++) {
+			final CyRow row = rows.get(i);
+			if (row == null) {
+				continue;
+			}
+			GeometryColumns.set(row, KeggConstants.KEGG_NODE_X, table.getX(i));
+			GeometryColumns.set(row, KeggConstants.KEGG_NODE_Y, table.getY(i));
+			GeometryColumns.set(row, KeggConstants.KEGG_NODE_WIDTH, table.getWidth(i));
+			GeometryColumns.set(row, KeggConstants.KEGG_NODE_HEIGHT, table.getHeight(i));
+		}
+	}
+
+	private final void writeEdgeTable(final EdgeTable table, final List<CyRow> rows) {
+		final int size = rows.size();
+		for (final EdgeAttribute attr : EdgeAttribute.values()) {
+			final String column = GraphColumns.get(attr);
+			for (int i = 0; i < size; i++) {
+				final String value = table.get(attr, i);
+				if (value != null) {
+					rows.get(i).set(column, value);
+				}
+			}
+		}
+
+		for (int i = 0; i < size; i++) {
+			final List<String> subtypes = table.getSubtypes(i);
+			if (subtypes != null) {
+				rows.get(i).set(KeggConstants.KEGG_EDGE_SUBTYPES, new ArrayList<String>(subtypes));
+			}
+		}
+	}
+
+	private void createKeggEdgeTable(final CyNetwork network) {
+		network.getDefaultEdgeTable().createColumn(KeggConstants.KEGG_RELATION_TYPE, String.class, true);
+		network.getDefaultEdgeTable().createColumn(KeggConstants.KEGG_REACTION_TYPE, String.class, true);
+		network.getDefaultEdgeTable().createColumn(KeggConstants.KEGG_EDGE_COLOR, String.class, true);
+		network.getDefaultEdgeTable().createColumn(KeggConstants.KEGG_EDGE_COLOR_BG, String.class, true);
+		network.getDefaultEdgeTable().createListColumn(KeggConstants.KEGG_EDGE_SUBTYPES, String.class, true);
+		network.getDefaultEdgeTable().createColumn(KeggConstants.KEGG_EDGE_LABEL, String.class, true);
+	}
+
+	private void createKeggNodeTable(final CyNetwork network) {
+		GeometryColumns.create(network.getDefaultNodeTable());
+		network.getDefaultNodeTable().createColumn(KeggConstants.KEGG_NODE_LABEL, String.class, true);
+		network.getDefaultNodeTable().createColumn(KeggConstants.KEGG_NODE_LABEL_LIST_FIRST, String.class, true);
+		network.getDefaultNodeTable().createListColumn(KeggConstants.KEGG_NODE_LABEL_LIST, String.class, true);
+		network.getDefaultNodeTable().createListColumn(KeggConstants.KEGG_ID, String.class, true);
+		network.getDefaultNodeTable().createColumn(KeggConstants.KEGG_NODE_LABEL_COLOR, String.class, true);
+		network.getDefaultNodeTable().createColumn(KeggConstants.KEGG_NODE_FILL_COLOR, String.class, true);
+		network.getDefaultNodeTable().createColumn(KeggConstants.KEGG_NODE_REACTIONID, String.class, true);
+		network.getDefaultNodeTable().createColumn(KeggConstants.KEGG_NODE_TYPE, String.class, true);
+		network.getDefaultNodeTable().createColumn(KeggConstants.KEGG_NODE_SHAPE, String.class, true);
+
+		network.getDefaultNodeTable().createColumn(KeggConstants.KEGG_LINK, String.class, true);
+	}
+
+	/**
+	 * Keep the size and cost of the import in the network table.
+	 */
+	public static void writeSummary(final CyNetwork network, final ImportMetrics metrics) {
+		final CyTable table = network.getDefaultNetworkTable();
+		if (table.getColumn(KeggConstants.KEGG_IMPORT_TIME) == null) {
+			table.createColumn(KeggConstants.KEGG_IMPORT_BYTES, Long.class, false);
+			table.createColumn(KeggConstants.KEGG_IMPORT_TIME, Long.class, false);
+			table.createColumn(KeggConstants.KEGG_IMPORT_ALLOCATED, Long.class, false);
+			table.createListColumn(KeggConstants.KEGG_IMPORT_PHASES, String.class, false);
+		}
+		final CyRow row = network.getRow(network);
+		row.set(KeggConstants.KEGG_IMPORT_BYTES, metrics.getBytes());
+		row.set(KeggConstants.KEGG_IMPORT_TIME, metrics.getTotalNanos() / 1000000);
+		row.set(KeggConstants.KEGG_IMPORT_ALLOCATED, metrics.getTotalAllocatedBytes());
+		row.set(KeggConstants.KEGG_IMPORT_PHASES, metrics.getPhaseSummary());
+	}
+
+	/**
+	 * Write the pathways and locations each node of a merged graph was found
+	 * at to list columns.
+	 *
+	 * @param nodes
+	 *            nodes returned by {@link #materialize(PathwayGraph, CyNetwork)}
+	 *            for the merged graph
+	 */
+	public void writeOccurrences(final MergedPathwayGraph merged, final CyNetwork network, final CyNode[] nodes) {
+		final CyTable table = network.getDefaultNodeTable();
+		if (table.getColumn(KeggConstants.KEGG_NODE_PATHWAYS) == null) {
+			table.createListColumn(KeggConstants.KEGG_NODE_PATHWAYS, String.class, true);
+			table.createListColumn(KeggConstants.KEGG_NODE_PATHWAY_X, Double.class, true);
+			table.createListColumn(KeggConstants.KEGG_NODE_PATHWAY_Y, Double.class, true);
+		}
+
+		for (int i = 0; i < nodes.length; i++) {
+			final int count = merged.getOccurrenceCount(i);
+			final List<String> pathways = new ArrayList<String>(count);
+			final List<Double> x = new ArrayList<Double>(count);
+			final List<Double> y = new ArrayList<Double>(count);
+			for (int j = 0; j < count; j++) {
+				pathways.add(merged.getPathwayName(merged.getPathway(i, j)));
+				x.add(merged.getX(i, j));
+				y.add(merged.getY(i, j));
+			}
+			final CyRow row = network.getRow(nodes[i]);
+			row.set(KeggConstants.KEGG_NODE_PATHWAYS, pathways);
+			row.set(KeggConstants.KEGG_NODE_PATHWAY_X, x);
+			row.set(KeggConstants.KEGG_NODE_PATHWAY_Y, y);
+		}
+	}
+
+	private final void mapNetworkTable(final PathwayGraph graph, final CyNetwork network) {
+		final CyRow networkRow = network.getRow(network);
+
+		// Make more usable name
+		networkRow.set(CyNetwork.NAME, graph.getTitle() + " [" + graph.getOrg() + graph.getNumber() + "]");
+
+		final CyTable netTable = network.getDefaultNetworkTable();
+		if (netTable.getColumn(KeggConstants.KEGG_PATHWAY_ID) == null) {
+			netTable.createColumn(KeggConstants.KEGG_PATHWAY_ID, String.class, true);
+			netTable.createColumn(KeggConstants.KEGG_PATHWAY_IMAGE, String.class, true);
+			netTable.createColumn(KeggConstants.KEGG_PATHWAY_LINK, String.class, true);
+			netTable.createColumn(KeggConstants.KEGG_PATHWAY_ORG, String.class, true);
+		}
+
+		networkRow.set(KeggConstants.KEGG_PATHWAY_LINK, graph.getLink());
+		networkRow.set(KeggConstants.KEGG_PATHWAY_IMAGE, graph.getImage());
+		networkRow.set(KeggConstants.KEGG_PATHWAY_ID, graph.getName());
+		networkRow.set(KeggConstants.KEGG_PATHWAY_ORG, graph.getOrg());
+	}
+}
@@ -0,0 +1,207 @@
+package org.cytoscape.keggscape.internal.read.kgml;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cytoscape.keggscape.internal.model.PathwayGraph;
+import org.cytoscape.keggscape.internal.model.PathwaySnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads a KGML stream into a {@link PathwayGraph} with the streaming parser.
+ *
+ * Instances are immutable and can be shared by multiple threads.
+ */
+public class PathwayGraphReader {
+
+	private static final Logger logger = LoggerFactory.getLogger(PathwayGraphReader.class);
+
+	/**
+	 * Set this system property to false to always parse KGML files, without
+	 * reading or writing snapshots.
+	 */
+	public static final String SNAPSHOT_PROPERTY = "keggscape.kgml.snapshot";
+
+	public static final String MAX_SIZE_PROPERTY = "keggscape.kgml.snapshot.maxMegabytes";
+
+	public static final String SNAPSHOT_EXTENSION = ".snapshot";
+
+	private static final long DEF_MAX_MEGABYTES = 256;
+
+	// Snapshot options
+	private static final int GROUP_PLACEHOLDERS = 1;
+
+	private final File snapshotDirectory;
+	private final long maxBytes;
+
+	/**
+	 * Create a reader without snapshots.
+	 */
+	public PathwayGraphReader() {
+		this(null);
+	}
+
+	/**
+	 * Create a reader with the snapshot size limit of the
+	 * {@link #MAX_SIZE_PROPERTY} system property.
+	 *
+	 * @param snapshotDirectory
+	 *            app owned directory for the snapshots of
+	 *            {@link #readCached(File, String)}, or null to always parse
+	 */
+	public PathwayGraphReader(final File snapshotDirectory) {
+		this(snapshotDirectory, Long.getLong(MAX_SIZE_PROPERTY, DEF_MAX_MEGABYTES) * 1024L * 1024L);
+	}
+
+	/**
+	 * @param maxBytes
+	 *            maximum total size of the snapshots in the directory. The
+	 *            least recently used snapshots are deleted first.
+	 */
+	public PathwayGraphReader(final File snapshotDirectory, final long maxBytes) {
+		this.snapshotDirectory = snapshotDirectory;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Parse and map one KGML document. The stream is not closed.
+	 */
+	public PathwayGraph read(final InputStream is) throws IOException {
+		return read(is, new KGMLMapper());
+	}
+
+	private final PathwayGraph read(final InputStream is, final KGMLMapper mapper) throws IOException {
+		new KGMLStreamParser().parse(is, mapper);
+		final PathwayGraph graph = mapper.getGraph();
+		if (graph == null) {
+			throw new IOException("KGML document does not contain a pathway.");
+		}
+		return graph;
+	}
+
+	/**
+	 * Read a KGML file from its snapshot in the snapshot directory. If there
+	 * is no snapshot, or it was made with other mapping options, parse the
+	 * file and write a new snapshot. Nothing is written beside the KGML file,
+	 * which may belong to the user.
+	 *
+	 * @param digest
+	 *            SHA-256 digest of the file in hex. Snapshots are keyed by the
+	 *            name and content of the file, so a file extracted again to
+	 *            another location uses the same snapshot.
+	 */
+	public PathwayGraph readCached(final File kgml, final String digest) throws IOException {
+		final KGMLMapper mapper = new KGMLMapper();
+		if (snapshotDirectory == null || !isSnapshotEnabled()) {
+			return read(kgml, mapper);
+		}
+
+		final int options = mapper.isGroupPlaceholders() ? GROUP_PLACEHOLDERS : 0;
+		final File snapshot = getSnapshotFile(snapshotDirectory, kgml, digest);
+		try {
+			final PathwayGraph graph = PathwaySnapshot.read(snapshot, options, kgml.length());
+			if (graph != null) {
+				// Recently used snapshots are pruned last.
+				snapshot.setLastModified(System.currentTimeMillis());
+				return graph;
+			}
+		} catch (IOException e) {
+			logger.warn("Could not read pathway snapshot " + snapshot + ". The KGML file will be parsed.", e);
+		}
+
+		final PathwayGraph graph = read(kgml, mapper);
+		try {
+			PathwaySnapshot.write(graph, snapshot, options, kgml.length());
+			prune(snapshot);
+		} catch (IOException e) {
+			logger.debug("Could not write pathway snapshot " + snapshot, e);
+		}
+		return graph;
+	}
+
+	/**
+	 * Delete the least recently used snapshots until the directory fits its
+	 * size limit. The given snapshot is always kept.
+	 */
+	private final void prune(final File keep) {
+		final File[] files = snapshotDirectory.listFiles();
+		if (files == null) {
+			return;
+		}
+		final List<File> snapshots = new ArrayList<File>();
+		final Map<File, Long> modified = new HashMap<File, Long>();
+		long total = 0;
+		for (final File file : files) {
+			if (file.getName().endsWith(SNAPSHOT_EXTENSION)) {
+				snapshots.add(file);
+				modified.put(file, file.lastModified());
+				total += file.length();
+			}
+		}
+		if (total <= maxBytes) {
+			return;
+		}
+
+		Collections.sort(snapshots, new Comparator<File>() {
+			@Override
+			public int compare(final File f1, final File f2) {
+				return modified.get(f1).compareTo(modified.get(f2));
+			}
+		});
+		for (final File file : snapshots) {
+			if (total <= maxBytes) {
+				break;
+			}
+			if (file.equals(keep)) {
+				continue;
+			}
+			final long length = file.length();
+			if (file.delete()) {
+				total -= length;
+				logger.debug("Deleted pathway snapshot " + file);
+			}
+		}
+	}
+
+	private final PathwayGraph read(final File kgml, final KGMLMapper mapper) throws IOException {
+		final InputStream is = new BufferedInputStream(new FileInputStream(kgml));
+		try {
+			return read(is, mapper);
+		} finally {
+			is.close();
+		}
+	}
+
+	/**
+	 * @return false if snapshots are disabled by the
+	 *         {@link #SNAPSHOT_PROPERTY} system property.
+	 */
+	public static boolean isSnapshotEnabled() {
+		return !"false".equalsIgnoreCase(System.getProperty(SNAPSHOT_PROPERTY));
+	}
+
+	/**
+	 * @return location of the snapshot of a KGML file, keyed by its name and
+	 *         the digest of its content. The file may not exist.
+	 */
+	public static File getSnapshotFile(final File snapshotDirectory, final File kgml, final String digest) {
+		return new File(snapshotDirectory, kgml.getName() + "-" + digest + SNAPSHOT_EXTENSION);
+	}
+
+	/**
+	 * @return true if the graph should be rendered with the global map style.
+	 */
+	public static boolean isGlobalMap(final PathwayGraph graph) {
+		return KGMLMapper.GLOBAL_MAP_ID.contains(graph.getNumber());
+	}
+}
@@ -0,0 +1,123 @@
+package org.cytoscape.keggscape.internal.read.kgml;
+
+import org.cytoscape.keggscape.internal.model.NodeTable;
+import org.cytoscape.keggscape.internal.model.PathwayGraph;
+import org.cytoscape.model.CyColumn;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.CyRow;
+import org.cytoscape.model.CyTable;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.View;
+import org.cytoscape.view.model.VisualProperty;
+import org.cytoscape.view.presentation.property.BasicVisualLexicon;
+
+/**
+ * Writes KEGG node locations and sizes directly into network views.
+ *
+ * The KEGG styles have no mappings for node locations, so views of KEGG
+ * networks must be placed with this class when they are created.
+ */
+public final class ViewGeometry {
+
+	private ViewGeometry() {
+	}
+
+	/**
+	 * Place all nodes of a new view in one pass over the mapped graph.
+	 *
+	 * @param nodes
+	 *            nodes created for the graph, as returned by
+	 *            {@link PathwayGraphMaterializer#materialize}
+	 */
+	public static void apply(final CyNetworkView view, final PathwayGraph graph, final CyNode[] nodes) {
+		final NodeTable table = graph.getNodes();
+		for (int i = 0; i < nodes.length; i++) {
+			final View<CyNode> nodeView = view.getNodeView(nodes[i]);
+			if (nodeView != null) {
+				set(nodeView, table.getX(i), table.getY(i), table.getWidth(i), table.getHeight(i));
+			}
+		}
+	}
+
+	/**
+	 * Place the nodes of a view from the KEGG geometry columns, for views
+	 * created without the mapped graph.
+	 *
+	 * @return false if the network has no KEGG geometry columns.
+	 */
+	public static boolean applyFromTable(final CyNetworkView view) {
+		final CyNetwork network = view.getModel();
+		final CyTable table = network.getDefaultNodeTable();
+		for (final String name : GeometryColumns.NAMES) {
+			if (table.getColumn(name) == null) {
+				return false;
+			}
+		}
+
+		for (final View<CyNode> nodeView : view.getNodeViews()) {
+			final CyRow row = network.getRow(nodeView.getModel());
+			set(nodeView, get(row, KeggConstants.KEGG_NODE_X), get(row, KeggConstants.KEGG_NODE_Y),
+					get(row, KeggConstants.KEGG_NODE_WIDTH), get(row, KeggConstants.KEGG_NODE_HEIGHT));
+		}
+		return true;
+	}
+
+	/**
+	 * @return true if the view has nodes and none of them has been moved from
+	 *         the origin, as in a view which has just been created.
+	 */
+	public static boolean isUnplaced(final CyNetworkView view) {
+		if (view.getNodeViews().isEmpty()) {
+			return false;
+		}
+		for (final View<CyNode> nodeView : view.getNodeViews()) {
+			if (!isZero(nodeView, BasicVisualLexicon.NODE_X_LOCATION)
+					|| !isZero(nodeView, BasicVisualLexicon.NODE_Y_LOCATION)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static final void set(final View<CyNode> nodeView, final double x, final double y, final double width,
+			final double height) {
+		// Missing values keep the style defaults.
+		if (!Double.isNaN(x)) {
+			nodeView.setVisualProperty(BasicVisualLexicon.NODE_X_LOCATION, x);
+		}
+		if (!Double.isNaN(y)) {
+			nodeView.setVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION, y);
+		}
+		if (!Double.isNaN(width)) {
+			nodeView.setVisualProperty(BasicVisualLexicon.NODE_WIDTH, width);
+		}
+		if (!Double.isNaN(height)) {
+			nodeView.setVisualProperty(BasicVisualLexicon.NODE_HEIGHT, height);
+		}
+	}
+
+	private static final boolean isZero(final View<CyNode> nodeView, final VisualProperty<Double> vp) {
+		final Double value = nodeView.getVisualProperty(vp);
+		return value == null || value.doubleValue() == 0d;
+	}
+
+	/**
+	 * @return value of a geometry column of any type, or NaN.
+	 */
+	private static final double get(final CyRow row, final String name) {
+		final CyColumn column = row.getTable().getColumn(name);
+		final Object value = row.get(name, column.getType());
+		if (value instanceof Number) {
+			return ((Number) value).doubleValue();
+		}
+		if (value == null) {
+			return Double.NaN;
+		}
+		try {
+			return Double.parseDouble(value.toString().trim());
+		} catch (NumberFormatException e) {
+			return Double.NaN;
+		}
+	}
+}
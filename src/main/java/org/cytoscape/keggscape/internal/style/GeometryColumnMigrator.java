@@ -0,0 +1,95 @@
+package org.cytoscape.keggscape.internal.style;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.cytoscape.keggscape.internal.read.kgml.GeometryColumns;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.subnetwork.CyRootNetwork;
+import org.cytoscape.model.subnetwork.CyRootNetworkManager;
+import org.cytoscape.session.CySession;
+import org.cytoscape.session.events.SessionLoadedEvent;
+import org.cytoscape.session.events.SessionLoadedListener;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.vizmap.VisualMappingManager;
+import org.cytoscape.view.vizmap.VisualStyle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Converts String geometry columns and matching style mappings of sessions
+ * saved with older versions of this app.
+ */
+public class GeometryColumnMigrator implements SessionLoadedListener {
+
+	private static final Logger logger = LoggerFactory.getLogger(GeometryColumnMigrator.class);
+
+	private final CyRootNetworkManager rootNetworkManager;
+	private final VisualMappingManager vmm;
+	private final KGMLVisualStyleBuilder vsBuilder;
+
+	public GeometryColumnMigrator(final CyRootNetworkManager rootNetworkManager, final VisualMappingManager vmm,
+			final KGMLVisualStyleBuilder vsBuilder) {
+		this.rootNetworkManager = rootNetworkManager;
+		this.vmm = vmm;
+		this.vsBuilder = vsBuilder;
+	}
+
+	@Override
+	public void handleEvent(final SessionLoadedEvent e) {
+		final CySession session = e.getLoadedSession();
+		if (session == null) {
+			return;
+		}
+		migrate(session.getNetworks(), session.getNetworkViews());
+	}
+
+	/**
+	 * @return false if some columns could not be converted. Styles are not
+	 *         modified in that case.
+	 */
+	public boolean migrate(final Set<CyNetwork> networks, final Set<CyNetworkView> views) {
+		boolean found = false;
+		boolean migrated = true;
+
+		// Columns are normally shared by all networks in a collection.
+		final Set<CyRootNetwork> roots = new HashSet<CyRootNetwork>();
+		for (final CyNetwork network : networks) {
+			final CyRootNetwork root = rootNetworkManager.getRootNetwork(network);
+			if (roots.add(root) && GeometryColumns.needsMigration(root.getSharedNodeTable())) {
+				found = true;
+				migrated &= GeometryColumns.migrate(root.getSharedNodeTable());
+			}
+		}
+		for (final CyNetwork network : networks) {
+			if (GeometryColumns.needsMigration(network.getDefaultNodeTable())) {
+				found = true;
+				migrated &= GeometryColumns.migrate(network.getDefaultNodeTable());
+			}
+		}
+
+		if (!found) {
+			return true;
+		}
+		if (!migrated) {
+			logger.warn("Some KEGG geometry columns could not be converted. Styles are not updated.");
+			return false;
+		}
+
+		final Set<VisualStyle> updated = new HashSet<VisualStyle>();
+		for (final VisualStyle style : vmm.getAllVisualStyles()) {
+			if (vsBuilder.updateGeometryMappings(style)) {
+				updated.add(style);
+			}
+		}
+		for (final CyNetworkView view : views) {
+			final VisualStyle style = vmm.getVisualStyle(view);
+			if (updated.contains(style)) {
+				style.apply(view);
+				view.updateView();
+			}
+		}
+		logger.info("Converted KEGG geometry columns of " + networks.size() + " networks to numbers.");
+		return true;
+	}
+}
@@ -5,6 +5,7 @@ import java.awt.Font;
 import java.awt.Paint;
 import java.util.Set;
 
+import org.cytoscape.keggscape.internal.read.kgml.GeometryColumns;
 import org.cytoscape.keggscape.internal.read.kgml.KEGGTags;
 import org.cytoscape.keggscape.internal.read.kgml.KeggConstants;
 import org.cytoscape.model.CyNetwork;
@@ -46,6 +47,27 @@ public class KGMLVisualStyleBuilder {
 		lexicons = vmm.getAllVisualLexicon();
 	}
 
+	/**
+	 * Find the KEGG style registered to the manager. If it does not exist yet,
+	 * create and register it.
+	 * 
+	 * @param globalMap
+	 *            if true, return the style for global metabolic maps.
+	 */
+	public VisualStyle getStyle(final VisualMappingManager vmm, final boolean globalMap) {
+		final String targetStyleName = globalMap ? GLOBAL_VS_NAME : DEF_VS_NAME;
+		for (final VisualStyle style : vmm.getAllVisualStyles()) {
+			if (style.getTitle().equals(targetStyleName)) {
+				return style;
+			}
+		}
+
+		// Need to create custom style.
+		final VisualStyle style = globalMap ? getGlobalVisualStyle() : getVisualStyle();
+		vmm.addVisualStyle(style);
+		return style;
+	}
+
 	public VisualStyle getVisualStyle() {
 		final VisualStyle defStyle = vsFactory.createVisualStyle(DEF_VS_NAME);
 		final Set<VisualPropertyDependency<?>> deps = defStyle.getAllVisualPropertyDependencies();
@@ -64,14 +86,6 @@ public class KGMLVisualStyleBuilder {
 
 		createDefaults(defStyle);
 
-		final PassthroughMapping<String, Double> nodexPassthrough = (PassthroughMapping<String, Double>) passthroughMappingFactory
-				.createVisualMappingFunction(KeggConstants.KEGG_NODE_X, String.class, BasicVisualLexicon.NODE_X_LOCATION);
-		final PassthroughMapping<String, Double> nodeyPassthrough = (PassthroughMapping<String, Double>) passthroughMappingFactory
-				.createVisualMappingFunction(KeggConstants.KEGG_NODE_Y, String.class, BasicVisualLexicon.NODE_Y_LOCATION);
-		final PassthroughMapping<String, Double> nodewidthPassthrough = (PassthroughMapping<String, Double>) passthroughMappingFactory
-				.createVisualMappingFunction(KeggConstants.KEGG_NODE_WIDTH, String.class, BasicVisualLexicon.NODE_WIDTH);
-		final PassthroughMapping<String, Double> nodeheightPassthrough = (PassthroughMapping<String, Double>) passthroughMappingFactory
-				.createVisualMappingFunction(KeggConstants.KEGG_NODE_HEIGHT, String.class, BasicVisualLexicon.NODE_HEIGHT);
 		final PassthroughMapping<String, String> nodelabelPassthrough = (PassthroughMapping<String, String>) passthroughMappingFactory
 				.createVisualMappingFunction(KeggConstants.KEGG_NODE_LABEL_LIST_FIRST, String.class,
 						BasicVisualLexicon.NODE_LABEL);
@@ -92,10 +106,7 @@ public class KGMLVisualStyleBuilder {
 				.createVisualMappingFunction(KeggConstants.KEGG_EDGE_COLOR, String.class,
 						BasicVisualLexicon.EDGE_UNSELECTED_PAINT);
 
-		defStyle.addVisualMappingFunction(nodexPassthrough);
-		defStyle.addVisualMappingFunction(nodeyPassthrough);
-		defStyle.addVisualMappingFunction(nodewidthPassthrough);
-		defStyle.addVisualMappingFunction(nodeheightPassthrough);
+		addGeometryMappings(defStyle, GeometryColumns.getType());
 		defStyle.addVisualMappingFunction(nodelabelPassthrough);
 		defStyle.addVisualMappingFunction(nodeTooltipPassthrough);
 		defStyle.addVisualMappingFunction(nodelabelcolorPassthrough);
@@ -166,6 +177,49 @@ public class KGMLVisualStyleBuilder {
 		return defStyle;
 	}
 
+	/**
+	 * Node size comes from the KEGG geometry columns. The mapping type must
+	 * match the column type, otherwise every value is converted on each style
+	 * apply.
+	 * 
+	 * Node locations are not mapped. They are written to new views once, when
+	 * the views are created, and are then kept when the style is applied.
+	 */
+	private final void addGeometryMappings(final VisualStyle style, final Class<?> type) {
+		style.addVisualMappingFunction(passthroughMappingFactory.createVisualMappingFunction(
+				KeggConstants.KEGG_NODE_WIDTH, type, BasicVisualLexicon.NODE_WIDTH));
+		style.addVisualMappingFunction(passthroughMappingFactory.createVisualMappingFunction(
+				KeggConstants.KEGG_NODE_HEIGHT, type, BasicVisualLexicon.NODE_HEIGHT));
+	}
+
+	/**
+	 * Replace geometry mappings created for String columns by older versions.
+	 * Their location mappings are removed, the views already have the node
+	 * locations.
+	 * 
+	 * @return true if the style has been modified.
+	 */
+	public boolean updateGeometryMappings(final VisualStyle style) {
+		final Class<?> type = GeometryColumns.getType();
+		final VisualMappingFunction<?, Double> widthMapping = style
+				.getVisualMappingFunction(BasicVisualLexicon.NODE_WIDTH);
+		if (widthMapping == null || !widthMapping.getMappingColumnName().equals(KeggConstants.KEGG_NODE_WIDTH)
+				|| widthMapping.getMappingColumnType() == type) {
+			return false;
+		}
+
+		final VisualMappingFunction<?, Double> xMapping = style
+				.getVisualMappingFunction(BasicVisualLexicon.NODE_X_LOCATION);
+		if (xMapping != null && xMapping.getMappingColumnName().equals(KeggConstants.KEGG_NODE_X)) {
+			style.removeVisualMappingFunction(BasicVisualLexicon.NODE_X_LOCATION);
+			style.removeVisualMappingFunction(BasicVisualLexicon.NODE_Y_LOCATION);
+		}
+		style.removeVisualMappingFunction(BasicVisualLexicon.NODE_WIDTH);
+		style.removeVisualMappingFunction(BasicVisualLexicon.NODE_HEIGHT);
+		addGeometryMappings(style, type);
+		return true;
+	}
+
 	private final void createDefaults(final VisualStyle style) {
 		// Defaults for nodes
 		style.setDefaultValue(BasicVisualLexicon.NODE_LABEL_FONT_SIZE, 8);
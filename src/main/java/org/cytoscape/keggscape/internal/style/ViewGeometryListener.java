@@ -0,0 +1,26 @@
+package org.cytoscape.keggscape.internal.style;
+
+import org.cytoscape.keggscape.internal.read.kgml.ViewGeometry;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.events.NetworkViewAddedEvent;
+import org.cytoscape.view.model.events.NetworkViewAddedListener;
+
+/**
+ * Places the nodes of KEGG network views created outside of this app, such
+ * as views created from the network panel for networks imported without a
+ * view.
+ *
+ * Only views where no node has been placed yet are modified. Views created by
+ * the KEGG reader and tasks, or restored from a session, already have their
+ * node locations.
+ */
+public class ViewGeometryListener implements NetworkViewAddedListener {
+
+	@Override
+	public void handleEvent(final NetworkViewAddedEvent e) {
+		final CyNetworkView view = e.getNetworkView();
+		if (ViewGeometry.isUnplaced(view) && ViewGeometry.applyFromTable(view)) {
+			view.updateView();
+		}
+	}
+}
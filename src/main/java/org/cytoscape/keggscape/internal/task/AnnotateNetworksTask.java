@@ -0,0 +1,200 @@
+package org.cytoscape.keggscape.internal.task;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.cytoscape.keggscape.internal.read.kgml.KeggConstants;
+import org.cytoscape.keggscape.internal.wsclient.AdaptiveConcurrencyLimit;
+import org.cytoscape.keggscape.internal.wsclient.AdaptiveRequestExecutor;
+import org.cytoscape.keggscape.internal.wsclient.CircuitBreaker;
+import org.cytoscape.keggscape.internal.wsclient.NetworkAnnotationWriter;
+import org.cytoscape.keggscape.internal.wsclient.PathwaySource;
+import org.cytoscape.keggscape.internal.wsclient.RetryPolicy;
+import org.cytoscape.model.CyColumn;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNetworkManager;
+import org.cytoscape.work.AbstractTask;
+import org.cytoscape.work.ObservableTask;
+import org.cytoscape.work.ProvidesTitle;
+import org.cytoscape.work.TaskMonitor;
+import org.cytoscape.work.Tunable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Import pathway details for all KEGG networks from the {@link PathwaySource}.
+ *
+ * Entries are downloaded and parsed on a thread pool. The number of requests
+ * in flight adapts to the response of the server, up to the number of
+ * connections the source allows. Values are written to the
+ * networks on the task thread, one network at a time, as soon as each entry
+ * has been read.
+ */
+public class AnnotateNetworksTask extends AbstractTask implements ObservableTask {
+
+	private static final Logger logger = LoggerFactory.getLogger(AnnotateNetworksTask.class);
+
+	private static final int FAILURE_THRESHOLD = 5;
+	private static final long OPEN_MILLIS = 30000;
+	private static final long BASE_DELAY = 500;
+	private static final long MAX_DELAY = 10000;
+
+	@Tunable(description = "Maximum number of concurrent requests")
+	public int maxConcurrency = 8;
+
+	@Tunable(description = "Maximum number of attempts per pathway")
+	public int maxAttempts = 4;
+
+	@Tunable(description = "Skip networks which already have details")
+	public boolean skipAnnotated = true;
+
+	private final CyNetworkManager networkManager;
+	private final PathwaySource source;
+
+	private String result;
+
+	@ProvidesTitle
+	public String getTitle() {
+		return "Import Details for All KEGG Pathways";
+	}
+
+	public AnnotateNetworksTask(final CyNetworkManager networkManager, final PathwaySource source) {
+		this.networkManager = networkManager;
+		this.source = source;
+	}
+
+	@Override
+	public void run(final TaskMonitor taskMonitor) throws Exception {
+		taskMonitor.setTitle(getTitle());
+		taskMonitor.setProgress(-1.0);
+		if (maxConcurrency < 1 || maxAttempts < 1) {
+			throw new IllegalArgumentException("Concurrency and attempts must be positive numbers.");
+		}
+
+		// Index gene nodes on this thread. Workers only fill the writers.
+		final List<NetworkAnnotationWriter> writers = new ArrayList<NetworkAnnotationWriter>();
+		final List<String> ids = new ArrayList<String>();
+		for (final CyNetwork network : networkManager.getNetworkSet()) {
+			final String id = getPathwayId(network);
+			if (id != null && !(skipAnnotated && isAnnotated(network))) {
+				ids.add(id);
+				writers.add(new NetworkAnnotationWriter(network));
+			}
+		}
+
+		final int total = writers.size();
+		if (total == 0) {
+			result = "No KEGG networks to annotate.";
+			taskMonitor.setStatusMessage(result);
+			return;
+		}
+
+		// More requests would wait in the connection pool, and time out there.
+		final int concurrency = Math.min(maxConcurrency, source.getMaxConcurrentAnnotations());
+		if (concurrency < maxConcurrency) {
+			logger.debug("Concurrent requests are limited to " + concurrency + " by " + source.getName() + ".");
+		}
+		final AdaptiveRequestExecutor requestExecutor = new AdaptiveRequestExecutor(
+				new AdaptiveConcurrencyLimit(Math.min(2, concurrency), 1, concurrency),
+				new CircuitBreaker(FAILURE_THRESHOLD, OPEN_MILLIS), new RetryPolicy(maxAttempts, BASE_DELAY, MAX_DELAY));
+
+		final ExecutorService executor = Executors.newFixedThreadPool(Math.min(total, concurrency));
+		final CompletionService<NetworkAnnotationWriter> completionService = new ExecutorCompletionService<NetworkAnnotationWriter>(
+				executor);
+		final List<Future<NetworkAnnotationWriter>> futures = new ArrayList<Future<NetworkAnnotationWriter>>(total);
+
+		final long start = System.nanoTime();
+		int done = 0;
+		int failed = 0;
+		try {
+			for (int i = 0; i < total; i++) {
+				final String id = ids.get(i);
+				final NetworkAnnotationWriter writer = writers.get(i);
+				futures.add(completionService.submit(new Callable<NetworkAnnotationWriter>() {
+					@Override
+					public NetworkAnnotationWriter call() throws Exception {
+						return requestExecutor.execute(new AdaptiveRequestExecutor.Request<NetworkAnnotationWriter>() {
+							@Override
+							public NetworkAnnotationWriter call() throws IOException {
+								writer.reset();
+								source.readAnnotation(id, writer);
+								return writer;
+							}
+						});
+					}
+				}));
+			}
+
+			for (int i = 0; i < total; i++) {
+				if (cancelled) {
+					break;
+				}
+
+				try {
+					// Cytoscape model is modified only from this thread.
+					completionService.take().get().apply();
+					done++;
+				} catch (ExecutionException e) {
+					failed++;
+					logger.warn("Could not import pathway details.", e.getCause());
+				}
+
+				taskMonitor.setStatusMessage(String.format("Annotated %d of %d pathways (%.1f pathways/s, %d in flight)",
+						done, total, getRate(done, start), requestExecutor.getLimit().getInFlight()));
+				taskMonitor.setProgress(((double) (i + 1)) / total);
+			}
+		} finally {
+			for (final Future<NetworkAnnotationWriter> future : futures) {
+				future.cancel(true);
+			}
+			executor.shutdownNow();
+		}
+
+		result = String.format("Annotated %d of %d pathways in %.1f s (%.1f pathways/s, %d failed, %d retries).",
+				done, total, (System.nanoTime() - start) / 1e9, getRate(done, start), failed,
+				requestExecutor.getRetryCount());
+		logger.info(result);
+		taskMonitor.setStatusMessage(result);
+	}
+
+	@Override
+	public Object getResults(@SuppressWarnings("rawtypes") final Class type) {
+		if (type == String.class) {
+			return result;
+		}
+		return null;
+	}
+
+	private final double getRate(final int done, final long start) {
+		final double seconds = (System.nanoTime() - start) / 1e9;
+		return seconds > 0 ? done / seconds : 0;
+	}
+
+	/**
+	 * @return pathway ID without prefix, or null if the network was not
+	 *         imported from KGML.
+	 */
+	private final String getPathwayId(final CyNetwork network) {
+		if (network.getDefaultNetworkTable().getColumn(KeggConstants.KEGG_PATHWAY_ID) == null) {
+			return null;
+		}
+		final String id = network.getRow(network).get(KeggConstants.KEGG_PATHWAY_ID, String.class);
+		if (id == null || id.indexOf(':') < 0) {
+			return null;
+		}
+		return id.split(":")[1];
+	}
+
+	private final boolean isAnnotated(final CyNetwork network) {
+		final CyColumn column = network.getDefaultNetworkTable().getColumn("description");
+		return column != null && network.getRow(network).get(column.getName(), String.class) != null;
+	}
+}
@@ -0,0 +1,22 @@
+package org.cytoscape.keggscape.internal.task;
+
+import org.cytoscape.keggscape.internal.wsclient.PathwaySource;
+import org.cytoscape.model.CyNetworkManager;
+import org.cytoscape.work.AbstractTaskFactory;
+import org.cytoscape.work.TaskIterator;
+
+public class AnnotateNetworksTaskFactory extends AbstractTaskFactory {
+
+	private final CyNetworkManager networkManager;
+	private final PathwaySource source;
+
+	public AnnotateNetworksTaskFactory(final CyNetworkManager networkManager, final PathwaySource source) {
+		this.networkManager = networkManager;
+		this.source = source;
+	}
+
+	@Override
+	public TaskIterator createTaskIterator() {
+		return new TaskIterator(new AnnotateNetworksTask(networkManager, source));
+	}
+}
@@ -0,0 +1,469 @@
+package org.cytoscape.keggscape.internal.task;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+import org.cytoscape.event.CyEventHelper;
+import org.cytoscape.group.CyGroupFactory;
+import org.cytoscape.group.CyGroupManager;
+import org.cytoscape.keggscape.internal.model.MergedPathwayGraph;
+import org.cytoscape.keggscape.internal.model.PathwayGraph;
+import org.cytoscape.keggscape.internal.model.PathwayGraphMerger;
+import org.cytoscape.keggscape.internal.read.kgml.ImportMetrics;
+import org.cytoscape.keggscape.internal.read.kgml.ImportStatistics;
+import org.cytoscape.keggscape.internal.read.kgml.KgmlArchiveReader;
+import org.cytoscape.keggscape.internal.read.kgml.PathwayGraphMaterializer;
+import org.cytoscape.keggscape.internal.read.kgml.PathwayGraphReader;
+import org.cytoscape.keggscape.internal.read.kgml.ViewGeometry;
+import org.cytoscape.keggscape.internal.style.KGMLVisualStyleBuilder;
+import org.cytoscape.keggscape.internal.wsclient.PathwayGraphCache;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNetworkFactory;
+import org.cytoscape.model.CyNetworkManager;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.subnetwork.CyRootNetwork;
+import org.cytoscape.model.subnetwork.CyRootNetworkManager;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.CyNetworkViewFactory;
+import org.cytoscape.view.model.CyNetworkViewManager;
+import org.cytoscape.view.vizmap.VisualMappingManager;
+import org.cytoscape.view.vizmap.VisualStyle;
+import org.cytoscape.work.AbstractTask;
+import org.cytoscape.work.ProvidesTitle;
+import org.cytoscape.work.TaskMonitor;
+import org.cytoscape.work.Tunable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Import many KGML files into one network collection.
+ * 
+ * Files are selected by the user or, if pathway IDs are given, resolved
+ * through the {@link PathwayGraphCache}. The user can also select a .tar.gz,
+ * .zip or .xml.gz archive, which is read by {@link KgmlArchiveReader} without
+ * extracting it.
+ * 
+ * Files are parsed and mapped in parallel on a fork-join pool. Networks are
+ * created on the task thread, one at a time, as soon as each file has been
+ * mapped. If merging is selected, all pathways are combined by
+ * {@link PathwayGraphMerger} into one network instead, in the order they were
+ * given.
+ */
+public class BatchImportTask extends AbstractTask {
+
+	private static final Logger logger = LoggerFactory.getLogger(BatchImportTask.class);
+
+	private static final FileFilter KGML_FILTER = new FileFilter() {
+		@Override
+		public boolean accept(final File file) {
+			final String name = file.getName().toLowerCase();
+			return file.isFile() && (name.endsWith(".xml") || name.endsWith(".kgml"));
+		}
+	};
+
+	@Tunable(description = "KGML file, directory or archive", params = "input=true;fileCategory=network")
+	public File source;
+
+	@Tunable(description = "Pathway ID pattern for directories and archives (e.g. hsa*, mmu00010)")
+	public String idPattern = "";
+
+	@Tunable(description = "Pathway IDs (comma separated, instead of files)")
+	public String pathwayIds = "";
+
+	@Tunable(description = "Network collection name")
+	public String collectionName = "KEGG Pathways";
+
+	@Tunable(description = "Merge pathways into one network (nodes with the same KEGG ID are combined)")
+	public boolean merge = false;
+
+	@Tunable(description = "Create network views")
+	public boolean createViews = false;
+
+	private final List<File> files;
+	private final PathwayGraphCache graphCache;
+
+	private final CyNetworkFactory networkFactory;
+	private final CyNetworkManager networkManager;
+	private final CyRootNetworkManager rootNetworkManager;
+	private final CyNetworkViewFactory viewFactory;
+	private final CyNetworkViewManager viewManager;
+	private final CyGroupFactory groupFactory;
+	private final CyGroupManager groupManager;
+	private final VisualMappingManager vmm;
+	private final KGMLVisualStyleBuilder vsBuilder;
+	private final CyEventHelper eventHelper;
+
+	private final List<CyNetwork> networks = new ArrayList<CyNetwork>();
+	private ImportStatistics statistics;
+
+	@ProvidesTitle
+	public String getTitle() {
+		return "Import KEGG Pathways";
+	}
+
+	/**
+	 * @param files
+	 *            KGML files to import. If null, the files are taken from the
+	 *            source tunable.
+	 * @param graphCache
+	 *            resolves the pathway IDs tunable
+	 */
+	public BatchImportTask(final List<File> files, final PathwayGraphCache graphCache,
+			final CyNetworkFactory networkFactory, final CyNetworkManager networkManager,
+			final CyRootNetworkManager rootNetworkManager,
+			final CyNetworkViewFactory viewFactory, final CyNetworkViewManager viewManager,
+			final CyGroupFactory groupFactory, final CyGroupManager groupManager, final VisualMappingManager vmm,
+			final KGMLVisualStyleBuilder vsBuilder, final CyEventHelper eventHelper) {
+		this.files = files;
+		this.graphCache = graphCache;
+		this.networkFactory = networkFactory;
+		this.networkManager = networkManager;
+		this.rootNetworkManager = rootNetworkManager;
+		this.viewFactory = viewFactory;
+		this.viewManager = viewManager;
+		this.groupFactory = groupFactory;
+		this.groupManager = groupManager;
+		this.vmm = vmm;
+		this.vsBuilder = vsBuilder;
+		this.eventHelper = eventHelper;
+	}
+
+	/**
+	 * Set the statistics which receive the metrics of each pathway. By
+	 * default, metrics are only written to the network table.
+	 */
+	public void setStatistics(final ImportStatistics statistics) {
+		this.statistics = statistics;
+	}
+
+	/**
+	 * @return networks created by this task, in the order they were created.
+	 */
+	public List<CyNetwork> getNetworks() {
+		return Collections.unmodifiableList(networks);
+	}
+
+	@Override
+	public void run(final TaskMonitor taskMonitor) throws Exception {
+		taskMonitor.setTitle("Importing KEGG Pathways");
+		taskMonitor.setProgress(-1.0);
+
+		final List<String> ids = parseIds();
+		final List<File> targets = ids.isEmpty() ? collectFiles() : Collections.<File> emptyList();
+		if (targets.size() == 1 && KgmlArchiveReader.isArchive(targets.get(0))) {
+			importArchive(targets.get(0), taskMonitor);
+			return;
+		}
+		if (targets.isEmpty() && ids.isEmpty()) {
+			throw new IllegalArgumentException("No KGML files found.");
+		}
+
+		final int total = ids.isEmpty() ? targets.size() : ids.size();
+		final PathwayGraphReader reader = new PathwayGraphReader();
+		final ForkJoinPool pool = new ForkJoinPool(Math.min(total, Runtime.getRuntime().availableProcessors()));
+		final CompletionService<LoadedPathway> completionService = new ExecutorCompletionService<LoadedPathway>(
+				pool);
+		final List<Future<LoadedPathway>> futures = new ArrayList<Future<LoadedPathway>>(total);
+
+		try {
+			for (int i = 0; i < total; i++) {
+				final int index = i;
+				futures.add(completionService.submit(new Callable<LoadedPathway>() {
+					@Override
+					public LoadedPathway call() throws Exception {
+						final ImportMetrics metrics = new ImportMetrics(
+								ids.isEmpty() ? targets.get(index).getName() : ids.get(index));
+						try {
+							final PathwayGraph graph = load(metrics);
+							metrics.stop();
+							metrics.setGraph(graph);
+							return new LoadedPathway(graph, metrics);
+						} catch (Exception e) {
+							if (statistics != null) {
+								statistics.recordFailure(metrics, e);
+							}
+							throw e;
+						}
+					}
+
+					private PathwayGraph load(final ImportMetrics metrics) throws IOException {
+						// Pathways from the source are shared with other imports.
+						if (!ids.isEmpty()) {
+							return graphCache.get(ids.get(index), metrics);
+						}
+						final File file = targets.get(index);
+						metrics.setBytes(file.length());
+						metrics.start(ImportMetrics.Phase.PARSE);
+						final InputStream is = new FileInputStream(file);
+						try {
+							return reader.read(is);
+						} finally {
+							is.close();
+						}
+					}
+				}));
+			}
+
+			final PathwayGraphMaterializer materializer = new PathwayGraphMaterializer(groupFactory, groupManager,
+					eventHelper);
+			final PathwayGraphMerger merger = createMerger();
+			CyRootNetwork root = findCollection();
+			int failed = 0;
+
+			for (int done = 1; done <= total; done++) {
+				if (cancelled) {
+					break;
+				}
+
+				final LoadedPathway loaded;
+				try {
+					// Merged nodes take their attributes from the first
+					// pathway, so merge in the given order.
+					loaded = (merger == null ? completionService.take() : futures.get(done - 1)).get();
+				} catch (ExecutionException e) {
+					failed++;
+					logger.warn("Could not import KGML file.", e.getCause());
+					taskMonitor.setProgress(((double) done) / total);
+					continue;
+				}
+
+				final PathwayGraph graph = loaded.graph;
+				if (merger == null) {
+					root = importGraph(root, graph, materializer, loaded.metrics, null);
+				} else {
+					merger.add(graph);
+					record(loaded.metrics);
+				}
+				taskMonitor.setStatusMessage("Imported " + done + " of " + total + " pathways: " + graph.getTitle());
+				taskMonitor.setProgress(((double) done) / total);
+			}
+			importMerged(root, merger, materializer, taskMonitor);
+
+			if (failed != 0) {
+				taskMonitor.setStatusMessage(failed + " of " + total + " files could not be imported.");
+			}
+		} finally {
+			for (final Future<LoadedPathway> future : futures) {
+				future.cancel(true);
+			}
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Import the pathways of an archive. The number of pathways is not known
+	 * until the end of the archive.
+	 */
+	private final void importArchive(final File archive, final TaskMonitor taskMonitor) throws Exception {
+		final KgmlArchiveReader reader = KgmlArchiveReader.open(archive,
+				KgmlArchiveReader.compileIdPattern(idPattern), Runtime.getRuntime().availableProcessors());
+		try {
+			final PathwayGraphMaterializer materializer = new PathwayGraphMaterializer(groupFactory, groupManager,
+					eventHelper);
+			final PathwayGraphMerger merger = createMerger();
+			CyRootNetwork root = findCollection();
+			int done = 0;
+			int failed = 0;
+
+			KgmlArchiveReader.Entry entry;
+			while (!cancelled && (entry = reader.take()) != null) {
+				final PathwayGraph graph = entry.getGraph();
+				if (graph == null) {
+					failed++;
+					logger.warn("Could not import " + entry.getName() + " from " + archive, entry.getError());
+					if (statistics != null) {
+						statistics.recordFailure(entry.getMetrics(), entry.getError());
+					}
+					continue;
+				}
+				if (merger == null) {
+					root = importGraph(root, graph, materializer, entry.getMetrics(), null);
+				} else {
+					merger.add(graph);
+					record(entry.getMetrics());
+				}
+				done++;
+				taskMonitor.setStatusMessage("Imported " + done + " pathways from " + archive.getName() + ": "
+						+ graph.getTitle());
+			}
+
+			if (done == 0 && failed == 0 && !cancelled) {
+				throw new IllegalArgumentException("No KGML files found in " + archive.getName() + ".");
+			}
+			importMerged(root, merger, materializer, taskMonitor);
+			if (failed != 0) {
+				taskMonitor.setStatusMessage(failed + " of " + (done + failed) + " files could not be imported.");
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	private final PathwayGraphMerger createMerger() {
+		return merge ? new PathwayGraphMerger("merged", collectionName) : null;
+	}
+
+	/**
+	 * Add the merged pathways to the collection, unless the task was cancelled
+	 * or nothing was merged.
+	 */
+	private final void importMerged(final CyRootNetwork root, final PathwayGraphMerger merger,
+			final PathwayGraphMaterializer materializer, final TaskMonitor taskMonitor) {
+		if (merger == null || merger.getPathwayCount() == 0 || cancelled) {
+			return;
+		}
+		final MergedPathwayGraph merged = merger.build();
+		final ImportMetrics metrics = new ImportMetrics(collectionName);
+		metrics.setGraph(merged.getGraph());
+		importGraph(root, merged.getGraph(), materializer, metrics, merged);
+		taskMonitor.setStatusMessage("Merged " + merged.getInputNodeCount() + " nodes of "
+				+ merged.getPathwayCount() + " pathways into " + merged.getGraph().getNodes().size() + " nodes.");
+	}
+
+	/**
+	 * Add one pathway to the collection. The Cytoscape model is modified only
+	 * from the task thread.
+	 * 
+	 * @param root
+	 *            collection, or null to create it
+	 * @param metrics
+	 *            metrics of the download and parse phases of the pathway,
+	 *            continued here
+	 * @param merged
+	 *            if not null, the graph is the result of merging pathways.
+	 *            The pathways were recorded when they were merged, so the
+	 *            metrics are only written to the network table.
+	 * @return the collection
+	 */
+	private final CyRootNetwork importGraph(final CyRootNetwork root, final PathwayGraph graph,
+			final PathwayGraphMaterializer materializer, final ImportMetrics metrics,
+			final MergedPathwayGraph merged) {
+		final CyNetwork network;
+		final CyRootNetwork collection;
+		if (root == null) {
+			network = networkFactory.createNetwork();
+			collection = rootNetworkManager.getRootNetwork(network);
+			collection.getRow(collection).set(CyNetwork.NAME, collectionName);
+		} else {
+			network = root.addSubNetwork();
+			collection = root;
+		}
+		final CyNode[] nodes = materializer.materialize(graph, network, metrics);
+		metrics.stop();
+		if (merged != null) {
+			materializer.writeOccurrences(merged, network, nodes);
+			network.getRow(network).set(CyNetwork.NAME,
+					collectionName + " (" + merged.getPathwayCount() + " pathways merged)");
+		}
+		networkManager.addNetwork(network);
+		networks.add(network);
+
+		if (createViews) {
+			createView(network, graph, nodes, metrics);
+		}
+		PathwayGraphMaterializer.writeSummary(network, metrics);
+		if (merged == null) {
+			record(metrics);
+		}
+		return collection;
+	}
+
+	private final void record(final ImportMetrics metrics) {
+		if (statistics != null) {
+			statistics.record(metrics);
+		}
+	}
+
+	private final void createView(final CyNetwork network, final PathwayGraph graph, final CyNode[] nodes,
+			final ImportMetrics metrics) {
+		final CyNetworkView view = viewFactory.createNetworkView(network);
+		ViewGeometry.apply(view, graph, nodes);
+		metrics.start(ImportMetrics.Phase.STYLE);
+		final VisualStyle style = vsBuilder.getStyle(vmm, PathwayGraphReader.isGlobalMap(graph));
+		vmm.setVisualStyle(style, view);
+		style.apply(view);
+		metrics.stop();
+		viewManager.addNetworkView(view);
+	}
+
+	/**
+	 * @return existing collection with the given name, or null.
+	 */
+	private final CyRootNetwork findCollection() {
+		if (collectionName == null) {
+			return null;
+		}
+		for (final CyNetwork network : networkManager.getNetworkSet()) {
+			final CyRootNetwork root = rootNetworkManager.getRootNetwork(network);
+			if (collectionName.equals(root.getRow(root).get(CyNetwork.NAME, String.class))) {
+				return root;
+			}
+		}
+		return null;
+	}
+
+	private final List<String> parseIds() {
+		final List<String> ids = new ArrayList<String>();
+		if (pathwayIds == null || graphCache == null) {
+			return ids;
+		}
+		for (final String id : pathwayIds.split(",")) {
+			final String trimmed = id.trim();
+			if (!trimmed.isEmpty()) {
+				// Accept IDs with prefix, e.g. path:hsa00020
+				ids.add(trimmed.substring(trimmed.indexOf(':') + 1));
+			}
+		}
+		return ids;
+	}
+
+	private final List<File> collectFiles() {
+		final List<File> targets = new ArrayList<File>();
+		if (files != null) {
+			targets.addAll(files);
+		} else if (source != null && source.isDirectory()) {
+			final File[] children = source.listFiles(KGML_FILTER);
+			if (children != null) {
+				Arrays.sort(children);
+				final Pattern pattern = KgmlArchiveReader.compileIdPattern(idPattern);
+				for (final File child : children) {
+					final String id = KgmlArchiveReader.getPathwayId(child.getName());
+					if (pattern == null || (id != null && pattern.matcher(id).matches())) {
+						targets.add(child);
+					}
+				}
+			}
+		} else if (source != null) {
+			targets.add(source);
+		}
+		return targets;
+	}
+
+	/**
+	 * Graph of a pathway with the metrics of its download and parse phases.
+	 */
+	private static final class LoadedPathway {
+
+		private final PathwayGraph graph;
+		private final ImportMetrics metrics;
+
+		private LoadedPathway(final PathwayGraph graph, final ImportMetrics metrics) {
+			this.graph = graph;
+			this.metrics = metrics;
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package org.cytoscape.keggscape.internal.task;
+
+import java.io.File;
+import java.util.List;
+
+import org.cytoscape.event.CyEventHelper;
+import org.cytoscape.group.CyGroupFactory;
+import org.cytoscape.group.CyGroupManager;
+import org.cytoscape.keggscape.internal.read.kgml.ImportStatistics;
+import org.cytoscape.keggscape.internal.style.KGMLVisualStyleBuilder;
+import org.cytoscape.keggscape.internal.wsclient.PathwayGraphCache;
+import org.cytoscape.model.CyNetworkFactory;
+import org.cytoscape.model.CyNetworkManager;
+import org.cytoscape.model.subnetwork.CyRootNetworkManager;
+import org.cytoscape.view.model.CyNetworkViewFactory;
+import org.cytoscape.view.model.CyNetworkViewManager;
+import org.cytoscape.view.vizmap.VisualMappingManager;
+import org.cytoscape.work.AbstractTaskFactory;
+import org.cytoscape.work.TaskIterator;
+
+public class BatchImportTaskFactory extends AbstractTaskFactory {
+
+	private final CyNetworkFactory networkFactory;
+	private final CyNetworkManager networkManager;
+	private final CyRootNetworkManager rootNetworkManager;
+	private final CyNetworkViewFactory viewFactory;
+	private final CyNetworkViewManager viewManager;
+	private final CyGroupFactory groupFactory;
+	private final CyGroupManager groupManager;
+	private final VisualMappingManager vmm;
+	private final KGMLVisualStyleBuilder vsBuilder;
+	private final CyEventHelper eventHelper;
+	private final PathwayGraphCache graphCache;
+	private final ImportStatistics statistics;
+
+	public BatchImportTaskFactory(final CyNetworkFactory networkFactory, final CyNetworkManager networkManager,
+			final CyRootNetworkManager rootNetworkManager, final CyNetworkViewFactory viewFactory,
+			final CyNetworkViewManager viewManager, final CyGroupFactory groupFactory,
+			final CyGroupManager groupManager, final VisualMappingManager vmm, final KGMLVisualStyleBuilder vsBuilder,
+			final CyEventHelper eventHelper, final PathwayGraphCache graphCache, final ImportStatistics statistics) {
+		this.networkFactory = networkFactory;
+		this.networkManager = networkManager;
+		this.rootNetworkManager = rootNetworkManager;
+		this.viewFactory = viewFactory;
+		this.viewManager = viewManager;
+		this.groupFactory = groupFactory;
+		this.groupManager = groupManager;
+		this.vmm = vmm;
+		this.vsBuilder = vsBuilder;
+		this.eventHelper = eventHelper;
+		this.graphCache = graphCache;
+		this.statistics = statistics;
+	}
+
+	@Override
+	public TaskIterator createTaskIterator() {
+		return createTaskIterator(null);
+	}
+
+	/**
+	 * Create task for the given files. If files is null, the user selects a
+	 * file or directory.
+	 */
+	public TaskIterator createTaskIterator(final List<File> files) {
+		return new TaskIterator(createTask(files));
+	}
+
+	public BatchImportTask createTask(final List<File> files) {
+		final BatchImportTask task = new BatchImportTask(files, graphCache, networkFactory, networkManager,
+				rootNetworkManager, viewFactory, viewManager, groupFactory, groupManager, vmm, vsBuilder, eventHelper);
+		task.setStatistics(statistics);
+		return task;
+	}
+}
@@ -0,0 +1,128 @@
+package org.cytoscape.keggscape.internal.task;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+
+import org.cytoscape.event.CyEventHelper;
+import org.cytoscape.group.CyGroupFactory;
+import org.cytoscape.keggscape.internal.model.PathwayGraph;
+import org.cytoscape.keggscape.internal.read.kgml.PathwayGraphMaterializer;
+import org.cytoscape.keggscape.internal.read.kgml.PathwayGraphReader;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNetworkFactory;
+import org.cytoscape.model.subnetwork.CyRootNetwork;
+import org.cytoscape.model.subnetwork.CyRootNetworkManager;
+import org.cytoscape.work.AbstractTask;
+import org.cytoscape.work.ObservableTask;
+import org.cytoscape.work.ProvidesTitle;
+import org.cytoscape.work.TaskMonitor;
+import org.cytoscape.work.Tunable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compare network construction time with and without bulk mode.
+ * 
+ * The KGML file is parsed once. The graph is then materialized into new,
+ * unregistered networks in alternating order: once with every model event
+ * delivered to the listeners of the running Cytoscape, and once with the
+ * events of the network and its local tables held back. Pending events are
+ * flushed inside the measurement in both cases. The networks are disposed
+ * afterwards.
+ */
+public class BenchmarkImportTask extends AbstractTask implements ObservableTask {
+
+	private static final Logger logger = LoggerFactory.getLogger(BenchmarkImportTask.class);
+
+	@Tunable(description = "KGML file", params = "input=true;fileCategory=network")
+	public File file;
+
+	@Tunable(description = "Iterations")
+	public int iterations = 5;
+
+	private final CyNetworkFactory networkFactory;
+	private final CyRootNetworkManager rootNetworkManager;
+	private final CyGroupFactory groupFactory;
+	private final CyEventHelper eventHelper;
+
+	private String result;
+
+	@ProvidesTitle
+	public String getTitle() {
+		return "Benchmark KEGG Pathway Import";
+	}
+
+	public BenchmarkImportTask(final CyNetworkFactory networkFactory, final CyRootNetworkManager rootNetworkManager,
+			final CyGroupFactory groupFactory, final CyEventHelper eventHelper) {
+		this.networkFactory = networkFactory;
+		this.rootNetworkManager = rootNetworkManager;
+		this.groupFactory = groupFactory;
+		this.eventHelper = eventHelper;
+	}
+
+	@Override
+	public void run(final TaskMonitor taskMonitor) throws Exception {
+		taskMonitor.setTitle(getTitle());
+		if (file == null) {
+			throw new IllegalArgumentException("KGML file is required.");
+		}
+		if (iterations < 1) {
+			throw new IllegalArgumentException("Iterations must be a positive number.");
+		}
+
+		final PathwayGraph graph;
+		final InputStream is = new FileInputStream(file);
+		try {
+			graph = new PathwayGraphReader().read(is);
+		} finally {
+			is.close();
+		}
+
+		final PathwayGraphMaterializer eventMaterializer = new PathwayGraphMaterializer(groupFactory);
+		final PathwayGraphMaterializer bulkMaterializer = new PathwayGraphMaterializer(groupFactory, eventHelper);
+
+		// Warm up both paths once.
+		time(eventMaterializer, graph);
+		time(bulkMaterializer, graph);
+
+		long eventTotal = 0;
+		long bulkTotal = 0;
+		for (int i = 0; i < iterations; i++) {
+			if (cancelled) {
+				return;
+			}
+			taskMonitor.setProgress(((double) i) / iterations);
+			eventTotal += time(eventMaterializer, graph);
+			bulkTotal += time(bulkMaterializer, graph);
+		}
+		taskMonitor.setProgress(1.0);
+
+		result = String.format("%s (%d nodes, %d edges): events %.1f ms, bulk %.1f ms (average of %d)",
+				file.getName(), graph.getNodes().size(), graph.getEdges().size(), eventTotal / 1e6 / iterations,
+				bulkTotal / 1e6 / iterations, iterations);
+		logger.info(result);
+		taskMonitor.setStatusMessage(result);
+	}
+
+	private final long time(final PathwayGraphMaterializer materializer, final PathwayGraph graph) {
+		final long start = System.nanoTime();
+		final CyNetwork network = networkFactory.createNetwork();
+		materializer.materialize(graph, network);
+		eventHelper.flushPayloadEvents();
+		final long elapsed = System.nanoTime() - start;
+
+		final CyRootNetwork root = rootNetworkManager.getRootNetwork(network);
+		root.dispose();
+		return elapsed;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <R> R getResults(final Class<? extends R> type) {
+		if (type == String.class) {
+			return (R) result;
+		}
+		return null;
+	}
+}
@@ -0,0 +1,31 @@
+package org.cytoscape.keggscape.internal.task;
+
+import org.cytoscape.event.CyEventHelper;
+import org.cytoscape.group.CyGroupFactory;
+import org.cytoscape.model.CyNetworkFactory;
+import org.cytoscape.model.subnetwork.CyRootNetworkManager;
+import org.cytoscape.work.AbstractTaskFactory;
+import org.cytoscape.work.TaskIterator;
+
+public class BenchmarkImportTaskFactory extends AbstractTaskFactory {
+
+	private final CyNetworkFactory networkFactory;
+	private final CyRootNetworkManager rootNetworkManager;
+	private final CyGroupFactory groupFactory;
+	private final CyEventHelper eventHelper;
+
+	public BenchmarkImportTaskFactory(final CyNetworkFactory networkFactory,
+			final CyRootNetworkManager rootNetworkManager, final CyGroupFactory groupFactory,
+			final CyEventHelper eventHelper) {
+		this.networkFactory = networkFactory;
+		this.rootNetworkManager = rootNetworkManager;
+		this.groupFactory = groupFactory;
+		this.eventHelper = eventHelper;
+	}
+
+	@Override
+	public TaskIterator createTaskIterator() {
+		return new TaskIterator(new BenchmarkImportTask(networkFactory, rootNetworkManager, groupFactory,
+				eventHelper));
+	}
+}
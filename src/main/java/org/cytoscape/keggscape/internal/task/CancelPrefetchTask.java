@@ -0,0 +1,21 @@
+package org.cytoscape.keggscape.internal.task;
+
+import org.cytoscape.keggscape.internal.wsclient.PathwayPrefetcher;
+import org.cytoscape.work.AbstractTask;
+import org.cytoscape.work.TaskMonitor;
+
+public class CancelPrefetchTask extends AbstractTask {
+
+	private final PathwayPrefetcher prefetcher;
+
+	public CancelPrefetchTask(final PathwayPrefetcher prefetcher) {
+		this.prefetcher = prefetcher;
+	}
+
+	@Override
+	public void run(final TaskMonitor taskMonitor) throws Exception {
+		final long bytes = prefetcher.getPrefetchedBytes();
+		prefetcher.cancel();
+		taskMonitor.setStatusMessage("Prefetch cancelled. Released " + bytes + " bytes.");
+	}
+}
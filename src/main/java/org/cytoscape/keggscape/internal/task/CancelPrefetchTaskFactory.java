@@ -0,0 +1,19 @@
+package org.cytoscape.keggscape.internal.task;
+
+import org.cytoscape.keggscape.internal.wsclient.PathwayPrefetcher;
+import org.cytoscape.work.AbstractTaskFactory;
+import org.cytoscape.work.TaskIterator;
+
+public class CancelPrefetchTaskFactory extends AbstractTaskFactory {
+
+	private final PathwayPrefetcher prefetcher;
+
+	public CancelPrefetchTaskFactory(final PathwayPrefetcher prefetcher) {
+		this.prefetcher = prefetcher;
+	}
+
+	@Override
+	public TaskIterator createTaskIterator() {
+		return new TaskIterator(new CancelPrefetchTask(prefetcher));
+	}
+}
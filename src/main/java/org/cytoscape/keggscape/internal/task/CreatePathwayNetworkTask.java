@@ -0,0 +1,120 @@
+package org.cytoscape.keggscape.internal.task;
+
+import org.cytoscape.event.CyEventHelper;
+import org.cytoscape.group.CyGroupFactory;
+import org.cytoscape.group.CyGroupManager;
+import org.cytoscape.keggscape.internal.model.PathwayGraph;
+import org.cytoscape.keggscape.internal.read.kgml.ImportMetrics;
+import org.cytoscape.keggscape.internal.read.kgml.ImportStatistics;
+import org.cytoscape.keggscape.internal.read.kgml.PathwayGraphMaterializer;
+import org.cytoscape.keggscape.internal.read.kgml.PathwayGraphReader;
+import org.cytoscape.keggscape.internal.read.kgml.ViewGeometry;
+import org.cytoscape.keggscape.internal.style.KGMLVisualStyleBuilder;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNetworkFactory;
+import org.cytoscape.model.CyNetworkManager;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.subnetwork.CyRootNetwork;
+import org.cytoscape.model.subnetwork.CyRootNetworkManager;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.CyNetworkViewFactory;
+import org.cytoscape.view.model.CyNetworkViewManager;
+import org.cytoscape.view.vizmap.VisualMappingManager;
+import org.cytoscape.view.vizmap.VisualStyle;
+import org.cytoscape.work.AbstractTask;
+import org.cytoscape.work.TaskMonitor;
+
+/**
+ * Create, register and show a network for a pathway which has already been
+ * parsed.
+ *
+ * The import is measured as by the network reader, continuing the metrics of
+ * the download and parse phases if the caller measured them.
+ */
+public class CreatePathwayNetworkTask extends AbstractTask {
+
+	private final PathwayGraph graph;
+	private final String collectionName;
+	private final ImportMetrics metrics;
+	private final ImportStatistics statistics;
+
+	private final CyNetworkFactory networkFactory;
+	private final CyNetworkManager networkManager;
+	private final CyRootNetworkManager rootNetworkManager;
+	private final CyNetworkViewFactory viewFactory;
+	private final CyNetworkViewManager viewManager;
+	private final CyGroupFactory groupFactory;
+	private final CyGroupManager groupManager;
+	private final VisualMappingManager vmm;
+	private final KGMLVisualStyleBuilder vsBuilder;
+	private final CyEventHelper eventHelper;
+
+	/**
+	 * @param metrics
+	 *            metrics of the phases before, or null
+	 * @param statistics
+	 *            receives the metrics of the import, may be null
+	 */
+	public CreatePathwayNetworkTask(final PathwayGraph graph, final String collectionName,
+			final ImportMetrics metrics, final ImportStatistics statistics, final CyNetworkFactory networkFactory, final CyNetworkManager networkManager,
+			final CyRootNetworkManager rootNetworkManager, final CyNetworkViewFactory viewFactory,
+			final CyNetworkViewManager viewManager, final CyGroupFactory groupFactory, final CyGroupManager groupManager,
+			final VisualMappingManager vmm, final KGMLVisualStyleBuilder vsBuilder, final CyEventHelper eventHelper) {
+		this.graph = graph;
+		this.collectionName = collectionName;
+		this.metrics = metrics == null ? new ImportMetrics(collectionName) : metrics;
+		this.statistics = statistics;
+		this.networkFactory = networkFactory;
+		this.networkManager = networkManager;
+		this.rootNetworkManager = rootNetworkManager;
+		this.viewFactory = viewFactory;
+		this.viewManager = viewManager;
+		this.groupFactory = groupFactory;
+		this.groupManager = groupManager;
+		this.vmm = vmm;
+		this.vsBuilder = vsBuilder;
+		this.eventHelper = eventHelper;
+	}
+
+	@Override
+	public void run(final TaskMonitor taskMonitor) throws Exception {
+		taskMonitor.setTitle("Loading KEGG Pathway");
+		taskMonitor.setStatusMessage("Creating network for " + graph.getTitle() + "...");
+		taskMonitor.setProgress(-1.0);
+
+		metrics.setGraph(graph);
+		final CyNetwork network;
+		final CyNode[] nodes;
+		try {
+			network = networkFactory.createNetwork();
+			final CyRootNetwork root = rootNetworkManager.getRootNetwork(network);
+			root.getRow(root).set(CyNetwork.NAME, collectionName);
+			nodes = new PathwayGraphMaterializer(groupFactory, groupManager, eventHelper).materialize(graph, network,
+					metrics);
+			metrics.stop();
+		} catch (Exception e) {
+			if (statistics != null) {
+				statistics.recordFailure(metrics, e);
+			}
+			throw e;
+		}
+		networkManager.addNetwork(network);
+
+		final CyNetworkView view = viewFactory.createNetworkView(network);
+		ViewGeometry.apply(view, graph, nodes);
+		metrics.start(ImportMetrics.Phase.STYLE);
+		final VisualStyle style = vsBuilder.getStyle(vmm, PathwayGraphReader.isGlobalMap(graph));
+		vmm.setVisualStyle(style, view);
+		style.apply(view);
+		metrics.stop();
+		viewManager.addNetworkView(view);
+		view.fitContent();
+
+		PathwayGraphMaterializer.writeSummary(network, metrics);
+		if (statistics != null) {
+			statistics.record(metrics);
+		}
+
+		taskMonitor.setProgress(1.0);
+	}
+}
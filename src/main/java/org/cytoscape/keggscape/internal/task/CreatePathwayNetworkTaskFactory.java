@@ -0,0 +1,61 @@
+package org.cytoscape.keggscape.internal.task;
+
+import org.cytoscape.event.CyEventHelper;
+import org.cytoscape.group.CyGroupFactory;
+import org.cytoscape.group.CyGroupManager;
+import org.cytoscape.keggscape.internal.model.PathwayGraph;
+import org.cytoscape.keggscape.internal.read.kgml.ImportMetrics;
+import org.cytoscape.keggscape.internal.read.kgml.ImportStatistics;
+import org.cytoscape.keggscape.internal.style.KGMLVisualStyleBuilder;
+import org.cytoscape.model.CyNetworkFactory;
+import org.cytoscape.model.CyNetworkManager;
+import org.cytoscape.model.subnetwork.CyRootNetworkManager;
+import org.cytoscape.view.model.CyNetworkViewFactory;
+import org.cytoscape.view.model.CyNetworkViewManager;
+import org.cytoscape.view.vizmap.VisualMappingManager;
+import org.cytoscape.work.TaskIterator;
+
+public class CreatePathwayNetworkTaskFactory {
+
+	private final CyNetworkFactory networkFactory;
+	private final CyNetworkManager networkManager;
+	private final CyRootNetworkManager rootNetworkManager;
+	private final CyNetworkViewFactory viewFactory;
+	private final CyNetworkViewManager viewManager;
+	private final CyGroupFactory groupFactory;
+	private final CyGroupManager groupManager;
+	private final VisualMappingManager vmm;
+	private final KGMLVisualStyleBuilder vsBuilder;
+	private final CyEventHelper eventHelper;
+	private final ImportStatistics statistics;
+
+	public CreatePathwayNetworkTaskFactory(final CyNetworkFactory networkFactory,
+			final CyNetworkManager networkManager, final CyRootNetworkManager rootNetworkManager,
+			final CyNetworkViewFactory viewFactory, final CyNetworkViewManager viewManager,
+			final CyGroupFactory groupFactory, final CyGroupManager groupManager, final VisualMappingManager vmm,
+			final KGMLVisualStyleBuilder vsBuilder, final CyEventHelper eventHelper,
+			final ImportStatistics statistics) {
+		this.networkFactory = networkFactory;
+		this.networkManager = networkManager;
+		this.rootNetworkManager = rootNetworkManager;
+		this.viewFactory = viewFactory;
+		this.viewManager = viewManager;
+		this.groupFactory = groupFactory;
+		this.groupManager = groupManager;
+		this.vmm = vmm;
+		this.vsBuilder = vsBuilder;
+		this.eventHelper = eventHelper;
+		this.statistics = statistics;
+	}
+
+	/**
+	 * @param metrics
+	 *            metrics of the download and parse phases, or null
+	 */
+	public TaskIterator createTaskIterator(final PathwayGraph graph, final String collectionName,
+			final ImportMetrics metrics) {
+		return new TaskIterator(new CreatePathwayNetworkTask(graph, collectionName, metrics, statistics,
+				networkFactory, networkManager, rootNetworkManager, viewFactory, viewManager, groupFactory,
+				groupManager, vmm, vsBuilder, eventHelper));
+	}
+}
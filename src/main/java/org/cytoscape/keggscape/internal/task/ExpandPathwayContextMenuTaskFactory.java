@@ -1,15 +1,15 @@
 package org.cytoscape.keggscape.internal.task;
 
 
-import java.io.IOException;
-import java.net.URL;
 import java.util.List;
 
 import org.cytoscape.keggscape.internal.read.kgml.KeggConstants;
+import org.cytoscape.keggscape.internal.wsclient.PathwayGraphCache;
+import org.cytoscape.keggscape.internal.wsclient.PathwayPrefetcher;
+import org.cytoscape.keggscape.internal.wsclient.PathwaySource;
 import org.cytoscape.model.CyNetwork;
 import org.cytoscape.model.CyNode;
 import org.cytoscape.task.AbstractNodeViewTaskFactory;
-import org.cytoscape.task.read.LoadNetworkURLTaskFactory;
 import org.cytoscape.view.model.CyNetworkView;
 import org.cytoscape.view.model.View;
 import org.cytoscape.view.vizmap.VisualMappingManager;
@@ -17,16 +17,21 @@ import org.cytoscape.work.TaskIterator;
 
 public class ExpandPathwayContextMenuTaskFactory extends AbstractNodeViewTaskFactory {
 
-	private static final String KEGG_REST_API = "http://rest.kegg.jp/get/";
-	private static final String KEGG_FILE_TYPE = "kgml";
-	
-	private final LoadNetworkURLTaskFactory loadNetworkURLTaskFactory;
+	private final PathwayGraphCache graphCache;
+	private final PathwaySource source;
+	private final PathwayPrefetcher prefetcher;
+	private final CreatePathwayNetworkTaskFactory createNetworkTaskFactory;
 	private final VisualMappingManager vmm;
 
-	public ExpandPathwayContextMenuTaskFactory(final LoadNetworkURLTaskFactory loadNetworkURLTaskFactory, VisualMappingManager vmm) {
+	public ExpandPathwayContextMenuTaskFactory(final PathwayGraphCache graphCache,
+			final PathwaySource source, final PathwayPrefetcher prefetcher,
+			final CreatePathwayNetworkTaskFactory createNetworkTaskFactory, VisualMappingManager vmm) {
 		super();
 		this.vmm = vmm;
-		this.loadNetworkURLTaskFactory = loadNetworkURLTaskFactory;
+		this.graphCache = graphCache;
+		this.source = source;
+		this.prefetcher = prefetcher;
+		this.createNetworkTaskFactory = createNetworkTaskFactory;
 	}
 
 	@Override
@@ -44,16 +49,9 @@ public class ExpandPathwayContextMenuTaskFactory extends AbstractNodeViewTaskFac
 		if (mapID == null)
 			throw new NullPointerException("Map ID is null.");
 		else {
-			// Create url
 			String id = mapID.split(":")[1];
-			String urlString = KEGG_REST_API + id + "/" + KEGG_FILE_TYPE;
-			URL resourceURL;
-			try {
-				resourceURL = new URL(urlString);
-				return new TaskIterator(new ExpandPathwayTask(loadNetworkURLTaskFactory, resourceURL, pathwayName, mapID, netView, vmm));
-			} catch (IOException e) {
-				throw new IllegalStateException("Could not open connection to KEGG REST API.", e);
-			}
+			return new TaskIterator(new ExpandPathwayTask(graphCache, source, prefetcher,
+					createNetworkTaskFactory, id, pathwayName, mapID, netView, vmm));
 		}
 	}
 }
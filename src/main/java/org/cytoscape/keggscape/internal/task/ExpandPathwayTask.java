@@ -1,9 +1,14 @@
 package org.cytoscape.keggscape.internal.task;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.net.URL;
 
-import org.cytoscape.task.read.LoadNetworkURLTaskFactory;
+import org.cytoscape.keggscape.internal.model.PathwayGraph;
+import org.cytoscape.keggscape.internal.read.kgml.ImportMetrics;
+import org.cytoscape.keggscape.internal.wsclient.HttpStatusException;
+import org.cytoscape.keggscape.internal.wsclient.PathwayGraphCache;
+import org.cytoscape.keggscape.internal.wsclient.PathwayPrefetcher;
+import org.cytoscape.keggscape.internal.wsclient.PathwaySource;
 import org.cytoscape.view.model.CyNetworkView;
 import org.cytoscape.view.vizmap.VisualMappingManager;
 import org.cytoscape.view.vizmap.VisualStyle;
@@ -13,8 +18,11 @@ import org.cytoscape.work.TaskMonitor;
 
 public class ExpandPathwayTask extends AbstractTask {
 
-	private final LoadNetworkURLTaskFactory loadNetworkURLTaskFactory;
-	private final URL url;
+	private final PathwayGraphCache graphCache;
+	private final PathwaySource source;
+	private final PathwayPrefetcher prefetcher;
+	private final CreatePathwayNetworkTaskFactory createNetworkTaskFactory;
+	private final String id;
 	private final String pathwayName;
 	private final String pathwayID;
 
@@ -22,12 +30,21 @@ public class ExpandPathwayTask extends AbstractTask {
 
 	private final VisualMappingManager vmm;
 
-	public ExpandPathwayTask(final LoadNetworkURLTaskFactory loadNetworkURLTaskFactory, URL url, String pathwayName,
-			String mapID, final CyNetworkView parentView, VisualMappingManager vmm) {
-		this.url = url;
+	/**
+	 * @param id
+	 *            pathway ID without prefix, e.g. hsa00020
+	 */
+	public ExpandPathwayTask(final PathwayGraphCache graphCache, final PathwaySource source,
+			final PathwayPrefetcher prefetcher, final CreatePathwayNetworkTaskFactory createNetworkTaskFactory,
+			final String id, String pathwayName, String mapID, final CyNetworkView parentView,
+			VisualMappingManager vmm) {
+		this.id = id;
 		this.pathwayID = mapID;
 		this.pathwayName = pathwayName;
-		this.loadNetworkURLTaskFactory = loadNetworkURLTaskFactory;
+		this.graphCache = graphCache;
+		this.source = source;
+		this.prefetcher = prefetcher;
+		this.createNetworkTaskFactory = createNetworkTaskFactory;
 		this.parentView = parentView;
 		this.vmm = vmm;
 	}
@@ -35,23 +52,42 @@ public class ExpandPathwayTask extends AbstractTask {
 	@Override
 	public void run(TaskMonitor taskMonitor) throws Exception {
 		taskMonitor.setTitle("Expanding Map Node");
-		taskMonitor.setStatusMessage("Downloading Pathway (" + pathwayName + " " + pathwayID + ") from KEGG...");
+		taskMonitor.setStatusMessage("Loading Pathway (" + pathwayName + " " + pathwayID + ") from "
+				+ source.getName() + "...");
 		taskMonitor.setProgress(-1.0);
 
-		try {
-			final VisualStyle originalStyle = vmm.getVisualStyle(parentView);
-			TaskIterator it = loadNetworkURLTaskFactory.loadCyNetworks(url);
-			it.append(new UpdateStyleTask(parentView, vmm, originalStyle));
-			this.insertTasksAfterCurrentTask(it);
-			taskMonitor.setProgress(1.0d);
-		} catch (Exception e) {
-			if(e instanceof IllegalStateException) {
-				throw new IOException("Could not expand pathway:\n" + "KEGG database does not have KGML file for pathway "
-					+ pathwayID + ".", e);
-			} else {
-				throw e;
+		final VisualStyle originalStyle = vmm.getVisualStyle(parentView);
+
+		// Prefetched pathways are already parsed. Others are shared with
+		// imports of the same pathway through the graph cache.
+		final ImportMetrics metrics = new ImportMetrics(id);
+		PathwayGraph graph = prefetcher.take(id);
+		if (graph == null) {
+			try {
+				graph = graphCache.get(id, metrics);
+			} catch (HttpStatusException e) {
+				throw new IOException("Could not expand pathway:\n"
+						+ "KEGG database does not have KGML file for pathway " + pathwayID + ".", e);
+			} catch (FileNotFoundException e) {
+				throw new IOException("Could not expand pathway:\n" + e.getMessage(), e);
 			}
 		}
+		prefetcher.prefetchLinked(graph);
+
+		metrics.stop();
+
+		final TaskIterator it = createNetworkTaskFactory.createTaskIterator(graph, getFileName(), metrics);
+		it.append(new UpdateStyleTask(parentView, vmm, originalStyle));
+		this.insertTasksAfterCurrentTask(it);
+		taskMonitor.setProgress(1.0d);
+	}
+
+	/**
+	 * @return name of the KGML file as saved from KEGG, used as collection
+	 *         name. The source is not asked for the file again.
+	 */
+	private final String getFileName() {
+		return id + ".xml";
 	}
 
 }
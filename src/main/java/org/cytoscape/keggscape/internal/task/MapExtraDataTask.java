@@ -1,6 +1,9 @@
 package org.cytoscape.keggscape.internal.task;
 
 import org.cytoscape.keggscape.internal.read.kgml.KeggConstants;
+import org.cytoscape.keggscape.internal.wsclient.NetworkAnnotationWriter;
+import org.cytoscape.keggscape.internal.wsclient.PathwaySource;
+import org.cytoscape.keggscape.internal.wsclient.PooledHttpTransport;
 import org.cytoscape.keggscape.internal.wsclient.TogowsClient;
 import org.cytoscape.model.CyNetwork;
 import org.cytoscape.task.AbstractNetworkTask;
@@ -8,11 +11,21 @@ import org.cytoscape.work.TaskMonitor;
 
 public class MapExtraDataTask extends AbstractNetworkTask {
 
-	private final TogowsClient client;
+	private final PathwaySource source;
 	
-	public MapExtraDataTask(CyNetwork network) {
+	/**
+	 * @param source
+	 *            source of the pathway details. If null, they are read from
+	 *            TogoWS with a private HTTP transport, which is closed after
+	 *            the task has finished.
+	 */
+	public MapExtraDataTask(CyNetwork network, final PathwaySource source) {
 		super(network);
-		this.client = new TogowsClient();
+		this.source = source;
+	}
+
+	public MapExtraDataTask(CyNetwork network) {
+		this(network, null);
 	}
 
 	@Override
@@ -20,7 +33,19 @@ public class MapExtraDataTask extends AbstractNetworkTask {
 		final String id = network.getRow(network).get(KeggConstants.KEGG_PATHWAY_ID, String.class);
 		
 		final String pathID = id.split(":")[1];
-		client.map(pathID, network);
+		if (source != null) {
+			final NetworkAnnotationWriter writer = new NetworkAnnotationWriter(network);
+			source.readAnnotation(pathID, writer);
+			writer.apply();
+			return;
+		}
+
+		final PooledHttpTransport privateTransport = new PooledHttpTransport();
+		try {
+			new TogowsClient(privateTransport).map(pathID, network);
+		} finally {
+			privateTransport.close();
+		}
 	}
 
 }
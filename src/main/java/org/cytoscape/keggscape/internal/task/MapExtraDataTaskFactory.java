@@ -1,14 +1,21 @@
 package org.cytoscape.keggscape.internal.task;
 
+import org.cytoscape.keggscape.internal.wsclient.PathwaySource;
 import org.cytoscape.model.CyNetwork;
 import org.cytoscape.task.AbstractNetworkTaskFactory;
 import org.cytoscape.work.TaskIterator;
 
 public class MapExtraDataTaskFactory extends AbstractNetworkTaskFactory {
 	
+	private final PathwaySource source;
+
+	public MapExtraDataTaskFactory(final PathwaySource source) {
+		this.source = source;
+	}
+
 	@Override
 	public TaskIterator createTaskIterator(CyNetwork network) {
-		return new TaskIterator(new MapExtraDataTask(network));
+		return new TaskIterator(new MapExtraDataTask(network, source));
 	}
 
 }
@@ -0,0 +1,59 @@
+package org.cytoscape.keggscape.internal.wsclient;
+
+/**
+ * Concurrency limit with additive increase and multiplicative decrease
+ * (AIMD).
+ *
+ * Each successful request raises the limit by 1/limit, i.e. by about one per
+ * round of requests. A request which indicates an overloaded server halves it.
+ */
+public class AdaptiveConcurrencyLimit {
+
+	private final int minLimit;
+	private final int maxLimit;
+
+	private double limit;
+	private int inFlight;
+
+	public AdaptiveConcurrencyLimit(final int initialLimit, final int minLimit, final int maxLimit) {
+		if (minLimit < 1 || maxLimit < minLimit) {
+			throw new IllegalArgumentException("Invalid limits: " + minLimit + " - " + maxLimit);
+		}
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+	}
+
+	/**
+	 * Wait until the number of requests in flight is below the limit.
+	 */
+	public synchronized void acquire() throws InterruptedException {
+		while (inFlight >= (int) limit) {
+			wait();
+		}
+		inFlight++;
+	}
+
+	/**
+	 * @param overloaded
+	 *            true if the request timed out or was rejected because of
+	 *            load.
+	 */
+	public synchronized void release(final boolean overloaded) {
+		inFlight--;
+		if (overloaded) {
+			limit = Math.max(minLimit, limit / 2);
+		} else {
+			limit = Math.min(maxLimit, limit + 1 / limit);
+		}
+		notifyAll();
+	}
+
+	public synchronized int getLimit() {
+		return (int) limit;
+	}
+
+	public synchronized int getInFlight() {
+		return inFlight;
+	}
+}
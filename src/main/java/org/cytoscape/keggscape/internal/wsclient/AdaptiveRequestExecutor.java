@@ -0,0 +1,122 @@
+package org.cytoscape.keggscape.internal.wsclient;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs requests to one web service from many threads.
+ *
+ * The number of concurrent requests follows an
+ * {@link AdaptiveConcurrencyLimit}. Failed requests are retried according to
+ * a {@link RetryPolicy}. While the service keeps failing, a
+ * {@link CircuitBreaker} holds requests back until a trial request succeeds.
+ */
+public class AdaptiveRequestExecutor {
+
+	private static final Logger logger = LoggerFactory.getLogger(AdaptiveRequestExecutor.class);
+
+	/**
+	 * A request which can be sent more than once.
+	 */
+	public interface Request<T> {
+		T call() throws IOException;
+	}
+
+	private final AdaptiveConcurrencyLimit limit;
+	private final CircuitBreaker breaker;
+	private final RetryPolicy retryPolicy;
+
+	private final AtomicInteger attempts = new AtomicInteger();
+	private final AtomicInteger retries = new AtomicInteger();
+	private final AtomicInteger rejected = new AtomicInteger();
+
+	public AdaptiveRequestExecutor(final AdaptiveConcurrencyLimit limit, final CircuitBreaker breaker,
+			final RetryPolicy retryPolicy) {
+		this.limit = limit;
+		this.breaker = breaker;
+		this.retryPolicy = retryPolicy;
+	}
+
+	/**
+	 * Send the request, retrying it if necessary. While the circuit breaker
+	 * is open, wait for it.
+	 *
+	 * @throws CircuitOpenException
+	 *             if as many trial requests as attempts failed while waiting
+	 *             for the circuit breaker
+	 * @throws IOException
+	 *             if the last attempt failed
+	 */
+	public <T> T execute(final Request<T> request) throws IOException, InterruptedException {
+		for (int attempt = 1;; attempt++) {
+			if (!breaker.awaitRequest(retryPolicy.getMaxAttempts())) {
+				rejected.incrementAndGet();
+				throw new CircuitOpenException("Service is unavailable after repeated failures.");
+			}
+
+			limit.acquire();
+			attempts.incrementAndGet();
+			IOException error = null;
+			T result = null;
+			try {
+				result = request.call();
+			} catch (IOException e) {
+				error = e;
+			} catch (RuntimeException e) {
+				limit.release(false);
+				breaker.recordFailure();
+				throw e;
+			}
+
+			if (error == null) {
+				limit.release(false);
+				breaker.recordSuccess();
+				return result;
+			}
+
+			final boolean retryable = retryPolicy.isRetryable(error);
+			limit.release(retryPolicy.isOverload(error));
+			if (retryable) {
+				breaker.recordFailure();
+			} else {
+				// The service works, but does not have this entry.
+				breaker.recordSuccess();
+			}
+
+			if (!retryable || attempt >= retryPolicy.getMaxAttempts()) {
+				throw error;
+			}
+
+			final long delay = retryPolicy.getDelay(attempt);
+			logger.debug("Attempt " + attempt + " failed, retrying in " + delay + " ms: " + error.getMessage());
+			retries.incrementAndGet();
+			Thread.sleep(delay);
+		}
+	}
+
+	public int getAttemptCount() {
+		return attempts.get();
+	}
+
+	public int getRetryCount() {
+		return retries.get();
+	}
+
+	/**
+	 * @return requests rejected by the circuit breaker.
+	 */
+	public int getRejectedCount() {
+		return rejected.get();
+	}
+
+	public AdaptiveConcurrencyLimit getLimit() {
+		return limit;
+	}
+
+	public CircuitBreaker getCircuitBreaker() {
+		return breaker;
+	}
+}
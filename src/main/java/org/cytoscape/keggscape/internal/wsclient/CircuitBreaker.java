@@ -0,0 +1,96 @@
+package org.cytoscape.keggscape.internal.wsclient;
+
+/**
+ * Stops requests to a service after repeated failures.
+ *
+ * After the given number of consecutive failures, the circuit opens and
+ * requests are rejected. When the open period has passed, one trial request
+ * is let through. If it succeeds, the circuit closes again. Otherwise, it
+ * stays open for another period. Callers can wait for the trial with
+ * {@link #awaitRequest(int)}.
+ */
+public class CircuitBreaker {
+
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private final int failureThreshold;
+	private final long openMillis;
+
+	private State state = State.CLOSED;
+	private int consecutiveFailures;
+	private long openedAt;
+	private long openCount;
+
+	public CircuitBreaker(final int failureThreshold, final long openMillis) {
+		this.failureThreshold = failureThreshold;
+		this.openMillis = openMillis;
+	}
+
+	/**
+	 * @return true if a request may be sent now.
+	 */
+	public synchronized boolean allowRequest() {
+		if (state == State.CLOSED) {
+			return true;
+		}
+		if (state == State.OPEN && currentTime() - openedAt >= openMillis) {
+			// Let one trial request through.
+			state = State.HALF_OPEN;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Wait until a request may be sent. While the circuit is open, the first
+	 * caller after the open period sends the trial request, and the others
+	 * wait for its result.
+	 *
+	 * @param maxTrials
+	 *            number of failed trial requests after which to give up
+	 * @return true if a request may be sent now, false if the trials failed
+	 */
+	public synchronized boolean awaitRequest(final int maxTrials) throws InterruptedException {
+		final long start = openCount;
+		while (!allowRequest()) {
+			if (openCount - start >= maxTrials) {
+				return false;
+			}
+			// Woken up early when the trial request completes
+			final long wait = state == State.OPEN ? openedAt + openMillis - currentTime() : openMillis;
+			wait(Math.max(1, wait));
+		}
+		return true;
+	}
+
+	public synchronized void recordSuccess() {
+		consecutiveFailures = 0;
+		state = State.CLOSED;
+		notifyAll();
+	}
+
+	public synchronized void recordFailure() {
+		consecutiveFailures++;
+		if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+			if (state != State.OPEN) {
+				openCount++;
+			}
+			state = State.OPEN;
+			openedAt = currentTime();
+			notifyAll();
+		}
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+
+	/**
+	 * Override to control the clock in tests.
+	 */
+	protected long currentTime() {
+		return System.currentTimeMillis();
+	}
+}
@@ -0,0 +1,15 @@
+package org.cytoscape.keggscape.internal.wsclient;
+
+import java.io.IOException;
+
+/**
+ * Thrown if a request is rejected because the {@link CircuitBreaker} is open.
+ */
+public class CircuitOpenException extends IOException {
+
+	private static final long serialVersionUID = -2837461093581822974L;
+
+	public CircuitOpenException(final String message) {
+		super(message);
+	}
+}
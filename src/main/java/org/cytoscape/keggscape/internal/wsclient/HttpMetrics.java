@@ -0,0 +1,77 @@
+package org.cytoscape.keggscape.internal.wsclient;
+
+/**
+ * Snapshot of {@link HttpTransport} counters.
+ */
+public final class HttpMetrics {
+
+	private final long requests;
+	private final long failures;
+	private final long connectionsOpened;
+	private final long totalTimeNanos;
+	private final int leased;
+	private final int available;
+	private final int pending;
+
+	public HttpMetrics(final long requests, final long failures, final long connectionsOpened,
+			final long totalTimeNanos, final int leased, final int available, final int pending) {
+		this.requests = requests;
+		this.failures = failures;
+		this.connectionsOpened = connectionsOpened;
+		this.totalTimeNanos = totalTimeNanos;
+		this.leased = leased;
+		this.available = available;
+		this.pending = pending;
+	}
+
+	public long getRequests() {
+		return requests;
+	}
+
+	/**
+	 * @return requests which failed with an I/O error or a non-2xx status.
+	 */
+	public long getFailures() {
+		return failures;
+	}
+
+	/**
+	 * @return TCP connections opened so far. Lower than the number of requests
+	 *         when connections are reused.
+	 */
+	public long getConnectionsOpened() {
+		return connectionsOpened;
+	}
+
+	public long getTotalTimeNanos() {
+		return totalTimeNanos;
+	}
+
+	/**
+	 * @return connections currently in use.
+	 */
+	public int getLeased() {
+		return leased;
+	}
+
+	/**
+	 * @return idle connections kept alive in the pool.
+	 */
+	public int getAvailable() {
+		return available;
+	}
+
+	/**
+	 * @return requests waiting for a connection.
+	 */
+	public int getPending() {
+		return pending;
+	}
+
+	@Override
+	public String toString() {
+		return "requests=" + requests + ", failures=" + failures + ", connectionsOpened=" + connectionsOpened
+				+ ", totalTimeMs=" + totalTimeNanos / 1000000 + ", leased=" + leased + ", available=" + available
+				+ ", pending=" + pending;
+	}
+}
@@ -0,0 +1,22 @@
+package org.cytoscape.keggscape.internal.wsclient;
+
+import org.apache.http.client.ClientProtocolException;
+
+/**
+ * Thrown if the server returns a status other than 2xx.
+ */
+public class HttpStatusException extends ClientProtocolException {
+
+	private static final long serialVersionUID = -2829414573094532741L;
+
+	private final int status;
+
+	public HttpStatusException(final int status, final String message) {
+		super(message);
+		this.status = status;
+	}
+
+	public int getStatus() {
+		return status;
+	}
+}
@@ -0,0 +1,42 @@
+package org.cytoscape.keggscape.internal.wsclient;
+
+import java.io.IOException;
+
+import org.apache.http.client.ResponseHandler;
+
+/**
+ * HTTP access shared by all KEGG and TogoWS calls.
+ * 
+ * One instance is registered as an OSGi service. Implementations must be
+ * thread safe.
+ */
+public interface HttpTransport {
+
+	/**
+	 * Send a GET request and process the response. The response is consumed
+	 * and the connection is released after the handler returns.
+	 */
+	<T> T get(final String url, final ResponseHandler<? extends T> handler) throws IOException;
+
+	/**
+	 * @return response body of a successful GET request.
+	 */
+	String getString(final String url) throws IOException;
+
+	/**
+	 * Read the first bytes of a resource with a range request. If the server
+	 * ignores the range, the connection is closed after the first bytes
+	 * instead of reading the whole body.
+	 *
+	 * @return up to length bytes from the start of the response body.
+	 */
+	byte[] peek(final String url, final int length) throws IOException;
+
+	/**
+	 * @return maximum number of concurrent connections to one host. Further
+	 *         requests to the host wait for a free connection.
+	 */
+	int getMaxPerHost();
+
+	HttpMetrics getMetrics();
+}
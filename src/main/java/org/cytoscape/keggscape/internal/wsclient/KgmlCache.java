@@ -0,0 +1,517 @@
+package org.cytoscape.keggscape.internal.wsclient;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.http.HttpEntity;
+import org.cytoscape.keggscape.internal.read.kgml.PathwayGraphReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Local copy of KGML files downloaded from KEGG.
+ *
+ * Each file is stored with its SHA-256 digest and fetch time in an index file.
+ * The digest is checked again only when the length or modification time of
+ * the file changed.
+ * Entries older than the TTL are downloaded again. When the total size of the
+ * cache exceeds the limit, the least recently used entries are removed. In
+ * offline mode, only cached files are returned, regardless of their age.
+ */
+public class KgmlCache {
+
+	private static final Logger logger = LoggerFactory.getLogger(KgmlCache.class);
+
+	public static final String TTL_PROPERTY = "keggscape.cache.ttlHours";
+	public static final String MAX_SIZE_PROPERTY = "keggscape.cache.maxMegabytes";
+	public static final String OFFLINE_PROPERTY = "keggscape.cache.offline";
+
+	/**
+	 * Set this system property to use another KEGG REST server, e.g. a local
+	 * stub for testing.
+	 */
+	public static final String KEGG_REST_API_PROPERTY = "keggscape.kegg.rest.url";
+
+	private static final String KEGG_REST_API = "http://rest.kegg.jp/get/";
+	private static final String KEGG_FILE_TYPE = "kgml";
+
+	private static final long DEF_TTL_HOURS = 7 * 24;
+	private static final long DEF_MAX_MEGABYTES = 200;
+
+	private static final String INDEX_FILE = "index.tsv";
+	private static final String KGML_EXTENSION = ".xml";
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final int BUFFER_SIZE = 8192;
+
+	// Access times alone are written at most this often.
+	private static final long INDEX_SAVE_INTERVAL = 60000L;
+
+	// Coarsest modification time resolution of common file systems. Files
+	// changed more recently are checked on every use.
+	static final long MODIFIED_TIME_RESOLUTION = 2000L;
+
+	private final File dir;
+	private final HttpTransport transport;
+	private final long ttl;
+	private final long maxBytes;
+	private volatile boolean offline;
+	private volatile File snapshotDirectory;
+
+	// Access ordered: the first entry is the least recently used one.
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	private long totalBytes;
+	private boolean indexChanged;
+	private long indexSaveTime;
+
+	private int hits;
+	private int misses;
+
+	/**
+	 * Create a cache configured by system properties.
+	 */
+	public static KgmlCache create(final File dir, final HttpTransport transport) throws IOException {
+		final long ttlHours = Long.getLong(TTL_PROPERTY, DEF_TTL_HOURS);
+		final long maxMegabytes = Long.getLong(MAX_SIZE_PROPERTY, DEF_MAX_MEGABYTES);
+		return new KgmlCache(dir, transport, ttlHours * 3600000L, maxMegabytes * 1024L * 1024L,
+				Boolean.getBoolean(OFFLINE_PROPERTY));
+	}
+
+	/**
+	 * @param dir
+	 *            cache directory. Created if it does not exist.
+	 * @param ttl
+	 *            time in milliseconds after which an entry is fetched again
+	 * @param maxBytes
+	 *            maximum total size of the cached files
+	 */
+	public KgmlCache(final File dir, final HttpTransport transport, final long ttl, final long maxBytes,
+			final boolean offline) throws IOException {
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("Could not create KGML cache directory: " + dir);
+		}
+		this.dir = dir;
+		this.transport = transport;
+		this.ttl = ttl;
+		this.maxBytes = maxBytes;
+		this.offline = offline;
+
+		loadIndex();
+	}
+
+	/**
+	 * @param id
+	 *            pathway ID without prefix, e.g. hsa00020
+	 * @return URL of the KGML file on the KEGG REST server
+	 */
+	public static String getKgmlUrl(final String id) {
+		return System.getProperty(KEGG_REST_API_PROPERTY, KEGG_REST_API) + id + "/" + KEGG_FILE_TYPE;
+	}
+
+	/**
+	 * Inverse of {@link #getKgmlUrl(String)}. HTTP and HTTPS URLs are
+	 * treated alike.
+	 *
+	 * @return pathway ID, or null if the URL is not a KGML URL of the KEGG
+	 *         REST server.
+	 */
+	public static String getPathwayId(final String url) {
+		final String prefix = withoutScheme(System.getProperty(KEGG_REST_API_PROPERTY, KEGG_REST_API));
+		final String suffix = "/" + KEGG_FILE_TYPE;
+		final String path = withoutScheme(url);
+		if (path.length() <= prefix.length() + suffix.length() || !path.startsWith(prefix)
+				|| !path.endsWith(suffix)) {
+			return null;
+		}
+		final String id = path.substring(prefix.length(), path.length() - suffix.length());
+		return id.indexOf('/') >= 0 ? null : id;
+	}
+
+	private static final String withoutScheme(final String url) {
+		final int colon = url.indexOf("://");
+		return colon < 0 ? url : url.substring(colon + 3);
+	}
+
+	public boolean isOffline() {
+		return offline;
+	}
+
+	public void setOffline(final boolean offline) {
+		this.offline = offline;
+	}
+
+	/**
+	 * Set the directory of the pathway snapshots, which are deleted with the
+	 * cached files.
+	 */
+	public void setSnapshotDirectory(final File snapshotDirectory) {
+		this.snapshotDirectory = snapshotDirectory;
+	}
+
+	/**
+	 * Return a local KGML file for the pathway. The file is downloaded only if
+	 * it is not cached or has expired.
+	 *
+	 * @param id
+	 *            pathway ID, e.g. hsa00020
+	 * @param url
+	 *            location of the KGML file
+	 */
+	public File get(final String id, final String url) throws IOException {
+		final Entry cached = lookup(id);
+		if (cached != null && (offline || !isExpired(cached))) {
+			synchronized (this) {
+				hits++;
+			}
+			return getFile(id);
+		}
+
+		if (offline) {
+			throw new IOException("Pathway " + id + " is not in the local KGML cache (offline mode).");
+		}
+
+		synchronized (this) {
+			misses++;
+		}
+		try {
+			return fetch(id, url);
+		} catch (IOException e) {
+			if (cached == null || e instanceof HttpStatusException) {
+				throw e;
+			}
+			logger.warn("Could not download " + url + ". Using cached copy of " + id + ".", e);
+			return getFile(id);
+		}
+	}
+
+	/**
+	 * @return true if a valid copy is cached. It may have expired.
+	 */
+	public synchronized boolean contains(final String id) {
+		return entries.containsKey(id);
+	}
+
+	/**
+	 * @return SHA-256 digest of the cached file as hex string, or null if the
+	 *         pathway is not cached.
+	 */
+	public synchronized String getDigest(final String id) {
+		final Entry entry = entries.get(id);
+		return entry == null ? null : entry.digest;
+	}
+
+	public synchronized long getSize() {
+		return totalBytes;
+	}
+
+	public synchronized int getHitCount() {
+		return hits;
+	}
+
+	public synchronized int getMissCount() {
+		return misses;
+	}
+
+	/**
+	 * Remove all cached files.
+	 */
+	public synchronized void clear() throws IOException {
+		for (final String id : new ArrayList<String>(entries.keySet())) {
+			remove(id);
+		}
+		saveIndex();
+	}
+
+	/**
+	 * Override to control the clock in tests.
+	 */
+	protected long currentTime() {
+		return System.currentTimeMillis();
+	}
+
+	private final boolean isExpired(final Entry entry) {
+		return currentTime() - entry.fetchTime > ttl;
+	}
+
+	/**
+	 * Find the entry and mark it as used. If the length or modification time
+	 * of the file changed, it is checked against its digest, so truncated or
+	 * modified files are never returned. The check runs under the lock, so a
+	 * concurrent fetch cannot replace the file in between.
+	 */
+	private final synchronized Entry lookup(final String id) throws IOException {
+		final Entry entry = entries.get(id);
+		if (entry == null) {
+			return null;
+		}
+
+		final File file = getFile(id);
+		final long modified = file.lastModified();
+		if (file.length() != entry.size || modified != entry.modified) {
+			if (!file.isFile() || file.length() != entry.size || !entry.digest.equals(digest(file))) {
+				logger.warn("Cached KGML file for " + id + " is damaged. It will be downloaded again.");
+				remove(id);
+				saveIndex();
+				return null;
+			}
+			if (System.currentTimeMillis() - modified > MODIFIED_TIME_RESOLUTION) {
+				entry.modified = modified;
+			}
+		}
+
+		entry.lastAccess = currentTime();
+		indexChanged = true;
+		if (currentTime() - indexSaveTime > INDEX_SAVE_INTERVAL) {
+			saveIndex();
+		}
+		return entry;
+	}
+
+	/**
+	 * Write access times which are not saved yet.
+	 */
+	public synchronized void flush() throws IOException {
+		if (indexChanged) {
+			saveIndex();
+		}
+	}
+
+	private final File fetch(final String id, final String url) throws IOException {
+		final File tempFile = File.createTempFile("kgml", ".tmp", dir);
+		try {
+			final String digest = transport.get(url, new PooledHttpTransport.SuccessHandler<String>() {
+				@Override
+				protected String handleEntity(final HttpEntity entity) throws IOException {
+					return copy(entity.getContent(), tempFile);
+				}
+			});
+
+			synchronized (this) {
+				final File file = getFile(id);
+				remove(id);
+				Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+				// The digest is checked on first use, once the modification
+				// time can be trusted.
+				final long now = currentTime();
+				final Entry entry = new Entry(digest, file.length(), 0L, now, now);
+				entries.put(id, entry);
+				totalBytes += entry.size;
+				evict(id);
+				saveIndex();
+				return file;
+			}
+		} finally {
+			tempFile.delete();
+		}
+	}
+
+	/**
+	 * Remove least recently used entries until the cache fits its size limit.
+	 * The given entry is always kept.
+	 */
+	private final void evict(final String keep) {
+		final Iterator<Map.Entry<String, Entry>> itr = entries.entrySet().iterator();
+		while (totalBytes > maxBytes && itr.hasNext()) {
+			final Map.Entry<String, Entry> eldest = itr.next();
+			if (eldest.getKey().equals(keep)) {
+				continue;
+			}
+			itr.remove();
+			totalBytes -= eldest.getValue().size;
+			delete(eldest.getKey(), eldest.getValue().digest);
+			logger.debug("Evicted " + eldest.getKey() + " from KGML cache.");
+		}
+	}
+
+	private final void remove(final String id) {
+		final Entry entry = entries.remove(id);
+		if (entry != null) {
+			totalBytes -= entry.size;
+		}
+		delete(id, entry == null ? null : entry.digest);
+	}
+
+	/**
+	 * Delete the cached file and its snapshot.
+	 *
+	 * @param digest
+	 *            digest of the file, or null if not known
+	 */
+	private final void delete(final String id, final String digest) {
+		final File file = getFile(id);
+		file.delete();
+		final File snapshots = snapshotDirectory;
+		if (snapshots != null && digest != null) {
+			PathwayGraphReader.getSnapshotFile(snapshots, file, digest).delete();
+		}
+	}
+
+	/**
+	 * @return location of the cached file for the pathway. The file may not
+	 *         exist.
+	 */
+	public File getFile(final String id) {
+		return new File(dir, id.replaceAll("[^A-Za-z0-9_.-]", "_") + KGML_EXTENSION);
+	}
+
+	private final void loadIndex() throws IOException {
+		final File indexFile = new File(dir, INDEX_FILE);
+		if (!indexFile.isFile()) {
+			return;
+		}
+
+		final List<Map.Entry<String, Entry>> loaded = new ArrayList<Map.Entry<String, Entry>>();
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(indexFile), UTF8));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				final String[] parts = line.split("\t");
+				if (parts.length != 5 && parts.length != 6) {
+					continue;
+				}
+				try {
+					// Entries of older indexes have no modification time and
+					// are checked on their first use.
+					final Entry entry = new Entry(parts[1], Long.parseLong(parts[2]),
+							parts.length == 6 ? Long.parseLong(parts[5]) : 0L, Long.parseLong(parts[3]),
+							Long.parseLong(parts[4]));
+					if (getFile(parts[0]).length() == entry.size) {
+						loaded.add(new AbstractMap.SimpleEntry<String, Entry>(parts[0], entry));
+					}
+				} catch (NumberFormatException e) {
+					logger.warn("Invalid line in KGML cache index: " + line);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+
+		Collections.sort(loaded, new Comparator<Map.Entry<String, Entry>>() {
+			@Override
+			public int compare(final Map.Entry<String, Entry> e1, final Map.Entry<String, Entry> e2) {
+				return Long.compare(e1.getValue().lastAccess, e2.getValue().lastAccess);
+			}
+		});
+		for (final Map.Entry<String, Entry> entry : loaded) {
+			entries.put(entry.getKey(), entry.getValue());
+			totalBytes += entry.getValue().size;
+		}
+	}
+
+	/**
+	 * Write the index to a temporary file first, so an interrupted write does
+	 * not damage the existing one.
+	 */
+	private final void saveIndex() throws IOException {
+		final File tempFile = new File(dir, INDEX_FILE + ".tmp");
+		final Writer writer = new OutputStreamWriter(new FileOutputStream(tempFile), UTF8);
+		try {
+			for (final Map.Entry<String, Entry> entry : entries.entrySet()) {
+				final Entry value = entry.getValue();
+				writer.write(entry.getKey() + "\t" + value.digest + "\t" + value.size + "\t" + value.fetchTime + "\t"
+						+ value.lastAccess + "\t" + value.modified + "\n");
+			}
+		} finally {
+			writer.close();
+		}
+		Files.move(tempFile.toPath(), new File(dir, INDEX_FILE).toPath(), StandardCopyOption.REPLACE_EXISTING);
+		indexChanged = false;
+		indexSaveTime = currentTime();
+	}
+
+	/**
+	 * Copy the stream to the file.
+	 *
+	 * @return SHA-256 digest of the content
+	 */
+	private static final String copy(final InputStream is, final File file) throws IOException {
+		final DigestInputStream dis = new DigestInputStream(is, newDigest());
+		final OutputStream os = new FileOutputStream(file);
+		try {
+			final byte[] buf = new byte[BUFFER_SIZE];
+			int n;
+			while ((n = dis.read(buf)) != -1) {
+				os.write(buf, 0, n);
+			}
+		} finally {
+			os.close();
+			dis.close();
+		}
+		return toHex(dis.getMessageDigest().digest());
+	}
+
+	/**
+	 * @return SHA-256 digest of the file as hex string
+	 */
+	static String digest(final File file) throws IOException {
+		final MessageDigest md = newDigest();
+		final InputStream is = new FileInputStream(file);
+		try {
+			final byte[] buf = new byte[BUFFER_SIZE];
+			int n;
+			while ((n = is.read(buf)) != -1) {
+				md.update(buf, 0, n);
+			}
+		} finally {
+			is.close();
+		}
+		return toHex(md.digest());
+	}
+
+	static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// Every JRE supports SHA-256.
+			throw new IllegalStateException(e);
+		}
+	}
+
+	static String toHex(final byte[] bytes) {
+		final StringBuilder builder = new StringBuilder(bytes.length * 2);
+		for (final byte b : bytes) {
+			builder.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+		return builder.toString();
+	}
+
+	private static final class Entry {
+		private final String digest;
+		private final long size;
+		private final long fetchTime;
+		// Modification time of the file when its digest was last checked
+		private long modified;
+		private long lastAccess;
+
+		private Entry(final String digest, final long size, final long modified, final long fetchTime,
+				final long lastAccess) {
+			this.digest = digest;
+			this.size = size;
+			this.modified = modified;
+			this.fetchTime = fetchTime;
+			this.lastAccess = lastAccess;
+		}
+	}
+}
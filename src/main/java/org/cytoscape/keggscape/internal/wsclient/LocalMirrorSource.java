@@ -0,0 +1,228 @@
+package org.cytoscape.keggscape.internal.wsclient;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Serves KGML files and TogoWS annotations from a local copy of the KEGG
+ * database, without network access.
+ *
+ * The mirror is a directory tree or a ZIP archive. KGML files are named
+ * {@code <id>.xml} or {@code <id>.kgml}, annotations {@code <id>.json} in the
+ * TogoWS format. They may be in any subdirectory. The tree is scanned once, on
+ * first use, and files are then found by ID with a single lookup. Entries of
+ * an archive are extracted to a temporary directory when they are first
+ * requested.
+ */
+public class LocalMirrorSource implements PathwaySource {
+
+	private static final Logger logger = LoggerFactory.getLogger(LocalMirrorSource.class);
+
+	private static final String[] KGML_EXTENSIONS = { ".xml", ".kgml" };
+	private static final String ANNOTATION_EXTENSION = ".json";
+
+	private final File root;
+	private final TogowsStreamParser parser = new TogowsStreamParser();
+
+	// ID to file path, or to entry name for archives
+	private Map<String, String> kgmlIndex;
+	private Map<String, String> annotationIndex;
+
+	private ZipFile archive;
+	private File extractDir;
+
+	/**
+	 * @param root
+	 *            mirror directory or ZIP archive
+	 */
+	public LocalMirrorSource(final File root) throws IOException {
+		if (!root.exists()) {
+			throw new FileNotFoundException("KEGG mirror does not exist: " + root);
+		}
+		this.root = root;
+	}
+
+	@Override
+	public File getKgml(final String id) throws IOException {
+		final String path = getIndex(true).get(id);
+		if (path == null) {
+			throw new FileNotFoundException("Pathway " + id + " is not in the local KEGG mirror " + root + ".");
+		}
+		if (!isArchive()) {
+			return new File(path);
+		}
+		return extract(path);
+	}
+
+	@Override
+	public void readAnnotation(final String id, final TogowsHandler handler) throws IOException {
+		final String path = getIndex(false).get(id);
+		if (path == null) {
+			throw new FileNotFoundException("Annotation of pathway " + id + " is not in the local KEGG mirror "
+					+ root + ".");
+		}
+		final InputStream is = open(path);
+		try {
+			parser.parse(is, handler);
+		} finally {
+			is.close();
+		}
+	}
+
+	@Override
+	public int getMaxConcurrentAnnotations() {
+		// Local files
+		return Integer.MAX_VALUE;
+	}
+
+	@Override
+	public String getName() {
+		return "local KEGG mirror";
+	}
+
+	/**
+	 * @return IDs of all KGML files in the mirror, sorted.
+	 */
+	public Set<String> getIds() throws IOException {
+		return Collections.unmodifiableSet(new TreeSet<String>(getIndex(true).keySet()));
+	}
+
+	/**
+	 * Close the archive and delete extracted files.
+	 */
+	public synchronized void close() throws IOException {
+		if (archive != null) {
+			archive.close();
+			archive = null;
+		}
+		if (extractDir != null) {
+			final File[] files = extractDir.listFiles();
+			if (files != null) {
+				for (final File file : files) {
+					file.delete();
+				}
+			}
+			extractDir.delete();
+			extractDir = null;
+		}
+		kgmlIndex = null;
+		annotationIndex = null;
+	}
+
+	private final boolean isArchive() {
+		return root.isFile();
+	}
+
+	private final synchronized Map<String, String> getIndex(final boolean kgml) throws IOException {
+		if (kgmlIndex == null) {
+			final long start = System.currentTimeMillis();
+			kgmlIndex = new HashMap<String, String>();
+			annotationIndex = new HashMap<String, String>();
+			if (isArchive()) {
+				scanArchive();
+			} else {
+				scanDirectory();
+			}
+			logger.info("Indexed " + kgmlIndex.size() + " KGML files and " + annotationIndex.size()
+					+ " annotations in " + root + " in " + (System.currentTimeMillis() - start) + " msec.");
+		}
+		return kgml ? kgmlIndex : annotationIndex;
+	}
+
+	private final void scanDirectory() throws IOException {
+		Files.walkFileTree(root.toPath(), new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+				if (attrs.isRegularFile()) {
+					add(file.getFileName().toString(), file.toAbsolutePath().toString());
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	private final void scanArchive() throws IOException {
+		archive = new ZipFile(root);
+		final Enumeration<? extends ZipEntry> entries = archive.entries();
+		while (entries.hasMoreElements()) {
+			final ZipEntry entry = entries.nextElement();
+			if (!entry.isDirectory()) {
+				final String name = entry.getName();
+				add(name.substring(name.lastIndexOf('/') + 1), name);
+			}
+		}
+	}
+
+	private final void add(final String fileName, final String path) {
+		final String lowerName = fileName.toLowerCase();
+		for (final String extension : KGML_EXTENSIONS) {
+			if (lowerName.endsWith(extension)) {
+				put(kgmlIndex, fileName.substring(0, fileName.length() - extension.length()), path);
+				return;
+			}
+		}
+		if (lowerName.endsWith(ANNOTATION_EXTENSION)) {
+			put(annotationIndex, fileName.substring(0, fileName.length() - ANNOTATION_EXTENSION.length()), path);
+		}
+	}
+
+	private static final void put(final Map<String, String> index, final String id, final String path) {
+		final String existing = index.get(id);
+		// Same pathway in more than one directory: keep a stable choice.
+		if (existing == null || path.compareTo(existing) < 0) {
+			index.put(id, path);
+		}
+	}
+
+	private final InputStream open(final String path) throws IOException {
+		if (!isArchive()) {
+			return new FileInputStream(path);
+		}
+		final ZipFile zip;
+		synchronized (this) {
+			zip = archive;
+		}
+		final ZipEntry entry = zip == null ? null : zip.getEntry(path);
+		if (entry == null) {
+			throw new FileNotFoundException(path + " is not in " + root + ".");
+		}
+		return zip.getInputStream(entry);
+	}
+
+	private final synchronized File extract(final String path) throws IOException {
+		if (extractDir == null) {
+			extractDir = Files.createTempDirectory("kegg-mirror").toFile();
+		}
+		// Keep the original file name, it is used as collection name.
+		final File file = new File(extractDir, path.substring(path.lastIndexOf('/') + 1));
+		if (!file.exists()) {
+			final InputStream is = open(path);
+			try {
+				Files.copy(is, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			} finally {
+				is.close();
+			}
+		}
+		return file;
+	}
+}
@@ -0,0 +1,217 @@
+package org.cytoscape.keggscape.internal.wsclient;
+
+import static org.cytoscape.keggscape.internal.wsclient.TogowsTags.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cytoscape.keggscape.internal.read.kgml.KEGGTags;
+import org.cytoscape.keggscape.internal.read.kgml.KeggConstants;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.CyRow;
+
+/**
+ * Writes a TogoWS pathway entry to the network and node tables.
+ *
+ * Gene nodes are indexed by their KEGG IDs once, before the response is read.
+ * Each gene in the response is then resolved with a single lookup. Nothing is
+ * written while the response is read, so the response may be read on another
+ * thread. {@link #apply()} writes the values column by column.
+ */
+public class NetworkAnnotationWriter implements TogowsHandler {
+
+	private static final String ID_SUFFIX = "_id";
+
+	private final CyNetwork network;
+	private final CyRow networkRow;
+
+	private String description;
+
+	private final List<String> classes = new ArrayList<String>();
+	private final List<String> modules = new ArrayList<String>();
+	private final List<String> moduleIds = new ArrayList<String>();
+	private final List<String> diseases = new ArrayList<String>();
+	private final List<String> diseaseIds = new ArrayList<String>();
+
+	// Gene ID without organism prefix -> rows of the nodes with this ID
+	private final Map<String, List<Target>> geneIndex = new HashMap<String, List<Target>>();
+	private final List<CyRow> geneRows = new ArrayList<CyRow>();
+
+	// Values to write, by position in geneRows
+	private String[] labels;
+	private String[] definitions;
+	private int[] priorities;
+
+	public NetworkAnnotationWriter(final CyNetwork network) {
+		this.network = network;
+		this.networkRow = network.getRow(network);
+
+		if (network.getDefaultNetworkTable().getColumn(DESCRIPTION) == null) {
+			createColumns(network);
+		}
+		buildGeneIndex();
+	}
+
+	public CyNetwork getNetwork() {
+		return network;
+	}
+
+	@Override
+	public void description(final String description) {
+		this.description = description;
+	}
+
+	@Override
+	public void pathwayClass(final String pathwayClass) {
+		classes.add(pathwayClass);
+	}
+
+	@Override
+	public void module(final String key, final String value) {
+		modules.add(key);
+		moduleIds.add(value);
+	}
+
+	@Override
+	public void disease(final String key, final String value) {
+		diseases.add(key);
+		diseaseIds.add(value);
+	}
+
+	@Override
+	public void gene(final String id, final String text) {
+		final List<Target> targets = geneIndex.get(id);
+		if (targets == null) {
+			return;
+		}
+
+		final String[] parts = text.split(";");
+		for (final Target target : targets) {
+			// Nodes with several IDs use the first one found in the response.
+			if (target.priority < priorities[target.row]) {
+				priorities[target.row] = target.priority;
+				labels[target.row] = parts[0];
+				definitions[target.row] = parts.length > 1 ? parts[1] : null;
+			}
+		}
+	}
+
+	@Override
+	public void endEntry() {
+		// Values are written by apply().
+	}
+
+	/**
+	 * Discard all values received so far, e.g. before a request is retried.
+	 */
+	public void reset() {
+		description = null;
+		classes.clear();
+		modules.clear();
+		moduleIds.clear();
+		diseases.clear();
+		diseaseIds.clear();
+		Arrays.fill(labels, null);
+		Arrays.fill(definitions, null);
+		Arrays.fill(priorities, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Write the received values to the network. Call this from the thread
+	 * which owns the network.
+	 */
+	public void apply() {
+		networkRow.set(DESCRIPTION, description);
+		networkRow.set(MODULES, modules);
+		networkRow.set(MODULES + ID_SUFFIX, moduleIds);
+		networkRow.set(DISEASES, diseases);
+		networkRow.set(DISEASES + ID_SUFFIX, diseaseIds);
+		networkRow.set(CLASSES, classes);
+
+		mapGenes();
+	}
+
+	private final void createColumns(final CyNetwork network) {
+		network.getDefaultNetworkTable().createColumn(DESCRIPTION, String.class, false);
+		network.getDefaultNodeTable().createColumn(KeggConstants.KEGG_DEFINITION, String.class, false);
+
+		network.getDefaultNetworkTable().createListColumn(MODULES, String.class, false);
+		network.getDefaultNetworkTable().createListColumn(DISEASES, String.class, false);
+		network.getDefaultNetworkTable().createListColumn(MODULES + ID_SUFFIX, String.class, false);
+		network.getDefaultNetworkTable().createListColumn(DISEASES + ID_SUFFIX, String.class, false);
+
+		network.getDefaultNetworkTable().createListColumn(CLASSES, String.class, false);
+	}
+
+	private final void buildGeneIndex() {
+		for (final CyNode node : network.getNodeList()) {
+			final CyRow row = network.getRow(node);
+			final List<String> nameList = getGeneIds(row);
+			if (nameList == null) {
+				continue;
+			}
+
+			final int rowIndex = geneRows.size();
+			geneRows.add(row);
+			for (int priority = 0; priority < nameList.size(); priority++) {
+				final String name = nameList.get(priority);
+				final int idx = name.indexOf(':');
+				if (idx < 0) {
+					continue;
+				}
+				final String id = name.substring(idx + 1);
+				List<Target> targets = geneIndex.get(id);
+				if (targets == null) {
+					targets = new ArrayList<Target>(1);
+					geneIndex.put(id, targets);
+				}
+				targets.add(new Target(rowIndex, priority));
+			}
+		}
+
+		labels = new String[geneRows.size()];
+		definitions = new String[geneRows.size()];
+		priorities = new int[geneRows.size()];
+		Arrays.fill(priorities, Integer.MAX_VALUE);
+	}
+
+	private final void mapGenes() {
+		final int size = geneRows.size();
+		for (int i = 0; i < size; i++) {
+			if (definitions[i] != null) {
+				geneRows.get(i).set(KeggConstants.KEGG_DEFINITION, definitions[i]);
+			}
+		}
+		// Replace labels
+		for (int i = 0; i < size; i++) {
+			if (labels[i] != null) {
+				geneRows.get(i).set(KeggConstants.KEGG_NODE_LABEL_LIST_FIRST, labels[i]);
+			}
+		}
+	}
+
+	/**
+	 * @return KEGG IDs of a gene node, or null for other node types.
+	 */
+	private final List<String> getGeneIds(final CyRow row) {
+		final String type = row.get(KeggConstants.KEGG_NODE_TYPE, String.class);
+		if (type == null || type.equals(KEGGTags.GENE.getTag()) == false) {
+			return null;
+		}
+		return row.getList(KeggConstants.KEGG_ID, String.class);
+	}
+
+	private static final class Target {
+		private final int row;
+		private final int priority;
+
+		private Target(final int row, final int priority) {
+			this.row = row;
+			this.priority = priority;
+		}
+	}
+}
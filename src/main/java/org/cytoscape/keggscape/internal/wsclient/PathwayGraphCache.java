@@ -0,0 +1,380 @@
+package org.cytoscape.keggscape.internal.wsclient;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.security.DigestInputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.cytoscape.keggscape.internal.model.PathwayGraph;
+import org.cytoscape.keggscape.internal.read.kgml.CountingInputStream;
+import org.cytoscape.keggscape.internal.read.kgml.ImportMetrics;
+import org.cytoscape.keggscape.internal.read.kgml.PathwayGraphReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Process-wide cache of parsed pathways.
+ *
+ * Graphs are keyed by the SHA-256 digest of their KGML, so a pathway is parsed
+ * once however it is opened. Concurrent requests for the same pathway ID share
+ * one load: the first caller downloads and parses it, the others wait for its
+ * result. KGML streams are hashed while they are parsed, so for them the cache
+ * only shares the graph instance. {@link PathwayGraph} is immutable, so all
+ * callers can use the same instance.
+ *
+ * The cache is bounded by the total size of the KGML of its graphs. The least
+ * recently used graphs are evicted first.
+ */
+public class PathwayGraphCache {
+
+	private static final Logger logger = LoggerFactory.getLogger(PathwayGraphCache.class);
+
+	public static final String MAX_SIZE_PROPERTY = "keggscape.graphCache.maxMegabytes";
+
+	private static final long DEF_MAX_MEGABYTES = 64;
+	private static final int BUFFER_SIZE = 8192;
+	private static final int MAX_FILE_DIGESTS = 4096;
+
+	private static final String ID_KEY = "id:";
+
+	private final PathwaySource source;
+	private final long maxBytes;
+	private volatile PathwayGraphReader reader = new PathwayGraphReader();
+	private volatile KgmlCache kgmlCache;
+
+	// Loads in progress, by pathway ID
+	private final ConcurrentHashMap<String, FutureTask<PathwayGraph>> loads =
+			new ConcurrentHashMap<String, FutureTask<PathwayGraph>>();
+
+	// Digests of files the KGML cache does not own, by absolute path. Guarded
+	// by itself.
+	private final LinkedHashMap<String, FileDigest> fileDigests = new LinkedHashMap<String, FileDigest>(16, 0.75f,
+			true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<String, FileDigest> eldest) {
+			return size() > MAX_FILE_DIGESTS;
+		}
+	};
+
+	// Guarded by this
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	private long totalBytes;
+	private long hits;
+	private long misses;
+	private long shared;
+	private long evictions;
+
+	/**
+	 * Create a cache configured by system properties.
+	 */
+	public static PathwayGraphCache create(final PathwaySource source) {
+		return new PathwayGraphCache(source, Long.getLong(MAX_SIZE_PROPERTY, DEF_MAX_MEGABYTES) * 1024L * 1024L);
+	}
+
+	/**
+	 * @param maxBytes
+	 *            maximum total size of the KGML of the cached graphs
+	 */
+	public PathwayGraphCache(final PathwaySource source, final long maxBytes) {
+		this.source = source;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Keep snapshots of the pathway files in an app owned directory. If not
+	 * set, files are always parsed.
+	 */
+	public void setSnapshotDirectory(final File snapshotDirectory) {
+		this.reader = new PathwayGraphReader(snapshotDirectory);
+	}
+
+	/**
+	 * Set the KGML cache of the pathway source. The digests of its files are
+	 * taken from its index instead of hashing the files again.
+	 */
+	public void setKgmlCache(final KgmlCache kgmlCache) {
+		this.kgmlCache = kgmlCache;
+	}
+
+	/**
+	 * Get a pathway from the pathway source.
+	 *
+	 * @param id
+	 *            pathway ID without prefix, e.g. hsa00020
+	 */
+	public PathwayGraph get(final String id) throws IOException {
+		return get(id, (File) null);
+	}
+
+	/**
+	 * Same as {@link #get(String)}, and measure the download and parse
+	 * phases. Waiting for a concurrent load of the same pathway counts as
+	 * download.
+	 *
+	 * @param metrics
+	 *            metrics of the import, used by the calling thread only. The
+	 *            last phase is left running on return.
+	 */
+	public PathwayGraph get(final String id, final ImportMetrics metrics) throws IOException {
+		metrics.start(ImportMetrics.Phase.DOWNLOAD);
+		return load(ID_KEY + id, new Callable<PathwayGraph>() {
+			@Override
+			public PathwayGraph call() throws Exception {
+				final File file = source.getKgml(id);
+				metrics.setBytes(file.length());
+				metrics.start(ImportMetrics.Phase.PARSE);
+				return loadFile(id, file);
+			}
+		});
+	}
+
+	/**
+	 * Same as {@link #get(String)}, for callers which have already resolved
+	 * the KGML file of the pathway.
+	 *
+	 * @param kgml
+	 *            KGML file of the pathway from the source, or null
+	 */
+	public PathwayGraph get(final String id, final File kgml) throws IOException {
+		return load(ID_KEY + id, new Callable<PathwayGraph>() {
+			@Override
+			public PathwayGraph call() throws Exception {
+				return loadFile(id, kgml == null ? source.getKgml(id) : kgml);
+			}
+		});
+	}
+
+	private final PathwayGraph loadFile(final String id, final File file) throws IOException {
+		final String digest = getDigest(id, file);
+		final PathwayGraph graph = lookup(digest);
+		if (graph != null) {
+			return graph;
+		}
+		// A stream with the same content may be parsed at the same time. The
+		// graph stored first is kept.
+		return store(digest, reader.readCached(file, digest), file.length());
+	}
+
+	/**
+	 * @return digest of the file from the KGML cache index if the cache owns
+	 *         it, otherwise of its content. Other files are hashed again only
+	 *         if their length or modification time changed.
+	 */
+	private final String getDigest(final String id, final File file) throws IOException {
+		final KgmlCache cache = kgmlCache;
+		if (cache != null && file.equals(cache.getFile(id))) {
+			final String digest = cache.getDigest(id);
+			if (digest != null) {
+				return digest;
+			}
+		}
+		final String path = file.getAbsolutePath();
+		final long length = file.length();
+		final long modified = file.lastModified();
+		synchronized (fileDigests) {
+			final FileDigest known = fileDigests.get(path);
+			if (known != null && known.length == length && known.modified == modified) {
+				return known.digest;
+			}
+		}
+		final String digest = KgmlCache.digest(file);
+		// Files changed more recently may change again within the same
+		// modification time.
+		if (System.currentTimeMillis() - modified > KgmlCache.MODIFIED_TIME_RESOLUTION) {
+			synchronized (fileDigests) {
+				fileDigests.put(path, new FileDigest(length, modified, digest));
+			}
+		}
+		return digest;
+	}
+
+	/**
+	 * Get the pathway of a KGML stream, such as a file opened by the user.
+	 * The stream is hashed while it is parsed, and read to the end, but not
+	 * closed. If a graph with the same digest is cached, it is returned
+	 * instead of the new one.
+	 */
+	public PathwayGraph get(final InputStream is) throws IOException {
+		final CountingInputStream counter = new CountingInputStream(is);
+		final DigestInputStream dis = new DigestInputStream(counter, KgmlCache.newDigest()) {
+			@Override
+			public void close() {
+				// Left to the caller
+			}
+		};
+		final PathwayGraph parsed = reader.read(dis);
+
+		// The parser may stop at the end of the pathway element.
+		final byte[] buf = new byte[BUFFER_SIZE];
+		while (dis.read(buf) != -1) {
+			// Only hashed
+		}
+		final String digest = KgmlCache.toHex(dis.getMessageDigest().digest());
+
+		final PathwayGraph graph = lookup(digest);
+		if (graph != null) {
+			return graph;
+		}
+		return store(digest, parsed, counter.getCount());
+	}
+
+	/**
+	 * Run the loader, unless a load with the same key is in progress. In that
+	 * case, wait for its result instead.
+	 */
+	private final PathwayGraph load(final String key, final Callable<PathwayGraph> loader) throws IOException {
+		final FutureTask<PathwayGraph> task = new FutureTask<PathwayGraph>(loader);
+		final FutureTask<PathwayGraph> running = loads.putIfAbsent(key, task);
+		if (running != null) {
+			synchronized (this) {
+				shared++;
+			}
+			return await(running);
+		}
+		try {
+			task.run();
+			return await(task);
+		} finally {
+			loads.remove(key);
+		}
+	}
+
+	private static final PathwayGraph await(final FutureTask<PathwayGraph> task) throws IOException {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for pathway.");
+		} catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException("Could not load pathway.", cause);
+		}
+	}
+
+	private final synchronized PathwayGraph lookup(final String digest) {
+		final Entry entry = entries.get(digest);
+		if (entry == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return entry.graph;
+	}
+
+	private final synchronized PathwayGraph store(final String digest, final PathwayGraph graph, final long size) {
+		final Entry existing = entries.get(digest);
+		if (existing != null) {
+			return existing.graph;
+		}
+		if (size > maxBytes) {
+			return graph;
+		}
+		entries.put(digest, new Entry(graph, size));
+		totalBytes += size;
+
+		final Iterator<Map.Entry<String, Entry>> itr = entries.entrySet().iterator();
+		while (totalBytes > maxBytes && itr.hasNext()) {
+			final Map.Entry<String, Entry> eldest = itr.next();
+			if (eldest.getKey().equals(digest)) {
+				continue;
+			}
+			itr.remove();
+			totalBytes -= eldest.getValue().size;
+			evictions++;
+			logger.debug("Evicted pathway " + eldest.getValue().graph.getName() + " from graph cache.");
+		}
+		return graph;
+	}
+
+	/**
+	 * @return number of requests answered with a cached graph.
+	 */
+	public synchronized long getHitCount() {
+		return hits;
+	}
+
+	/**
+	 * @return number of requests which did not find a cached graph.
+	 */
+	public synchronized long getMissCount() {
+		return misses;
+	}
+
+	/**
+	 * @return number of requests which waited for the load of a concurrent
+	 *         request.
+	 */
+	public synchronized long getSharedLoadCount() {
+		return shared;
+	}
+
+	public synchronized long getEvictionCount() {
+		return evictions;
+	}
+
+	public synchronized int getEntryCount() {
+		return entries.size();
+	}
+
+	/**
+	 * @return total size of the KGML of the cached graphs.
+	 */
+	public synchronized long getSize() {
+		return totalBytes;
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		totalBytes = 0;
+		synchronized (fileDigests) {
+			fileDigests.clear();
+		}
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "entries=" + entries.size() + " bytes=" + totalBytes + " hits=" + hits + " misses=" + misses
+				+ " shared=" + shared + " evictions=" + evictions;
+	}
+
+	private static final class Entry {
+
+		private final PathwayGraph graph;
+		private final long size;
+
+		private Entry(final PathwayGraph graph, final long size) {
+			this.graph = graph;
+			this.size = size;
+		}
+	}
+
+	private static final class FileDigest {
+
+		private final long length;
+		private final long modified;
+		private final String digest;
+
+		private FileDigest(final long length, final long modified, final String digest) {
+			this.length = length;
+			this.modified = modified;
+			this.digest = digest;
+		}
+	}
+}
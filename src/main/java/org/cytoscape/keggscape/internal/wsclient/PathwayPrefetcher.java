@@ -0,0 +1,367 @@
+package org.cytoscape.keggscape.internal.wsclient;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.cytoscape.keggscape.internal.model.NodeAttribute;
+import org.cytoscape.keggscape.internal.model.NodeTable;
+import org.cytoscape.keggscape.internal.model.PathwayGraph;
+import org.cytoscape.keggscape.internal.read.kgml.KEGGTags;
+import org.cytoscape.keggscape.internal.read.kgml.PathwayGraphReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Downloads and parses the pathways linked from map nodes in the background.
+ *
+ * Files are resolved through the {@link PathwaySource}, and the parsed graphs
+ * are kept in memory until they are taken. Pathways are only scheduled while
+ * the prefetched graphs and the queued downloads, at the average size of the
+ * prefetched files, fit the byte limit. If the limit is still exceeded, the
+ * least recently requested graphs are dropped. Their files stay in the disk
+ * cache. Work runs on a small pool of low priority daemon threads.
+ */
+public class PathwayPrefetcher {
+
+	private static final Logger logger = LoggerFactory.getLogger(PathwayPrefetcher.class);
+
+	public static final String ENABLED_PROPERTY = "keggscape.prefetch";
+	public static final String THREADS_PROPERTY = "keggscape.prefetch.threads";
+	public static final String MAX_SIZE_PROPERTY = "keggscape.prefetch.maxMegabytes";
+
+	private static final int DEF_THREADS = 2;
+	private static final long DEF_MAX_MEGABYTES = 32;
+
+	// Expected size of a KGML file before any has been prefetched
+	private static final long DEF_ESTIMATED_BYTES = 64 * 1024;
+
+	private static final String PATHWAY_PREFIX = "path:";
+
+	private final PathwaySource source;
+	private final long maxBytes;
+	private final ExecutorService executor;
+	private volatile PathwayGraphReader reader = new PathwayGraphReader();
+
+	// Guarded by this, in the order the pathways were last requested
+	private final Map<String, FutureTask<PathwayGraph>> pending = new LinkedHashMap<String, FutureTask<PathwayGraph>>();
+	private final Map<String, Long> sizes = new HashMap<String, Long>();
+	private final AtomicLong bytes = new AtomicLong();
+
+	private volatile boolean enabled;
+	private volatile PathwayGraphCache graphCache;
+
+	/**
+	 * Create a prefetcher configured by system properties.
+	 */
+	public static PathwayPrefetcher create(final PathwaySource source) {
+		final PathwayPrefetcher prefetcher = new PathwayPrefetcher(source,
+				Integer.getInteger(THREADS_PROPERTY, DEF_THREADS),
+				Long.getLong(MAX_SIZE_PROPERTY, DEF_MAX_MEGABYTES) * 1024L * 1024L);
+		prefetcher.setEnabled(Boolean.getBoolean(ENABLED_PROPERTY));
+		return prefetcher;
+	}
+
+	/**
+	 * @param threads
+	 *            maximum number of concurrent downloads
+	 * @param maxBytes
+	 *            maximum total size of the KGML files held in memory as parsed
+	 *            graphs
+	 */
+	public PathwayPrefetcher(final PathwaySource source, final int threads, final long maxBytes) {
+		this.source = source;
+		this.maxBytes = maxBytes;
+		this.executor = Executors.newFixedThreadPool(threads, new PrefetchThreadFactory());
+		this.enabled = true;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Set the cache which shares parsed pathways with imports. If not set,
+	 * prefetched pathways are read without it.
+	 */
+	public void setGraphCache(final PathwayGraphCache graphCache) {
+		this.graphCache = graphCache;
+	}
+
+	/**
+	 * Keep snapshots of pathways read without the graph cache in an app owned
+	 * directory. If not set, files are always parsed.
+	 */
+	public void setSnapshotDirectory(final File snapshotDirectory) {
+		this.reader = new PathwayGraphReader(snapshotDirectory);
+	}
+
+	/**
+	 * Disabling the prefetcher also cancels pending work.
+	 */
+	public void setEnabled(final boolean enabled) {
+		this.enabled = enabled;
+		if (!enabled) {
+			cancel();
+		}
+	}
+
+	/**
+	 * Schedule all pathways linked from map nodes of the graph.
+	 *
+	 * @return number of pathways scheduled
+	 */
+	public int prefetchLinked(final PathwayGraph graph) {
+		return prefetch(getLinkedPathways(graph));
+	}
+
+	/**
+	 * Schedule pathways for download, in the given order, until the byte
+	 * limit is reached. IDs which are already pending are not scheduled again,
+	 * but count as requested, so they are dropped last.
+	 *
+	 * @param ids
+	 *            pathway IDs without prefix, e.g. hsa00010
+	 * @return number of pathways scheduled
+	 */
+	public synchronized int prefetch(final Collection<String> ids) {
+		if (!enabled || executor.isShutdown()) {
+			return 0;
+		}
+
+		final long estimatedSize = sizes.isEmpty() ? DEF_ESTIMATED_BYTES : bytes.get() / sizes.size();
+		int queued = getQueuedCount();
+		int scheduled = 0;
+		int skipped = 0;
+		for (final String id : ids) {
+			final FutureTask<PathwayGraph> existing = pending.remove(id);
+			if (existing != null) {
+				pending.put(id, existing);
+				continue;
+			}
+			if (bytes.get() + queued * estimatedSize >= maxBytes) {
+				skipped++;
+				continue;
+			}
+			final FutureTask<PathwayGraph> task = new FutureTask<PathwayGraph>(new Callable<PathwayGraph>() {
+				@Override
+				public PathwayGraph call() throws Exception {
+					return load(id);
+				}
+			});
+			pending.put(id, task);
+			executor.execute(task);
+			queued++;
+			scheduled++;
+		}
+		if (skipped > 0) {
+			logger.debug("Prefetch limit reached. " + skipped + " pathways were not scheduled.");
+		}
+		return scheduled;
+	}
+
+	/**
+	 * @return number of pending pathways which have not been counted against
+	 *         the byte limit yet
+	 */
+	private final int getQueuedCount() {
+		int queued = 0;
+		for (final Map.Entry<String, FutureTask<PathwayGraph>> entry : pending.entrySet()) {
+			if (!entry.getValue().isDone() && !sizes.containsKey(entry.getKey())) {
+				queued++;
+			}
+		}
+		return queued;
+	}
+
+	/**
+	 * Remove a prefetched pathway. If it is still being downloaded, wait for
+	 * it. If it is still queued, load it in the calling thread.
+	 *
+	 * @return parsed graph, or null if it has not been prefetched or could
+	 *         not be loaded.
+	 */
+	public PathwayGraph take(final String id) {
+		final FutureTask<PathwayGraph> task;
+		synchronized (this) {
+			task = pending.remove(id);
+		}
+		if (task == null) {
+			return null;
+		}
+
+		try {
+			// Does nothing if a prefetch thread has started the task.
+			task.run();
+			return task.get();
+		} catch (ExecutionException e) {
+			return null;
+		} catch (CancellationException e) {
+			return null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} finally {
+			release(id);
+		}
+	}
+
+	/**
+	 * @return true if the pathway has been downloaded and parsed.
+	 */
+	public boolean isReady(final String id) {
+		final FutureTask<PathwayGraph> future;
+		synchronized (this) {
+			future = pending.get(id);
+		}
+		if (future == null || !future.isDone() || future.isCancelled()) {
+			return false;
+		}
+		try {
+			return future.get() != null;
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @return size of the KGML files of all graphs held in memory.
+	 */
+	public long getPrefetchedBytes() {
+		return bytes.get();
+	}
+
+	/**
+	 * Cancel pending downloads and drop all prefetched graphs.
+	 */
+	public synchronized void cancel() {
+		for (final FutureTask<PathwayGraph> future : pending.values()) {
+			future.cancel(true);
+		}
+		pending.clear();
+		sizes.clear();
+		bytes.set(0);
+	}
+
+	/**
+	 * Stop all threads. Called when the bundle is stopped.
+	 */
+	public void close() {
+		cancel();
+		executor.shutdownNow();
+	}
+
+	/**
+	 * @return IDs of the pathways linked from map nodes, without the pathway
+	 *         itself.
+	 */
+	public static List<String> getLinkedPathways(final PathwayGraph graph) {
+		final String self = graph.getOrg() + graph.getNumber();
+		final Set<String> ids = new LinkedHashSet<String>();
+		final NodeTable nodes = graph.getNodes();
+		for (int i = 0; i < nodes.size(); i++) {
+			if (!KEGGTags.MAP.getTag().equals(nodes.get(NodeAttribute.TYPE, i))) {
+				continue;
+			}
+			final List<String> keggIds = nodes.getIds(i);
+			if (keggIds == null) {
+				continue;
+			}
+			for (final String keggId : keggIds) {
+				if (keggId.startsWith(PATHWAY_PREFIX)) {
+					final String id = keggId.substring(PATHWAY_PREFIX.length());
+					if (!id.equals(self)) {
+						ids.add(id);
+					}
+				}
+			}
+		}
+		return new ArrayList<String>(ids);
+	}
+
+	private final PathwayGraph load(final String id) throws Exception {
+		final File file = source.getKgml(id);
+		if (Thread.currentThread().isInterrupted()) {
+			return null;
+		}
+		// Pathways over the limit are still stored in the disk cache.
+		final long size = file.length();
+		if (size > maxBytes) {
+			return null;
+		}
+		reserve(id, size);
+
+		try {
+			final PathwayGraphCache cache = graphCache;
+			final PathwayGraph graph = cache == null ? reader.readCached(file, KgmlCache.digest(file)) : cache.get(id, file);
+			if (Thread.currentThread().isInterrupted()) {
+				// Cancelled while parsing
+				release(id);
+				return null;
+			}
+			logger.debug("Prefetched pathway " + id + " (" + size + " bytes).");
+			return graph;
+		} catch (Exception e) {
+			release(id);
+			throw e;
+		}
+	}
+
+	/**
+	 * Count the pathway against the byte limit, and drop the least recently
+	 * requested graphs until it fits. Graphs still being parsed are not
+	 * dropped, so the limit may be exceeded by them for a short time.
+	 */
+	private final synchronized void reserve(final String id, final long size) {
+		sizes.put(id, size);
+		bytes.addAndGet(size);
+
+		final Iterator<Map.Entry<String, FutureTask<PathwayGraph>>> itr = pending.entrySet().iterator();
+		while (bytes.get() > maxBytes && itr.hasNext()) {
+			final Map.Entry<String, FutureTask<PathwayGraph>> eldest = itr.next();
+			final String eldestId = eldest.getKey();
+			if (eldestId.equals(id) || !eldest.getValue().isDone() || !sizes.containsKey(eldestId)) {
+				continue;
+			}
+			itr.remove();
+			release(eldestId);
+			logger.debug("Dropped prefetched pathway " + eldestId + ".");
+		}
+	}
+
+	private final synchronized void release(final String id) {
+		final Long size = sizes.remove(id);
+		if (size != null) {
+			bytes.addAndGet(-size);
+		}
+	}
+
+	private static final class PrefetchThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(final Runnable r) {
+			final Thread thread = new Thread(r, "KEGGscape prefetch " + count.incrementAndGet());
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,44 @@
+package org.cytoscape.keggscape.internal.wsclient;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Resolves KGML files and pathway annotations by pathway ID.
+ * 
+ * Expand, annotate and batch import all go through the source registered as
+ * an OSGi service. Implementations must be thread safe.
+ */
+public interface PathwaySource {
+
+	/**
+	 * Set this system property to a directory or ZIP archive to read pathways
+	 * from a local KEGG mirror instead of the KEGG and TogoWS servers.
+	 */
+	public static final String MIRROR_PROPERTY = "keggscape.mirror";
+
+	/**
+	 * @param id
+	 *            pathway ID without prefix, e.g. hsa00020
+	 * @return local KGML file. Callers must not modify it.
+	 * @throws java.io.FileNotFoundException
+	 *             if the source does not have the pathway
+	 */
+	File getKgml(final String id) throws IOException;
+
+	/**
+	 * Read the TogoWS entry of the pathway and pass its values to the handler.
+	 */
+	void readAnnotation(final String id, final TogowsHandler handler) throws IOException;
+
+	/**
+	 * @return maximum number of annotations which can be read at the same
+	 *         time without waiting for a connection.
+	 */
+	int getMaxConcurrentAnnotations();
+
+	/**
+	 * @return short description for status messages.
+	 */
+	String getName();
+}
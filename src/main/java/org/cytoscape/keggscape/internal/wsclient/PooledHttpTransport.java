@@ -0,0 +1,251 @@
+package org.cytoscape.keggscape.internal.wsclient;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.config.ConnectionConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.HttpConnectionFactory;
+import org.apache.http.conn.ManagedHttpClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.ManagedHttpClientConnectionFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link HttpTransport} with a pool of keep-alive connections.
+ * 
+ * Responses are decompressed transparently if the server sends gzip. The
+ * number of concurrent connections to one host is limited, so parallel
+ * imports do not flood KEGG with requests.
+ */
+public class PooledHttpTransport implements HttpTransport {
+
+	private static final Logger logger = LoggerFactory.getLogger(PooledHttpTransport.class);
+
+	public static final String MAX_TOTAL_PROPERTY = "keggscape.http.maxTotal";
+	public static final String MAX_PER_HOST_PROPERTY = "keggscape.http.maxPerHost";
+	public static final String CONNECT_TIMEOUT_PROPERTY = "keggscape.http.connectTimeout";
+	public static final String SOCKET_TIMEOUT_PROPERTY = "keggscape.http.socketTimeout";
+
+	private static final int DEF_MAX_TOTAL = 20;
+	private static final int DEF_MAX_PER_HOST = 4;
+	private static final int DEF_CONNECT_TIMEOUT = 10000;
+	private static final int DEF_SOCKET_TIMEOUT = 30000;
+	private static final int DEF_POOL_TIMEOUT = 60000;
+
+	// Used if the server does not send a Keep-Alive header.
+	private static final long DEF_KEEP_ALIVE = 30000;
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private final int maxPerHost;
+	private final PoolingHttpClientConnectionManager connectionManager;
+	private final CloseableHttpClient client;
+
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+	private final AtomicLong connectionsOpened = new AtomicLong();
+	private final AtomicLong totalTime = new AtomicLong();
+
+	/**
+	 * Create a transport configured by system properties.
+	 */
+	public PooledHttpTransport() {
+		this(Integer.getInteger(MAX_TOTAL_PROPERTY, DEF_MAX_TOTAL),
+				Integer.getInteger(MAX_PER_HOST_PROPERTY, DEF_MAX_PER_HOST),
+				Integer.getInteger(CONNECT_TIMEOUT_PROPERTY, DEF_CONNECT_TIMEOUT),
+				Integer.getInteger(SOCKET_TIMEOUT_PROPERTY, DEF_SOCKET_TIMEOUT));
+	}
+
+	/**
+	 * @param maxTotal
+	 *            maximum number of open connections
+	 * @param maxPerHost
+	 *            maximum number of concurrent connections to one host
+	 * @param connectTimeout
+	 *            connect timeout in milliseconds
+	 * @param socketTimeout
+	 *            read timeout in milliseconds
+	 */
+	public PooledHttpTransport(final int maxTotal, final int maxPerHost, final int connectTimeout,
+			final int socketTimeout) {
+		this.maxPerHost = maxPerHost;
+		final Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory> create()
+				.register("http", PlainConnectionSocketFactory.getSocketFactory())
+				.register("https", SSLConnectionSocketFactory.getSocketFactory()).build();
+		connectionManager = new PoolingHttpClientConnectionManager(registry, new CountingConnectionFactory());
+		connectionManager.setMaxTotal(maxTotal);
+		connectionManager.setDefaultMaxPerRoute(maxPerHost);
+		connectionManager.setDefaultConnectionConfig(ConnectionConfig.DEFAULT);
+
+		final RequestConfig requestConfig = RequestConfig.custom().setConnectTimeout(connectTimeout)
+				.setSocketTimeout(socketTimeout).setConnectionRequestTimeout(DEF_POOL_TIMEOUT)
+				.setStaleConnectionCheckEnabled(true).build();
+
+		// Content compression (Accept-Encoding: gzip,deflate) is enabled by
+		// default.
+		client = HttpClients.custom().setConnectionManager(connectionManager)
+				.setDefaultRequestConfig(requestConfig).setKeepAliveStrategy(new KeepAliveStrategy())
+				.setUserAgent("KEGGscape").build();
+	}
+
+	@Override
+	public <T> T get(final String url, final ResponseHandler<? extends T> handler) throws IOException {
+		final HttpGet get = new HttpGet(url);
+		final long start = System.nanoTime();
+		requests.incrementAndGet();
+		try {
+			return client.execute(get, handler);
+		} catch (IOException e) {
+			failures.incrementAndGet();
+			throw e;
+		} catch (RuntimeException e) {
+			failures.incrementAndGet();
+			throw e;
+		} finally {
+			totalTime.addAndGet(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public String getString(final String url) throws IOException {
+		return get(url, new SuccessHandler<String>() {
+			@Override
+			protected String handleEntity(final HttpEntity entity) throws IOException {
+				return EntityUtils.toString(entity, "UTF-8");
+			}
+		});
+	}
+
+	@Override
+	public byte[] peek(final String url, final int length) throws IOException {
+		final HttpGet get = new HttpGet(url);
+		get.setHeader("Range", "bytes=0-" + (length - 1));
+		// A partial gzip stream could not be decompressed.
+		get.setHeader("Accept-Encoding", "identity");
+		final long start = System.nanoTime();
+		requests.incrementAndGet();
+		try {
+			final CloseableHttpResponse response = client.execute(get);
+			try {
+				final int status = response.getStatusLine().getStatusCode();
+				if (status < 200 || status >= 300) {
+					throw new HttpStatusException(status, "Unexpected response status: " + status);
+				}
+				final HttpEntity entity = response.getEntity();
+				if (entity == null) {
+					return new byte[0];
+				}
+				final InputStream is = entity.getContent();
+				final ByteArrayOutputStream bytes = new ByteArrayOutputStream(length);
+				final byte[] buf = new byte[Math.min(length, BUFFER_SIZE)];
+				int n;
+				while (bytes.size() < length
+						&& (n = is.read(buf, 0, Math.min(buf.length, length - bytes.size()))) != -1) {
+					bytes.write(buf, 0, n);
+				}
+				if (status == 206) {
+					EntityUtils.consume(entity);
+				} else {
+					// Full body: drop the connection rather than download it.
+					get.abort();
+				}
+				return bytes.toByteArray();
+			} finally {
+				response.close();
+			}
+		} catch (IOException e) {
+			failures.incrementAndGet();
+			throw e;
+		} catch (RuntimeException e) {
+			failures.incrementAndGet();
+			throw e;
+		} finally {
+			totalTime.addAndGet(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public int getMaxPerHost() {
+		return maxPerHost;
+	}
+
+	@Override
+	public HttpMetrics getMetrics() {
+		final PoolStats stats = connectionManager.getTotalStats();
+		return new HttpMetrics(requests.get(), failures.get(), connectionsOpened.get(), totalTime.get(),
+				stats.getLeased(), stats.getAvailable(), stats.getPending());
+	}
+
+	/**
+	 * Close all connections. Called when the bundle is stopped.
+	 */
+	public void close() {
+		logger.info("HTTP transport closed: " + getMetrics());
+		try {
+			client.close();
+		} catch (IOException e) {
+			logger.warn("Could not close HTTP client.", e);
+		}
+	}
+
+	/**
+	 * Accept 2xx responses with a body only.
+	 */
+	static abstract class SuccessHandler<T> implements ResponseHandler<T> {
+
+		@Override
+		public T handleResponse(final HttpResponse response) throws ClientProtocolException, IOException {
+			final int status = response.getStatusLine().getStatusCode();
+			if (status < 200 || status >= 300) {
+				throw new HttpStatusException(status, "Unexpected response status: " + status);
+			}
+			final HttpEntity entity = response.getEntity();
+			if (entity == null) {
+				throw new ClientProtocolException("Response does not contain a body.");
+			}
+			return handleEntity(entity);
+		}
+
+		protected abstract T handleEntity(final HttpEntity entity) throws IOException;
+	}
+
+	private final class CountingConnectionFactory implements HttpConnectionFactory<HttpRoute, ManagedHttpClientConnection> {
+
+		@Override
+		public ManagedHttpClientConnection create(final HttpRoute route, final ConnectionConfig config) {
+			connectionsOpened.incrementAndGet();
+			return ManagedHttpClientConnectionFactory.INSTANCE.create(route, config);
+		}
+	}
+
+	private static final class KeepAliveStrategy extends DefaultConnectionKeepAliveStrategy {
+
+		@Override
+		public long getKeepAliveDuration(final HttpResponse response, final HttpContext context) {
+			final long duration = super.getKeepAliveDuration(response, context);
+			return duration > 0 ? duration : DEF_KEEP_ALIVE;
+		}
+	}
+}
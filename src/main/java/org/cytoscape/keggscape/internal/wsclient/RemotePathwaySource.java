@@ -0,0 +1,43 @@
+package org.cytoscape.keggscape.internal.wsclient;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Downloads KGML files from the KEGG REST API into the {@link KgmlCache} and
+ * reads annotations from TogoWS.
+ */
+public class RemotePathwaySource implements PathwaySource {
+
+	private final KgmlCache cache;
+	private final TogowsClient client;
+
+	public RemotePathwaySource(final KgmlCache cache, final TogowsClient client) {
+		this.cache = cache;
+		this.client = client;
+	}
+
+	@Override
+	public File getKgml(final String id) throws IOException {
+		return cache.get(id, KgmlCache.getKgmlUrl(id));
+	}
+
+	@Override
+	public void readAnnotation(final String id, final TogowsHandler handler) throws IOException {
+		client.fetch(id, handler);
+	}
+
+	@Override
+	public int getMaxConcurrentAnnotations() {
+		return client.getMaxConcurrentRequests();
+	}
+
+	@Override
+	public String getName() {
+		return "KEGG";
+	}
+
+	public KgmlCache getCache() {
+		return cache;
+	}
+}
@@ -0,0 +1,76 @@
+package org.cytoscape.keggscape.internal.wsclient;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.Random;
+
+import org.apache.http.conn.ConnectTimeoutException;
+
+/**
+ * Exponential backoff with full jitter.
+ *
+ * The delay before retry n is a random value between zero and
+ * min(maxDelay, baseDelay * 2^n), so clients which failed at the same time do
+ * not retry at the same time.
+ */
+public class RetryPolicy {
+
+	private static final int TOO_MANY_REQUESTS = 429;
+
+	private final int maxAttempts;
+	private final long baseDelay;
+	private final long maxDelay;
+	private final Random random;
+
+	public RetryPolicy(final int maxAttempts, final long baseDelay, final long maxDelay) {
+		this(maxAttempts, baseDelay, maxDelay, new Random());
+	}
+
+	public RetryPolicy(final int maxAttempts, final long baseDelay, final long maxDelay, final Random random) {
+		this.maxAttempts = maxAttempts;
+		this.baseDelay = baseDelay;
+		this.maxDelay = maxDelay;
+		this.random = random;
+	}
+
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+
+	/**
+	 * @param attempt
+	 *            number of the failed attempt, starting with 1
+	 * @return time to wait in milliseconds before the next attempt
+	 */
+	public long getDelay(final int attempt) {
+		final long cap = Math.min(maxDelay, baseDelay << Math.min(attempt - 1, 30));
+		return (long) (random.nextDouble() * cap);
+	}
+
+	/**
+	 * Client errors other than 429 and missing local files are permanent.
+	 * Everything else may succeed on the next attempt.
+	 */
+	public boolean isRetryable(final IOException e) {
+		if (e instanceof CircuitOpenException || e instanceof FileNotFoundException) {
+			return false;
+		}
+		if (e instanceof HttpStatusException) {
+			final int status = ((HttpStatusException) e).getStatus();
+			return status == TOO_MANY_REQUESTS || status >= 500;
+		}
+		return true;
+	}
+
+	/**
+	 * @return true if the failure indicates that the server is overloaded.
+	 */
+	public boolean isOverload(final IOException e) {
+		if (e instanceof HttpStatusException) {
+			final int status = ((HttpStatusException) e).getStatus();
+			return status == TOO_MANY_REQUESTS || status == 503;
+		}
+		return e instanceof SocketTimeoutException || e instanceof ConnectTimeoutException;
+	}
+}
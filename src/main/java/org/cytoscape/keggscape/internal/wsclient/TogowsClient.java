@@ -1,159 +1,77 @@
 package org.cytoscape.keggscape.internal.wsclient;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
+import java.io.InputStream;
 
 import org.apache.http.HttpEntity;
-import org.apache.http.HttpResponse;
-import org.apache.http.client.ClientProtocolException;
-import org.apache.http.client.ResponseHandler;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.util.EntityUtils;
-import org.cytoscape.keggscape.internal.read.kgml.KEGGTags;
-import org.cytoscape.keggscape.internal.read.kgml.KeggConstants;
-import org.cytoscape.model.CyColumn;
 import org.cytoscape.model.CyNetwork;
-import org.cytoscape.model.CyNode;
-import org.cytoscape.model.CyRow;
-
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-
-import static org.cytoscape.keggscape.internal.wsclient.TogowsTags.*;
 
 public class TogowsClient {
 
+	/**
+	 * Set this system property to use another TogoWS server, e.g. a local
+	 * stub for testing.
+	 */
+	public static final String TOGOWS_URL_PROPERTY = "keggscape.togows.url";
+
 	private static final String TOGOWS_URL = "http://togows.dbcls.jp/entry/pathway/";
 	private static final String FORMAT_JSON = ".json";
 
-	public void map(final String id, final CyNetwork network) throws Exception {
-		if (id == null) {
-			throw new NullPointerException("Pathway ID is null.");
-		}
+	private final HttpTransport transport;
+	private final String baseUrl;
+	private final TogowsStreamParser parser = new TogowsStreamParser();
 
-		final String url = TOGOWS_URL + id + FORMAT_JSON;
-		final CloseableHttpClient httpclient = HttpClients.createDefault();
-		String responseBody = null;
-		try {
-			HttpGet httpget = new HttpGet(url);
+	public TogowsClient(final HttpTransport transport) {
+		this(transport, System.getProperty(TOGOWS_URL_PROPERTY, TOGOWS_URL));
+	}
 
-			// Create a custom response handler
-			ResponseHandler<String> responseHandler = new ResponseHandler<String>() {
-				public String handleResponse(final HttpResponse response) throws ClientProtocolException, IOException {
-					int status = response.getStatusLine().getStatusCode();
-					if (status >= 200 && status < 300) {
-						HttpEntity entity = response.getEntity();
-						return entity != null ? EntityUtils.toString(entity) : null;
-					} else {
-						throw new ClientProtocolException("Unexpected response status: " + status);
-					}
-				}
-			};
-			responseBody = httpclient.execute(httpget, responseHandler);
-		} finally {
-			httpclient.close();
+	/**
+	 * @param baseUrl
+	 *            URL of the pathway entry API, ending with a slash.
+	 */
+	public TogowsClient(final HttpTransport transport, final String baseUrl) {
+		if (transport == null) {
+			throw new NullPointerException("HTTP transport is null.");
 		}
-
-		// create an ObjectMapper instance.
-		ObjectMapper mapper = new ObjectMapper();
-		// use the ObjectMapper to read the json string and create a tree
-		JsonNode rootNode = mapper.readTree(responseBody);
-		mapEntries(rootNode.get(0), network);
+		this.transport = transport;
+		this.baseUrl = baseUrl;
 	}
 
-	private void mapEntries(final JsonNode rootNode, final CyNetwork network) {
-		JsonNode description = rootNode.get(DESCRIPTION);
-		JsonNode classes = rootNode.get(CLASSES);
-		JsonNode diseases = rootNode.get(DISEASES);
-		JsonNode modules = rootNode.get(MODULES);
-		JsonNode genes = rootNode.get(GENES);
-
-		final CyColumn descColumn = network.getDefaultNetworkTable().getColumn(DESCRIPTION);
-		if (descColumn == null) {
-			createColumns(network);
+	public void map(final String id, final CyNetwork network) throws Exception {
+		if (id == null) {
+			throw new NullPointerException("Pathway ID is null.");
 		}
 
-		final CyRow networkRow = network.getRow(network);
-
-		networkRow.set(DESCRIPTION, description.textValue());
-
-		mapObjects(modules, MODULES, networkRow);
-		mapObjects(diseases, DISEASES, networkRow);
-
-		mapList(classes, CLASSES, networkRow);
-
-		mapGenes(genes, network);
+		final NetworkAnnotationWriter writer = new NetworkAnnotationWriter(network);
+		fetch(id, writer);
+		writer.apply();
 	}
 
-	private final void createColumns(final CyNetwork network) {
-		network.getDefaultNetworkTable().createColumn(DESCRIPTION, String.class, false);
-		network.getDefaultNodeTable().createColumn(KeggConstants.KEGG_DEFINITION, String.class, false);
-
-		network.getDefaultNetworkTable().createListColumn(MODULES, String.class, false);
-		network.getDefaultNetworkTable().createListColumn(DISEASES, String.class, false);
-		network.getDefaultNetworkTable().createListColumn(MODULES + "_id", String.class, false);
-		network.getDefaultNetworkTable().createListColumn(DISEASES + "_id", String.class, false);
-
-		network.getDefaultNetworkTable().createListColumn(CLASSES, String.class, false);
-
+	/**
+	 * @return maximum number of concurrent connections to the TogoWS server.
+	 */
+	public int getMaxConcurrentRequests() {
+		return transport.getMaxPerHost();
 	}
 
-	private final void mapGenes(final JsonNode genes, CyNetwork network) {
-		final List<CyNode> nodes = network.getNodeList();
-		for (final CyNode node : nodes) {
-			final CyRow row = network.getRow(node);
-			final String type = row.get(KeggConstants.KEGG_NODE_TYPE, String.class);
-			if (type == null || type.equals(KEGGTags.GENE.getTag()) == false) {
-				continue;
-			}
-
-			final List<String> nameList = row.getList(KeggConstants.KEGG_ID, String.class);
-
-			JsonNode gene = null;
-			for (final String name : nameList) {
-				final String originalId = name.split(":")[1];
-				gene = genes.get(originalId);
-				if (gene != null) {
-					break;
+	/**
+	 * Read the pathway entry and pass its values to the handler.
+	 */
+	public void fetch(final String id, final TogowsHandler handler) throws IOException {
+		final String url = baseUrl + id + FORMAT_JSON;
+
+		// Parse the response while it is being received.
+		transport.get(url, new PooledHttpTransport.SuccessHandler<Void>() {
+			@Override
+			protected Void handleEntity(final HttpEntity entity) throws IOException {
+				final InputStream is = entity.getContent();
+				try {
+					parser.parse(is, handler);
+				} finally {
+					is.close();
 				}
+				return null;
 			}
-
-			if (gene == null)
-				continue;
-
-			final String geneText = gene.textValue();
-			final String[] parts = geneText.split(";");
-			row.set(KeggConstants.KEGG_DEFINITION, parts[1]);
-			// Replace label
-			row.set(KeggConstants.KEGG_NODE_LABEL_LIST_FIRST, parts[0]);
-		}
+		});
 	}
-
-	private final void mapList(final JsonNode listNode, final String columnName, final CyRow row) {
-		final List<String> list = new ArrayList<String>();
-		for (JsonNode node : listNode) {
-			list.add(node.textValue());
-		}
-		row.set(columnName, list);
-	}
-
-	private final void mapObjects(final JsonNode listNode, final String columnName, final CyRow row) {
-		final List<String> list = new ArrayList<String>();
-		final List<String> idList = new ArrayList<String>();
-
-		final Iterator<String> fNames = listNode.fieldNames();
-		while (fNames.hasNext()) {
-			final String name = fNames.next();
-			// System.out.println(name);
-			list.add(name);
-			idList.add(listNode.get(name).textValue());
-		}
-		row.set(columnName, list);
-		row.set(columnName + "_id", idList);
-	}
-
 }
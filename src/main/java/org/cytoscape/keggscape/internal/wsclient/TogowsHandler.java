@@ -0,0 +1,37 @@
+package org.cytoscape.keggscape.internal.wsclient;
+
+/**
+ * Callback interface for consumers of a TogoWS pathway entry.
+ *
+ * Values are delivered in the order they appear in the response. Only the
+ * first entry of the response is read.
+ */
+public interface TogowsHandler {
+
+	void description(final String description);
+
+	void pathwayClass(final String pathwayClass);
+
+	/**
+	 * @param key
+	 *            field name in the modules object
+	 * @param value
+	 *            field value in the modules object
+	 */
+	void module(final String key, final String value);
+
+	void disease(final String key, final String value);
+
+	/**
+	 * @param id
+	 *            gene ID without organism prefix
+	 * @param text
+	 *            symbols and definition separated by a semicolon
+	 */
+	void gene(final String id, final String text);
+
+	/**
+	 * Called once after the last value of the entry has been delivered.
+	 */
+	void endEntry();
+}
@@ -0,0 +1,82 @@
+package org.cytoscape.keggscape.internal.wsclient;
+
+import static org.cytoscape.keggscape.internal.wsclient.TogowsTags.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Streaming parser for TogoWS pathway entries.
+ *
+ * The response is read token by token. Values are handed to the
+ * {@link TogowsHandler} as soon as they have been read, so the response is
+ * never held in memory as a whole.
+ */
+public class TogowsStreamParser {
+
+	private static final JsonFactory FACTORY = new JsonFactory();
+
+	public void parse(final InputStream is, final TogowsHandler handler) throws IOException {
+		final JsonParser parser = FACTORY.createParser(is);
+		try {
+			JsonToken token = parser.nextToken();
+			if (token == JsonToken.START_ARRAY) {
+				token = parser.nextToken();
+			}
+			if (token != JsonToken.START_OBJECT) {
+				throw new JsonParseException("TogoWS response does not contain a pathway entry.",
+						parser.getCurrentLocation());
+			}
+			parseEntry(parser, handler);
+			handler.endEntry();
+		} finally {
+			parser.close();
+		}
+	}
+
+	private final void parseEntry(final JsonParser parser, final TogowsHandler handler) throws IOException {
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			final String field = parser.getCurrentName();
+			final JsonToken value = parser.nextToken();
+
+			if (field.equals(DESCRIPTION) && value == JsonToken.VALUE_STRING) {
+				handler.description(parser.getText());
+			} else if (field.equals(CLASSES) && value == JsonToken.START_ARRAY) {
+				while (parser.nextToken() != JsonToken.END_ARRAY) {
+					if (parser.getCurrentToken() == JsonToken.VALUE_STRING) {
+						handler.pathwayClass(parser.getText());
+					} else {
+						parser.skipChildren();
+					}
+				}
+			} else if (isObjectField(field) && value == JsonToken.START_OBJECT) {
+				while (parser.nextToken() == JsonToken.FIELD_NAME) {
+					final String key = parser.getCurrentName();
+					if (parser.nextToken() != JsonToken.VALUE_STRING) {
+						parser.skipChildren();
+						continue;
+					}
+					if (field.equals(GENES)) {
+						handler.gene(key, parser.getText());
+					} else if (field.equals(MODULES)) {
+						handler.module(key, parser.getText());
+					} else {
+						handler.disease(key, parser.getText());
+					}
+				}
+			} else {
+				// Fields not mapped to the network
+				parser.skipChildren();
+			}
+		}
+	}
+
+	private final boolean isObjectField(final String field) {
+		return field.equals(GENES) || field.equals(MODULES) || field.equals(DISEASES);
+	}
+}
@@ -9,7 +9,6 @@ import java.io.InputStream;
 
 import org.cytoscape.ding.NetworkViewTestSupport;
 import org.cytoscape.group.CyGroupFactory;
-import org.cytoscape.io.read.CyNetworkReader;
 import org.cytoscape.keggscape.internal.read.kgml.KeggscapeNetworkReader;
 import org.cytoscape.keggscape.internal.style.KGMLVisualStyleBuilder;
 import org.cytoscape.model.CyNetwork;
@@ -51,9 +50,15 @@ public abstract class AbstractKeggReaderTest {
 	}
 
 	protected final CyNetworkView loadKGML(final String collectionName, final String fileName) throws Exception {
+		return loadKGML(collectionName, fileName, false);
+	}
+
+	protected final CyNetworkView loadKGML(final String collectionName, final String fileName, final boolean useJaxb)
+			throws Exception {
 		final InputStream is = new FileInputStream(fileName);
-		final CyNetworkReader reader = new KeggscapeNetworkReader(collectionName, is, viewFactory, networkFactory,
-				networkManager, rootNetworkManager, builder, vmm, groupFactory);
+		final KeggscapeNetworkReader reader = new KeggscapeNetworkReader(collectionName, is, viewFactory,
+				networkFactory, networkManager, rootNetworkManager, builder, vmm, groupFactory);
+		reader.setUseJaxb(useJaxb);
 		reader.run(tm);
 		is.close();
 		final CyNetwork[] networks = reader.getNetworks();
@@ -0,0 +1,230 @@
+package org.cytoscape.data.reader.kgml.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.cytoscape.keggscape.internal.wsclient.AdaptiveConcurrencyLimit;
+import org.cytoscape.keggscape.internal.wsclient.AdaptiveRequestExecutor;
+import org.cytoscape.keggscape.internal.wsclient.CircuitBreaker;
+import org.cytoscape.keggscape.internal.wsclient.CircuitOpenException;
+import org.cytoscape.keggscape.internal.wsclient.HttpStatusException;
+import org.cytoscape.keggscape.internal.wsclient.RetryPolicy;
+import org.junit.Test;
+
+public class AdaptiveRequestExecutorTest {
+
+	private static final class TestBreaker extends CircuitBreaker {
+
+		private volatile long time;
+
+		TestBreaker(final int failureThreshold, final long openMillis) {
+			super(failureThreshold, openMillis);
+		}
+
+		@Override
+		protected long currentTime() {
+			return time;
+		}
+	}
+
+	private static final class FailingRequest implements AdaptiveRequestExecutor.Request<String> {
+
+		private final int status;
+		private final int failures;
+		private int calls;
+
+		FailingRequest(final int status, final int failures) {
+			this.status = status;
+			this.failures = failures;
+		}
+
+		@Override
+		public String call() throws IOException {
+			if (calls++ < failures) {
+				throw new HttpStatusException(status, "Status " + status);
+			}
+			return "ok";
+		}
+	}
+
+	private static AdaptiveRequestExecutor createExecutor(final CircuitBreaker breaker, final int maxAttempts) {
+		return new AdaptiveRequestExecutor(new AdaptiveConcurrencyLimit(4, 1, 16), breaker,
+				new RetryPolicy(maxAttempts, 1, 5, new Random(0)));
+	}
+
+	@Test
+	public void testLimit() throws Exception {
+		final AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(4, 1, 8);
+		// About one per round of requests
+		for (int i = 0; i < 5; i++) {
+			limit.acquire();
+			limit.release(false);
+		}
+		assertEquals(5, limit.getLimit());
+
+		limit.acquire();
+		limit.release(true);
+		assertEquals(2, limit.getLimit());
+		limit.acquire();
+		limit.release(true);
+		limit.acquire();
+		limit.release(true);
+		assertEquals(1, limit.getLimit());
+		assertEquals(0, limit.getInFlight());
+	}
+
+	@Test
+	public void testRetry() throws Exception {
+		final AdaptiveRequestExecutor executor = createExecutor(new CircuitBreaker(10, 1000), 3);
+		final FailingRequest request = new FailingRequest(503, 2);
+		assertEquals("ok", executor.execute(request));
+		assertEquals(3, request.calls);
+		assertEquals(2, executor.getRetryCount());
+		// Halved twice, then raised by the successful request
+		assertEquals(2, executor.getLimit().getLimit());
+	}
+
+	@Test
+	public void testGiveUp() throws Exception {
+		final AdaptiveRequestExecutor executor = createExecutor(new CircuitBreaker(10, 1000), 3);
+		final FailingRequest request = new FailingRequest(500, 5);
+		try {
+			executor.execute(request);
+			fail();
+		} catch (HttpStatusException e) {
+			assertEquals(500, e.getStatus());
+		}
+		assertEquals(3, request.calls);
+	}
+
+	@Test
+	public void testNoRetryOnNotFound() throws Exception {
+		final CircuitBreaker breaker = new CircuitBreaker(1, 1000);
+		final AdaptiveRequestExecutor executor = createExecutor(breaker, 3);
+		final FailingRequest request = new FailingRequest(404, 1);
+		try {
+			executor.execute(request);
+			fail();
+		} catch (HttpStatusException e) {
+			assertEquals(404, e.getStatus());
+		}
+		assertEquals(1, request.calls);
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+	}
+
+	@Test
+	public void testCircuitBreaker() throws Exception {
+		final TestBreaker breaker = new TestBreaker(2, 1000);
+		final AdaptiveRequestExecutor executor = createExecutor(breaker, 2);
+		try {
+			executor.execute(new FailingRequest(500, 2));
+			fail();
+		} catch (HttpStatusException e) {
+			// Expected
+		}
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+		// Requests wait while the circuit is open. They give up when as many
+		// trial requests as attempts fail.
+		final FailingRequest rejected = new FailingRequest(500, 0);
+		final ExecutorService waiter = Executors.newSingleThreadExecutor();
+		try {
+			final Future<String> waiting = waiter.submit(new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					return executor.execute(rejected);
+				}
+			});
+			Thread.sleep(100);
+			assertFalse(waiting.isDone());
+
+			for (int i = 1; i <= 2; i++) {
+				// One trial request after the open period
+				synchronized (breaker) {
+					breaker.time = i * 1000;
+					assertTrue(breaker.allowRequest());
+					assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+					assertFalse(breaker.allowRequest());
+					breaker.recordFailure();
+					assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+				}
+			}
+			try {
+				waiting.get(10, TimeUnit.SECONDS);
+				fail();
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof CircuitOpenException);
+			}
+		} finally {
+			waiter.shutdownNow();
+		}
+		assertEquals(0, rejected.calls);
+		assertEquals(1, executor.getRejectedCount());
+
+		breaker.time = 3000;
+		assertEquals("ok", executor.execute(new FailingRequest(500, 0)));
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+	}
+
+	@Test
+	public void testRecovery() throws Exception {
+		final CircuitBreaker breaker = new CircuitBreaker(2, 50);
+		final AdaptiveRequestExecutor executor = createExecutor(breaker, 3);
+
+		// The service fails for a while, then recovers.
+		final AtomicInteger calls = new AtomicInteger();
+		final AdaptiveRequestExecutor.Request<String> request = new AdaptiveRequestExecutor.Request<String>() {
+			@Override
+			public String call() throws IOException {
+				if (calls.incrementAndGet() <= 3) {
+					throw new HttpStatusException(503, "Status 503");
+				}
+				return "ok";
+			}
+		};
+		try {
+			executor.execute(request);
+			fail();
+		} catch (HttpStatusException e) {
+			// Third attempt was the failed trial request.
+		}
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+		// Queued requests wait for the circuit instead of failing.
+		final int threads = 4;
+		final ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			final List<Future<String>> futures = new ArrayList<Future<String>>();
+			for (int i = 0; i < threads; i++) {
+				futures.add(pool.submit(new Callable<String>() {
+					@Override
+					public String call() throws Exception {
+						return executor.execute(request);
+					}
+				}));
+			}
+			for (final Future<String> future : futures) {
+				assertEquals("ok", future.get(10, TimeUnit.SECONDS));
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+		assertEquals(0, executor.getRejectedCount());
+		assertEquals(3 + threads, calls.get());
+	}
+}
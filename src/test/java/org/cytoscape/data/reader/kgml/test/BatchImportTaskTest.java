@@ -0,0 +1,151 @@
+package org.cytoscape.data.reader.kgml.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.cytoscape.event.CyEventHelper;
+import org.cytoscape.group.CyGroupFactory;
+import org.cytoscape.group.CyGroupManager;
+import org.cytoscape.keggscape.internal.read.kgml.ImportStatistics;
+import org.cytoscape.keggscape.internal.style.KGMLVisualStyleBuilder;
+import org.cytoscape.keggscape.internal.task.BatchImportTask;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNetworkFactory;
+import org.cytoscape.model.CyNetworkManager;
+import org.cytoscape.model.NetworkTestSupport;
+import org.cytoscape.model.subnetwork.CyRootNetwork;
+import org.cytoscape.model.subnetwork.CyRootNetworkManager;
+import org.cytoscape.view.model.CyNetworkViewFactory;
+import org.cytoscape.view.model.CyNetworkViewManager;
+import org.cytoscape.view.vizmap.VisualMappingManager;
+import org.cytoscape.work.TaskMonitor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class BatchImportTaskTest {
+
+	private static final String KGML_DIR = "src/test/resources/testData/kgml/non-metabolic/organisms/bsu/";
+	private static final String COLLECTION = "KEGG Pathways";
+
+	private final NetworkTestSupport support = new NetworkTestSupport();
+	private final CyNetworkFactory networkFactory = support.getNetworkFactory();
+	private final CyRootNetworkManager rootNetworkManager = support.getRootNetworkFactory();
+	private CyNetworkManager networkManager;
+
+	private final Set<Thread> parseThreads = Collections.synchronizedSet(new HashSet<Thread>());
+	private final Set<Thread> modelThreads = Collections.synchronizedSet(new HashSet<Thread>());
+	private CountDownLatch parsing;
+	private File broken;
+
+	@Before
+	public void setUp() throws Exception {
+		networkManager = spy(support.getNetworkManager());
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(final InvocationOnMock invocation) throws Throwable {
+				modelThreads.add(Thread.currentThread());
+				invocation.callRealMethod();
+				return null;
+			}
+		}).when(networkManager).addNetwork(any(CyNetwork.class));
+
+		broken = File.createTempFile("broken", ".xml");
+		Files.write(broken.toPath(), "<pathway name=\"path:bsu99999\"><entry".getBytes("UTF-8"));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		broken.delete();
+	}
+
+	/**
+	 * @return file which records the threads reading it, and waits until all
+	 *         workers are reading
+	 */
+	private File track(final File file) {
+		return new File(file.getPath()) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public long length() {
+				parseThreads.add(Thread.currentThread());
+				parsing.countDown();
+				try {
+					parsing.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return super.length();
+			}
+		};
+	}
+
+	@Test
+	public void testImportIntoExistingCollection() throws Exception {
+		// Network of an earlier import
+		final CyNetwork existing = networkFactory.createNetwork();
+		final CyRootNetwork root = rootNetworkManager.getRootNetwork(existing);
+		root.getRow(root).set(CyNetwork.NAME, COLLECTION);
+		networkManager.addNetwork(existing);
+		modelThreads.clear();
+
+		final List<File> files = new ArrayList<File>();
+		for (final String name : new String[] { "bsu03060.xml", "bsu02040.xml", "bsu03020.xml" }) {
+			files.add(track(new File(KGML_DIR + name)));
+		}
+		files.add(track(broken));
+		parsing = new CountDownLatch(Math.min(files.size(), Runtime.getRuntime().availableProcessors()));
+
+		final BatchImportTask task = new BatchImportTask(files, null, networkFactory, networkManager,
+				rootNetworkManager, mock(CyNetworkViewFactory.class), mock(CyNetworkViewManager.class),
+				mock(CyGroupFactory.class), mock(CyGroupManager.class), mock(VisualMappingManager.class),
+				mock(KGMLVisualStyleBuilder.class), mock(CyEventHelper.class));
+		task.collectionName = COLLECTION;
+		final ImportStatistics statistics = new ImportStatistics();
+		task.setStatistics(statistics);
+		final TaskMonitor tm = mock(TaskMonitor.class);
+		task.run(tm);
+
+		// Files are read by the workers at the same time, and networks are
+		// added by the task thread only.
+		assertEquals(0, parsing.getCount());
+		assertFalse(parseThreads.contains(Thread.currentThread()));
+		assertEquals(Collections.singleton(Thread.currentThread()), modelThreads);
+
+		// The broken file is counted and skipped.
+		final List<CyNetwork> networks = task.getNetworks();
+		assertEquals(3, networks.size());
+		assertEquals(3, statistics.getImportCount());
+		assertEquals(1, statistics.getFailureCount());
+		verify(tm).setStatusMessage("1 of 4 files could not be imported.");
+		verify(tm).setProgress(1.0);
+
+		// All pathways are added to the existing collection.
+		for (final CyNetwork network : networks) {
+			assertSame(root, rootNetworkManager.getRootNetwork(network));
+			assertTrue(networkManager.networkExists(network.getSUID()));
+			assertTrue(network.getNodeCount() > 0);
+		}
+		assertEquals(4, root.getSubNetworkList().size());
+	}
+}
@@ -0,0 +1,77 @@
+package org.cytoscape.data.reader.kgml.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+
+import org.cytoscape.event.CyEventHelper;
+import org.cytoscape.group.CyGroupFactory;
+import org.cytoscape.keggscape.internal.model.PathwayGraph;
+import org.cytoscape.keggscape.internal.read.kgml.PathwayGraphMaterializer;
+import org.cytoscape.keggscape.internal.read.kgml.PathwayGraphReader;
+import org.cytoscape.model.CyEdge;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.CyRow;
+import org.cytoscape.model.NetworkTestSupport;
+import org.cytoscape.model.subnetwork.CyRootNetwork;
+import org.cytoscape.model.subnetwork.CySubNetwork;
+import org.junit.Test;
+
+public class BulkModeTest {
+
+	@Test
+	public void testSharedColumns() throws Exception {
+		final InputStream is = new FileInputStream(
+				"src/test/resources/testData/kgml/metabolic/organisms/hsa/hsa00020.xml");
+		final PathwayGraph graph;
+		try {
+			graph = new PathwayGraphReader().read(is);
+		} finally {
+			is.close();
+		}
+
+		final CyEventHelper eventHelper = mock(CyEventHelper.class);
+		final CyNetwork network = new NetworkTestSupport().getNetwork();
+		new PathwayGraphMaterializer(mock(CyGroupFactory.class), eventHelper).materialize(graph, network);
+
+		assertEquals(65, network.getNodeCount());
+		assertEquals(68, network.getEdgeCount());
+
+		// Only the new network and its local tables are held back.
+		final CyRootNetwork root = ((CySubNetwork) network).getRootNetwork();
+		for (final Object source : new Object[] { network, network.getDefaultNodeTable(),
+				network.getDefaultEdgeTable() }) {
+			verify(eventHelper).silenceEventSource(source);
+			verify(eventHelper).unsilenceEventSource(source);
+		}
+		verify(eventHelper, never()).silenceEventSource(root);
+		verify(eventHelper, never()).silenceEventSource(root.getSharedNodeTable());
+		verify(eventHelper, never()).silenceEventSource(root.getSharedEdgeTable());
+		verify(eventHelper, times(1)).flushPayloadEvents();
+
+		// Sessions and collection columns rely on the shared names, which the
+		// root network's listeners do not write while the tables are silent.
+		for (final CyNode node : network.getNodeList()) {
+			final String name = network.getRow(node).get(CyNetwork.NAME, String.class);
+			assertNotNull(name);
+			assertEquals(name,
+					root.getRow(node, CyRootNetwork.SHARED_ATTRS).get(CyRootNetwork.SHARED_NAME, String.class));
+		}
+		for (final CyEdge edge : network.getEdgeList()) {
+			final CyRow row = network.getRow(edge);
+			final CyRow shared = root.getRow(edge, CyRootNetwork.SHARED_ATTRS);
+			assertEquals(row.get(CyNetwork.NAME, String.class),
+					shared.get(CyRootNetwork.SHARED_NAME, String.class));
+			assertNotNull(row.get(CyEdge.INTERACTION, String.class));
+			assertEquals(row.get(CyEdge.INTERACTION, String.class),
+					shared.get(CyRootNetwork.SHARED_INTERACTION, String.class));
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package org.cytoscape.data.reader.kgml.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.cytoscape.keggscape.internal.read.kgml.CompoundDictionary;
+import org.cytoscape.keggscape.internal.read.kgml.CompoundDictionaryBuilder;
+import org.junit.Test;
+
+public class CompoundDictionaryTest {
+
+	@Test
+	public void testDefaultDictionary() throws Exception {
+		final CompoundDictionary dictionary = CompoundDictionary.getDefault();
+		assertEquals(5466, dictionary.size());
+		assertEquals("H2O", dictionary.get("cpd:C00001"));
+		assertEquals("ATP", dictionary.get("cpd:C00002"));
+		assertNull(dictionary.get("cpd:C99999"));
+		assertNull(dictionary.get("cpd:C0000"));
+		assertNull(dictionary.get(null));
+	}
+
+	@Test
+	public void testMergedDictionary() throws Exception {
+		final CompoundDictionaryBuilder builder = new CompoundDictionaryBuilder();
+		final InputStream is = new FileInputStream("src/main/resources/compoundNames.txt");
+		try {
+			builder.addAll(is);
+		} finally {
+			is.close();
+		}
+		builder.add("gl:G00001", "N-Acetyl-D-glucosaminyldiphosphodolichol");
+		builder.add("dr:D00001", "Water");
+		builder.add("cpd:C00001", "Water");
+
+		final File file = File.createTempFile("compounds", ".idx");
+		file.deleteOnExit();
+		builder.write(file);
+
+		final CompoundDictionary dictionary = CompoundDictionary.open(file);
+		assertEquals(5468, dictionary.size());
+		assertEquals("Water", dictionary.get("cpd:C00001"));
+		assertEquals("Water", dictionary.get("dr:D00001"));
+		assertEquals("N-Acetyl-D-glucosaminyldiphosphodolichol", dictionary.get("gl:G00001"));
+	}
+
+	@Test
+	public void testConcurrentLookup() throws Exception {
+		final CompoundDictionary dictionary = CompoundDictionary.getDefault();
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		final List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+		for (int t = 0; t < 4; t++) {
+			results.add(executor.submit(new Callable<Integer>() {
+				@Override
+				public Integer call() throws Exception {
+					int found = 0;
+					for (int i = 1; i <= 1000; i++) {
+						if (dictionary.get(String.format("cpd:C%05d", i)) != null) {
+							found++;
+						}
+					}
+					return found;
+				}
+			}));
+		}
+		final int expected = results.get(0).get();
+		for (final Future<Integer> result : results) {
+			assertEquals(expected, result.get().intValue());
+		}
+		executor.shutdown();
+	}
+}
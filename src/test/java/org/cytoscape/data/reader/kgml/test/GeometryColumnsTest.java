@@ -0,0 +1,54 @@
+package org.cytoscape.data.reader.kgml.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.cytoscape.keggscape.internal.read.kgml.GeometryColumns;
+import org.cytoscape.keggscape.internal.read.kgml.KeggConstants;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.CyTable;
+import org.cytoscape.model.NetworkTestSupport;
+import org.cytoscape.model.subnetwork.CySubNetwork;
+import org.junit.Test;
+
+public class GeometryColumnsTest extends AbstractKeggReaderTest {
+
+	@Test
+	public void testTypedColumns() throws Exception {
+		final CyNetwork network = loadKGML("KEGG Metabolic Pathways",
+				"src/test/resources/testData/kgml/metabolic/organisms/hsa/hsa00020.xml").getModel();
+		final CyTable table = network.getDefaultNodeTable();
+		for (final String name : GeometryColumns.NAMES) {
+			assertEquals(Double.class, table.getColumn(name).getType());
+		}
+		assertFalse(GeometryColumns.needsMigration(table));
+	}
+
+	@Test
+	public void testMigration() throws Exception {
+		final CyNetwork network = new NetworkTestSupport().getNetwork();
+		// Same layout as sessions saved by older versions: shared String columns.
+		final CyTable table = ((CySubNetwork) network).getRootNetwork().getSharedNodeTable();
+		for (final String name : GeometryColumns.NAMES) {
+			table.createColumn(name, String.class, false);
+		}
+		final CyNode node1 = network.addNode();
+		final CyNode node2 = network.addNode();
+		network.getRow(node1).set(KeggConstants.KEGG_NODE_X, "467");
+		network.getRow(node1).set(KeggConstants.KEGG_NODE_WIDTH, "46");
+		network.getRow(node2).set(KeggConstants.KEGG_NODE_X, "");
+
+		assertTrue(GeometryColumns.needsMigration(table));
+		assertTrue(GeometryColumns.migrate(table));
+		assertFalse(GeometryColumns.needsMigration(table));
+
+		assertEquals(Double.class, table.getColumn(KeggConstants.KEGG_NODE_X).getType());
+		assertEquals(Double.valueOf(467), network.getRow(node1).get(KeggConstants.KEGG_NODE_X, Double.class));
+		assertEquals(Double.valueOf(46), network.getRow(node1).get(KeggConstants.KEGG_NODE_WIDTH, Double.class));
+		assertNull(network.getRow(node1).get(KeggConstants.KEGG_NODE_Y, Double.class));
+		assertNull(network.getRow(node2).get(KeggConstants.KEGG_NODE_X, Double.class));
+	}
+}
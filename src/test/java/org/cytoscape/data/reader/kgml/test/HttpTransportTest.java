@@ -0,0 +1,122 @@
+package org.cytoscape.data.reader.kgml.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.cytoscape.keggscape.internal.wsclient.HttpMetrics;
+import org.cytoscape.keggscape.internal.wsclient.HttpStatusException;
+import org.cytoscape.keggscape.internal.wsclient.PooledHttpTransport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HttpTransportTest {
+
+	private StubHttpServer server;
+	private PooledHttpTransport transport;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new StubHttpServer();
+		server.setBody("<pathway name=\"path:hsa00020\"/>");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (transport != null) {
+			transport.close();
+		}
+		server.stop();
+	}
+
+	@Test
+	public void testKeepAlive() throws Exception {
+		transport = new PooledHttpTransport(4, 2, 2000, 2000);
+		for (int i = 0; i < 10; i++) {
+			assertEquals("<pathway name=\"path:hsa00020\"/>", transport.getString(server.getUrl() + "get/" + i));
+		}
+
+		final HttpMetrics metrics = transport.getMetrics();
+		assertEquals(10, metrics.getRequests());
+		assertEquals(0, metrics.getFailures());
+		assertEquals(1, metrics.getConnectionsOpened());
+		assertEquals(10, server.getRequestCount());
+	}
+
+	@Test
+	public void testGzip() throws Exception {
+		final StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			builder.append("<entry id=\"" + i + "\"/>\n");
+		}
+		server.setBody(builder.toString());
+		server.setGzip(true);
+
+		transport = new PooledHttpTransport(4, 2, 2000, 2000);
+		assertEquals(builder.toString(), transport.getString(server.getUrl() + "get/hsa00020/kgml"));
+	}
+
+	@Test
+	public void testPerHostLimit() throws Exception {
+		server.setDelay(100);
+		transport = new PooledHttpTransport(10, 2, 2000, 2000);
+		assertEquals(2, transport.getMaxPerHost());
+
+		final ExecutorService executor = Executors.newFixedThreadPool(6);
+		final List<Future<String>> futures = new ArrayList<Future<String>>();
+		for (int i = 0; i < 6; i++) {
+			final String url = server.getUrl() + "get/" + i;
+			futures.add(executor.submit(new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					return transport.getString(url);
+				}
+			}));
+		}
+		for (final Future<String> future : futures) {
+			future.get();
+		}
+		executor.shutdown();
+
+		assertEquals(6, server.getRequestCount());
+		assertTrue(server.getMaxConcurrentRequests() <= 2);
+		assertTrue(transport.getMetrics().getConnectionsOpened() <= 2);
+	}
+
+	@Test
+	public void testTimeout() throws Exception {
+		server.setDelay(1000);
+		transport = new PooledHttpTransport(4, 2, 2000, 100);
+		try {
+			transport.getString(server.getUrl() + "get/hsa00020");
+			fail("Read should time out.");
+		} catch (IOException e) {
+			// expected
+		}
+		assertEquals(1, transport.getMetrics().getFailures());
+	}
+
+	@Test
+	public void testErrorStatus() throws Exception {
+		transport = new PooledHttpTransport(4, 2, 2000, 2000);
+		try {
+			transport.getString(server.getUrl() + "get/missing");
+			fail("404 should be reported.");
+		} catch (HttpStatusException e) {
+			assertEquals(404, e.getStatus());
+		}
+
+		// The connection is still usable after an error response.
+		transport.getString(server.getUrl() + "get/hsa00020");
+		assertEquals(1, transport.getMetrics().getConnectionsOpened());
+	}
+}
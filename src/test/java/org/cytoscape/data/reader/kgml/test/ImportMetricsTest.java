@@ -0,0 +1,120 @@
+package org.cytoscape.data.reader.kgml.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+
+import org.cytoscape.keggscape.internal.model.PathwayGraph;
+import org.cytoscape.keggscape.internal.read.kgml.ImportMetrics;
+import org.cytoscape.keggscape.internal.read.kgml.ImportMetrics.Phase;
+import org.cytoscape.keggscape.internal.read.kgml.ImportStatistics;
+import org.cytoscape.keggscape.internal.read.kgml.PathwayGraphReader;
+import org.junit.Test;
+
+public class ImportMetricsTest {
+
+	private static final String KGML_FILE = "src/test/resources/testData/kgml/metabolic/organisms/bsu/bsu00020.xml";
+
+	@Test
+	public void testPhases() throws Exception {
+		final ImportMetrics metrics = new ImportMetrics("bsu00020.xml");
+		metrics.start(Phase.PARSE);
+		final PathwayGraph graph = read();
+		metrics.start(Phase.STYLE);
+		metrics.stop();
+		metrics.setGraph(graph);
+
+		assertEquals("path:bsu00020", metrics.getPathway());
+		assertEquals(graph.getNodes().size(), metrics.getNodeCount());
+		assertEquals(graph.getEdges().size(), metrics.getEdgeCount());
+		assertTrue(metrics.isMeasured(Phase.PARSE));
+		assertTrue(metrics.isMeasured(Phase.STYLE));
+		assertFalse(metrics.isMeasured(Phase.UNMARSHAL));
+		assertTrue(metrics.getNanos(Phase.PARSE) > 0);
+		assertEquals(metrics.getNanos(Phase.PARSE) + metrics.getNanos(Phase.STYLE), metrics.getTotalNanos());
+		assertEquals(2, metrics.getPhaseSummary().size());
+		assertTrue(metrics.getPhaseSummary().get(0).startsWith("parse="));
+		assertTrue(metrics.toString().contains(" parseMs="));
+		assertTrue(metrics.toString().contains(" nodes=" + graph.getNodes().size()));
+	}
+
+	@Test
+	public void testAllocatedBytes() throws Exception {
+		final ImportMetrics metrics = new ImportMetrics("test");
+		metrics.start(Phase.MAP);
+		final byte[] buffer = new byte[4 * 1024 * 1024];
+		metrics.stop();
+
+		// Not all JVMs count allocations per thread.
+		if (metrics.getAllocatedBytes(Phase.MAP) > 0) {
+			assertTrue(metrics.getAllocatedBytes(Phase.MAP) >= buffer.length);
+		}
+		assertEquals(0, metrics.getAllocatedBytes(Phase.STYLE));
+	}
+
+	@Test
+	public void testStatistics() throws Exception {
+		final ImportStatistics statistics = new ImportStatistics();
+		for (int i = 0; i < 2; i++) {
+			final ImportMetrics metrics = new ImportMetrics("test");
+			metrics.start(Phase.PARSE);
+			metrics.setGraph(read());
+			metrics.setBytes(1000);
+			statistics.record(metrics);
+		}
+		statistics.recordFailure(new ImportMetrics("broken"), new Exception("test"));
+
+		assertEquals(2, statistics.getImportCount());
+		assertEquals(1, statistics.getFailureCount());
+		assertEquals(2000, statistics.getTotalBytes());
+		assertTrue(statistics.getTotalNodes() > 0);
+		assertTrue(statistics.getLastImport().startsWith("pathway=path:bsu00020 "));
+		assertEquals(Phase.values().length, statistics.getPhaseMillis().size());
+
+		statistics.reset();
+		assertEquals(0, statistics.getImportCount());
+		assertEquals("", statistics.getLastImport());
+	}
+
+	@Test
+	public void testMBean() throws Exception {
+		final ImportStatistics statistics = new ImportStatistics();
+		final ImportMetrics metrics = new ImportMetrics("test");
+		metrics.start(Phase.PARSE);
+		metrics.setGraph(read());
+		statistics.record(metrics);
+
+		statistics.register();
+		try {
+			final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			final ObjectName name = new ObjectName(ImportStatistics.OBJECT_NAME);
+			assertTrue(server.isRegistered(name));
+			assertEquals(1L, server.getAttribute(name, "ImportCount"));
+			assertTrue(server.getAttribute(name, "PhaseMillis") instanceof TabularData);
+
+			server.invoke(name, "reset", null, null);
+			assertEquals(0L, server.getAttribute(name, "ImportCount"));
+		} finally {
+			statistics.unregister();
+		}
+		assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(
+				new ObjectName(ImportStatistics.OBJECT_NAME)));
+	}
+
+	private static PathwayGraph read() throws Exception {
+		final InputStream is = new FileInputStream(KGML_FILE);
+		try {
+			return new PathwayGraphReader().read(is);
+		} finally {
+			is.close();
+		}
+	}
+}
@@ -0,0 +1,192 @@
+package org.cytoscape.data.reader.kgml.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.cytoscape.keggscape.internal.read.kgml.KgmlArchiveReader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Import of KGML archives without extraction.
+ */
+public class KgmlArchiveReaderTest {
+
+	private static final String KGML_DIR = "src/test/resources/testData/kgml/metabolic/organisms/";
+	private static final String[] IDS = { "bsu00020", "bsu00030", "eco00010", "eco00020" };
+
+	private File dir;
+
+	@Before
+	public void setUp() throws Exception {
+		dir = Files.createTempDirectory("kgml-archive").toFile();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		for (final File file : dir.listFiles()) {
+			file.delete();
+		}
+		dir.delete();
+	}
+
+	private static byte[] kgml(final String id) throws IOException {
+		return Files.readAllBytes(new File(KGML_DIR + id.substring(0, 3) + "/" + id + ".xml").toPath());
+	}
+
+	private File createZip() throws IOException {
+		final File file = new File(dir, "kgml.zip");
+		final ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file));
+		try {
+			zip.putNextEntry(new ZipEntry("kgml/"));
+			for (final String id : IDS) {
+				zip.putNextEntry(new ZipEntry("kgml/" + id.substring(0, 3) + "/" + id + ".xml"));
+				zip.write(kgml(id));
+			}
+			zip.putNextEntry(new ZipEntry("kgml/README.txt"));
+			zip.write("Not KGML".getBytes("UTF-8"));
+			zip.putNextEntry(new ZipEntry("__MACOSX/kgml/._bsu00020.xml"));
+			zip.write(new byte[] { 0, 5, 22, 7 });
+		} finally {
+			zip.close();
+		}
+		return file;
+	}
+
+	private File createTarGz() throws IOException {
+		final File file = new File(dir, "kgml.tar.gz");
+		final TarArchiveOutputStream tar = new TarArchiveOutputStream(new GZIPOutputStream(new FileOutputStream(file)));
+		try {
+			for (final String id : IDS) {
+				final byte[] bytes = kgml(id);
+				final TarArchiveEntry entry = new TarArchiveEntry(id.substring(0, 3) + "/" + id + ".xml");
+				entry.setSize(bytes.length);
+				tar.putArchiveEntry(entry);
+				tar.write(bytes);
+				tar.closeArchiveEntry();
+			}
+			// Damaged entry
+			final byte[] broken = "<pathway name=\"path:hsa99999\"".getBytes("UTF-8");
+			final TarArchiveEntry entry = new TarArchiveEntry("hsa/hsa99999.xml");
+			entry.setSize(broken.length);
+			tar.putArchiveEntry(entry);
+			tar.write(broken);
+			tar.closeArchiveEntry();
+		} finally {
+			tar.close();
+		}
+		return file;
+	}
+
+	private static List<KgmlArchiveReader.Entry> readAll(final File archive, final Pattern pattern)
+			throws Exception {
+		final List<KgmlArchiveReader.Entry> entries = new ArrayList<KgmlArchiveReader.Entry>();
+		final KgmlArchiveReader reader = KgmlArchiveReader.open(archive, pattern, 2);
+		try {
+			KgmlArchiveReader.Entry entry;
+			while ((entry = reader.take()) != null) {
+				entries.add(entry);
+			}
+		} finally {
+			reader.close();
+		}
+		return entries;
+	}
+
+	private static List<String> ids(final List<KgmlArchiveReader.Entry> entries) {
+		final List<String> ids = new ArrayList<String>();
+		for (final KgmlArchiveReader.Entry entry : entries) {
+			ids.add(entry.getId());
+		}
+		return ids;
+	}
+
+	@Test
+	public void testZip() throws Exception {
+		final List<KgmlArchiveReader.Entry> entries = readAll(createZip(), null);
+		assertEquals(Arrays.asList(IDS), ids(entries));
+		for (final KgmlArchiveReader.Entry entry : entries) {
+			assertNull(entry.getError());
+			assertEquals("path:" + entry.getId(), entry.getGraph().getName());
+			assertTrue(entry.getGraph().getNodes().size() > 0);
+		}
+	}
+
+	@Test
+	public void testTarGz() throws Exception {
+		final List<KgmlArchiveReader.Entry> entries = readAll(createTarGz(), null);
+		assertEquals(IDS.length + 1, entries.size());
+		for (int i = 0; i < IDS.length; i++) {
+			assertEquals(IDS[i], entries.get(i).getId());
+			assertEquals("path:" + IDS[i], entries.get(i).getGraph().getName());
+		}
+		// A damaged entry does not stop the others.
+		final KgmlArchiveReader.Entry broken = entries.get(IDS.length);
+		assertEquals("hsa/hsa99999.xml", broken.getName());
+		assertNull(broken.getGraph());
+		assertNotNull(broken.getError());
+	}
+
+	@Test
+	public void testGzip() throws Exception {
+		final File file = new File(dir, "bsu00020.xml.gz");
+		final OutputStream os = new GZIPOutputStream(new FileOutputStream(file));
+		try {
+			os.write(kgml("bsu00020"));
+		} finally {
+			os.close();
+		}
+		final List<KgmlArchiveReader.Entry> entries = readAll(file, null);
+		assertEquals(1, entries.size());
+		assertEquals("path:bsu00020", entries.get(0).getGraph().getName());
+	}
+
+	@Test
+	public void testIdPattern() throws Exception {
+		final Pattern pattern = KgmlArchiveReader.compileIdPattern("eco*, path:BSU00030");
+		assertEquals(Arrays.asList("bsu00030", "eco00010", "eco00020"), ids(readAll(createZip(), pattern)));
+		assertEquals(Arrays.asList("bsu00030", "eco00010", "eco00020"), ids(readAll(createTarGz(), pattern)));
+
+		assertEquals(Arrays.asList("eco00020"),
+				ids(readAll(createZip(), KgmlArchiveReader.compileIdPattern("eco0002?"))));
+		// Regular expression characters are literal.
+		assertTrue(ids(readAll(createZip(), KgmlArchiveReader.compileIdPattern("bsu.*"))).isEmpty());
+		assertNull(KgmlArchiveReader.compileIdPattern(" , "));
+	}
+
+	@Test
+	public void testPathwayId() throws Exception {
+		assertEquals("hsa00020", KgmlArchiveReader.getPathwayId("kgml/hsa/hsa00020.xml"));
+		assertEquals("ko01100", KgmlArchiveReader.getPathwayId("ko01100.KGML"));
+		assertNull(KgmlArchiveReader.getPathwayId("__MACOSX/._hsa00020.xml"));
+		assertNull(KgmlArchiveReader.getPathwayId("hsa00020.png"));
+		assertTrue(KgmlArchiveReader.isArchive(new File("kgml.tgz")));
+		assertFalse(KgmlArchiveReader.isArchive(new File("hsa00020.xml")));
+	}
+
+	@Test(timeout = 10000)
+	public void testCloseEarly() throws Exception {
+		final KgmlArchiveReader reader = KgmlArchiveReader.open(createTarGz(), null, 1);
+		assertNotNull(reader.take());
+		reader.close();
+	}
+}
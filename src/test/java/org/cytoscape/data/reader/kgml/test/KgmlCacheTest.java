@@ -0,0 +1,171 @@
+package org.cytoscape.data.reader.kgml.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.cytoscape.keggscape.internal.wsclient.KgmlCache;
+import org.cytoscape.keggscape.internal.wsclient.PooledHttpTransport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class KgmlCacheTest {
+
+	private static final long HOUR = 3600000L;
+	private static final String KGML = "<pathway name=\"path:hsa00020\" org=\"hsa\" number=\"00020\"/>";
+
+	private StubHttpServer server;
+	private PooledHttpTransport transport;
+	private File dir;
+
+	private long now = 1000000L;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new StubHttpServer();
+		server.setBody(KGML);
+		transport = new PooledHttpTransport(4, 2, 2000, 2000);
+		dir = Files.createTempDirectory("kgml-cache").toFile();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		transport.close();
+		server.stop();
+		for (final File file : dir.listFiles()) {
+			file.delete();
+		}
+		dir.delete();
+	}
+
+	private KgmlCache createCache(final long maxBytes, final boolean offline) throws IOException {
+		return new KgmlCache(dir, transport, 24 * HOUR, maxBytes, offline) {
+			@Override
+			protected long currentTime() {
+				return now;
+			}
+		};
+	}
+
+	private String url(final String id) {
+		return server.getUrl() + "get/" + id + "/kgml";
+	}
+
+	@Test
+	public void testHitSkipsNetwork() throws Exception {
+		final KgmlCache cache = createCache(1024 * 1024, false);
+		final File file = cache.get("hsa00020", url("hsa00020"));
+		assertEquals("hsa00020.xml", file.getName());
+		assertEquals(KGML, new String(Files.readAllBytes(file.toPath()), "UTF-8"));
+		assertEquals(1, server.getRequestCount());
+
+		now += HOUR;
+		assertEquals(file, cache.get("hsa00020", url("hsa00020")));
+		assertEquals(1, server.getRequestCount());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(64, cache.getDigest("hsa00020").length());
+	}
+
+	@Test
+	public void testTtl() throws Exception {
+		final KgmlCache cache = createCache(1024 * 1024, false);
+		cache.get("hsa00020", url("hsa00020"));
+
+		now += 25 * HOUR;
+		cache.get("hsa00020", url("hsa00020"));
+		assertEquals(2, server.getRequestCount());
+
+		// Expired entries are still used if KEGG cannot be reached.
+		now += 25 * HOUR;
+		server.stop();
+		assertNotNull(cache.get("hsa00020", url("hsa00020")));
+	}
+
+	@Test
+	public void testLruEviction() throws Exception {
+		// Room for two files
+		final KgmlCache cache = createCache(KGML.length() * 2, false);
+		cache.get("hsa00010", url("hsa00010"));
+		now++;
+		cache.get("hsa00020", url("hsa00020"));
+		now++;
+		cache.get("hsa00010", url("hsa00010"));
+		now++;
+		cache.get("hsa00030", url("hsa00030"));
+
+		assertTrue(cache.contains("hsa00010"));
+		assertFalse(cache.contains("hsa00020"));
+		assertTrue(cache.contains("hsa00030"));
+		assertFalse(new File(dir, "hsa00020.xml").exists());
+		assertEquals(KGML.length() * 2, cache.getSize());
+	}
+
+	@Test
+	public void testPersistence() throws Exception {
+		createCache(1024 * 1024, false).get("hsa00020", url("hsa00020"));
+
+		final KgmlCache reopened = createCache(1024 * 1024, false);
+		assertTrue(reopened.contains("hsa00020"));
+		reopened.get("hsa00020", url("hsa00020"));
+		assertEquals(1, server.getRequestCount());
+	}
+
+	@Test
+	public void testDamagedFile() throws Exception {
+		final KgmlCache cache = createCache(1024 * 1024, false);
+		final File file = cache.get("hsa00020", url("hsa00020"));
+		Files.write(file.toPath(), KGML.replace("hsa", "eco").getBytes("UTF-8"));
+
+		cache.get("hsa00020", url("hsa00020"));
+		assertEquals(2, server.getRequestCount());
+		assertEquals(KGML, new String(Files.readAllBytes(file.toPath()), "UTF-8"));
+	}
+
+	@Test
+	public void testLazyIndex() throws Exception {
+		final KgmlCache cache = createCache(1024 * 1024, false);
+		cache.get("hsa00020", url("hsa00020"));
+		final File index = new File(dir, "index.tsv");
+		final byte[] saved = Files.readAllBytes(index.toPath());
+
+		// Access times of hits are written later.
+		now += 1000;
+		cache.get("hsa00020", url("hsa00020"));
+		assertArrayEquals(saved, Files.readAllBytes(index.toPath()));
+		cache.flush();
+		assertFalse(new String(saved, "UTF-8").equals(new String(Files.readAllBytes(index.toPath()), "UTF-8")));
+
+		// Indexes without modification times are still read.
+		final String line = new String(Files.readAllBytes(index.toPath()), "UTF-8").trim();
+		Files.write(index.toPath(), (line.substring(0, line.lastIndexOf('\t')) + "\n").getBytes("UTF-8"));
+		final KgmlCache reopened = createCache(1024 * 1024, false);
+		assertTrue(reopened.contains("hsa00020"));
+		reopened.get("hsa00020", url("hsa00020"));
+		assertEquals(1, server.getRequestCount());
+	}
+
+	@Test
+	public void testOffline() throws Exception {
+		createCache(1024 * 1024, false).get("hsa00020", url("hsa00020"));
+
+		final KgmlCache cache = createCache(1024 * 1024, true);
+		now += 100 * HOUR;
+		assertNotNull(cache.get("hsa00020", url("hsa00020")));
+		try {
+			cache.get("hsa00010", url("hsa00010"));
+			fail("Offline mode must not download files.");
+		} catch (IOException e) {
+			// expected
+		}
+		assertEquals(1, server.getRequestCount());
+	}
+}
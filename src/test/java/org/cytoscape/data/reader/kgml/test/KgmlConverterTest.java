@@ -0,0 +1,180 @@
+package org.cytoscape.data.reader.kgml.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.cytoscape.keggscape.internal.convert.KgmlConverter;
+import org.cytoscape.keggscape.internal.model.PathwayGraph;
+import org.cytoscape.keggscape.internal.read.kgml.KgmlArchiveReader;
+import org.cytoscape.keggscape.internal.read.kgml.PathwayGraphReader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Headless conversion of KGML files.
+ */
+public class KgmlConverterTest {
+
+	private static final String BSU = "src/test/resources/testData/kgml/metabolic/organisms/bsu";
+
+	private File dir;
+
+	@Before
+	public void setUp() throws Exception {
+		dir = Files.createTempDirectory("kgml-convert").toFile();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		delete(dir);
+	}
+
+	private void delete(final File file) {
+		final File[] children = file.listFiles();
+		if (children != null) {
+			for (final File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	private PathwayGraph read(final String fileName) throws IOException {
+		final InputStream is = new FileInputStream(fileName);
+		try {
+			return new PathwayGraphReader().read(is);
+		} finally {
+			is.close();
+		}
+	}
+
+	@Test
+	public void testTsvDirectory() throws Exception {
+		final KgmlConverter.Result result = new KgmlConverter(KgmlConverter.getWriter("tsv"), 2)
+				.convert(Collections.singletonList(new File(BSU)), dir);
+		assertEquals(new File(BSU).list().length, result.getConverted());
+		assertTrue(result.getFailures().isEmpty());
+
+		final PathwayGraph graph = read(BSU + "/bsu00020.xml");
+		final List<String> nodes = Files.readAllLines(new File(dir, "bsu00020.nodes.tsv").toPath(),
+				StandardCharsets.UTF_8);
+		final List<String> edges = Files.readAllLines(new File(dir, "bsu00020.edges.tsv").toPath(),
+				StandardCharsets.UTF_8);
+		assertEquals(graph.getNodes().size() + graph.getGroups().size() + 1, nodes.size());
+		assertEquals(graph.getEdges().size() + 1, edges.size());
+
+		final List<String> header = Arrays.asList(nodes.get(0).split("\t", -1));
+		assertEquals("id", header.get(0));
+		assertTrue(header.contains("name"));
+		assertTrue(header.contains("KEGG_ID"));
+		assertTrue(header.contains("KEGG_NODE_X"));
+		for (final String line : nodes) {
+			assertEquals(header.size(), line.split("\t", -1).length);
+		}
+		assertTrue(edges.get(0).startsWith("source\ttarget\tdirected\tname\tinteraction"));
+	}
+
+	@Test
+	public void testGraphML() throws Exception {
+		final File input = new File(BSU, "bsu00020.xml");
+		final KgmlConverter.Result result = new KgmlConverter(KgmlConverter.getWriter("graphml"), 1)
+				.convert(Collections.singletonList(input), dir);
+		assertEquals(1, result.getConverted());
+
+		final PathwayGraph graph = read(input.getPath());
+		final Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+				.parse(new File(dir, "bsu00020.graphml"));
+		assertEquals(graph.getNodes().size() + graph.getGroups().size(),
+				document.getElementsByTagName("node").getLength());
+		assertEquals(graph.getEdges().size(), document.getElementsByTagName("edge").getLength());
+	}
+
+	@Test
+	public void testCx() throws Exception {
+		final KgmlConverter.Result result = new KgmlConverter(KgmlConverter.getWriter("cx"), 1)
+				.convert(Collections.singletonList(new File(BSU, "bsu00020.xml")), dir);
+		assertEquals(1, result.getConverted());
+
+		// Well formed JSON, one object per aspect.
+		int aspects = 0;
+		final JsonParser parser = new JsonFactory().createParser(new File(dir, "bsu00020.cx"));
+		try {
+			parser.nextToken();
+			while (parser.nextToken() == JsonToken.START_OBJECT) {
+				aspects++;
+				parser.skipChildren();
+			}
+		} finally {
+			parser.close();
+		}
+		assertEquals(9, aspects);
+	}
+
+	@Test
+	public void testFailure() throws Exception {
+		final File broken = new File(dir, "broken.xml");
+		Files.write(broken.toPath(), "<pathway".getBytes(StandardCharsets.UTF_8));
+		final File out = new File(dir, "out");
+
+		final KgmlConverter.Result result = new KgmlConverter(KgmlConverter.getWriter("tsv"), 2)
+				.convert(Arrays.asList(broken, new File(BSU, "bsu00020.xml")), out);
+		assertEquals(1, result.getConverted());
+		assertNotNull(result.getFailures().get(broken));
+		assertTrue(new File(out, "bsu00020.nodes.tsv").isFile());
+		assertFalse(new File(out, "broken.nodes.tsv").exists());
+		assertNull(KgmlConverter.getWriter("sif"));
+	}
+
+	@Test
+	public void testArchive() throws Exception {
+		final File archive = new File(dir, "bsu.zip");
+		final ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archive));
+		try {
+			for (final String name : new File(BSU).list()) {
+				zip.putNextEntry(new ZipEntry("kgml/bsu/" + name));
+				zip.write(Files.readAllBytes(new File(BSU, name).toPath()));
+			}
+			zip.putNextEntry(new ZipEntry("../outside/bsu00010.xml"));
+			zip.write(Files.readAllBytes(new File(BSU, "bsu00010.xml").toPath()));
+		} finally {
+			zip.close();
+		}
+		final File out = new File(dir, "out");
+
+		final KgmlConverter converter = new KgmlConverter(KgmlConverter.getWriter("tsv"), 2);
+		converter.setIdPattern(KgmlArchiveReader.compileIdPattern("bsu0001?, bsu00020"));
+		final KgmlConverter.Result result = converter.convert(Collections.singletonList(archive), out);
+		assertTrue(result.getFailures().isEmpty());
+		assertEquals(3, result.getConverted());
+		assertTrue(new File(out, "kgml/bsu/bsu00010.nodes.tsv").isFile());
+		assertTrue(new File(out, "kgml/bsu/bsu00020.edges.tsv").isFile());
+		assertFalse(new File(out, "kgml/bsu/bsu00030.nodes.tsv").exists());
+		// Entries are never written outside the output directory.
+		assertTrue(new File(out, "bsu00010.nodes.tsv").isFile());
+		assertFalse(new File(dir, "outside").exists());
+	}
+}
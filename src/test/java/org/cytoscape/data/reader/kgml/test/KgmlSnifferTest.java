@@ -0,0 +1,142 @@
+package org.cytoscape.data.reader.kgml.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.cytoscape.keggscape.internal.read.kgml.KgmlSniffer;
+import org.cytoscape.keggscape.internal.wsclient.KgmlCache;
+import org.cytoscape.keggscape.internal.wsclient.PooledHttpTransport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Content checks of the KGML file filter.
+ */
+public class KgmlSnifferTest {
+
+	private static final String KGML_FILE = "src/test/resources/testData/kgml/metabolic/ec/ec01100.xml";
+
+	private StubHttpServer server;
+	private PooledHttpTransport transport;
+	private KgmlSniffer sniffer;
+	private String kgml;
+
+	@Before
+	public void setUp() throws Exception {
+		kgml = new String(Files.readAllBytes(new File(KGML_FILE).toPath()), "UTF-8");
+		server = new StubHttpServer();
+		server.setBody(kgml);
+		transport = new PooledHttpTransport(4, 2, 2000, 2000);
+		sniffer = new KgmlSniffer(transport);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		System.clearProperty(KgmlCache.KEGG_REST_API_PROPERTY);
+		transport.close();
+		server.stop();
+	}
+
+	@Test
+	public void testStream() throws Exception {
+		final InputStream is = new BufferedInputStream(new FileInputStream(KGML_FILE));
+		try {
+			assertTrue(KgmlSniffer.isKgml(is));
+			// The stream is reset for the reader.
+			assertEquals('<', is.read());
+		} finally {
+			is.close();
+		}
+
+		// A large file without line breaks is not read to the end.
+		final byte[] bytes = new byte[1024 * 1024];
+		Arrays.fill(bytes, (byte) 'a');
+		final ByteArrayInputStream data = new ByteArrayInputStream(bytes);
+		assertFalse(KgmlSniffer.isKgml(data));
+		data.reset();
+		assertEquals(bytes.length, data.available());
+	}
+
+	@Test
+	public void testRangeRequest() throws Exception {
+		server.setRanges(true);
+		final URI uri = new URI(server.getUrl() + "kgml/ec01100.xml");
+		assertTrue(sniffer.accepts(uri));
+		assertEquals(KgmlSniffer.PEEK_SIZE, server.getBytesSent());
+
+		// The verdict is reused.
+		assertTrue(sniffer.accepts(uri));
+		assertEquals(1, server.getRequestCount());
+	}
+
+	@Test
+	public void testServerIgnoresRange() throws Exception {
+		final URI uri = new URI(server.getUrl() + "kgml/ec01100.xml");
+		assertTrue(sniffer.accepts(uri));
+		assertTrue(sniffer.accepts(uri));
+		assertEquals(1, server.getRequestCount());
+
+		server.setBody("<html><body>Not KGML</body></html>");
+		final URI page = new URI(server.getUrl() + "index.html");
+		assertFalse(sniffer.accepts(page));
+		assertFalse(sniffer.accepts(page));
+		assertEquals(2, server.getRequestCount());
+
+		// Failures are not remembered.
+		final URI missing = new URI(server.getUrl() + "missing");
+		assertFalse(sniffer.accepts(missing));
+		assertFalse(sniffer.accepts(missing));
+		assertEquals(4, server.getRequestCount());
+	}
+
+	@Test
+	public void testCachedKgml() throws Exception {
+		System.setProperty(KgmlCache.KEGG_REST_API_PROPERTY, server.getUrl() + "get/");
+		final File dir = Files.createTempDirectory("kgml-cache").toFile();
+		final KgmlCache cache = new KgmlCache(dir, transport, 3600000L, 1024 * 1024 * 100, false);
+		try {
+			cache.get("ec01100", KgmlCache.getKgmlUrl("ec01100"));
+			assertEquals(1, server.getRequestCount());
+
+			sniffer.setKgmlCache(cache);
+			assertTrue(sniffer.accepts(new URI(KgmlCache.getKgmlUrl("ec01100"))));
+			assertEquals(1, server.getRequestCount());
+		} finally {
+			cache.clear();
+			for (final File file : dir.listFiles()) {
+				file.delete();
+			}
+			dir.delete();
+		}
+	}
+
+	@Test
+	public void testFile() throws Exception {
+		assertTrue(sniffer.accepts(new File(KGML_FILE).toURI()));
+		assertFalse(sniffer.accepts(new File("pom.xml").toURI()));
+		assertFalse(sniffer.accepts(new File("missing.xml").toURI()));
+		assertEquals(0, server.getRequestCount());
+	}
+
+	@Test
+	public void testPathwayId() throws IOException {
+		assertEquals("hsa00020", KgmlCache.getPathwayId(KgmlCache.getKgmlUrl("hsa00020")));
+		assertEquals("hsa00020", KgmlCache.getPathwayId("https://rest.kegg.jp/get/hsa00020/kgml"));
+		assertNull(KgmlCache.getPathwayId("http://rest.kegg.jp/get/kgml"));
+		assertNull(KgmlCache.getPathwayId("http://rest.kegg.jp/get/hsa00020/image"));
+		assertNull(KgmlCache.getPathwayId("http://example.org/get/hsa00020/kgml"));
+	}
+}
@@ -0,0 +1,136 @@
+package org.cytoscape.data.reader.kgml.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.cytoscape.keggscape.internal.wsclient.LocalMirrorSource;
+import org.cytoscape.keggscape.internal.wsclient.TogowsHandler;
+import org.junit.After;
+import org.junit.Test;
+
+public class LocalMirrorSourceTest {
+
+	private static final File MIRROR_DIR = new File("src/test/resources/testData/kgml");
+	private static final File KGML_FILE = new File(MIRROR_DIR, "metabolic/organisms/bsu/bsu00020.xml");
+
+	private static final String ENTRY = "[{\"entry_id\":\"bsu00020\",\"description\":\"Citrate cycle\","
+			+ "\"genes\":{\"BSU29140\":\"citZ; citrate synthase\"}}]";
+
+	private LocalMirrorSource source;
+	private File archive;
+
+	@After
+	public void tearDown() throws Exception {
+		if (source != null) {
+			source.close();
+		}
+		if (archive != null) {
+			archive.delete();
+		}
+	}
+
+	@Test
+	public void testDirectory() throws Exception {
+		source = new LocalMirrorSource(MIRROR_DIR);
+		final Set<String> ids = source.getIds();
+		assertTrue(ids.contains("bsu00020"));
+		assertTrue(ids.contains("hsa05200"));
+		assertFalse(ids.contains("bsu00020.xml"));
+
+		assertEquals(KGML_FILE.getCanonicalFile(), source.getKgml("bsu00020").getCanonicalFile());
+
+		try {
+			source.getKgml("hsa99999");
+			fail("Missing pathway must be reported.");
+		} catch (FileNotFoundException e) {
+			// expected
+		}
+		try {
+			source.readAnnotation("bsu00020", new RecordingHandler());
+			fail("Missing annotation must be reported.");
+		} catch (FileNotFoundException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testArchive() throws Exception {
+		archive = File.createTempFile("kegg-mirror", ".zip");
+		final ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archive));
+		try {
+			zip.putNextEntry(new ZipEntry("kgml/organisms/bsu/"));
+			zip.putNextEntry(new ZipEntry("kgml/organisms/bsu/bsu00020.xml"));
+			zip.write(Files.readAllBytes(KGML_FILE.toPath()));
+			zip.putNextEntry(new ZipEntry("togows/bsu00020.json"));
+			zip.write(ENTRY.getBytes("UTF-8"));
+			zip.closeEntry();
+		} finally {
+			zip.close();
+		}
+
+		source = new LocalMirrorSource(archive);
+		assertEquals(Arrays.asList("bsu00020"), new ArrayList<String>(source.getIds()));
+
+		final File kgml = source.getKgml("bsu00020");
+		assertEquals("bsu00020.xml", kgml.getName());
+		assertEquals(KGML_FILE.length(), kgml.length());
+		// Extracted once
+		assertEquals(kgml, source.getKgml("bsu00020"));
+
+		final RecordingHandler handler = new RecordingHandler();
+		source.readAnnotation("bsu00020", handler);
+		assertEquals(Arrays.asList("description:Citrate cycle", "gene:BSU29140=citZ; citrate synthase", "end"),
+				handler.events);
+
+		source.close();
+		assertFalse(kgml.exists());
+	}
+
+	private static class RecordingHandler implements TogowsHandler {
+
+		private final List<String> events = new ArrayList<String>();
+
+		@Override
+		public void description(final String description) {
+			events.add("description:" + description);
+		}
+
+		@Override
+		public void pathwayClass(final String pathwayClass) {
+			events.add("class:" + pathwayClass);
+		}
+
+		@Override
+		public void module(final String key, final String value) {
+			events.add("module:" + key + "=" + value);
+		}
+
+		@Override
+		public void disease(final String key, final String value) {
+			events.add("disease:" + key + "=" + value);
+		}
+
+		@Override
+		public void gene(final String id, final String text) {
+			events.add("gene:" + id + "=" + text);
+		}
+
+		@Override
+		public void endEntry() {
+			events.add("end");
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package org.cytoscape.data.reader.kgml.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.cytoscape.keggscape.internal.read.kgml.KeggConstants;
+import org.cytoscape.keggscape.internal.wsclient.NetworkAnnotationWriter;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.CyTable;
+import org.cytoscape.model.NetworkTestSupport;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NetworkAnnotationWriterTest {
+
+	private CyNetwork network;
+
+	@Before
+	public void setUp() throws Exception {
+		network = new NetworkTestSupport().getNetwork();
+		final CyTable nodeTable = network.getDefaultNodeTable();
+		nodeTable.createColumn(KeggConstants.KEGG_NODE_TYPE, String.class, false);
+		nodeTable.createListColumn(KeggConstants.KEGG_ID, String.class, false);
+		nodeTable.createColumn(KeggConstants.KEGG_NODE_LABEL_LIST_FIRST, String.class, false);
+	}
+
+	private CyNode addNode(final String type, final String label, final String... ids) {
+		final CyNode node = network.addNode();
+		network.getRow(node).set(KeggConstants.KEGG_NODE_TYPE, type);
+		network.getRow(node).set(KeggConstants.KEGG_ID, Arrays.asList(ids));
+		network.getRow(node).set(KeggConstants.KEGG_NODE_LABEL_LIST_FIRST, label);
+		return node;
+	}
+
+	private String get(final CyNode node, final String column) {
+		return network.getRow(node).get(column, String.class);
+	}
+
+	@Test
+	public void testGenes() throws Exception {
+		final CyNode cs = addNode("gene", "1431", "hsa:1431");
+		final CyNode acly = addNode("gene", "47", "hsa:47");
+		final CyNode copy = addNode("gene", "47", "hsa:47");
+		final CyNode multi = addNode("gene", "3417", "hsa:3417", "hsa:3418");
+		final CyNode compound = addNode("compound", "C00022", "cpd:C00022");
+
+		final NetworkAnnotationWriter writer = new NetworkAnnotationWriter(network);
+		writer.description("Citrate cycle");
+		writer.gene("3418", "IDH2; isocitrate dehydrogenase 2");
+		writer.gene("47", "ACLY; ATP citrate lyase");
+		writer.gene("C00022", "Not a gene");
+		writer.gene("1431", "CS");
+		writer.gene("3417", "IDH1; isocitrate dehydrogenase 1");
+		writer.gene("9999", "UNKNOWN; not in network");
+		writer.endEntry();
+		writer.apply();
+
+		assertEquals("Citrate cycle", network.getRow(network).get("description", String.class));
+
+		assertEquals("CS", get(cs, KeggConstants.KEGG_NODE_LABEL_LIST_FIRST));
+		assertNull(get(cs, KeggConstants.KEGG_DEFINITION));
+		assertEquals("ACLY", get(acly, KeggConstants.KEGG_NODE_LABEL_LIST_FIRST));
+		assertEquals(" ATP citrate lyase", get(acly, KeggConstants.KEGG_DEFINITION));
+		assertEquals("ACLY", get(copy, KeggConstants.KEGG_NODE_LABEL_LIST_FIRST));
+
+		// The first ID of the node wins, regardless of the order in the
+		// response.
+		assertEquals("IDH1", get(multi, KeggConstants.KEGG_NODE_LABEL_LIST_FIRST));
+		assertEquals(" isocitrate dehydrogenase 1", get(multi, KeggConstants.KEGG_DEFINITION));
+
+		assertEquals("C00022", get(compound, KeggConstants.KEGG_NODE_LABEL_LIST_FIRST));
+	}
+
+	@Test
+	public void testNetworkValues() throws Exception {
+		final NetworkAnnotationWriter writer = new NetworkAnnotationWriter(network);
+		writer.pathwayClass("Metabolism");
+		writer.pathwayClass("Carbohydrate metabolism");
+		writer.module("M00009", "Citrate cycle");
+		writer.disease("H00048", "Hepatocellular carcinoma");
+		writer.endEntry();
+		writer.apply();
+
+		final List<String> classes = network.getRow(network).getList("classes", String.class);
+		assertEquals(Arrays.asList("Metabolism", "Carbohydrate metabolism"), classes);
+		assertEquals(Arrays.asList("M00009"), network.getRow(network).getList("modules", String.class));
+		assertEquals(Arrays.asList("Citrate cycle"), network.getRow(network).getList("modules_id", String.class));
+		assertEquals(Arrays.asList("H00048"), network.getRow(network).getList("diseases", String.class));
+	}
+}
@@ -0,0 +1,277 @@
+package org.cytoscape.data.reader.kgml.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.cytoscape.keggscape.internal.model.PathwayGraph;
+import org.cytoscape.keggscape.internal.read.kgml.ImportMetrics;
+import org.cytoscape.keggscape.internal.read.kgml.ImportMetrics.Phase;
+import org.cytoscape.keggscape.internal.wsclient.KgmlCache;
+import org.cytoscape.keggscape.internal.wsclient.PathwayGraphCache;
+import org.cytoscape.keggscape.internal.wsclient.PathwaySource;
+import org.cytoscape.keggscape.internal.wsclient.TogowsHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Shared cache of parsed pathways.
+ */
+public class PathwayGraphCacheTest {
+
+	private static final String KGML_DIR = "src/test/resources/testData/kgml/metabolic/organisms/";
+
+	private File dir;
+	private final Map<String, File> files = new HashMap<String, File>();
+	private final AtomicInteger requests = new AtomicInteger();
+	private volatile CountDownLatch gate;
+
+	private final PathwaySource source = new PathwaySource() {
+		@Override
+		public File getKgml(final String id) throws IOException {
+			requests.incrementAndGet();
+			final CountDownLatch latch = gate;
+			if (latch != null) {
+				try {
+					latch.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+			}
+			final File file = files.get(id);
+			if (file == null) {
+				throw new FileNotFoundException("No pathway " + id);
+			}
+			return file;
+		}
+
+		@Override
+		public void readAnnotation(final String id, final TogowsHandler handler) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public int getMaxConcurrentAnnotations() {
+			return 1;
+		}
+
+		@Override
+		public String getName() {
+			return "Test";
+		}
+	};
+
+	@Before
+	public void setUp() throws Exception {
+		dir = Files.createTempDirectory("kgml-graphs").toFile();
+		for (final String id : new String[] { "bsu00020", "eco00010" }) {
+			final File file = new File(dir, id + ".xml");
+			Files.copy(new File(KGML_DIR + id.substring(0, 3) + "/" + id + ".xml").toPath(), file.toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+			files.put(id, file);
+		}
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		for (final File file : dir.listFiles()) {
+			file.delete();
+		}
+		dir.delete();
+	}
+
+	@Test
+	public void testHitAndMiss() throws Exception {
+		final PathwayGraphCache cache = new PathwayGraphCache(source, Long.MAX_VALUE);
+		final PathwayGraph graph = cache.get("bsu00020");
+		assertEquals("bsu00020", graph.getName().replace("path:", ""));
+		assertSame(graph, cache.get("bsu00020"));
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getEntryCount());
+		assertEquals(files.get("bsu00020").length(), cache.getSize());
+
+		// The same content opened as a stream shares the cached graph.
+		final InputStream is = new FileInputStream(files.get("bsu00020"));
+		try {
+			assertSame(graph, cache.get(is));
+		} finally {
+			is.close();
+		}
+		assertEquals(2, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+	}
+
+	@Test
+	public void testMetrics() throws Exception {
+		final PathwayGraphCache cache = new PathwayGraphCache(source, Long.MAX_VALUE);
+		final ImportMetrics metrics = new ImportMetrics("bsu00020");
+		final PathwayGraph graph = cache.get("bsu00020", metrics);
+		metrics.stop();
+
+		assertTrue(metrics.isMeasured(Phase.DOWNLOAD));
+		assertTrue(metrics.isMeasured(Phase.PARSE));
+		assertEquals(files.get("bsu00020").length(), metrics.getBytes());
+
+		// Cached graphs are measured as well.
+		final ImportMetrics cached = new ImportMetrics("bsu00020");
+		assertSame(graph, cache.get("bsu00020", cached));
+		cached.stop();
+		assertTrue(cached.isMeasured(Phase.DOWNLOAD));
+		assertEquals(metrics.getBytes(), cached.getBytes());
+	}
+
+	@Test
+	public void testKgmlCacheDigest() throws Exception {
+		final AtomicInteger digests = new AtomicInteger();
+		final KgmlCache kgmlCache = new KgmlCache(dir, null, 3600000L, Long.MAX_VALUE, true) {
+			@Override
+			public synchronized String getDigest(final String id) {
+				digests.incrementAndGet();
+				try {
+					return sha256(getFile(id));
+				} catch (Exception e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		};
+		final PathwayGraphCache cache = new PathwayGraphCache(source, Long.MAX_VALUE);
+		cache.setKgmlCache(kgmlCache);
+
+		// Files of the KGML cache are not hashed again.
+		final PathwayGraph graph = cache.get("bsu00020");
+		assertEquals(1, digests.get());
+		final InputStream is = new FileInputStream(files.get("bsu00020"));
+		try {
+			assertSame(graph, cache.get(is));
+		} finally {
+			is.close();
+		}
+
+		// Other files are.
+		cache.get("eco00010", new File(KGML_DIR + "eco/eco00010.xml"));
+		assertEquals(1, digests.get());
+	}
+
+	@Test
+	public void testFileDigest() throws Exception {
+		final File file = files.get("bsu00020");
+		final long modified = System.currentTimeMillis() - 60000L;
+		assertTrue(file.setLastModified(modified));
+		final PathwayGraphCache cache = new PathwayGraphCache(source, Long.MAX_VALUE);
+		final PathwayGraph graph = cache.get("bsu00020");
+
+		// Files with the same length and modification time are not hashed
+		// again.
+		final String kgml = new String(Files.readAllBytes(file.toPath()), "UTF-8");
+		Files.write(file.toPath(), kgml.replace("Jun 24, 2010", "Jun 24, 2011").getBytes("UTF-8"));
+		assertTrue(file.setLastModified(modified));
+		assertSame(graph, cache.get("bsu00020"));
+		assertEquals(1, cache.getMissCount());
+
+		// Changed files are.
+		assertTrue(file.setLastModified(modified + 5000L));
+		final PathwayGraph changed = cache.get("bsu00020");
+		assertTrue(graph != changed);
+		assertEquals(graph.getName(), changed.getName());
+		assertEquals(2, cache.getMissCount());
+	}
+
+	private static String sha256(final File file) throws Exception {
+		final StringBuilder hex = new StringBuilder();
+		for (final byte b : MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(file.toPath()))) {
+			hex.append(String.format("%02x", b));
+		}
+		return hex.toString();
+	}
+
+	@Test
+	public void testConcurrentRequests() throws Exception {
+		final PathwayGraphCache cache = new PathwayGraphCache(source, Long.MAX_VALUE);
+		gate = new CountDownLatch(1);
+		final int threads = 4;
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			final List<Future<PathwayGraph>> futures = new ArrayList<Future<PathwayGraph>>();
+			for (int i = 0; i < threads; i++) {
+				futures.add(executor.submit(new Callable<PathwayGraph>() {
+					@Override
+					public PathwayGraph call() throws Exception {
+						return cache.get("eco00010");
+					}
+				}));
+			}
+			// Release the download once the other requests wait for it.
+			final long deadline = System.currentTimeMillis() + 10000;
+			while (cache.getSharedLoadCount() < threads - 1 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			gate.countDown();
+
+			final PathwayGraph graph = futures.get(0).get();
+			for (final Future<PathwayGraph> future : futures) {
+				assertSame(graph, future.get());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		assertEquals(1, requests.get());
+		assertEquals(threads - 1, cache.getSharedLoadCount());
+		assertEquals(1, cache.getMissCount());
+	}
+
+	@Test
+	public void testEviction() throws Exception {
+		final long size = Math.max(files.get("bsu00020").length(), files.get("eco00010").length());
+		final PathwayGraphCache cache = new PathwayGraphCache(source, size);
+		final PathwayGraph graph = cache.get("bsu00020");
+		cache.get("eco00010");
+		assertEquals(1, cache.getEvictionCount());
+		assertEquals(1, cache.getEntryCount());
+		assertEquals(files.get("eco00010").length(), cache.getSize());
+
+		// Evicted pathways are parsed again.
+		final PathwayGraph reloaded = cache.get("bsu00020");
+		assertEquals(graph.getName(), reloaded.getName());
+		assertEquals(graph.getNodes().size(), reloaded.getNodes().size());
+		assertEquals(2, cache.getEvictionCount());
+		assertEquals(3, cache.getMissCount());
+	}
+
+	@Test
+	public void testFailureIsNotCached() throws Exception {
+		final PathwayGraphCache cache = new PathwayGraphCache(source, Long.MAX_VALUE);
+		for (int i = 0; i < 2; i++) {
+			try {
+				cache.get("hsa99999");
+				fail("Missing pathway was loaded.");
+			} catch (FileNotFoundException e) {
+				// Expected
+			}
+		}
+		assertEquals(2, requests.get());
+		assertEquals(0, cache.getEntryCount());
+	}
+}
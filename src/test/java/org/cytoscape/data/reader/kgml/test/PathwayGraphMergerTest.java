@@ -0,0 +1,147 @@
+package org.cytoscape.data.reader.kgml.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.cytoscape.keggscape.internal.model.EdgeTable;
+import org.cytoscape.keggscape.internal.model.MergedPathwayGraph;
+import org.cytoscape.keggscape.internal.model.NodeAttribute;
+import org.cytoscape.keggscape.internal.model.NodeTable;
+import org.cytoscape.keggscape.internal.model.PathwayGraph;
+import org.cytoscape.keggscape.internal.model.PathwayGraphMerger;
+import org.cytoscape.keggscape.internal.read.kgml.PathwayGraphReader;
+import org.junit.Test;
+
+/**
+ * Merging pathways into one graph by KEGG ID.
+ */
+public class PathwayGraphMergerTest {
+
+	private static final String KGML_DIR = "src/test/resources/testData/kgml/metabolic/organisms/bsu/";
+
+	private static PathwayGraph read(final String id) throws Exception {
+		final InputStream is = new FileInputStream(KGML_DIR + id + ".xml");
+		try {
+			return new PathwayGraphReader().read(is);
+		} finally {
+			is.close();
+		}
+	}
+
+	private static String getKey(final List<String> ids) {
+		return ids == null ? null : new HashSet<String>(ids).toString();
+	}
+
+	@Test
+	public void testMerge() throws Exception {
+		final PathwayGraph glycolysis = read("bsu00010");
+		final PathwayGraph tca = read("bsu00020");
+
+		final PathwayGraphMerger merger = new PathwayGraphMerger("merged", "Merged");
+		merger.add(glycolysis);
+		merger.add(tca);
+		assertEquals(2, merger.getPathwayCount());
+		final MergedPathwayGraph merged = merger.build();
+		final PathwayGraph graph = merged.getGraph();
+		final NodeTable nodes = graph.getNodes();
+
+		final int inputNodes = glycolysis.getNodes().size() + tca.getNodes().size();
+		assertEquals(inputNodes, merged.getInputNodeCount());
+		// Both pathways share pyruvate and acetyl-CoA, among others.
+		assertTrue(nodes.size() < inputNodes);
+
+		int occurrences = 0;
+		final Set<String> names = new HashSet<String>();
+		final Map<String, Integer> nodeByIds = new HashMap<String, Integer>();
+		for (int i = 0; i < nodes.size(); i++) {
+			assertTrue(names.add(nodes.get(NodeAttribute.NAME, i)));
+			final int count = merged.getOccurrenceCount(i);
+			assertTrue(count > 0);
+			occurrences += count;
+
+			final List<String> ids = nodes.getIds(i);
+			if (ids != null && !ids.contains("undefined")) {
+				// Each set of KEGG IDs is one node.
+				assertEquals(null, nodeByIds.put(getKey(ids), i));
+			}
+		}
+		assertEquals(inputNodes, occurrences);
+
+		final int pyruvate = findNode(nodes, "cpd:C00022");
+		assertTrue(pyruvate >= 0);
+		final Set<String> pathways = new HashSet<String>();
+		for (int i = 0; i < merged.getOccurrenceCount(pyruvate); i++) {
+			pathways.add(merged.getPathwayName(merged.getPathway(pyruvate, i)));
+			assertTrue(!Double.isNaN(merged.getX(pyruvate, i)));
+		}
+		assertTrue(pathways.contains("path:bsu00010"));
+		assertTrue(pathways.contains("path:bsu00020"));
+		// Geometry of the first occurrence
+		assertEquals(merged.getX(pyruvate, 0), nodes.getX(pyruvate), 0.0);
+		assertEquals(merged.getY(pyruvate, 0), nodes.getY(pyruvate), 0.0);
+
+		final EdgeTable edges = graph.getEdges();
+		assertTrue(edges.size() > 0);
+		for (int i = 0; i < edges.size(); i++) {
+			assertTrue(edges.getSource(i) < nodes.size());
+			assertTrue(edges.getTarget(i) < nodes.size());
+		}
+		for (int i = 0; i < graph.getGroups().size(); i++) {
+			for (final int member : graph.getGroupMembers(i)) {
+				assertTrue(member < nodes.size());
+			}
+		}
+	}
+
+	@Test
+	public void testMergeSamePathway() throws Exception {
+		final PathwayGraph graph = read("bsu00020");
+		final PathwayGraphMerger merger = new PathwayGraphMerger("merged", "Merged");
+		merger.add(graph);
+		final MergedPathwayGraph once = merger.build();
+
+		final PathwayGraphMerger twice = new PathwayGraphMerger("merged", "Merged");
+		twice.add(graph);
+		twice.add(graph);
+		final MergedPathwayGraph merged = twice.build();
+
+		// Nodes with KEGG IDs are found twice as often. Nodes without IDs are
+		// added again.
+		final NodeTable onceNodes = once.getGraph().getNodes();
+		int withoutIds = 0;
+		for (int i = 0; i < onceNodes.size(); i++) {
+			final List<String> ids = onceNodes.getIds(i);
+			if (ids == null || ids.contains("undefined")) {
+				withoutIds++;
+				assertEquals(1, merged.getOccurrenceCount(i));
+			} else {
+				assertEquals(2 * once.getOccurrenceCount(i), merged.getOccurrenceCount(i));
+			}
+		}
+		assertTrue(onceNodes.size() < graph.getNodes().size());
+		assertEquals(onceNodes.size() + withoutIds, merged.getGraph().getNodes().size());
+		assertEquals(2 * graph.getNodes().size(), merged.getInputNodeCount());
+		assertTrue(merged.getGraph().getEdges().size() >= once.getGraph().getEdges().size());
+		assertEquals(once.getGraph().getGroups().size(), merged.getGraph().getGroups().size());
+	}
+
+	private static int findNode(final NodeTable nodes, final String id) {
+		for (int i = 0; i < nodes.size(); i++) {
+			final List<String> ids = nodes.getIds(i);
+			if (ids != null && ids.size() == 1 && id.equals(ids.get(0))) {
+				assertNotNull(nodes.get(NodeAttribute.NAME, i));
+				return i;
+			}
+		}
+		return -1;
+	}
+}
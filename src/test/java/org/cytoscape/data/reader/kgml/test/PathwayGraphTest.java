@@ -0,0 +1,219 @@
+package org.cytoscape.data.reader.kgml.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+
+import org.cytoscape.keggscape.internal.model.NodeAttribute;
+import org.cytoscape.keggscape.internal.model.NodeTable;
+import org.cytoscape.keggscape.internal.model.PathwayGraph;
+import org.cytoscape.keggscape.internal.model.PathwayGraphBuilder;
+import org.cytoscape.keggscape.internal.read.kgml.KGMLMapper;
+import org.cytoscape.keggscape.internal.read.kgml.KGMLStreamParser;
+import org.junit.Test;
+
+/**
+ * Mapping rules without Cytoscape runtime.
+ */
+public class PathwayGraphTest {
+
+	private PathwayGraph map(final String fileName) throws Exception {
+		return map(fileName, true);
+	}
+
+	private PathwayGraph map(final String fileName, final boolean groupPlaceholders) throws Exception {
+		final KGMLMapper mapper = new KGMLMapper();
+		mapper.setGroupPlaceholders(groupPlaceholders);
+		final InputStream is = new FileInputStream(fileName);
+		try {
+			new KGMLStreamParser().parse(is, mapper);
+		} finally {
+			is.close();
+		}
+		final PathwayGraph graph = mapper.getGraph();
+		assertNotNull(graph);
+		return graph;
+	}
+
+	@Test
+	public void testMetabolicPathway() throws Exception {
+		final PathwayGraph graph = map("src/test/resources/testData/kgml/metabolic/organisms/hsa/hsa00020.xml");
+
+		assertEquals("path:hsa00020", graph.getName());
+		assertEquals(65, graph.getNodes().size());
+		assertEquals(68, graph.getEdges().size());
+		assertEquals(0, graph.getGroups().size());
+
+		final NodeTable nodes = graph.getNodes();
+		assertEquals("path:hsa00020:29", nodes.get(NodeAttribute.NAME, 1));
+		assertEquals("DLD", nodes.get(NodeAttribute.LABEL_FIRST, 1));
+		assertEquals("hsa:1738", nodes.getIds(1).get(0));
+		assertEquals(467d, nodes.getX(1), 0d);
+		assertEquals(618d, nodes.getY(1), 0d);
+	}
+
+	@Test
+	public void testGroups() throws Exception {
+		final PathwayGraph graph = map("src/test/resources/testData/kgml/non-metabolic/organisms/hsa/hsa05200.xml");
+
+		assertEquals(265, graph.getNodes().size());
+		assertEquals(204, graph.getEdges().size());
+		assertEquals(13, graph.getGroups().size());
+
+		for (int i = 0; i < graph.getGroups().size(); i++) {
+			assertTrue(graph.getGroupMembers(i).length > 1);
+			assertEquals("group", graph.getGroups().get(NodeAttribute.TYPE, i));
+		}
+	}
+
+	@Test
+	public void testGroupsWithoutPlaceholder() throws Exception {
+		final String file = "src/test/resources/testData/kgml/non-metabolic/organisms/hsa/hsa05200.xml";
+		final PathwayGraph withPlaceholders = map(file, true);
+		final PathwayGraph graph = map(file, false);
+
+		// One placeholder node less per group.
+		assertEquals(265 - 13, graph.getNodes().size());
+		assertEquals(13, graph.getGroups().size());
+		for (int i = 0; i < graph.getNodes().size(); i++) {
+			assertFalse("container".equals(graph.getNodes().get(NodeAttribute.NAME, i)));
+		}
+
+		// Relations to a complex are connected to its members.
+		assertTrue(graph.getEdges().size() > withPlaceholders.getEdges().size());
+
+		for (int i = 0; i < graph.getGroups().size(); i++) {
+			assertEquals(withPlaceholders.getGroupMembers(i).length - 1, graph.getGroupMembers(i).length);
+			assertEquals(withPlaceholders.getGroups().get(NodeAttribute.LABEL, i),
+					graph.getGroups().get(NodeAttribute.LABEL, i));
+		}
+	}
+
+	@Test
+	public void testGlobalMapCategories() throws Exception {
+		final PathwayGraph graph = map("src/test/resources/testData/kgml/metabolic/ec/ec01100.xml");
+		final NodeTable nodes = graph.getNodes();
+
+		int found = 0;
+		for (int i = 0; i < nodes.size(); i++) {
+			final String label = nodes.get(NodeAttribute.LABEL, i);
+			if ("Biotin metabolism".equals(label)) {
+				assertEquals("#FFB3CC", nodes.get(NodeAttribute.LABEL_COLOR, i));
+				found++;
+			} else if ("N-Glycan biosynthesis".equals(label)) {
+				assertEquals("#99CCFF", nodes.get(NodeAttribute.LABEL_COLOR, i));
+				found++;
+			}
+			if (found == 2) {
+				break;
+			}
+		}
+		assertEquals(2, found);
+	}
+
+	@Test
+	public void testEdgeIndex() throws Exception {
+		final PathwayGraphBuilder builder = new PathwayGraphBuilder("path:test", "00000", "map", "Test", null, null);
+		final int nodeCount = 2000;
+		for (int i = 0; i < nodeCount; i++) {
+			builder.addNode();
+		}
+		for (int i = 1; i < nodeCount; i++) {
+			assertEquals(i - 1, builder.addEdgeIfAbsent(i - 1, i, true));
+		}
+		assertTrue(builder.hasEdge(10, 11));
+		assertTrue(builder.hasEdge(11, 10));
+		assertFalse(builder.hasEdge(10, 12));
+
+		// Either direction is a duplicate.
+		assertEquals(-1, builder.addEdgeIfAbsent(11, 10, false));
+		assertEquals(-1, builder.addEdgeIfAbsent(10, 11, true));
+		assertEquals(nodeCount - 1, builder.addEdgeIfAbsent(10, 12, true));
+
+		final PathwayGraph graph = builder.build();
+		assertEquals(nodeCount, graph.getEdges().size());
+		assertEquals(2, graph.getDuplicateEdgeCount());
+	}
+
+	@Test
+	public void testBuilderCopy() throws Exception {
+		final PathwayGraphBuilder builder = new PathwayGraphBuilder("path:test", "00000", "map", "Test", null, null);
+		final int node1 = builder.addNode();
+		final int node2 = builder.addNode();
+		builder.setNode(node1, NodeAttribute.NAME, "cpd:C00022");
+		builder.addEdge(node1, node2, true);
+
+		final PathwayGraphBuilder copy = new PathwayGraphBuilder(builder);
+		copy.setNode(node1, NodeAttribute.NAME, "cpd:C00024");
+		assertEquals(-1, copy.addEdgeIfAbsent(node2, node1, true));
+		copy.addEdge(node2, copy.addNode(), false);
+		copy.addGroup(new int[] { node1, node2 });
+		final PathwayGraph copied = copy.build();
+		assertEquals("cpd:C00024", copied.getNodes().get(NodeAttribute.NAME, node1));
+		assertEquals(3, copied.getNodes().size());
+		assertEquals(2, copied.getEdges().size());
+		assertEquals(1, copied.getGroups().size());
+		assertEquals(1, copied.getDuplicateEdgeCount());
+
+		// The original is not changed, and can still be built.
+		assertFalse(builder.hasEdge(node2, 2));
+		final PathwayGraph graph = builder.build();
+		assertEquals("cpd:C00022", graph.getNodes().get(NodeAttribute.NAME, node1));
+		assertEquals(2, graph.getNodes().size());
+		assertEquals(1, graph.getEdges().size());
+		assertEquals(0, graph.getGroups().size());
+		assertEquals(0, graph.getDuplicateEdgeCount());
+	}
+
+	@Test
+	public void testBuilderAfterBuild() throws Exception {
+		final PathwayGraphBuilder builder = new PathwayGraphBuilder("path:test", "00000", "map", "Test", null, null);
+		final int node = builder.addNode();
+		builder.setNode(node, NodeAttribute.NAME, "cpd:C00022");
+		final int edge = builder.addEdge(node, builder.addNode(), true);
+		final int group = builder.addGroup(new int[] { node });
+		final PathwayGraph graph = builder.build();
+
+		// The tables belong to the immutable graph now.
+		final Runnable[] mutators = { new Runnable() {
+			@Override
+			public void run() {
+				builder.setNode(node, NodeAttribute.NAME, "cpd:C00024");
+			}
+		}, new Runnable() {
+			@Override
+			public void run() {
+				builder.setNodeIds(node, new String[] { "cpd:C00024" });
+			}
+		}, new Runnable() {
+			@Override
+			public void run() {
+				builder.setNodeGeometry(node, 1, 1, 1, 1);
+			}
+		}, new Runnable() {
+			@Override
+			public void run() {
+				builder.setEdgeSubtypes(edge, new String[] { "activation" });
+			}
+		}, new Runnable() {
+			@Override
+			public void run() {
+				builder.setGroup(group, NodeAttribute.NAME, "group");
+			}
+		} };
+		for (final Runnable mutator : mutators) {
+			try {
+				mutator.run();
+				fail("Built graph was modified.");
+			} catch (IllegalStateException e) {
+				// Expected
+			}
+		}
+		assertEquals("cpd:C00022", graph.getNodes().get(NodeAttribute.NAME, node));
+	}
+}
@@ -0,0 +1,205 @@
+package org.cytoscape.data.reader.kgml.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.cytoscape.keggscape.internal.model.PathwayGraph;
+import org.cytoscape.keggscape.internal.read.kgml.PathwayGraphReader;
+import org.cytoscape.keggscape.internal.wsclient.KgmlCache;
+import org.cytoscape.keggscape.internal.wsclient.PathwayPrefetcher;
+import org.cytoscape.keggscape.internal.wsclient.PathwaySource;
+import org.cytoscape.keggscape.internal.wsclient.PooledHttpTransport;
+import org.cytoscape.keggscape.internal.wsclient.TogowsHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PathwayPrefetcherTest {
+
+	private static final String KGML_FILE = "src/test/resources/testData/kgml/metabolic/organisms/bsu/bsu00020.xml";
+
+	private StubHttpServer server;
+	private PooledHttpTransport transport;
+	private KgmlCache cache;
+	private PathwaySource source;
+	private PathwayPrefetcher prefetcher;
+	private File dir;
+	private PathwayGraph graph;
+
+	@Before
+	public void setUp() throws Exception {
+		final File kgml = new File(KGML_FILE);
+		server = new StubHttpServer();
+		server.setBody(new String(Files.readAllBytes(kgml.toPath()), "UTF-8"));
+		System.setProperty(KgmlCache.KEGG_REST_API_PROPERTY, server.getUrl() + "get/");
+
+		transport = new PooledHttpTransport(4, 2, 2000, 2000);
+		dir = Files.createTempDirectory("kgml-cache").toFile();
+		cache = new KgmlCache(dir, transport, 3600000L, 1024 * 1024 * 100, false);
+		source = new PathwaySource() {
+			@Override
+			public File getKgml(final String id) throws IOException {
+				return cache.get(id, KgmlCache.getKgmlUrl(id));
+			}
+
+			@Override
+			public void readAnnotation(final String id, final TogowsHandler handler) throws IOException {
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public int getMaxConcurrentAnnotations() {
+				return 1;
+			}
+
+			@Override
+			public String getName() {
+				return "KEGG";
+			}
+		};
+
+		final InputStream is = new FileInputStream(kgml);
+		try {
+			graph = new PathwayGraphReader().read(is);
+		} finally {
+			is.close();
+		}
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (prefetcher != null) {
+			prefetcher.close();
+		}
+		System.clearProperty(KgmlCache.KEGG_REST_API_PROPERTY);
+		transport.close();
+		server.stop();
+		cache.clear();
+		for (final File file : dir.listFiles()) {
+			file.delete();
+		}
+		dir.delete();
+	}
+
+	@Test
+	public void testLinkedPathways() throws Exception {
+		final List<String> linked = PathwayPrefetcher.getLinkedPathways(graph);
+		assertTrue(linked.contains("bsu00630"));
+		assertTrue(linked.contains("map00062"));
+		assertFalse(linked.contains("bsu00020"));
+		assertEquals(linked.size(), new HashSet<String>(linked).size());
+	}
+
+	@Test
+	public void testPrefetchAndTake() throws Exception {
+		prefetcher = new PathwayPrefetcher(source, 2, 1024 * 1024 * 10);
+		final List<String> linked = PathwayPrefetcher.getLinkedPathways(graph);
+		assertEquals(linked.size(), prefetcher.prefetchLinked(graph));
+		// Pending pathways are not scheduled twice.
+		assertEquals(0, prefetcher.prefetchLinked(graph));
+
+		waitUntilReady(prefetcher, linked);
+		assertEquals(linked.size(), server.getRequestCount());
+		assertTrue(prefetcher.getPrefetchedBytes() > 0);
+
+		final PathwayGraph prefetched = prefetcher.take(linked.get(0));
+		assertNotNull(prefetched);
+		assertEquals(graph.getNodes().size(), prefetched.getNodes().size());
+		assertNull(prefetcher.take(linked.get(0)));
+		assertTrue(cache.contains(linked.get(0)));
+	}
+
+	@Test
+	public void testByteLimit() throws Exception {
+		final File kgml = new File(KGML_FILE);
+		final long size = kgml.length();
+		prefetcher = new PathwayPrefetcher(source, 1, size * 3);
+		assertEquals(1, prefetcher.prefetch(Arrays.asList("bsu00010")));
+		waitUntilReady(prefetcher, Arrays.asList("bsu00010"));
+
+		// Queued downloads count at the average size of the prefetched files.
+		final List<String> ids = Arrays.asList("bsu00030", "bsu00040", "bsu00050", "bsu00061");
+		assertEquals(2, prefetcher.prefetch(ids));
+		waitUntilReady(prefetcher, ids.subList(0, 2));
+		assertEquals(size * 3, prefetcher.getPrefetchedBytes());
+		assertEquals(0, prefetcher.prefetch(ids));
+		assertEquals(3, server.getRequestCount());
+
+		// Requesting the first pathway again keeps it over bsu00040 when a
+		// larger file than expected has to make room.
+		assertEquals(0, prefetcher.prefetch(Arrays.asList("bsu00010")));
+		assertNotNull(prefetcher.take("bsu00030"));
+		final StringBuilder padded = new StringBuilder(new String(Files.readAllBytes(kgml.toPath()), "UTF-8"));
+		padded.append("<!--");
+		for (long i = 0; i < size / 2; i++) {
+			padded.append(' ');
+		}
+		padded.append("-->");
+		server.setBody(padded.toString());
+		assertEquals(1, prefetcher.prefetch(Arrays.asList("bsu00050")));
+		waitUntilReady(prefetcher, Arrays.asList("bsu00050"));
+
+		assertTrue(prefetcher.isReady("bsu00010"));
+		assertFalse(prefetcher.isReady("bsu00040"));
+		assertTrue(cache.contains("bsu00040"));
+		assertTrue(prefetcher.getPrefetchedBytes() <= size * 3);
+	}
+
+	@Test
+	public void testTakePending() throws Exception {
+		server.setDelay(200);
+		prefetcher = new PathwayPrefetcher(source, 1, 1024 * 1024 * 10);
+		prefetcher.prefetch(Arrays.asList("bsu00010", "bsu00030"));
+
+		// Running and queued prefetches are not thrown away.
+		assertNotNull(prefetcher.take("bsu00010"));
+		assertNotNull(prefetcher.take("bsu00030"));
+		assertEquals(2, server.getRequestCount());
+		assertEquals(0, prefetcher.getPrefetchedBytes());
+	}
+
+	@Test
+	public void testCancel() throws Exception {
+		server.setDelay(100);
+		prefetcher = new PathwayPrefetcher(source, 1, 1024 * 1024 * 10);
+		final List<String> linked = PathwayPrefetcher.getLinkedPathways(graph);
+		prefetcher.prefetchLinked(graph);
+		prefetcher.cancel();
+		Thread.sleep(300);
+
+		assertTrue(server.getRequestCount() <= 1);
+		assertEquals(0, prefetcher.getPrefetchedBytes());
+		assertNull(prefetcher.take(linked.get(0)));
+	}
+
+	@Test
+	public void testDisabled() throws Exception {
+		prefetcher = new PathwayPrefetcher(source, 1, 1024 * 1024 * 10);
+		prefetcher.setEnabled(false);
+		assertEquals(0, prefetcher.prefetchLinked(graph));
+		assertEquals(0, server.getRequestCount());
+	}
+
+	private static final void waitUntilReady(final PathwayPrefetcher prefetcher, final List<String> ids)
+			throws InterruptedException {
+		final long end = System.currentTimeMillis() + 10000;
+		for (final String id : ids) {
+			while (!prefetcher.isReady(id) && System.currentTimeMillis() < end) {
+				Thread.sleep(10);
+			}
+			assertTrue(id + " is not ready.", prefetcher.isReady(id));
+		}
+	}
+}
@@ -0,0 +1,242 @@
+package org.cytoscape.data.reader.kgml.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+
+import org.cytoscape.keggscape.internal.model.EdgeAttribute;
+import org.cytoscape.keggscape.internal.model.EdgeTable;
+import org.cytoscape.keggscape.internal.model.NodeAttribute;
+import org.cytoscape.keggscape.internal.model.NodeTable;
+import org.cytoscape.keggscape.internal.model.PathwayGraph;
+import org.cytoscape.keggscape.internal.model.PathwaySnapshot;
+import org.cytoscape.keggscape.internal.read.kgml.PathwayGraphReader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Binary pathway snapshots.
+ */
+public class PathwaySnapshotTest {
+
+	private static final String KGML_DIR = "src/test/resources/testData/kgml/";
+
+	private File dir;
+	private File snapshots;
+	private PathwayGraphReader reader;
+
+	@Before
+	public void setUp() throws Exception {
+		dir = Files.createTempDirectory("kgml-snapshot").toFile();
+		snapshots = Files.createTempDirectory("kgml-snapshots").toFile();
+		reader = new PathwayGraphReader(snapshots);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		for (final File directory : new File[] { dir, snapshots }) {
+			for (final File file : directory.listFiles()) {
+				file.delete();
+			}
+			directory.delete();
+		}
+	}
+
+	private File copy(final String name) throws IOException {
+		final File source = new File(KGML_DIR + name);
+		final File file = new File(dir, source.getName());
+		Files.copy(source.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		return file;
+	}
+
+	private static String digest(final File file) throws Exception {
+		final byte[] hash = MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(file.toPath()));
+		final StringBuilder builder = new StringBuilder();
+		for (final byte b : hash) {
+			builder.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+		return builder.toString();
+	}
+
+	private File snapshotOf(final File kgml) throws Exception {
+		return PathwayGraphReader.getSnapshotFile(snapshots, kgml, digest(kgml));
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		// Small pathway with groups, and the global map, which is memory mapped.
+		for (final String name : new String[] { "non-metabolic/organisms/hsa/hsa05200.xml",
+				"metabolic/ec/ec01100.xml" }) {
+			final File kgml = copy(name);
+			final PathwayGraph parsed = reader.readCached(kgml, digest(kgml));
+			assertTrue(snapshotOf(kgml).isFile());
+
+			final PathwayGraph loaded = reader.readCached(kgml, digest(kgml));
+			assertTrue(parsed.getNodes().size() > 0);
+			assertSameGraph(parsed, loaded, name);
+		}
+	}
+
+	@Test
+	public void testStaleSnapshot() throws Exception {
+		final File kgml = copy("metabolic/organisms/bsu/bsu00020.xml");
+		final File snapshot = snapshotOf(kgml);
+		final PathwayGraph graph = reader.readCached(kgml, digest(kgml));
+
+		assertNotNull(PathwaySnapshot.read(snapshot, 1, kgml.length()));
+		// Other mapping options
+		assertNull(PathwaySnapshot.read(snapshot, 0, kgml.length()));
+		// Other source length
+		assertNull(PathwaySnapshot.read(snapshot, 1, kgml.length() + 1));
+
+		// Modified content has its own snapshot.
+		Files.write(kgml.toPath(), "\n".getBytes("UTF-8"), StandardOpenOption.APPEND);
+		final File modified = snapshotOf(kgml);
+		assertFalse(modified.equals(snapshot));
+		assertSameGraph(graph, reader.readCached(kgml, digest(kgml)), "reparsed");
+		assertNotNull(PathwaySnapshot.read(modified, 1, kgml.length()));
+	}
+
+	@Test
+	public void testDamagedSnapshot() throws Exception {
+		final File kgml = copy("metabolic/organisms/bsu/bsu00020.xml");
+		final File snapshot = snapshotOf(kgml);
+		final PathwayGraph graph = reader.readCached(kgml, digest(kgml));
+
+		final RandomAccessFile file = new RandomAccessFile(snapshot, "rw");
+		try {
+			file.setLength(file.length() / 2);
+		} finally {
+			file.close();
+		}
+		try {
+			PathwaySnapshot.read(snapshot, 1, kgml.length());
+			fail("Truncated snapshot was read.");
+		} catch (IOException e) {
+			// Expected
+		}
+
+		// The file is parsed again and the snapshot replaced.
+		assertSameGraph(graph, reader.readCached(kgml, digest(kgml)), "recovered");
+		assertNotNull(PathwaySnapshot.read(snapshot, 1, kgml.length()));
+	}
+
+	@Test
+	public void testSourceDirectoryUntouched() throws Exception {
+		// Mirrored files belong to the user.
+		final File kgml = copy("metabolic/organisms/bsu/bsu00020.xml");
+		reader.readCached(kgml, digest(kgml));
+		assertArrayEquals(new File[] { kgml }, dir.listFiles());
+		assertEquals(1, snapshots.listFiles().length);
+
+		// Without a snapshot directory, files are only parsed.
+		assertNotNull(new PathwayGraphReader().readCached(kgml, digest(kgml)));
+		assertArrayEquals(new File[] { kgml }, dir.listFiles());
+		assertEquals(1, snapshots.listFiles().length);
+	}
+
+	@Test
+	public void testExtractedAgain() throws Exception {
+		// A mirror archive is extracted to a new directory in each session.
+		final File kgml = copy("metabolic/organisms/bsu/bsu00020.xml");
+		final PathwayGraph graph = reader.readCached(kgml, digest(kgml));
+		final File snapshot = snapshotOf(kgml);
+		assertTrue(snapshot.setLastModified(snapshot.lastModified() - 10000));
+		final long used = snapshot.lastModified();
+
+		final File other = new File(dir, "other");
+		assertTrue(other.mkdir());
+		final File copy = new File(other, kgml.getName());
+		Files.copy(kgml.toPath(), copy.toPath());
+		assertTrue(copy.setLastModified(kgml.lastModified() + 10000));
+		try {
+			assertSameGraph(graph, reader.readCached(copy, digest(copy)), "extracted");
+			assertEquals(1, snapshots.listFiles().length);
+			assertTrue(snapshot.lastModified() > used);
+		} finally {
+			copy.delete();
+			other.delete();
+		}
+	}
+
+	@Test
+	public void testSizeLimit() throws Exception {
+		final File first = copy("metabolic/organisms/bsu/bsu00020.xml");
+		final File second = copy("metabolic/ec/ec01100.xml");
+		final File third = copy("non-metabolic/organisms/hsa/hsa05200.xml");
+		reader.readCached(first, digest(first));
+		reader.readCached(second, digest(second));
+		final File firstSnapshot = snapshotOf(first);
+		final File secondSnapshot = snapshotOf(second);
+		final long now = System.currentTimeMillis();
+		assertTrue(firstSnapshot.setLastModified(now - 20000));
+		assertTrue(secondSnapshot.setLastModified(now - 10000));
+
+		// Room for the first two snapshots only. The global map is the
+		// largest.
+		final PathwayGraphReader bounded = new PathwayGraphReader(snapshots,
+				firstSnapshot.length() + secondSnapshot.length());
+		// Using the first snapshot makes the second the least recently used.
+		bounded.readCached(first, digest(first));
+		bounded.readCached(third, digest(third));
+		assertTrue(firstSnapshot.isFile());
+		assertFalse(secondSnapshot.isFile());
+		assertTrue(snapshotOf(third).isFile());
+	}
+
+	private void assertSameGraph(final PathwayGraph expected, final PathwayGraph actual, final String name) {
+		assertEquals(name, expected.getName(), actual.getName());
+		assertEquals(name, expected.getNumber(), actual.getNumber());
+		assertEquals(name, expected.getOrg(), actual.getOrg());
+		assertEquals(name, expected.getTitle(), actual.getTitle());
+		assertEquals(name, expected.getImage(), actual.getImage());
+		assertEquals(name, expected.getLink(), actual.getLink());
+		assertEquals(name, expected.getDuplicateEdgeCount(), actual.getDuplicateEdgeCount());
+		assertSameNodes(expected.getNodes(), actual.getNodes(), name);
+		assertSameNodes(expected.getGroups(), actual.getGroups(), name);
+		for (int i = 0; i < expected.getGroups().size(); i++) {
+			assertArrayEquals(name, expected.getGroupMembers(i), actual.getGroupMembers(i));
+		}
+
+		final EdgeTable edges = expected.getEdges();
+		final EdgeTable actualEdges = actual.getEdges();
+		assertEquals(name, edges.size(), actualEdges.size());
+		for (int i = 0; i < edges.size(); i++) {
+			assertEquals(name, edges.getSource(i), actualEdges.getSource(i));
+			assertEquals(name, edges.getTarget(i), actualEdges.getTarget(i));
+			assertEquals(name, edges.isDirected(i), actualEdges.isDirected(i));
+			for (final EdgeAttribute attr : EdgeAttribute.values()) {
+				assertEquals(name, edges.get(attr, i), actualEdges.get(attr, i));
+			}
+			assertEquals(name, edges.getSubtypes(i), actualEdges.getSubtypes(i));
+		}
+	}
+
+	private void assertSameNodes(final NodeTable expected, final NodeTable actual, final String name) {
+		assertEquals(name, expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			for (final NodeAttribute attr : NodeAttribute.values()) {
+				assertEquals(name, expected.get(attr, i), actual.get(attr, i));
+			}
+			assertEquals(name, expected.getIds(i), actual.getIds(i));
+			assertEquals(name, expected.getLabels(i), actual.getLabels(i));
+			assertEquals(name, expected.getX(i), actual.getX(i), 0d);
+			assertEquals(name, expected.getY(i), actual.getY(i), 0d);
+			assertEquals(name, expected.getWidth(i), actual.getWidth(i), 0d);
+			assertEquals(name, expected.getHeight(i), actual.getHeight(i), 0d);
+		}
+	}
+}
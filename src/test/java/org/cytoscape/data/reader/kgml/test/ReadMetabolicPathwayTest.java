@@ -1,13 +1,19 @@
 package org.cytoscape.data.reader.kgml.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 import java.util.List;
 
+import org.cytoscape.keggscape.internal.read.kgml.KeggConstants;
+import org.cytoscape.keggscape.internal.read.kgml.ViewGeometry;
 import org.cytoscape.model.CyEdge;
 import org.cytoscape.model.CyNetwork;
 import org.cytoscape.model.CyNode;
+import org.cytoscape.model.CyRow;
 import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.View;
+import org.cytoscape.view.presentation.property.BasicVisualLexicon;
 import org.junit.Test;
 
 public class ReadMetabolicPathwayTest extends AbstractKeggReaderTest {
@@ -26,4 +32,24 @@ public class ReadMetabolicPathwayTest extends AbstractKeggReaderTest {
 		assertEquals(65, nodes.size());
 		assertEquals(68, edges.size());
 	}
+
+	@Test
+	public void testViewGeometry() throws Exception {
+		final String humanTcaCycle = "src/test/resources/testData/kgml/metabolic/organisms/hsa/hsa00020.xml";
+		final CyNetworkView view = loadKGML("KEGG Metabolic Pathways", humanTcaCycle);
+		final CyNetwork network = view.getModel();
+
+		// Nodes are placed by the reader, not by the style.
+		for (final CyNode node : network.getNodeList()) {
+			final CyRow row = network.getRow(node);
+			final View<CyNode> nodeView = view.getNodeView(node);
+			assertEquals(row.get(KeggConstants.KEGG_NODE_X, Double.class),
+					nodeView.getVisualProperty(BasicVisualLexicon.NODE_X_LOCATION), 0d);
+			assertEquals(row.get(KeggConstants.KEGG_NODE_Y, Double.class),
+					nodeView.getVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION), 0d);
+			assertEquals(row.get(KeggConstants.KEGG_NODE_WIDTH, Double.class),
+					nodeView.getVisualProperty(BasicVisualLexicon.NODE_WIDTH), 0d);
+		}
+		assertFalse(ViewGeometry.isUnplaced(view));
+	}
 }
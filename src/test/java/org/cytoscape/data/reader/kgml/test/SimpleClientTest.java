@@ -2,6 +2,7 @@ package org.cytoscape.data.reader.kgml.test;
 
 
 import org.cytoscape.ding.NetworkViewTestSupport;
+import org.cytoscape.keggscape.internal.wsclient.PooledHttpTransport;
 import org.cytoscape.keggscape.internal.wsclient.TogowsClient;
 import org.cytoscape.model.CyNetwork;
 import org.cytoscape.model.CyNetworkFactory;
@@ -15,21 +16,24 @@ public class SimpleClientTest {
 	private final CyNetworkFactory networkFactory = support.getNetworkFactory();
 
 	private CyNetwork network;
+	private PooledHttpTransport transport;
 	
 	@Before
 	public void setUp() throws Exception {
 	
 		this.network = networkFactory.createNetwork();
+		this.transport = new PooledHttpTransport();
 	}
 
 	@After
 	public void tearDown() throws Exception {
+		transport.close();
 	}
 
 	
 	@Test
 	public void testClient() throws Exception {
-		TogowsClient client = new TogowsClient();
+		TogowsClient client = new TogowsClient(transport);
 		
 		client.map("hsa00020", network);
 		
@@ -0,0 +1,62 @@
+package org.cytoscape.data.reader.kgml.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.cytoscape.keggscape.internal.read.kgml.KeggConstants;
+import org.cytoscape.model.CyIdentifiable;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyRow;
+import org.cytoscape.view.model.CyNetworkView;
+import org.junit.Test;
+
+public class StreamingReaderTest extends AbstractKeggReaderTest {
+
+	private static final String COLLECTION = "KEGG Pathways";
+
+	@Test
+	public void testMetabolicPathway() throws Exception {
+		compare("src/test/resources/testData/kgml/metabolic/organisms/hsa/hsa00020.xml");
+	}
+
+	@Test
+	public void testDiseasePathway() throws Exception {
+		compare("src/test/resources/testData/kgml/non-metabolic/organisms/hsa/hsa05200.xml");
+	}
+
+	@Test
+	public void testGlobalMap() throws Exception {
+		compare("src/test/resources/testData/kgml/metabolic/ec/ec01100.xml");
+	}
+
+	private void compare(final String fileName) throws Exception {
+		final CyNetwork jaxbNetwork = loadKGML(COLLECTION, fileName, true).getModel();
+		final CyNetwork streamNetwork = loadKGML(COLLECTION, fileName, false).getModel();
+
+		assertEquals(jaxbNetwork.getNodeCount(), streamNetwork.getNodeCount());
+		assertEquals(jaxbNetwork.getEdgeCount(), streamNetwork.getEdgeCount());
+		assertEquals(jaxbNetwork.getRow(jaxbNetwork).get(CyNetwork.NAME, String.class),
+				streamNetwork.getRow(streamNetwork).get(CyNetwork.NAME, String.class));
+
+		assertEquals(rows(jaxbNetwork, jaxbNetwork.getNodeList(), KeggConstants.KEGG_NODE_X),
+				rows(streamNetwork, streamNetwork.getNodeList(), KeggConstants.KEGG_NODE_X));
+		assertEquals(rows(jaxbNetwork, jaxbNetwork.getNodeList(), KeggConstants.KEGG_NODE_FILL_COLOR),
+				rows(streamNetwork, streamNetwork.getNodeList(), KeggConstants.KEGG_NODE_FILL_COLOR));
+		assertEquals(rows(jaxbNetwork, jaxbNetwork.getEdgeList(), KeggConstants.KEGG_EDGE_COLOR),
+				rows(streamNetwork, streamNetwork.getEdgeList(), KeggConstants.KEGG_EDGE_COLOR));
+	}
+
+	private List<String> rows(final CyNetwork network, final List<? extends CyIdentifiable> objects,
+			final String column) {
+		final List<String> values = new ArrayList<String>();
+		for (final CyIdentifiable obj : objects) {
+			final CyRow row = network.getRow(obj);
+			values.add(row.get(CyNetwork.NAME, String.class) + "\t" + row.getRaw(column));
+		}
+		Collections.sort(values);
+		return values;
+	}
+}
@@ -0,0 +1,158 @@
+package org.cytoscape.data.reader.kgml.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local HTTP server standing in for KEGG and TogoWS in tests.
+ * 
+ * Every request is answered with the configured body. Paths ending with
+ * "/missing" return 404. Responses are gzipped if the client accepts it and
+ * {@link #setGzip(boolean)} is on.
+ */
+public class StubHttpServer {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final HttpServer server;
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	private final AtomicInteger requests = new AtomicInteger();
+	private final AtomicInteger active = new AtomicInteger();
+	private final AtomicInteger maxActive = new AtomicInteger();
+
+	private volatile String body = "";
+	private volatile long delay;
+	private volatile boolean gzip;
+	private volatile boolean ranges;
+	private final AtomicLong bytesSent = new AtomicLong();
+
+	public StubHttpServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(final HttpExchange exchange) throws IOException {
+				respond(exchange);
+			}
+		});
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	public String getUrl() {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+	}
+
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	public void setBody(final String body) {
+		this.body = body;
+	}
+
+	/**
+	 * @param delay
+	 *            time to wait before each response is sent, in milliseconds.
+	 */
+	public void setDelay(final long delay) {
+		this.delay = delay;
+	}
+
+	public void setGzip(final boolean gzip) {
+		this.gzip = gzip;
+	}
+
+	/**
+	 * Answer range requests for the start of the body with 206.
+	 */
+	public void setRanges(final boolean ranges) {
+		this.ranges = ranges;
+	}
+
+	/**
+	 * @return number of body bytes sent in all responses.
+	 */
+	public long getBytesSent() {
+		return bytesSent.get();
+	}
+
+	public int getRequestCount() {
+		return requests.get();
+	}
+
+	/**
+	 * @return largest number of requests handled at the same time.
+	 */
+	public int getMaxConcurrentRequests() {
+		return maxActive.get();
+	}
+
+	public void stop() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	private final void respond(final HttpExchange exchange) throws IOException {
+		requests.incrementAndGet();
+		final int current = active.incrementAndGet();
+		int max;
+		while (current > (max = maxActive.get()) && !maxActive.compareAndSet(max, current)) {
+			// retry
+		}
+
+		try {
+			if (delay > 0) {
+				Thread.sleep(delay);
+			}
+			if (exchange.getRequestURI().getPath().endsWith("/missing")) {
+				exchange.sendResponseHeaders(404, -1);
+				return;
+			}
+
+			byte[] bytes = body.getBytes(UTF8);
+			final String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+			if (gzip && accept != null && accept.contains("gzip")) {
+				final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+				final GZIPOutputStream gos = new GZIPOutputStream(bos);
+				gos.write(bytes);
+				gos.close();
+				bytes = bos.toByteArray();
+				exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+			}
+			final String range = exchange.getRequestHeaders().getFirst("Range");
+			if (ranges && range != null && range.startsWith("bytes=0-")) {
+				final int end = Math.min(bytes.length - 1, Integer.parseInt(range.substring("bytes=0-".length())));
+				exchange.getResponseHeaders().set("Content-Range", "bytes 0-" + end + "/" + bytes.length);
+				bytes = Arrays.copyOf(bytes, end + 1);
+				exchange.sendResponseHeaders(206, bytes.length);
+			} else {
+				exchange.sendResponseHeaders(200, bytes.length);
+			}
+			// Counted first, as the client may finish reading before write
+			// returns.
+			bytesSent.addAndGet(bytes.length);
+			final OutputStream os = exchange.getResponseBody();
+			os.write(bytes);
+			os.close();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			active.decrementAndGet();
+			exchange.close();
+		}
+	}
+}
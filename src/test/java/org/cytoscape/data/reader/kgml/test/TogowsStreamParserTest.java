@@ -0,0 +1,125 @@
+package org.cytoscape.data.reader.kgml.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.cytoscape.keggscape.internal.wsclient.TogowsHandler;
+import org.cytoscape.keggscape.internal.wsclient.TogowsStreamParser;
+import org.junit.Test;
+
+public class TogowsStreamParserTest {
+
+	private static final String ENTRY = "[{\"entry_id\":\"hsa00020\",\"name\":\"Citrate cycle (TCA cycle)\","
+			+ "\"description\":\"The citrate cycle is an important aerobic pathway.\","
+			+ "\"classes\":[\"Metabolism\",\"Carbohydrate metabolism\"],"
+			+ "\"pathway_map\":{\"hsa00020\":\"Citrate cycle (TCA cycle)\"},"
+			+ "\"modules\":{\"M00009\":\"Citrate cycle (TCA cycle, Krebs cycle)\",\"M00011\":\"Citrate cycle, second carbon oxidation\"},"
+			+ "\"diseases\":{\"H00048\":\"Hepatocellular carcinoma\"},"
+			+ "\"dblinks\":{\"GO\":[\"0006099\"]},"
+			+ "\"organism\":\"Homo sapiens (human) [GN:hsa]\","
+			+ "\"genes\":{\"1431\":\"CS; citrate synthase [KO:K01647] [EC:2.3.3.1]\",\"47\":\"ACLY; ATP citrate lyase\"},"
+			+ "\"references\":[{\"pmid\":\"123\",\"authors\":[\"A\",\"B\"]}]},"
+			+ "{\"entry_id\":\"ignored\",\"description\":\"Second entry\"}]";
+
+	@Test
+	public void testParse() throws Exception {
+		final RecordingHandler handler = parse(ENTRY);
+
+		assertEquals(Arrays.asList("description:The citrate cycle is an important aerobic pathway.",
+				"class:Metabolism", "class:Carbohydrate metabolism",
+				"module:M00009=Citrate cycle (TCA cycle, Krebs cycle)",
+				"module:M00011=Citrate cycle, second carbon oxidation", "disease:H00048=Hepatocellular carcinoma",
+				"gene:1431=CS; citrate synthase [KO:K01647] [EC:2.3.3.1]", "gene:47=ACLY; ATP citrate lyase", "end"),
+				handler.events);
+	}
+
+	@Test
+	public void testMissingFields() throws Exception {
+		final RecordingHandler handler = parse("[{\"entry_id\":\"hsa00020\",\"genes\":{\"47\":[\"ACLY\"]}}]");
+		assertEquals(Arrays.asList("end"), handler.events);
+	}
+
+	@Test
+	public void testEmptyResponse() throws Exception {
+		try {
+			parse("[]");
+			fail("Empty response must be reported.");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testLargeGeneList() throws Exception {
+		final StringBuilder builder = new StringBuilder("[{\"genes\":{");
+		for (int i = 0; i < 50000; i++) {
+			if (i != 0) {
+				builder.append(',');
+			}
+			builder.append("\"" + i + "\":\"G" + i + "; gene " + i + "\"");
+		}
+		builder.append("}}]");
+
+		final int[] count = new int[1];
+		new TogowsStreamParser().parse(toStream(builder.toString()), new RecordingHandler() {
+			@Override
+			public void gene(final String id, final String text) {
+				assertEquals("G" + id + "; gene " + id, text);
+				count[0]++;
+			}
+		});
+		assertEquals(50000, count[0]);
+	}
+
+	private RecordingHandler parse(final String json) throws IOException {
+		final RecordingHandler handler = new RecordingHandler();
+		new TogowsStreamParser().parse(toStream(json), handler);
+		return handler;
+	}
+
+	private InputStream toStream(final String json) throws IOException {
+		return new ByteArrayInputStream(json.getBytes("UTF-8"));
+	}
+
+	private static class RecordingHandler implements TogowsHandler {
+
+		private final List<String> events = new ArrayList<String>();
+
+		@Override
+		public void description(final String description) {
+			events.add("description:" + description);
+		}
+
+		@Override
+		public void pathwayClass(final String pathwayClass) {
+			events.add("class:" + pathwayClass);
+		}
+
+		@Override
+		public void module(final String key, final String value) {
+			events.add("module:" + key + "=" + value);
+		}
+
+		@Override
+		public void disease(final String key, final String value) {
+			events.add("disease:" + key + "=" + value);
+		}
+
+		@Override
+		public void gene(final String id, final String text) {
+			events.add("gene:" + id + "=" + text);
+		}
+
+		@Override
+		public void endEntry() {
+			events.add("end");
+		}
+	}
+}